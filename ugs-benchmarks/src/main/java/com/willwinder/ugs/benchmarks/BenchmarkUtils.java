@@ -0,0 +1,72 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.processors.CommandLengthProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.CommentProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.DecimalProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.M30Processor;
+import com.willwinder.universalgcodesender.gcode.processors.WhitespaceProcessor;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers which are shared by the benchmarks.
+ *
+ * @author wwinder
+ */
+final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * @return a parser with the processors which are enabled in the default
+     * GRBL firmware configuration
+     */
+    static GcodeParser createDefaultParser() {
+        GcodeParser gcp = new GcodeParser();
+        gcp.addCommandProcessor(new CommentProcessor());
+        gcp.addCommandProcessor(new M30Processor());
+        gcp.addCommandProcessor(new DecimalProcessor(4));
+        gcp.addCommandProcessor(new WhitespaceProcessor());
+        gcp.addCommandProcessor(new CommandLengthProcessor(70));
+        return gcp;
+    }
+
+    /**
+     * Preprocesses a program into a temporary stream file like the GUI does
+     * when a file is opened.
+     */
+    static File preprocess(File input) throws IOException, GcodeParserException {
+        File output = createTempFile(".stream");
+        GcodeParserUtils.processAndExport(createDefaultParser(), input, output);
+        return output;
+    }
+
+    static File createTempFile(String suffix) throws IOException {
+        File file = File.createTempFile("ugs-benchmark-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+}
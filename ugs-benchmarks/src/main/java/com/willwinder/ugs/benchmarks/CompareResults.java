@@ -0,0 +1,127 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files in the JSON format and prints the change of
+ * every benchmark which is in both of them.
+ *
+ * Usage: CompareResults baseline.json current.json
+ *
+ * @author wwinder
+ */
+public final class CompareResults {
+
+    private static class Score {
+        final double value;
+        final double error;
+        final String unit;
+
+        Score(double value, double error, String unit) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <current.json>");
+            System.exit(1);
+        }
+
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> current = read(args[1]);
+
+        int width = 40;
+        for (String name : current.keySet()) {
+            width = Math.max(width, name.length());
+        }
+
+        String format = "%-" + width + "s %14s %14s %9s  %s%n";
+        System.out.printf(Locale.ROOT, format, "Benchmark", "Baseline", "Current", "Change", "Unit");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf(Locale.ROOT, format, entry.getKey(), "-", formatScore(after), "new", after.unit);
+                continue;
+            }
+
+            // Differences within the error of the measurements aren't significant.
+            double change = (after.value - before.value) / before.value * 100;
+            boolean significant = Math.abs(after.value - before.value) > before.error + after.error;
+            String changeText = String.format(Locale.ROOT, "%+.1f%%", change) + (significant ? "" : "?");
+            System.out.printf(Locale.ROOT, format, entry.getKey(), formatScore(before), formatScore(after),
+                    changeText, after.unit);
+        }
+    }
+
+    private static String formatScore(Score score) {
+        return String.format(Locale.ROOT, "%.3f", score.value);
+    }
+
+    private static Map<String, Score> read(String file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray results = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : results) {
+                JsonObject result = element.getAsJsonObject();
+                JsonObject metric = result.getAsJsonObject("primaryMetric");
+                double error = metric.get("scoreError").isJsonPrimitive()
+                        && metric.get("scoreError").getAsJsonPrimitive().isNumber()
+                        ? metric.get("scoreError").getAsDouble() : 0;
+                scores.put(getName(result), new Score(
+                        metric.get("score").getAsDouble(), error, metric.get("scoreUnit").getAsString()));
+            }
+        }
+        return scores;
+    }
+
+    private static String getName(JsonObject result) {
+        StringBuilder name = new StringBuilder(result.get("benchmark").getAsString()
+                .replace("com.willwinder.ugs.benchmarks.", ""));
+        if (result.has("params")) {
+            Map<String, String> params = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+                params.put(param.getKey(), param.getValue().getAsString());
+            }
+            name.append(params);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.willwinder.ugs.benchmarks.SyntheticGcode.Style;
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures preprocessing and parsing a single line, the way a file is
+ * processed when it is opened, to keep track of the garbage created per line.
+ *
+ * Run it with the GC profiler, "-prof gc", the gc.alloc.rate.norm result is
+ * the number of bytes allocated for each line.
+ *
+ * @author wwinder
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+public class ParserAllocationBenchmark {
+    // Enough lines for a realistic mix without keeping a large program in memory.
+    private static final int LINES = 50000;
+
+    @Param({"RELIEF", "ARCS", "LASER"})
+    private Style style;
+
+    private String[] program;
+    private GcodeParser gcp;
+    private int index;
+
+    @Setup
+    public void setup() {
+        program = SyntheticGcode.generate(style, LINES);
+        gcp = new GcodeParser();
+        index = 0;
+    }
+
+    @Benchmark
+    public GcodeState parseLine() throws GcodeParserException {
+        // Start the program over with a new parser once every line was parsed.
+        if (index == program.length) {
+            gcp = new GcodeParser();
+            index = 0;
+        }
+
+        String line = program[index++];
+        gcp.preprocessCommand(line, gcp.getCurrentState());
+        gcp.addCommand(line);
+        return gcp.getCurrentState();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.willwinder.universalgcodesender.GrblUtils;
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.AccessoryStates;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.EnabledPins;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.OverridePercents;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the regular expression based GRBL 1.1 status parser, which was
+ * used before, with {@link GrblUtils#getStatusFromStatusStringV1}.
+ *
+ * The reports were captured from a GRBL 1.1f controller jogging, running a
+ * job and being paused, including the periodic override and WCO reports.
+ *
+ * @author wwinder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusParserBenchmark {
+    private static final String[] REPORTS = {
+            "<Idle|MPos:0.000,0.000,0.000|FS:0,0|WCO:0.000,0.000,0.000>",
+            "<Idle|MPos:0.000,0.000,0.000|FS:0,0|Ov:100,100,100>",
+            "<Idle|MPos:0.000,0.000,0.000|FS:0,0>",
+            "<Jog|MPos:1.250,0.000,0.000|FS:500,0>",
+            "<Jog|MPos:4.583,0.000,0.000|FS:500,0>",
+            "<Jog|MPos:7.917,0.000,0.000|FS:500,0>",
+            "<Idle|MPos:10.000,0.000,0.000|FS:0,0>",
+            "<Idle|MPos:10.000,0.000,0.000|FS:0,0|WCO:10.000,0.000,0.000>",
+            "<Run|MPos:10.000,0.000,-1.022|Bf:15,128|FS:300,12000|Ov:100,100,100|A:S>",
+            "<Run|MPos:12.342,3.150,-2.000|Bf:14,128|FS:800,12000>",
+            "<Run|MPos:18.906,7.773,-2.000|Bf:15,128|FS:800,12000>",
+            "<Run|MPos:24.519,11.052,-2.000|Bf:15,128|FS:800,12000>",
+            "<Run|MPos:30.008,14.127,-2.000|Bf:13,128|FS:800,12000|WCO:10.000,0.000,0.000>",
+            "<Run|MPos:35.771,16.934,-2.000|Bf:15,128|FS:800,12000>",
+            "<Run|MPos:41.302,19.011,-2.000|Bf:15,128|FS:800,12000>",
+            "<Run|MPos:46.118,20.000,-2.000|Bf:15,128|FS:800,12000|Ov:100,100,100|A:S>",
+            "<Hold:1|MPos:47.005,20.000,-2.000|Bf:15,128|FS:212,12000|Pn:H>",
+            "<Hold:0|MPos:47.119,20.000,-2.000|Bf:15,128|FS:0,12000>",
+            "<Hold:0|MPos:47.119,20.000,-2.000|Bf:15,128|FS:0,12000>",
+            "<Run|MPos:47.502,20.000,-2.000|Bf:15,128|FS:640,12000|Ov:120,100,100|A:SF>",
+            "<Run|MPos:52.731,18.264,-2.000|Bf:15,128|FS:960,12000>",
+            "<Run|MPos:58.440,15.107,-2.000|Bf:14,128|FS:960,12000|WCO:10.000,0.000,0.000>",
+            "<Run|MPos:60.000,10.000,0.000|Bf:15,128|FS:960,0>",
+            "<Idle|MPos:60.000,10.000,5.000|FS:0,0|Ov:100,100,100>",
+    };
+
+    private ControllerStatus status;
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (String report : REPORTS) {
+            status = parseWithRegex(status, report, Units.MM);
+            blackhole.consume(status);
+        }
+    }
+
+    @Benchmark
+    public void grblUtils(Blackhole blackhole) {
+        for (String report : REPORTS) {
+            status = GrblUtils.getStatusFromStatusStringV1(status, report, Units.MM);
+            blackhole.consume(status);
+        }
+    }
+
+    private static final Pattern MACHINE_PATTERN = Pattern.compile("(?<=MPos:)(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*)");
+    private static final Pattern WORK_PATTERN = Pattern.compile("(?<=WPos:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
+    private static final Pattern WCO_PATTERN = Pattern.compile("(?<=WCO:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
+
+    /**
+     * The regular expression based implementation which was used before, kept here as the baseline.
+     */
+    private static ControllerStatus parseWithRegex(ControllerStatus lastStatus, String status, Units reportingUnits) {
+        String stateString = "";
+        Position MPos = null;
+        Position WPos = null;
+        Position WCO = null;
+
+        OverridePercents overrides = null;
+        EnabledPins pins = null;
+        AccessoryStates accessoryStates = null;
+
+        double feedSpeed = 0;
+        double spindleSpeed = 0;
+        if (lastStatus != null) {
+            feedSpeed = lastStatus.getFeedSpeed();
+            spindleSpeed = lastStatus.getSpindleSpeed();
+        }
+        boolean isOverrideReport = false;
+
+        for (String part : status.substring(0, status.length() - 1).split("\\|")) {
+            if (part.startsWith("<")) {
+                int idx = part.indexOf(':');
+                if (idx == -1)
+                    stateString = part.substring(1);
+                else
+                    stateString = part.substring(1, idx);
+            } else if (part.startsWith("MPos:")) {
+                MPos = getPositionFromStatusString(status, MACHINE_PATTERN, reportingUnits);
+            } else if (part.startsWith("WPos:")) {
+                WPos = getPositionFromStatusString(status, WORK_PATTERN, reportingUnits);
+            } else if (part.startsWith("WCO:")) {
+                WCO = getPositionFromStatusString(status, WCO_PATTERN, reportingUnits);
+            } else if (part.startsWith("Ov:")) {
+                isOverrideReport = true;
+                String[] overrideParts = part.substring(3).trim().split(",");
+                if (overrideParts.length == 3) {
+                    overrides = new OverridePercents(
+                            Integer.parseInt(overrideParts[0]),
+                            Integer.parseInt(overrideParts[1]),
+                            Integer.parseInt(overrideParts[2]));
+                }
+            } else if (part.startsWith("F:")) {
+                String[] feedStrings = StringUtils.split(part.substring(2), ",");
+                if (feedStrings.length > 1) {
+                    feedSpeed = feedStrings.length >= 3 ? Double.parseDouble(feedStrings[0]) : 0;
+                } else {
+                    feedSpeed = Double.parseDouble(part.substring(2));
+                }
+            } else if (part.startsWith("FS:")) {
+                String[] parts = part.substring(3).split(",");
+                feedSpeed = Double.parseDouble(parts[0]);
+                spindleSpeed = Double.parseDouble(parts[1]);
+            } else if (part.startsWith("Pn:")) {
+                pins = new EnabledPins(part.substring(part.indexOf(':') + 1));
+            } else if (part.startsWith("A:")) {
+                accessoryStates = new AccessoryStates(part.substring(part.indexOf(':') + 1));
+            }
+        }
+
+        if (WCO == null) {
+            if (lastStatus != null && lastStatus.getWorkCoordinateOffset() != null) {
+                WCO = lastStatus.getWorkCoordinateOffset();
+            } else {
+                WCO = new Position(0, 0, 0, reportingUnits);
+            }
+        }
+
+        if (WPos == null && MPos != null) {
+            WPos = new Position(MPos.x - WCO.x, MPos.y - WCO.y, MPos.z - WCO.z, reportingUnits);
+        } else if (MPos == null && WPos != null) {
+            MPos = new Position(WPos.x + WCO.x, WPos.y + WCO.y, WPos.z + WCO.z, reportingUnits);
+        }
+
+        if (!isOverrideReport && lastStatus != null) {
+            overrides = lastStatus.getOverrides();
+            pins = lastStatus.getEnabledPins();
+            accessoryStates = lastStatus.getAccessoryStates();
+        } else if (isOverrideReport) {
+            if (pins == null) {
+                pins = new EnabledPins("");
+            }
+            if (accessoryStates == null) {
+                accessoryStates = new AccessoryStates("");
+            }
+        }
+
+        ControllerState state = GrblUtils.getControllerStateFromStateString(stateString);
+        return new ControllerStatus(state, MPos, WPos, feedSpeed, reportingUnits, spindleSpeed, overrides, WCO, pins, accessoryStates);
+    }
+
+    private static Position getPositionFromStatusString(String status, Pattern pattern, Units reportingUnits) {
+        Matcher matcher = pattern.matcher(status);
+        if (matcher.find()) {
+            return new Position(Double.parseDouble(matcher.group(1)),
+                    Double.parseDouble(matcher.group(2)),
+                    Double.parseDouble(matcher.group(3)),
+                    reportingUnits);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.willwinder.ugs.benchmarks.SyntheticGcode.Style;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.utils.GcodeStreamReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading every command of a preprocessed file with
+ * {@link GcodeStreamReader}, which is what the communicator does while
+ * streaming.
+ *
+ * @author wwinder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StreamReaderBenchmark {
+
+    @Param({"RELIEF", "ARCS", "LASER"})
+    private Style style;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int lines;
+
+    private File stream;
+
+    @Setup
+    public void setup() throws IOException, GcodeParserException {
+        stream = BenchmarkUtils.preprocess(SyntheticGcode.writeTemporary(style, lines));
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) throws Exception {
+        try (GcodeStreamReader reader = new GcodeStreamReader(stream)) {
+            while (reader.getNumRowsRemaining() > 0) {
+                blackhole.consume(reader.getNextCommand());
+            }
+        }
+    }
+}
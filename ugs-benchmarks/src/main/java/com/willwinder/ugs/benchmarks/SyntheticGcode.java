@@ -0,0 +1,256 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates gcode programs for the benchmarks. The programs are the same for
+ * a given style and length so that the results of different runs can be
+ * compared.
+ *
+ * @author wwinder
+ */
+public final class SyntheticGcode {
+
+    public enum Style {
+        /**
+         * Dense G1 moves following a height map row by row, like a 3D relief
+         * finishing pass.
+         */
+        RELIEF,
+
+        /**
+         * Circular pockets made of G2/G3 arcs linked with short G1 moves.
+         */
+        ARCS,
+
+        /**
+         * A laser engraving raster where every move changes the S value.
+         */
+        LASER
+    }
+
+    private static final String[] HEADER = {"G21", "G90", "G17", "G0 Z5.000", "G0 X0 Y0"};
+
+    private SyntheticGcode() {
+    }
+
+    /**
+     * @return a program with exactly the given number of lines
+     */
+    public static String[] generate(Style style, int lines) {
+        String[] program = new String[lines];
+        Generator generator = createGenerator(style);
+        StringBuilder sb = new StringBuilder(64);
+        for (int i = 0; i < lines; i++) {
+            sb.setLength(0);
+            generator.next(i, sb);
+            program[i] = sb.toString();
+        }
+        return program;
+    }
+
+    /**
+     * Writes a program to a file without keeping it in memory.
+     *
+     * @return the file
+     */
+    public static File write(Style style, int lines, File file) throws IOException {
+        Generator generator = createGenerator(style);
+        StringBuilder sb = new StringBuilder(64);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                sb.setLength(0);
+                generator.next(i, sb);
+                writer.append(sb).append('\n');
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes a program to a temporary file which is deleted on exit.
+     */
+    public static File writeTemporary(Style style, int lines) throws IOException {
+        File file = File.createTempFile("ugs-benchmark-" + style.name().toLowerCase() + "-" + lines + "-", ".gcode");
+        file.deleteOnExit();
+        return write(style, lines, file);
+    }
+
+    private static Generator createGenerator(Style style) {
+        switch (style) {
+            case RELIEF:
+                return new ReliefGenerator();
+            case ARCS:
+                return new ArcGenerator();
+            case LASER:
+                return new LaserGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown style " + style);
+        }
+    }
+
+    private abstract static class Generator {
+        void next(int line, StringBuilder sb) {
+            if (line < HEADER.length) {
+                sb.append(HEADER[line]);
+            } else {
+                body(line - HEADER.length, sb);
+            }
+        }
+
+        abstract void body(int line, StringBuilder sb);
+    }
+
+    private static class ReliefGenerator extends Generator {
+        private static final int POINTS_PER_ROW = 500;
+        private static final double STEP = 0.1;
+
+        @Override
+        void body(int line, StringBuilder sb) {
+            int row = line / POINTS_PER_ROW;
+            int column = line % POINTS_PER_ROW;
+            if (row % 2 == 1) {
+                column = POINTS_PER_ROW - 1 - column;
+            }
+
+            double x = column * STEP;
+            double y = row * STEP;
+            double z = -1 + 0.5 * Math.sin(x / 7) * Math.cos(y / 5);
+            sb.append("G1 X");
+            appendFixed(sb, x, 3);
+            sb.append(" Y");
+            appendFixed(sb, y, 3);
+            sb.append(" Z");
+            appendFixed(sb, z, 4);
+            if (line == 0) {
+                sb.append(" F1200");
+            } else if (line % POINTS_PER_ROW == 0) {
+                sb.append(" (row ").append(row).append(')');
+            }
+        }
+    }
+
+    private static class ArcGenerator extends Generator {
+        private static final int SEGMENTS_PER_CIRCLE = 8;
+        private static final int CIRCLES_PER_POCKET = 10;
+        private static final double STEPOVER = 0.8;
+
+        @Override
+        void body(int line, StringBuilder sb) {
+            // Each circle is made of a linking move and eight arcs.
+            int perCircle = SEGMENTS_PER_CIRCLE + 1;
+            int circle = line / perCircle;
+            int segment = line % perCircle;
+
+            int pocket = circle / CIRCLES_PER_POCKET;
+            double centerX = 20 + (pocket % 10) * 25;
+            double centerY = 20 + (pocket / 10 % 10) * 25;
+            double radius = STEPOVER * (1 + circle % CIRCLES_PER_POCKET);
+
+            if (segment == 0) {
+                // Step out to the start of the next circle.
+                sb.append("G1 X");
+                appendFixed(sb, centerX + radius, 4);
+                sb.append(" Y");
+                appendFixed(sb, centerY, 4);
+                sb.append(" F800");
+                return;
+            }
+
+            boolean clockwise = pocket % 2 == 0;
+            double direction = clockwise ? -1 : 1;
+            double start = direction * 2 * Math.PI * (segment - 1) / SEGMENTS_PER_CIRCLE;
+            double end = direction * 2 * Math.PI * segment / SEGMENTS_PER_CIRCLE;
+            double startX = centerX + radius * Math.cos(start);
+            double startY = centerY + radius * Math.sin(start);
+
+            sb.append(clockwise ? "G2 X" : "G3 X");
+            appendFixed(sb, centerX + radius * Math.cos(end), 4);
+            sb.append(" Y");
+            appendFixed(sb, centerY + radius * Math.sin(end), 4);
+            sb.append(" I");
+            appendFixed(sb, centerX - startX, 4);
+            sb.append(" J");
+            appendFixed(sb, centerY - startY, 4);
+        }
+    }
+
+    private static class LaserGenerator extends Generator {
+        private static final int PIXELS_PER_ROW = 400;
+        private static final double PIXEL_SIZE = 0.1;
+
+        @Override
+        void body(int line, StringBuilder sb) {
+            int row = line / (PIXELS_PER_ROW + 1);
+            int pixel = line % (PIXELS_PER_ROW + 1);
+
+            if (line == 0) {
+                sb.append("M4 S0 F3000");
+                return;
+            }
+
+            if (pixel == 0) {
+                // Move to the start of the row with the laser off.
+                sb.append("G0 X0 Y");
+                appendFixed(sb, row * PIXEL_SIZE, 2);
+                sb.append(" S0");
+                return;
+            }
+
+            // A gradient with some noise in it, every pixel changes the power.
+            int noise = (int) ((pixel * 7919L + row * 104729L) % 64);
+            int power = (int) (1000.0 * pixel / PIXELS_PER_ROW * (0.5 + 0.5 * Math.sin(row / 10.0))) + noise;
+            sb.append("G1 X");
+            appendFixed(sb, pixel * PIXEL_SIZE, 2);
+            sb.append(" S").append(Math.max(0, Math.min(1000, power)));
+        }
+    }
+
+    /**
+     * Appends a value with a fixed number of decimals, String.format is too
+     * slow for generating ten million lines.
+     */
+    static void appendFixed(StringBuilder sb, double value, int decimals) {
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+
+        long scaled = Math.round(value * scale);
+        if (scaled < 0) {
+            sb.append('-');
+            scaled = -scaled;
+        }
+        sb.append(scaled / scale);
+        if (decimals > 0) {
+            sb.append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.benchmarks;
+
+import com.willwinder.ugs.benchmarks.SyntheticGcode.Style;
+import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
+import com.willwinder.universalgcodesender.gcode.ParsedCommand;
+import com.willwinder.universalgcodesender.gcode.util.Code;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares tokenizing every line of a program into a list of strings, which is
+ * how the parser used to work, with {@link ParsedCommand}.
+ *
+ * @author wwinder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TokenizerBenchmark {
+
+    @Param({"RELIEF", "ARCS", "LASER"})
+    private Style style;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int lines;
+
+    private String[] program;
+
+    @Setup
+    public void setup() {
+        program = SyntheticGcode.generate(style, lines);
+    }
+
+    @Benchmark
+    public void splitCommandList(Blackhole blackhole) {
+        for (String line : program) {
+            // The parser used to scan the list once per lookup.
+            List<String> args = splitCommand(line);
+            blackhole.consume(GcodePreprocessorUtils.getGCodes(args));
+            blackhole.consume(GcodePreprocessorUtils.hasAxisWords(args));
+            blackhole.consume(GcodePreprocessorUtils.parseCodes(args, 'F'));
+            blackhole.consume(GcodePreprocessorUtils.parseCoord(args, 'X'));
+            blackhole.consume(GcodePreprocessorUtils.parseCoord(args, 'Y'));
+            blackhole.consume(GcodePreprocessorUtils.parseCoord(args, 'Z'));
+            blackhole.consume(GcodePreprocessorUtils.parseCoord(args, 'I'));
+            blackhole.consume(GcodePreprocessorUtils.parseCoord(args, 'J'));
+        }
+    }
+
+    @Benchmark
+    public void parsedCommand(Blackhole blackhole) {
+        for (String line : program) {
+            ParsedCommand args = ParsedCommand.parse(line);
+            Set<Code> codes = GcodePreprocessorUtils.getGCodes(args);
+            blackhole.consume(codes);
+            blackhole.consume(args.hasAxisWords());
+            blackhole.consume(args.getValue('F'));
+            blackhole.consume(args.getValue('X'));
+            blackhole.consume(args.getValue('Y'));
+            blackhole.consume(args.getValue('Z'));
+            blackhole.consume(args.getValue('I'));
+            blackhole.consume(args.getValue('J'));
+        }
+    }
+
+    /**
+     * The string based tokenizer which was used before {@link ParsedCommand},
+     * kept here as the baseline.
+     */
+    private static List<String> splitCommand(String command) {
+        List<String> l = new ArrayList<>();
+        boolean readNumeric = false;
+        boolean readLineComment = false;
+        boolean readBlockComment = false;
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < command.length(); i++){
+            char c = command.charAt(i);
+
+            if (c == '(' && !readLineComment && !readBlockComment) {
+                if( sb.length() > 0 ){
+                    l.add(sb.toString());
+                    sb = new StringBuilder();
+                }
+                sb.append(c);
+                readBlockComment = true;
+                continue;
+            } else if (readBlockComment && c == ')') {
+                readBlockComment = false;
+                sb.append(c);
+                l.add(sb.toString());
+                sb = new StringBuilder();
+                continue;
+            } else if (c == ';' && !readLineComment && !readBlockComment) {
+                if( sb.length() > 0 ){
+                    l.add(sb.toString());
+                    sb = new StringBuilder();
+                }
+                sb.append(c);
+                readLineComment = true;
+                continue;
+            }
+
+            if (readLineComment || readBlockComment) {
+                sb.append(c);
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            } else if (readNumeric && !Character.isDigit(c) && c != '.') {
+                readNumeric = false;
+                l.add(sb.toString());
+                sb = new StringBuilder();
+                if (Character.isLetter(c)) {
+                    sb.append(c);
+                }
+            } else if (Character.isDigit(c) || c == '.' || c == '-') {
+                sb.append(c);
+                readNumeric = true;
+            } else if (Character.isLetter(c)) {
+                sb.append(c);
+            }
+        }
+
+        if (sb.length() > 0) {
+            l.add(sb.toString());
+        }
+
+        return l;
+    }
+}
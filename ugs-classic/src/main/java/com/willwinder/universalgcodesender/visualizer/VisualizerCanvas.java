@@ -88,7 +88,7 @@ public class VisualizerCanvas extends GLCanvas implements GLEventListener, KeyLi
     private String gcodeFile = null;
     private boolean processedGcodeFile = false; // True if the file should be loaded with a GcodeStreamReader
     private boolean isDrawable = false; //True if a file is loaded; false if not
-    private List<LineSegment> gcodeLineList; //An ArrayList of linesegments composing the model
+    private LineSegmentStore gcodeLineList; //The line segments composing the model
     private int currentCommandNumber = 0;
     private int lastCommandNumber = 0;
 
@@ -411,7 +411,7 @@ public class VisualizerCanvas extends GLCanvas implements GLEventListener, KeyLi
 
             int verts = 0;
             int colors = 0;
-            for(LineSegment ls : gcodeLineList)
+            for (int i = 0; i < gcodeLineList.size(); i++)
             {
                 gl.glColor3ub(lineColorData[colors++],lineColorData[colors++],lineColorData[colors++]);
                 gl.glVertex3d(lineVertexData[verts++], lineVertexData[verts++], lineVertexData[verts++]);
@@ -491,7 +491,7 @@ public class VisualizerCanvas extends GLCanvas implements GLEventListener, KeyLi
             }
             
             // Grab the line number off the last line.
-            this.lastCommandNumber = gcodeLineList.get(gcodeLineList.size() - 1).getLineNumber();
+            this.lastCommandNumber = gcodeLineList.getLineNumber(gcodeLineList.size() - 1);
             
             System.out.println("Object bounds: X ("+objectMin.x+", "+objectMax.x+")");
             System.out.println("               Y ("+objectMin.y+", "+objectMax.y+")");
@@ -539,27 +539,25 @@ public class VisualizerCanvas extends GLCanvas implements GLEventListener, KeyLi
             VisualizerUtils.Color color;
             int vertIndex = 0;
             int colorIndex = 0;
-            for(LineSegment ls : gcodeLineList) {
+            for (int i = 0; i < gcodeLineList.size(); i++) {
                 // Find the lines color.
-                if (ls.isArc()) {
+                if (gcodeLineList.isArc(i)) {
                     color = VisualizerUtils.Color.RED;
-                } else if (ls.isFastTraverse()) {
+                } else if (gcodeLineList.isFastTraverse(i)) {
                     color = VisualizerUtils.Color.BLUE;
-                } else if (ls.isZMovement()) {
+                } else if (gcodeLineList.isZMovement(i)) {
                     color = VisualizerUtils.Color.GREEN;
                 } else {
                     color = VisualizerUtils.Color.WHITE;
                 }
 
                 // Override color if it is cutoff
-                if (ls.getLineNumber() <= this.currentCommandNumber) {
+                if (gcodeLineList.getLineNumber(i) <= this.currentCommandNumber) {
                     color = VisualizerUtils.Color.GRAY;
                 }
 
                 // Draw it.
                 {
-                    Point3d p1 = ls.getStart();
-                    Point3d p2 = ls.getEnd();
                     byte[] c = color.getBytes();
 
                     // colors
@@ -573,14 +571,10 @@ public class VisualizerCanvas extends GLCanvas implements GLEventListener, KeyLi
                     lineColorData[colorIndex++] = c[1];
                     lineColorData[colorIndex++] = c[2];
                     
-                    // p1 location
-                    lineVertexData[vertIndex++] = (float)p1.x;
-                    lineVertexData[vertIndex++] = (float)p1.y;
-                    lineVertexData[vertIndex++] = (float)p1.z;
-                    //p2
-                    lineVertexData[vertIndex++] = (float)p2.x;
-                    lineVertexData[vertIndex++] = (float)p2.y;
-                    lineVertexData[vertIndex++] = (float)p2.z;
+                    // p1 and p2 location
+                    for (int v = 0; v < 6; v++) {
+                        lineVertexData[vertIndex++] = gcodeLineList.getCoordinate(i, v / 3, v % 3);
+                    }
                 }
             }
         }
@@ -23,11 +23,12 @@ import com.willwinder.universalgcodesender.connection.ConnectionDriver;
 import com.willwinder.universalgcodesender.connection.ConnectionFactory;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.listeners.CommunicatorListener;
+import com.willwinder.universalgcodesender.metrics.MetricsRegistry;
+import com.willwinder.universalgcodesender.metrics.StreamingMetrics;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 
-import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,6 +44,7 @@ public abstract class AbstractCommunicator implements ICommunicator {
     private static final Logger logger = Logger.getLogger(AbstractCommunicator.class.getName());
 
     protected Connection connection;
+    protected StreamingMetrics metrics = new StreamingMetrics(new MetricsRegistry());
 
     // Allow events to be sent from same thread for unit tests.
     private boolean launchEventsInDispatchThread = true;
@@ -52,14 +54,16 @@ public abstract class AbstractCommunicator implements ICommunicator {
         COMMAND_SENT,
         COMMAND_SKIPPED,
         RAW_RESPONSE,
-        PAUSED
+        PAUSED,
+        CONNECTION_DROPPED,
+        CONNECTION_CLOSED
     }
 
-    // Callback interfaces
-    private Set<CommunicatorListener> communicatorListeners;
+    // Callback interfaces, copied on write so that events can be sent while listeners are added.
+    private final Set<CommunicatorListener> communicatorListeners;
 
     public AbstractCommunicator() {
-        this.communicatorListeners = new HashSet<>();
+        this.communicatorListeners = new CopyOnWriteArraySet<>();
     }
 
     /*********************/
@@ -72,6 +76,11 @@ public abstract class AbstractCommunicator implements ICommunicator {
         }
     }
 
+    @Override
+    public void setMetrics(StreamingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public void setConnection(Connection c) {
         connection = c;
@@ -149,31 +158,37 @@ public abstract class AbstractCommunicator implements ICommunicator {
             throw new IllegalArgumentException("Dispatching a " + event + " event requires a String object.");
         }
 
+        Object payload = command != null ? command : string;
         if (launchEventsInDispatchThread) {
-            this.eventQueue.add(new EventData(event, string, command));
+            this.eventQueue.add(event, payload);
         } else {
-            sendEventToListeners(event, string, command);
+            sendEventToListeners(event, payload);
         }
     }
 
-    private void sendEventToListeners(final SerialCommunicatorEvent event,
-                                      String string, GcodeCommand command) {
+    private void sendEventToListeners(final SerialCommunicatorEvent event, Object payload) {
         switch (event) {
             case COMMAND_SENT:
                 for (CommunicatorListener scl : communicatorListeners)
-                    scl.commandSent(command);
+                    scl.commandSent((GcodeCommand) payload);
                 break;
             case COMMAND_SKIPPED:
                 for (CommunicatorListener scl : communicatorListeners)
-                    scl.commandSkipped(command);
+                    scl.commandSkipped((GcodeCommand) payload);
                 break;
             case RAW_RESPONSE:
                 for (CommunicatorListener scl : communicatorListeners)
-                    scl.rawResponseListener(string);
+                    scl.rawResponseListener((String) payload);
                 break;
             case PAUSED:
                 communicatorListeners.forEach(CommunicatorListener::communicatorPausedOnError);
                 break;
+            case CONNECTION_DROPPED:
+                communicatorListeners.forEach(CommunicatorListener::communicatorConnectionDropped);
+                break;
+            case CONNECTION_CLOSED:
+                communicatorListeners.forEach(CommunicatorListener::communicatorConnectionClosed);
+                break;
             default:
 
         }
@@ -182,16 +197,18 @@ public abstract class AbstractCommunicator implements ICommunicator {
     /**
      * If commands complete very fast, like several comments in a row being
      * skipped, then multiple event handlers could process them out of order. To
-     * prevent that from happening we use a blocking queue to add events in the
-     * main thread, and process them in order a single event thread.
+     * prevent that from happening events are added to a ring buffer in the
+     * main thread, and processed in order by a single event thread which
+     * delivers every pending event each time it wakes up.
      */
-    private final LinkedBlockingDeque<EventData> eventQueue = new LinkedBlockingDeque<>();
-    private boolean stop = false;
+    private static final int EVENT_QUEUE_CAPACITY = 8192;
+    private final CommunicatorEventQueue eventQueue = new CommunicatorEventQueue(EVENT_QUEUE_CAPACITY);
+    private volatile boolean stop = false;
     private Thread eventThread = new Thread(() -> {
         while (!stop) {
             try {
-                EventData e = eventQueue.take();
-                sendEventToListeners(e.event, e.string, e.command);
+                eventQueue.awaitEvents();
+                eventQueue.drain(this::sendEventToListeners);
             } catch (InterruptedException ignored) {
                 stop = true;
             } catch (Exception e) {
@@ -200,20 +217,4 @@ public abstract class AbstractCommunicator implements ICommunicator {
             }
         }
     });
-
-    // Simple data class used to pass data to the event thread.
-    private class EventData {
-        public EventData(
-                SerialCommunicatorEvent event,
-                String string,
-                GcodeCommand command) {
-            this.event = event;
-            this.command = command;
-            this.string = string;
-        }
-
-        public SerialCommunicatorEvent event;
-        public GcodeCommand command;
-        public String string;
-    }
 }
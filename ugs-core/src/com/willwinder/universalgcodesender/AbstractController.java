@@ -29,6 +29,8 @@ import com.willwinder.universalgcodesender.listeners.ControllerState;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
 import com.willwinder.universalgcodesender.listeners.MessageType;
 import com.willwinder.universalgcodesender.listeners.CommunicatorListener;
+import com.willwinder.universalgcodesender.metrics.MetricsRegistry;
+import com.willwinder.universalgcodesender.metrics.StreamingMetrics;
 import com.willwinder.universalgcodesender.model.*;
 import com.willwinder.universalgcodesender.model.UGSEvent.ControlState;
 import com.willwinder.universalgcodesender.services.MessageService;
@@ -72,6 +74,10 @@ public abstract class AbstractController implements CommunicatorListener, IContr
     // For keeping track of the time spent streaming a file
     private StopWatch streamStopWatch = new StopWatch();
 
+    // Metrics of the connection, reset whenever a file is streamed.
+    protected final MetricsRegistry metrics = new MetricsRegistry();
+    protected final StreamingMetrics streamingMetrics = new StreamingMetrics(metrics);
+
     // This metadata needs to be cached instead of looked up from queues and
     // streams, because those sources may be compromised during a cancel.
     private int numCommands = 0;
@@ -325,11 +331,17 @@ public abstract class AbstractController implements CommunicatorListener, IContr
     protected AbstractController(ICommunicator comm) {
         this.comm = comm;
         this.comm.addListener(this);
+        this.comm.setMetrics(streamingMetrics);
 
         this.activeCommands = new ArrayList<>();
         this.listeners = new ArrayList<>();
     }
 
+    @Override
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void setSingleStepMode(boolean enabled) {
         if (this.comm != null) {
@@ -398,10 +410,14 @@ public abstract class AbstractController implements CommunicatorListener, IContr
             return true;
         }
         
-        this.closeCommBeforeEvent();
-        
         this.dispatchConsoleMessage(MessageType.INFO,"**** Connection closed ****\n");
-        
+        closeComm();
+        return true;
+    }
+
+    private void closeComm() throws Exception {
+        this.closeCommBeforeEvent();
+
         // I was noticing odd behavior, such as continuing to send 'ok's after
         // closing and reopening the comm port.
         // Note: The "Configuring-Grbl-v0.8" documentation recommends frequent
@@ -413,7 +429,6 @@ public abstract class AbstractController implements CommunicatorListener, IContr
         this.comm.disconnect();
 
         this.closeCommAfterEvent();
-        return true;
     }
     
     @Override
@@ -573,18 +588,68 @@ public abstract class AbstractController implements CommunicatorListener, IContr
         // way to reporting version info? Need to double check that before
         // enabling.
         //this.issueSoftReset();
-        
+
+        startStreaming(0, null);
+    }
+
+    /**
+     * Send the queued stream to the comm port starting with the given line of
+     * the original file. The modal state of the program at that line is looked
+     * up from the stream and restored before the first command is sent.
+     *
+     * @param startLine the line number (command number) to start from
+     * @throws java.lang.Exception
+     */
+    @Override
+    public void beginStreaming(int startLine) throws Exception {
+        this.isReadyToStreamFile();
+
+        // Throw if there's nothing queued.
+        if (this.streamCommands == null) {
+            throw new Exception("There are no commands queued for streaming.");
+        }
+
+        int row = this.streamCommands.getRowForCommandNumber(startLine);
+        if (row < 0) {
+            throw new Exception("Could not find line " + startLine + " in the queued commands.");
+        }
+
+        GcodeState state = this.streamCommands.getStateAt(row);
+        this.streamCommands.seek(row);
+
+        GcodeCommand modalStateCommand = null;
+        String modalState = GcodeUtils.generateModalStateCommand(state);
+        if (StringUtils.isNotEmpty(modalState)) {
+            modalStateCommand = createCommand(modalState);
+        }
+
+        this.dispatchConsoleMessage(MessageType.INFO, "\n**** Starting from line " + startLine + " ****\n\n");
+        startStreaming(row, modalStateCommand);
+    }
+
+    /**
+     * Kicks off the stream, rows which are skipped when resuming are counted
+     * as skipped commands so the progress matches the full file.
+     */
+    private void startStreaming(int skippedRows, GcodeCommand modalStateCommand) throws Exception {
         this.isStreaming = true;
         this.streamStopWatch.reset();
         this.streamStopWatch.start();
+        this.metrics.reset();
         this.numCommands = 0;
         this.numCommandsSent = 0;
         this.numCommandsSkipped = 0;
         this.numCommandsCompleted = 0;
         updateNumCommands();
+        this.numCommandsSkipped = skippedRows;
 
         // Send all queued commands and streams then kick off the stream.
         try {
+            if (modalStateCommand != null) {
+                this.numCommands++;
+                comm.queueCommand(modalStateCommand);
+            }
+
             if (this.streamCommands != null) {
                 comm.queueStreamForComm(this.streamCommands);
             }
@@ -737,6 +802,33 @@ public abstract class AbstractController implements CommunicatorListener, IContr
         }
     }
 
+    @Override
+    public void communicatorConnectionDropped() {
+        // The active commands won't be completed, there is no telling which
+        // of them were executed so the stream can't continue.
+        this.activeCommands.clear();
+        if (this.isStreaming()) {
+            this.dispatchConsoleMessage(MessageType.ERROR, "**** Lost the connection, the stream was stopped ****\n");
+            this.streamStopWatch.stop();
+            this.isStreaming = false;
+            dispatchStreamComplete("queued commands", false);
+        } else {
+            this.dispatchConsoleMessage(MessageType.ERROR, "**** Lost the connection ****\n");
+        }
+    }
+
+    @Override
+    public void communicatorConnectionClosed() {
+        this.dispatchConsoleMessage(MessageType.ERROR, "**** Connection closed, couldn't reconnect ****\n");
+        try {
+            closeComm();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Couldn't close the connection.", e);
+        }
+        this.currentState = COMM_DISCONNECTED;
+        this.dispatchStateChange(COMM_DISCONNECTED);
+    }
+
     public void checkStreamFinished() {
         if (this.isStreaming() &&
                 !this.comm.areActiveCommands() &&
@@ -23,10 +23,12 @@ import static com.willwinder.universalgcodesender.AbstractCommunicator.SerialCom
 
 import com.willwinder.universalgcodesender.connection.ConnectionDriver;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
-import com.willwinder.universalgcodesender.utils.CommUtils;
 import com.willwinder.universalgcodesender.utils.IGcodeStreamReader;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,7 +47,11 @@ public abstract class BufferedCommunicator extends AbstractCommunicator {
     private IGcodeStreamReader commandStream;               // Arbitrary number of commands
     private final LinkedBlockingDeque<GcodeCommand> commandBuffer;     // Manually specified commands
     private final LinkedBlockingDeque<GcodeCommand> activeCommandList;  // Currently running commands
-    private int sentBufferSize = 0;
+    private int sentBufferSize = 0;                         // Bytes in flight in the controller RX buffer
+
+    // Commands are encoded into this buffer and written to the connection in batches.
+    private ByteBuffer sendBuffer;
+    private final List<GcodeCommand> sendBatch = new ArrayList<>();
     
     private Boolean singleStepModeEnabled = false;
     
@@ -172,13 +178,78 @@ public abstract class BufferedCommunicator extends AbstractCommunicator {
         }
 
         if (nextCommand != null) {
-            if (nextCommand.getCommandString().endsWith("\n")) {
-                nextCommand.setCommand(nextCommand.getCommandString().trim());
+            // Trim once here so that the sent and acknowledged lengths match.
+            String commandString = nextCommand.getCommandString();
+            String trimmed = commandString.trim();
+            if (trimmed.length() != commandString.length()) {
+                nextCommand.setCommand(trimmed);
             }
             return nextCommand;
         }
         return null;
     }
+
+    /**
+     * Checks if there is room for the command and its newline in the controller
+     * RX buffer. Commands are encoded with one byte per character.
+     */
+    private boolean hasRoomInBuffer(GcodeCommand command) {
+        return this.sentBufferSize + command.getCommandString().length() + 1 <= this.getBufferSize();
+    }
+
+    /**
+     * Encodes the command as ASCII followed by a newline into the send buffer,
+     * characters outside of ASCII are replaced with '?'.
+     */
+    private void encodeCommand(String commandString) {
+        int length = commandString.length() + 1;
+        if (sendBuffer == null || sendBuffer.remaining() < length) {
+            int capacity = Math.max(this.getBufferSize(), sendBuffer == null ? length : sendBuffer.position() + length);
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            if (sendBuffer != null) {
+                sendBuffer.flip();
+                buffer.put(sendBuffer);
+            }
+            sendBuffer = buffer;
+        }
+
+        for (int i = 0; i < commandString.length(); i++) {
+            char c = commandString.charAt(i);
+            sendBuffer.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        sendBuffer.put((byte) '\n');
+    }
+
+    /**
+     * Writes the encoded commands to the connection with a single write and
+     * notifies listeners that they were sent. The events are queued before
+     * the write, a fast controller may respond before the write returns and
+     * the responses must be delivered after the commands were sent.
+     */
+    private void flushSendBuffer() {
+        if (sendBatch.isEmpty()) {
+            return;
+        }
+
+        long sentTime = System.nanoTime();
+        for (GcodeCommand command : sendBatch) {
+            command.setSentTime(sentTime);
+            dispatchListenerEvents(COMMAND_SENT, command);
+        }
+
+        int bytes = sendBuffer.position();
+        try {
+            connection.sendBytesToComm(sendBuffer.array(), 0, bytes);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(-1);
+        } finally {
+            sendBuffer.clear();
+        }
+
+        metrics.commandsSent(sendBatch.size(), bytes, sentBufferSize);
+        sendBatch.clear();
+    }
    
     /**
      * Streams anything in the command buffer to the comm port.
@@ -197,37 +268,34 @@ public abstract class BufferedCommunicator extends AbstractCommunicator {
         // AND we are NOT paused
         // AND We are NOT in single step mode.
         // OR  We are in single command mode and there are no active commands.
+        // Every command which fits is encoded first and then written at once.
         while (this.getNextCommand() != null &&
                 !isPaused() &&
-                CommUtils.checkRoomInBuffer(
-                    this.sentBufferSize,
-                    this.getNextCommand().getCommandString(),
-                    this.getBufferSize())
+                hasRoomInBuffer(this.getNextCommand())
                 && allowMoreCommands()) {
 
             GcodeCommand command = this.getNextCommand();
 
             if (command.getCommandString().isEmpty()) {
+                // Keep the events in order.
+                flushSendBuffer();
                 dispatchListenerEvents(COMMAND_SKIPPED, command);
                 nextCommand = null;
                 continue;
             }
 
-            String commandString = command.getCommandString().trim();
+            String commandString = command.getCommandString();
             
             this.activeCommandList.add(command);
             this.sentBufferSize += (commandString.length() + 1);
 
-            try {
-                this.sendingCommand(commandString);
-                connection.sendStringToComm(commandString + "\n");
-                dispatchListenerEvents(COMMAND_SENT, command);
-                nextCommand = null;
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.exit(-1);
-            }
+            this.sendingCommand(commandString);
+            encodeCommand(commandString);
+            sendBatch.add(command);
+            nextCommand = null;
         }
+
+        flushSendBuffer();
     }
     
     @Override
@@ -306,6 +374,7 @@ public abstract class BufferedCommunicator extends AbstractCommunicator {
             if (this.activeCommandList != null && this.activeCommandList.size() > 0) {
                 GcodeCommand command = this.activeCommandList.pop();
                 this.sentBufferSize -= (command.getCommandString().length() + 1);
+                metrics.commandCompleted(command.getSentTime());
 
                 if (!isPaused()) {
                     this.streamCommands();
@@ -314,6 +383,21 @@ public abstract class BufferedCommunicator extends AbstractCommunicator {
         }
     }
 
+    /**
+     * The responses to the commands in flight were lost with the connection,
+     * stop sending so that the buffer accounting doesn't wait for them forever.
+     */
+    @Override
+    synchronized public void handleConnectionDropped() {
+        cancelSend();
+        dispatchListenerEvents(SerialCommunicatorEvent.CONNECTION_DROPPED, "");
+    }
+
+    @Override
+    public void handleConnectionClosed() {
+        dispatchListenerEvents(SerialCommunicatorEvent.CONNECTION_CLOSED, "");
+    }
+
     @Override
     public void connect(ConnectionDriver connectionDriver, String name, int baud) throws Exception {
         super.connect(connectionDriver, name, baud);
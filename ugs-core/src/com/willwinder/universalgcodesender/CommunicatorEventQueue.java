@@ -0,0 +1,167 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender;
+
+import com.willwinder.universalgcodesender.AbstractCommunicator.SerialCommunicatorEvent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring buffer of communicator events with preallocated slots, events are
+ * added by the communicator and delivered in order by a single event thread.
+ *
+ * Adding events is serialized with a short lock since both the streaming
+ * thread and the connection thread create events, the event thread reads
+ * without locking and drains every available event before it waits again.
+ * If the event thread falls behind and the ring fills up, events spill over
+ * into an unbounded queue rather than blocking the sender.
+ *
+ * @author wwinder
+ */
+final class CommunicatorEventQueue {
+    private static final SerialCommunicatorEvent[] EVENTS = SerialCommunicatorEvent.values();
+
+    interface EventHandler {
+        void handle(SerialCommunicatorEvent event, Object payload);
+    }
+
+    private final byte[] events;
+    private final Object[] payloads;
+    private final int mask;
+
+    // Next sequence to read, only written by the event thread.
+    private volatile long head = 0;
+    // Next sequence to write, only written while holding the lock.
+    private volatile long tail = 0;
+    // Events before this sequence have been cleared and are skipped.
+    private volatile long discardBefore = 0;
+
+    // Used once the ring is full, until the event thread has caught up.
+    private final Queue<Overflow> overflow = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread waiting;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two.
+     */
+    CommunicatorEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.events = new byte[size];
+        this.payloads = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an event, may be called from any thread.
+     */
+    void add(SerialCommunicatorEvent event, Object payload) {
+        synchronized (this) {
+            long t = tail;
+            if (!overflow.isEmpty() || t - head >= events.length) {
+                overflow.add(new Overflow(event, payload));
+            } else {
+                int index = (int) t & mask;
+                events[index] = (byte) event.ordinal();
+                payloads[index] = payload;
+                // Publishes the slot to the event thread.
+                tail = t + 1;
+            }
+        }
+
+        Thread thread = waiting;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Delivers every available event to the handler, only the event thread
+     * may call this.
+     *
+     * @return the number of events delivered.
+     */
+    int drain(EventHandler handler) {
+        int count = 0;
+        long h = Math.max(head, discardBefore);
+        long t = tail;
+        while (h < t) {
+            int index = (int) h & mask;
+            Object payload = payloads[index];
+            payloads[index] = null;
+            h++;
+
+            if (h > discardBefore) {
+                handler.handle(EVENTS[events[index]], payload);
+                count++;
+            }
+        }
+        // Frees all slots of the batch at once.
+        head = h;
+
+        Overflow o;
+        while (h == tail && (o = overflow.poll()) != null) {
+            handler.handle(o.event, o.payload);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until there are events to deliver, only the event thread may call this.
+     */
+    void awaitEvents() throws InterruptedException {
+        waiting = Thread.currentThread();
+        try {
+            while (isEmpty()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiting = null;
+        }
+    }
+
+    boolean isEmpty() {
+        return Math.max(head, discardBefore) >= tail && overflow.isEmpty();
+    }
+
+    /**
+     * Drops all events which haven't been delivered yet.
+     */
+    void clear() {
+        synchronized (this) {
+            discardBefore = tail;
+            overflow.clear();
+        }
+    }
+
+    private static final class Overflow {
+        private final SerialCommunicatorEvent event;
+        private final Object payload;
+
+        private Overflow(SerialCommunicatorEvent event, Object payload) {
+            this.event = event;
+            this.payload = payload;
+        }
+    }
+}
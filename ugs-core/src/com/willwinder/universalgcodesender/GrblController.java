@@ -53,6 +53,9 @@ public class GrblController extends AbstractController {
 
     private static final GrblLookups ALARMS = new GrblLookups("alarm_codes");
     private static final GrblLookups ERRORS = new GrblLookups("error_codes");
+    private static final String STATUS_POLL_ROUND_TRIP = "status.poll.rtt.ms";
+    private static final String STATUS_POLL_JITTER = "status.poll.jitter.ms";
+    private static final String STATUS_POLL_INTERVAL = "status.poll.interval.ms";
     private StatusPollTimer positionPollTimer;
 
     // Grbl state
@@ -64,6 +67,7 @@ public class GrblController extends AbstractController {
 
     // Polling state
     private ControllerStatus controllerStatus = new ControllerStatus(ControllerState.DISCONNECTED, new Position(0,0,0,Units.MM), new Position(0,0,0,Units.MM));
+    private final GrblStatusParser statusParser = new GrblStatusParser();
 
     // Canceling state
     private Boolean isCanceling = false;     // Set for the position polling thread.
@@ -81,6 +85,9 @@ public class GrblController extends AbstractController {
         
         this.commandCreator = new GcodeCommandCreator();
         this.positionPollTimer = new StatusPollTimer(this);
+        this.metrics.gauge(STATUS_POLL_ROUND_TRIP, positionPollTimer::getAverageRoundTripMs);
+        this.metrics.gauge(STATUS_POLL_JITTER, positionPollTimer::getPollJitterMs);
+        this.metrics.gauge(STATUS_POLL_INTERVAL, positionPollTimer::getPollIntervalMs);
 
         // Add our controller settings manager
         this.firmwareSettings = new GrblFirmwareSettings(this);
@@ -593,7 +600,12 @@ public class GrblController extends AbstractController {
         ControllerState beforeState = controllerStatus == null ? ControllerState.UNKNOWN : controllerStatus.getState();
 
         controllerStatus = GrblUtils.getStatusFromStatusString(
-                controllerStatus, string, capabilities, getFirmwareSettings().getReportingUnits());
+                statusParser, controllerStatus, string, capabilities, getFirmwareSettings().getReportingUnits());
+
+        if (capabilities.hasCapability(GrblCapabilitiesConstants.V1_FORMAT) && statusParser.getPlannerBlocksFree() >= 0) {
+            streamingMetrics.controllerBuffer(statusParser.getPlannerBlocksFree(), statusParser.getRxBytesFree(),
+                    isStreaming(), rowsRemaining());
+        }
 
         // Make UGS more responsive to the state being reported by GRBL.
         if (before != getControlState()) {
@@ -0,0 +1,460 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender;
+
+import com.willwinder.universalgcodesender.gcode.util.DecimalParser;
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.AccessoryStates;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.EnabledPins;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.OverridePercents;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+
+/**
+ * Parses GRBL 1.x status reports in a single pass without regular expressions:
+ * <Idle|MPos:1.000,2.000,3.000|FS:0,0|WCO:0.000,0.000,0.000>
+ *
+ * The fields of a report are parsed into this object which is reused for
+ * every report. A new {@link ControllerStatus} is only created when a value
+ * changed, otherwise the previous status is returned, and unchanged positions
+ * and states are shared with the previous status.
+ *
+ * Malformed fields are ignored, the values of the previous status are kept
+ * for them.
+ *
+ * Instances are not thread safe.
+ *
+ * @author wwinder
+ */
+public final class GrblStatusParser {
+    private static final String PIN_LETTERS = "XYZPDHRS";
+    private static final String ACCESSORY_LETTERS = "SCFM";
+
+    private static final String[] STATE_NAMES = {
+            "jog", "run", "hold", "door", "home", "idle", "alarm", "check", "sleep"
+    };
+    private static final ControllerState[] STATES = {
+            ControllerState.JOG, ControllerState.RUN, ControllerState.HOLD, ControllerState.DOOR,
+            ControllerState.HOME, ControllerState.IDLE, ControllerState.ALARM, ControllerState.CHECK,
+            ControllerState.SLEEP
+    };
+
+    // The fields of the report being parsed.
+    private ControllerState state;
+    private final double[] machine = new double[3];
+    private final double[] work = new double[3];
+    private final double[] offset = new double[3];
+    private boolean hasMachine;
+    private boolean hasWork;
+    private boolean hasOffset;
+    private boolean isOverrideReport;
+    private boolean hasOverrides;
+    private final int[] overrides = new int[3];
+    private int pins;
+    private boolean hasPins;
+    private int accessories;
+    private boolean hasAccessories;
+    private double feedSpeed;
+    private double spindleSpeed;
+    private int plannerBlocksFree;
+    private int rxBytesFree;
+
+    /**
+     * Parses a status report.
+     *
+     * @param lastStatus the previous status, used for fields which aren't
+     *                   part of every report.
+     * @param status the raw status string
+     * @param reportingUnits units
+     * @return the parsed controller status, or lastStatus if nothing changed.
+     */
+    public ControllerStatus parse(ControllerStatus lastStatus, String status, Units reportingUnits) {
+        state = ControllerState.UNKNOWN;
+        hasMachine = false;
+        hasWork = false;
+        hasOffset = false;
+        isOverrideReport = false;
+        hasOverrides = false;
+        hasPins = false;
+        hasAccessories = false;
+        feedSpeed = 0;
+        spindleSpeed = 0;
+        plannerBlocksFree = -1;
+        rxBytesFree = -1;
+        if (lastStatus != null) {
+            feedSpeed = lastStatus.getFeedSpeed();
+            spindleSpeed = lastStatus.getSpindleSpeed();
+        }
+
+        // The last character is the closing '>'.
+        int end = status.length() - 1;
+        int start = 0;
+        while (start < end) {
+            int partEnd = status.indexOf('|', start);
+            if (partEnd < 0 || partEnd > end) {
+                partEnd = end;
+            }
+            parsePart(status, start, partEnd);
+            start = partEnd + 1;
+        }
+
+        return createStatus(lastStatus, reportingUnits);
+    }
+
+    /**
+     * @return the free planner blocks of the last parsed report, or -1 if it
+     * didn't have a valid Bf field.
+     */
+    public int getPlannerBlocksFree() {
+        return plannerBlocksFree;
+    }
+
+    /**
+     * @return the free bytes in the RX buffer of the last parsed report, or
+     * -1 if it didn't have a valid Bf field.
+     */
+    public int getRxBytesFree() {
+        return rxBytesFree;
+    }
+
+    private void parsePart(String status, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+
+        if (status.charAt(start) == '<') {
+            int stateEnd = status.indexOf(':', start);
+            if (stateEnd < 0 || stateEnd > end) {
+                stateEnd = end;
+            }
+            state = parseState(status, start + 1, stateEnd);
+        } else if (status.startsWith("MPos:", start)) {
+            hasMachine = hasMachine || parsePosition(status, start + 5, end, machine);
+        } else if (status.startsWith("WPos:", start)) {
+            hasWork = hasWork || parsePosition(status, start + 5, end, work);
+        } else if (status.startsWith("WCO:", start)) {
+            hasOffset = hasOffset || parsePosition(status, start + 4, end, offset);
+        } else if (status.startsWith("Ov:", start)) {
+            isOverrideReport = true;
+            parseOverrides(status, start + 3, end);
+        } else if (status.startsWith("F:", start)) {
+            parseFeed(status, start + 2, end);
+        } else if (status.startsWith("FS:", start)) {
+            parseFeedAndSpindle(status, start + 3, end);
+        } else if (status.startsWith("Bf:", start)) {
+            parseBufferState(status, start + 3, end);
+        } else if (status.startsWith("Pn:", start)) {
+            hasPins = true;
+            pins = parseFlags(status, start + 3, end, PIN_LETTERS);
+        } else if (status.startsWith("A:", start)) {
+            hasAccessories = true;
+            accessories = parseFlags(status, start + 2, end, ACCESSORY_LETTERS);
+        }
+    }
+
+    private static ControllerState parseState(String status, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < STATE_NAMES.length; i++) {
+            String name = STATE_NAMES[i];
+            if (name.length() == length && status.regionMatches(true, start, name, 0, length)) {
+                return STATES[i];
+            }
+        }
+        return ControllerState.UNKNOWN;
+    }
+
+    /**
+     * Parses the first three values of a comma separated list, additional axes are ignored.
+     */
+    private static boolean parsePosition(String status, int start, int end, double[] values) {
+        int valueStart = start;
+        for (int i = 0; i < 3; i++) {
+            int valueEnd = indexOf(status, ',', valueStart, end);
+            if (valueEnd < 0) {
+                if (i < 2) {
+                    return false;
+                }
+                valueEnd = end;
+            }
+            values[i] = DecimalParser.parseDouble(status, valueStart, valueEnd);
+            if (Double.isNaN(values[i])) {
+                return false;
+            }
+            valueStart = valueEnd + 1;
+        }
+        return true;
+    }
+
+    private void parseOverrides(String status, int start, int end) {
+        // Surrounding whitespace is allowed.
+        while (start < end && status.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && status.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int first = indexOf(status, ',', start, end);
+        int second = first < 0 ? -1 : indexOf(status, ',', first + 1, end);
+        if (second < 0 || indexOf(status, ',', second + 1, end) >= 0) {
+            return;
+        }
+
+        int feed = parseInt(status, start, first);
+        int rapid = parseInt(status, first + 1, second);
+        int spindle = parseInt(status, second + 1, end);
+        if (feed < 0 || rapid < 0 || spindle < 0) {
+            return;
+        }
+
+        overrides[0] = feed;
+        overrides[1] = rapid;
+        overrides[2] = spindle;
+        hasOverrides = true;
+    }
+
+    /**
+     * The supported formats are F:1000.0 or F:3000.0,100.0,100.0 which are
+     * current feed rate, requested feed rate and override feed rate.
+     */
+    private void parseFeed(String status, int start, int end) {
+        // Count the non-empty values.
+        int values = 0;
+        int firstStart = -1;
+        int firstEnd = -1;
+        int valueStart = start;
+        while (valueStart <= end) {
+            int valueEnd = indexOf(status, ',', valueStart, end);
+            if (valueEnd < 0) {
+                valueEnd = end;
+            }
+            if (valueEnd > valueStart) {
+                if (values == 0) {
+                    firstStart = valueStart;
+                    firstEnd = valueEnd;
+                }
+                values++;
+            }
+            valueStart = valueEnd + 1;
+        }
+
+        double feed;
+        if (values > 1) {
+            feed = values >= 3 ? DecimalParser.parseDouble(status, firstStart, firstEnd) : 0;
+        } else {
+            feed = DecimalParser.parseDouble(status, start, end);
+        }
+        if (!Double.isNaN(feed)) {
+            feedSpeed = feed;
+        }
+    }
+
+    /**
+     * The format is FS:1000,12000 which are the feed rate and spindle speed.
+     */
+    private void parseFeedAndSpindle(String status, int start, int end) {
+        int comma = indexOf(status, ',', start, end);
+        if (comma < 0) {
+            return;
+        }
+        int spindleEnd = indexOf(status, ',', comma + 1, end);
+
+        double feed = DecimalParser.parseDouble(status, start, comma);
+        double spindle = DecimalParser.parseDouble(status, comma + 1, spindleEnd < 0 ? end : spindleEnd);
+        if (!Double.isNaN(feed) && !Double.isNaN(spindle)) {
+            feedSpeed = feed;
+            spindleSpeed = spindle;
+        }
+    }
+
+    /**
+     * The format is Bf:15,128 which are the free planner blocks and RX buffer bytes.
+     */
+    private void parseBufferState(String status, int start, int end) {
+        int comma = indexOf(status, ',', start, end);
+        if (comma < 0) {
+            return;
+        }
+
+        int blocks = parseInt(status, start, comma);
+        int bytes = parseInt(status, comma + 1, end);
+        if (blocks >= 0 && bytes >= 0) {
+            plannerBlocksFree = blocks;
+            rxBytesFree = bytes;
+        }
+    }
+
+    private static int parseFlags(String status, int start, int end, String letters) {
+        int flags = 0;
+        for (int i = start; i < end; i++) {
+            int index = letters.indexOf(Character.toUpperCase(status.charAt(i)));
+            if (index >= 0) {
+                flags |= 1 << index;
+            }
+        }
+        return flags;
+    }
+
+    private static int indexOf(String status, char c, int start, int end) {
+        int index = status.indexOf(c, start);
+        return index < end ? index : -1;
+    }
+
+    /**
+     * @return the value, or -1 if it isn't a small non-negative integer.
+     */
+    private static int parseInt(String s, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private ControllerStatus createStatus(ControllerStatus lastStatus, Units units) {
+        Position lastMachine = lastStatus == null ? null : lastStatus.getMachineCoord();
+        Position lastWork = lastStatus == null ? null : lastStatus.getWorkCoord();
+        Position lastOffset = lastStatus == null ? null : lastStatus.getWorkCoordinateOffset();
+
+        // Grab WCO from state information if necessary.
+        Position wco;
+        if (hasOffset) {
+            wco = position(offset[0], offset[1], offset[2], units, lastOffset);
+        } else if (lastOffset != null) {
+            wco = lastOffset;
+        } else {
+            wco = new Position(0, 0, 0, units);
+        }
+
+        // Calculate missing coordinate with WCO
+        Position machineCoord = null;
+        Position workCoord = null;
+        if (hasMachine) {
+            machineCoord = position(machine[0], machine[1], machine[2], units, lastMachine);
+            workCoord = hasWork
+                    ? position(work[0], work[1], work[2], units, lastWork)
+                    : position(machine[0] - wco.x, machine[1] - wco.y, machine[2] - wco.z, units, lastWork);
+        } else if (hasWork) {
+            workCoord = position(work[0], work[1], work[2], units, lastWork);
+            machineCoord = position(work[0] + wco.x, work[1] + wco.y, work[2] + wco.z, units, lastMachine);
+        }
+
+        OverridePercents overridePercents = null;
+        EnabledPins enabledPins = null;
+        AccessoryStates accessoryStates = null;
+        if (!isOverrideReport && lastStatus != null) {
+            overridePercents = lastStatus.getOverrides();
+            enabledPins = lastStatus.getEnabledPins();
+            accessoryStates = lastStatus.getAccessoryStates();
+        } else {
+            if (hasOverrides) {
+                overridePercents = overrides(lastStatus == null ? null : lastStatus.getOverrides());
+            } else if (lastStatus != null) {
+                // The override field was malformed.
+                overridePercents = lastStatus.getOverrides();
+            }
+
+            // If this is an override report and the 'Pn:' or 'A:' fields
+            // weren't sent set all pins and accessories to a disabled state.
+            if (hasPins || isOverrideReport) {
+                enabledPins = pins(hasPins ? pins : 0, lastStatus == null ? null : lastStatus.getEnabledPins());
+            }
+            if (hasAccessories || isOverrideReport) {
+                accessoryStates = accessories(hasAccessories ? accessories : 0,
+                        lastStatus == null ? null : lastStatus.getAccessoryStates());
+            }
+        }
+
+        if (lastStatus != null
+                && lastStatus.getState() == state
+                && lastStatus.getMachineCoord() == machineCoord
+                && lastStatus.getWorkCoord() == workCoord
+                && lastStatus.getWorkCoordinateOffset() == wco
+                && same(lastStatus.getFeedSpeed(), feedSpeed)
+                && same(lastStatus.getSpindleSpeed(), spindleSpeed)
+                && lastStatus.getFeedSpeedUnits() == units
+                && lastStatus.getOverrides() == overridePercents
+                && lastStatus.getEnabledPins() == enabledPins
+                && lastStatus.getAccessoryStates() == accessoryStates) {
+            return lastStatus;
+        }
+
+        return new ControllerStatus(state, machineCoord, workCoord, feedSpeed, units, spindleSpeed,
+                overridePercents, wco, enabledPins, accessoryStates);
+    }
+
+    private static Position position(double x, double y, double z, Units units, Position last) {
+        if (last != null && same(last.x, x) && same(last.y, y) && same(last.z, z) && last.getUnits() == units) {
+            return last;
+        }
+        return new Position(x, y, z, units);
+    }
+
+    /**
+     * Bitwise comparison, -0.0 and 0.0 are different values.
+     */
+    private static boolean same(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    private OverridePercents overrides(OverridePercents last) {
+        if (last != null && last.feed == overrides[0] && last.rapid == overrides[1] && last.spindle == overrides[2]) {
+            return last;
+        }
+        return new OverridePercents(overrides[0], overrides[1], overrides[2]);
+    }
+
+    private static EnabledPins pins(int flags, EnabledPins last) {
+        if (last != null && flags == (flag(last.X, 0) | flag(last.Y, 1) | flag(last.Z, 2) | flag(last.Probe, 3)
+                | flag(last.Door, 4) | flag(last.Hold, 5) | flag(last.SoftReset, 6) | flag(last.CycleStart, 7))) {
+            return last;
+        }
+        return new EnabledPins(letters(flags, PIN_LETTERS));
+    }
+
+    private static AccessoryStates accessories(int flags, AccessoryStates last) {
+        if (last != null && flags == (flag(last.SpindleCW, 0) | flag(last.SpindleCCW, 1)
+                | flag(last.Flood, 2) | flag(last.Mist, 3))) {
+            return last;
+        }
+        return new AccessoryStates(letters(flags, ACCESSORY_LETTERS));
+    }
+
+    private static int flag(boolean enabled, int bit) {
+        return enabled ? 1 << bit : 0;
+    }
+
+    private static String letters(int flags, String letters) {
+        StringBuilder sb = new StringBuilder(letters.length());
+        for (int i = 0; i < letters.length(); i++) {
+            if ((flags & (1 << i)) != 0) {
+                sb.append(letters.charAt(i));
+            }
+        }
+        return sb.toString();
+    }
+}
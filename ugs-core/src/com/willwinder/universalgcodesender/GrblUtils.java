@@ -21,9 +21,6 @@ package com.willwinder.universalgcodesender;
 
 import com.willwinder.universalgcodesender.listeners.ControllerState;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
-import com.willwinder.universalgcodesender.listeners.ControllerStatus.AccessoryStates;
-import com.willwinder.universalgcodesender.listeners.ControllerStatus.EnabledPins;
-import com.willwinder.universalgcodesender.listeners.ControllerStatus.OverridePercents;
 import com.willwinder.universalgcodesender.model.*;
 import com.willwinder.universalgcodesender.model.UnitUtils.Units;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
@@ -314,11 +311,22 @@ public class GrblUtils {
     static protected ControllerStatus getStatusFromStatusString(
             ControllerStatus lastStatus, final String status,
             final Capabilities version, Units reportingUnits) {
+        return getStatusFromStatusString(STATUS_PARSER.get(), lastStatus, status, version, reportingUnits);
+    }
+
+    /**
+     * Parses a GRBL status string with the given parser, which keeps the
+     * buffer state of a v1.x report for {@link GrblStatusParser#getPlannerBlocksFree()}
+     * and {@link GrblStatusParser#getRxBytesFree()}.
+     */
+    static protected ControllerStatus getStatusFromStatusString(
+            GrblStatusParser parser, ControllerStatus lastStatus, final String status,
+            final Capabilities version, Units reportingUnits) {
         // Legacy status.
         if (!version.hasCapability(GrblCapabilitiesConstants.V1_FORMAT)) {
             return getStatusFromStatusStringLegacy(status, version, reportingUnits);
         } else {
-            return getStatusFromStatusStringV1(lastStatus, status, reportingUnits);
+            return parser.parse(lastStatus, status, reportingUnits);
         }
     }
 
@@ -339,6 +347,8 @@ public class GrblUtils {
                 getWorkPositionFromStatusString(status, version, reportingUnits));
     }
 
+    private static final ThreadLocal<GrblStatusParser> STATUS_PARSER = ThreadLocal.withInitial(GrblStatusParser::new);
+
     /**
      * Parses a GRBL status string in in the v1.x format:
      * 1.x: <status|WPos:1,2,3|Bf:0,0|WCO:0,0,0>
@@ -346,134 +356,10 @@ public class GrblUtils {
      *                   and override status from previous status updates.
      * @param status the raw status string
      * @param reportingUnits units
-     * @return the parsed controller status
+     * @return the parsed controller status, lastStatus is returned if nothing changed.
      */
     public static ControllerStatus getStatusFromStatusStringV1(ControllerStatus lastStatus, String status, Units reportingUnits) {
-        String stateString = "";
-        Position MPos = null;
-        Position WPos = null;
-        Position WCO = null;
-
-        OverridePercents overrides = null;
-        EnabledPins pins = null;
-        AccessoryStates accessoryStates = null;
-
-        double feedSpeed = 0;
-        double spindleSpeed = 0;
-        if(lastStatus != null) {
-            feedSpeed = lastStatus.getFeedSpeed();
-            spindleSpeed = lastStatus.getSpindleSpeed();
-        }
-        boolean isOverrideReport = false;
-
-        // Parse out the status messages.
-        for (String part : status.substring(0, status.length()-1).split("\\|")) {
-            if (part.startsWith("<")) {
-                int idx = part.indexOf(':');
-                if (idx == -1)
-                    stateString = part.substring(1);
-                else
-                    stateString = part.substring(1, idx);
-            }
-            else if (part.startsWith("MPos:")) {
-                MPos = GrblUtils.getPositionFromStatusString(status, machinePattern, reportingUnits);
-            }
-            else if (part.startsWith("WPos:")) {
-                WPos = GrblUtils.getPositionFromStatusString(status, workPattern, reportingUnits);
-            }
-            else if (part.startsWith("WCO:")) {
-                WCO = GrblUtils.getPositionFromStatusString(status, wcoPattern, reportingUnits);
-            }
-            else if (part.startsWith("Ov:")) {
-                isOverrideReport = true;
-                String[] overrideParts = part.substring(3).trim().split(",");
-                if (overrideParts.length == 3) {
-                    overrides = new OverridePercents(
-                            Integer.parseInt(overrideParts[0]),
-                            Integer.parseInt(overrideParts[1]),
-                            Integer.parseInt(overrideParts[2]));
-                }
-            }
-            else if (part.startsWith("F:")) {
-                feedSpeed = parseFeedSpeed(part);
-            }
-            else if (part.startsWith("FS:")) {
-                String[] parts = part.substring(3).split(",");
-                feedSpeed = Double.parseDouble(parts[0]);
-                spindleSpeed = Double.parseDouble(parts[1]);
-            }
-            else if (part.startsWith("Pn:")) {
-                String value = part.substring(part.indexOf(':')+1);
-                pins = new EnabledPins(value);
-            }
-            else if (part.startsWith("A:")) {
-                String value = part.substring(part.indexOf(':')+1);
-                accessoryStates = new AccessoryStates(value);
-            }
-        }
-
-        // Grab WCO from state information if necessary.
-        if (WCO == null) {
-            // Grab the work coordinate offset.
-            if (lastStatus != null && lastStatus.getWorkCoordinateOffset() != null) {
-                WCO = lastStatus.getWorkCoordinateOffset();
-            } else {
-                WCO = new Position(0,0,0, reportingUnits);
-            }
-        }
-
-        // Calculate missing coordinate with WCO
-        if (WPos == null && MPos != null) {
-            WPos = new Position(MPos.x-WCO.x, MPos.y-WCO.y, MPos.z-WCO.z, reportingUnits);
-        } else if (MPos == null && WPos != null) {
-            MPos = new Position(WPos.x+WCO.x, WPos.y+WCO.y, WPos.z+WCO.z, reportingUnits);
-        }
-
-        if (!isOverrideReport && lastStatus != null) {
-            overrides = lastStatus.getOverrides();
-            pins = lastStatus.getEnabledPins();
-            accessoryStates = lastStatus.getAccessoryStates();
-        }
-        else if (isOverrideReport) {
-            // If this is an override report and the 'Pn:' field wasn't sent
-            // set all pins to a disabled state.
-            if (pins == null) {
-                pins = new EnabledPins("");
-            }
-            // Likewise for accessory states.
-            if (accessoryStates == null) {
-                accessoryStates = new AccessoryStates("");
-            }
-        }
-
-        ControllerState state = getControllerStateFromStateString(stateString);
-        return new ControllerStatus(state, MPos, WPos, feedSpeed, reportingUnits, spindleSpeed, overrides, WCO, pins, accessoryStates);
-    }
-
-    /**
-     * Parses the feed speed from a status string starting with "F:".
-     * The supported formats are F:1000.0 or F:3000.0,100.0,100.0 which are current feed rate, requested feed rate and override feed rate
-     *
-     * @param part the part to parse
-     * @return the parsed feed speed
-     */
-    private static double parseFeedSpeed(String part) {
-        if(!part.startsWith("F:")) {
-            return Double.NaN;
-        }
-
-        double feedSpeed;
-        String[] feedStrings = StringUtils.split(part.substring(2), ",");
-        if (feedStrings.length > 1) {
-            if (feedStrings.length >= 3) {
-                feedSpeed = Double.parseDouble(StringUtils.split(feedStrings[0], ",")[0]);
-            } else {
-                feedSpeed = 0;
-            }
-        } else {
-            feedSpeed = Double.parseDouble(part.substring(2));
-        }
-        return feedSpeed;
+        return STATUS_PARSER.get().parse(lastStatus, status, reportingUnits);
     }
 
     /**
@@ -524,7 +410,6 @@ public class GrblUtils {
 
     static Pattern machinePattern = Pattern.compile("(?<=MPos:)(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*)");
     static Pattern workPattern = Pattern.compile("(?<=WPos:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
-    static Pattern wcoPattern = Pattern.compile("(?<=WCO:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
     static protected Position getMachinePositionFromStatusString(final String status, final Capabilities version, Units reportingUnits) {
         if (version.hasCapability(GrblCapabilitiesConstants.REAL_TIME)) {
             return GrblUtils.getPositionFromStatusString(status, machinePattern, reportingUnits);
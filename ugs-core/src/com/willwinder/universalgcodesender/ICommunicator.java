@@ -22,6 +22,7 @@ import com.willwinder.universalgcodesender.connection.Connection;
 import com.willwinder.universalgcodesender.connection.ConnectionDriver;
 import com.willwinder.universalgcodesender.connection.IConnectionListener;
 import com.willwinder.universalgcodesender.listeners.CommunicatorListener;
+import com.willwinder.universalgcodesender.metrics.StreamingMetrics;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 import com.willwinder.universalgcodesender.utils.IGcodeStreamReader;
 
@@ -121,6 +122,13 @@ public interface ICommunicator extends IConnectionListener {
      */
     void setConnection(Connection connection);
 
+    /**
+     * Sets where the streaming metrics are recorded
+     *
+     * @param metrics the metrics to record to
+     */
+    void setMetrics(StreamingMetrics metrics);
+
     /**
      * Returns true if connected to the hardware
      *
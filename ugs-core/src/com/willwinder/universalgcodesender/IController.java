@@ -23,6 +23,7 @@ import com.willwinder.universalgcodesender.firmware.IFirmwareSettings;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.listeners.ControllerListener;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.metrics.MetricsRegistry;
 import com.willwinder.universalgcodesender.model.Axis;
 import com.willwinder.universalgcodesender.model.Overrides;
 import com.willwinder.universalgcodesender.model.PartialPosition;
@@ -170,6 +171,15 @@ public interface IController {
     Stream control
     */
     void beginStreaming() throws Exception;
+
+    /**
+     * Begins streaming the queued stream from the given line of the original
+     * file, restoring the modal state of the program at that line first.
+     *
+     * @param startLine the line (command number) to start from
+     * @throws Exception if the stream can't be started from the line
+     */
+    void beginStreaming(int startLine) throws Exception;
     void pauseStreaming() throws Exception;
     void resumeStreaming() throws Exception;
     Boolean isPaused();
@@ -235,4 +245,12 @@ public interface IController {
      * @return the current controller status
      */
     ControllerStatus getControllerStatus();
+
+    /**
+     * Returns the metrics of the connection to the controller, such as the
+     * streaming rate and command latencies.
+     *
+     * @return the metrics registry
+     */
+    MetricsRegistry getMetrics();
 }
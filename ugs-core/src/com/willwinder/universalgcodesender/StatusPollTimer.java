@@ -1,13 +1,28 @@
 package com.willwinder.universalgcodesender;
 
-import javax.swing.*;
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.model.UGSEvent.ControlState;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A status poll timer that will attempt request status reports from the controller at a fixed interval.
- * If the status report wasn't received it will wait until there was twenty outstanding polls, it will
- * then attempt to request a status report again.
+ * A status poll timer that will attempt request status reports from the controller.
+ *
+ * The polls are issued from a thread of its own so that a busy UI can't delay
+ * them. The configured status update rate is used while the machine is moving
+ * or a file is being streamed, while the machine is idle or in an alarm state
+ * it is polled less often. Only one poll is outstanding at a time, the round
+ * trip time of each poll is measured and if the link is slow to respond, for
+ * instance while streaming, the polls are spaced out accordingly.
+ *
+ * If the status report wasn't received it will wait until there was twenty
+ * outstanding polls, it will then attempt to request a status report again.
  *
  * @author wwinder
  * @author Joacim Breiler
@@ -16,70 +31,240 @@ public class StatusPollTimer {
     private static final Logger LOGGER = Logger.getLogger(StatusPollTimer.class.getName());
     private static final int MAX_OUTSTANDING_POLLS = 20;
 
-    private Timer timer;
-    private IController controller;
+    // Polls are this many times slower while the machine is idle, but at most
+    // once per IDLE_MAX_INTERVAL_MS unless the configured rate is slower.
+    private static final int IDLE_INTERVAL_FACTOR = 4;
+    private static final long IDLE_MAX_INTERVAL_MS = 1000;
+
+    // The interval is kept above this multiple of the round trip time.
+    private static final double ROUND_TRIP_FACTOR = 2;
+
+    // Smoothing of the averages, the same gains as TCP uses for its RTT estimate.
+    private static final double ROUND_TRIP_GAIN = 1.0 / 8;
+    private static final double JITTER_GAIN = 1.0 / 4;
+
+    private final IController controller;
+    private final Scheduler scheduler;
+    private Future<?> nextPoll;
     private int outstandingPolls;
 
+    // Timestamps in nanoseconds.
+    private long pollSentTime;
+    private long lastTickTime;
+    private long lastInterval;
+
+    private volatile double lastRoundTripMs;
+    private volatile double averageRoundTripMs;
+    private volatile double pollJitterMs;
+    private volatile long pollIntervalMs;
+    private volatile long pollCount;
+
     public StatusPollTimer(IController controller) {
+        this(controller, new ExecutorScheduler());
+    }
+
+    StatusPollTimer(IController controller, Scheduler scheduler) {
         this.controller = controller;
+        this.scheduler = scheduler;
     }
 
     /**
      * Begin issuing status request commands.
      */
-    public void start() {
-        if (controller.getStatusUpdatesEnabled()) {
-            if (timer == null) {
-                timer = createTimer();
-            }
+    public synchronized void start() {
+        if (!controller.getStatusUpdatesEnabled() || nextPoll != null) {
+            return;
+        }
 
-            if (!timer.isRunning()) {
-                outstandingPolls = 0;
-                timer.start();
-            }
+        outstandingPolls = 0;
+        lastTickTime = 0;
+        schedule(0);
+    }
+
+    /**
+     * Stop issuing status request commands.
+     */
+    public synchronized void stop() {
+        if (nextPoll != null) {
+            nextPoll.cancel(false);
+            nextPoll = null;
         }
+        scheduler.shutdown();
+    }
+
+    /**
+     * Resets the outstanding polls, forcing a new status report request.
+     */
+    public synchronized void receivedStatus() {
+        if (outstandingPolls > 0 && pollSentTime != 0) {
+            double roundTripMs = (scheduler.nanoTime() - pollSentTime) / 1e6;
+            lastRoundTripMs = roundTripMs;
+            averageRoundTripMs = averageRoundTripMs == 0
+                    ? roundTripMs
+                    : averageRoundTripMs + ROUND_TRIP_GAIN * (roundTripMs - averageRoundTripMs);
+        }
+        outstandingPolls = 0;
+        pollSentTime = 0;
+    }
+
+    /**
+     * @return the round trip time of the last status request in milliseconds.
+     */
+    public double getLastRoundTripMs() {
+        return lastRoundTripMs;
+    }
+
+    /**
+     * @return the smoothed round trip time of the status requests in milliseconds.
+     */
+    public double getAverageRoundTripMs() {
+        return averageRoundTripMs;
+    }
+
+    /**
+     * @return the average deviation of the time between two polls from the
+     * planned interval, in milliseconds.
+     */
+    public double getPollJitterMs() {
+        return pollJitterMs;
     }
 
     /**
-     * Create a timer which will execute  position polling mechanism.
+     * @return the current poll interval in milliseconds.
      */
-    private Timer createTimer() {
-        stop();
-
-        return new Timer(controller.getStatusUpdateRate(), actionEvent -> {
-            try {
-                if (outstandingPolls == 0) {
-                    outstandingPolls++;
-                    controller.requestStatusReport();
-                } else {
-                    // If a poll is somehow lost after 20 intervals,
-                    // reset for sending another.
-                    outstandingPolls++;
-                    if (outstandingPolls >= MAX_OUTSTANDING_POLLS) {
-                        outstandingPolls = 0;
-                    }
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    /**
+     * @return the number of status requests which were sent.
+     */
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    private void schedule(long delayMs) {
+        lastInterval = TimeUnit.MILLISECONDS.toNanos(delayMs);
+        nextPoll = scheduler.schedule(this::tick, delayMs);
+    }
+
+    private synchronized void tick() {
+        if (nextPoll == null) {
+            // Stopped while waiting for the lock.
+            return;
+        }
+
+        long now = scheduler.nanoTime();
+        if (lastTickTime != 0) {
+            double jitterMs = Math.abs(now - lastTickTime - lastInterval) / 1e6;
+            pollJitterMs += JITTER_GAIN * (jitterMs - pollJitterMs);
+        }
+        lastTickTime = now;
+
+        try {
+            if (outstandingPolls == 0) {
+                outstandingPolls++;
+                pollSentTime = now;
+                pollCount++;
+                controller.requestStatusReport();
+            } else {
+                // If a poll is somehow lost after 20 intervals,
+                // reset for sending another.
+                outstandingPolls++;
+                if (outstandingPolls >= MAX_OUTSTANDING_POLLS) {
+                    outstandingPolls = 0;
+                    pollSentTime = 0;
                 }
-            } catch (Exception ex) {
-                LOGGER.log(Level.SEVERE, "Couldn't poll for status reports", ex);
-                stop();
             }
-        });
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't poll for status reports", ex);
+            stop();
+            return;
+        }
+
+        long interval = getInterval();
+        pollIntervalMs = interval;
+        schedule(interval);
     }
 
     /**
-     * Stop issuing status request commands.
+     * Calculates the time until the next poll from the machine state and the
+     * measured round trip time.
      */
-    public void stop() {
-        if (timer != null) {
-            timer.stop();
-            timer = null;
+    private long getInterval() {
+        long rate = Math.max(1, controller.getStatusUpdateRate());
+        long interval = isActive() ? rate : Math.max(rate, Math.min(rate * IDLE_INTERVAL_FACTOR, IDLE_MAX_INTERVAL_MS));
+
+        // Back off if the controller is slow to respond, which happens when
+        // the link is saturated with streamed commands.
+        return Math.max(interval, (long) (averageRoundTripMs * ROUND_TRIP_FACTOR));
+    }
+
+    private boolean isActive() {
+        if (controller.getControlState() == ControlState.COMM_SENDING) {
+            return true;
         }
+
+        ControllerStatus status = controller.getControllerStatus();
+        if (status == null) {
+            return true;
+        }
+
+        ControllerState state = status.getState();
+        return state != ControllerState.IDLE && state != ControllerState.ALARM && state != ControllerState.SLEEP;
     }
 
     /**
-     * Resets the outstanding polls, forcing a new status report request.
+     * The clock and timer used for the polls, tests replace it to control the
+     * time instead of waiting for it.
      */
-    public void receivedStatus() {
-        outstandingPolls = 0;
+    interface Scheduler {
+        /**
+         * @return the current time in nanoseconds.
+         */
+        long nanoTime();
+
+        /**
+         * Runs the task once after the delay.
+         */
+        Future<?> schedule(Runnable task, long delayMs);
+
+        /**
+         * Stops running tasks until the next one is scheduled.
+         */
+        void shutdown();
+    }
+
+    /**
+     * Runs the polls on a daemon thread which is created when the polling
+     * starts.
+     */
+    private static class ExecutorScheduler implements Scheduler {
+        private ScheduledExecutorService executor;
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public synchronized Future<?> schedule(Runnable task, long delayMs) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "StatusPollTimer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
     }
 }
@@ -19,6 +19,7 @@
 
 package com.willwinder.universalgcodesender.connection;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -81,6 +82,18 @@ public interface Connection {
      */
     void sendStringToComm(String command) throws Exception;
 
+    /**
+     * Sends already encoded commands to the device, the bytes may contain
+     * several newline terminated commands which should be written at once.
+     *
+     * @param bytes  buffer containing the encoded commands
+     * @param offset index of the first byte to send
+     * @param length number of bytes to send
+     */
+    default void sendBytesToComm(byte[] bytes, int offset, int length) throws Exception {
+        sendStringToComm(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+    }
+
     /**
      * Checks if the communication is established
      *
@@ -0,0 +1,902 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.connection;
+
+import com.willwinder.universalgcodesender.GrblUtils;
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.gcode.util.PlaneFormatter;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import com.willwinder.universalgcodesender.types.PointSegment;
+
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A deterministic model of a Grbl 1.1 controller which is used for load
+ * testing the streaming stack without hardware.
+ *
+ * It models the serial RX buffer, the planner queue and the "ok" flow control
+ * of Grbl: a line is taken out of the RX buffer when the previous one has been
+ * executed, and the line with a motion isn't acknowledged until its block has
+ * been added to the planner. Each block takes the time given by its length and
+ * its feed rate, or the rapid rate for G0, scaled by the overrides. Acceleration
+ * isn't modelled and arcs are executed as a single block.
+ *
+ * The simulator doesn't have a clock of its own, the time is advanced with
+ * {@link #advance(long)} which makes it possible to run it at any speed. The
+ * responses are collected and fetched with {@link #takeOutput()}. Work
+ * coordinate offsets aren't modelled, the machine position is the position
+ * of the parser.
+ *
+ * This class isn't thread safe.
+ *
+ * @author wwinder
+ */
+public class GrblSimulator {
+    public static final int DEFAULT_RX_BUFFER_SIZE = 128;
+    public static final int DEFAULT_PLANNER_BLOCKS = 15;
+    public static final double DEFAULT_RAPID_RATE = 5000;
+
+    public static final String WELCOME_MESSAGE = "Grbl 1.1f ['$' for help]";
+
+    // Grbl drops lines longer than this.
+    private static final int LINE_BUFFER_SIZE = 80;
+
+    // How many status reports there are between the WCO and Ov fields.
+    private static final int WCO_REFRESH_BUSY_COUNT = 30;
+    private static final int WCO_REFRESH_IDLE_COUNT = 10;
+    private static final int OVR_REFRESH_BUSY_COUNT = 20;
+    private static final int OVR_REFRESH_IDLE_COUNT = 10;
+
+    private static final int ERROR_EXPECTED_COMMAND_LETTER = 1;
+    private static final int ERROR_INVALID_STATEMENT = 3;
+    private static final int ERROR_IDLE_ERROR = 8;
+    private static final int ERROR_SYSTEM_GC_LOCK = 9;
+    private static final int ERROR_OVERFLOW = 11;
+    private static final int ERROR_UNSUPPORTED_COMMAND = 20;
+    private static final int ERROR_UNDEFINED_FEED_RATE = 22;
+
+    private static final int ALARM_ABORT_CYCLE = 3;
+
+    private final int rxBufferSize;
+    private final int plannerBlocks;
+    private final double rapidRate;
+
+    // The serial RX buffer as a ring buffer.
+    private final byte[] rxBuffer;
+    private int rxHead;
+    private int rxCount;
+    private long rxOverflowCount;
+
+    // The planner as a ring buffer, the head block is the one being executed.
+    private final Block[] planner;
+    private int plannerHead;
+    private int plannerCount;
+    private final Point3d plannerEnd = new Point3d();
+
+    // Moves of the line being executed which didn't fit in the planner.
+    private final List<GcodeMeta> pendingMoves = new ArrayList<>();
+    private int pendingIndex;
+    private boolean pendingJog;
+
+    private final StringBuilder output = new StringBuilder();
+    private final StringBuilder lineBuilder = new StringBuilder(LINE_BUFFER_SIZE);
+    private GcodeState gcodeState;
+    private int lineNumber;
+
+    private final Point3d position = new Point3d();
+    private double feedRate;
+    private double spindleSpeed;
+
+    private boolean hold;
+    private boolean door;
+    private boolean checkMode;
+    private int alarm;
+
+    private int feedOverride = 100;
+    private int rapidOverride = 100;
+    private int spindleOverride = 100;
+    private int wcoCounter;
+    private int ovrCounter;
+
+    private double machineTimeMicros;
+    private long linesProcessed;
+    private long blocksExecuted;
+
+    private static class Block {
+        final Point3d start = new Point3d();
+        final Point3d end = new Point3d();
+        double length;
+        double progress;
+        double feedRate;
+        boolean rapid;
+        boolean jog;
+    }
+
+    public GrblSimulator() {
+        this(DEFAULT_RX_BUFFER_SIZE, DEFAULT_PLANNER_BLOCKS, DEFAULT_RAPID_RATE);
+    }
+
+    /**
+     * @param rxBufferSize  the size of the serial RX buffer in bytes
+     * @param plannerBlocks the number of blocks in the planner queue
+     * @param rapidRate     the rate of G0 moves in mm/min
+     */
+    public GrblSimulator(int rxBufferSize, int plannerBlocks, double rapidRate) {
+        if (rxBufferSize < 1 || plannerBlocks < 1 || rapidRate <= 0) {
+            throw new IllegalArgumentException("Invalid simulator configuration");
+        }
+
+        this.rxBufferSize = rxBufferSize;
+        this.plannerBlocks = plannerBlocks;
+        this.rapidRate = rapidRate;
+        this.rxBuffer = new byte[rxBufferSize];
+        this.planner = new Block[plannerBlocks];
+        for (int i = 0; i < plannerBlocks; i++) {
+            planner[i] = new Block();
+        }
+        this.gcodeState = new GcodeState();
+    }
+
+    /**
+     * Powers on the controller, the position is kept.
+     */
+    public void reset() {
+        flush();
+        alarm = 0;
+        hold = false;
+        door = false;
+        checkMode = false;
+        feedOverride = 100;
+        rapidOverride = 100;
+        spindleOverride = 100;
+        wcoCounter = 0;
+        ovrCounter = 0;
+        gcodeState = new GcodeState();
+        syncParserPosition();
+        appendLine(WELCOME_MESSAGE);
+    }
+
+    /**
+     * Receives bytes from the serial port.
+     */
+    public void receive(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            receiveByte(bytes[i]);
+        }
+        processLines();
+    }
+
+    /**
+     * Receives a byte from the serial port, real time commands are executed
+     * immediately and other bytes are put in the RX buffer.
+     */
+    public void receive(byte b) {
+        receiveByte(b);
+        processLines();
+    }
+
+    private void receiveByte(byte b) {
+        if (handleRealTimeCommand(b)) {
+            return;
+        }
+
+        if (rxCount == rxBufferSize) {
+            rxOverflowCount++;
+            return;
+        }
+        rxBuffer[(rxHead + rxCount) % rxBufferSize] = b;
+        rxCount++;
+    }
+
+    /**
+     * Executes the planner for the given time.
+     *
+     * @param micros the time to run in microseconds
+     */
+    public void advance(long micros) {
+        double budget = micros;
+        processLines();
+        while (budget > 0 && plannerCount > 0 && !isPaused()) {
+            Block block = planner[plannerHead];
+            double speed = getSpeed(block) / 60e6;
+            double remaining = block.length - block.progress;
+            double time = remaining / speed;
+
+            if (time <= budget) {
+                budget -= time;
+                machineTimeMicros += time;
+                position.set(block.end);
+                feedRate = block.rapid ? rapidRate : block.feedRate;
+                plannerHead = (plannerHead + 1) % plannerBlocks;
+                plannerCount--;
+                blocksExecuted++;
+                processLines();
+            } else {
+                machineTimeMicros += budget;
+                block.progress += budget * speed;
+                position.interpolate(block.start, block.end, block.progress / block.length);
+                feedRate = block.rapid ? rapidRate : block.feedRate;
+                budget = 0;
+            }
+        }
+
+        if (plannerCount == 0 && alarm == 0) {
+            feedRate = 0;
+        }
+    }
+
+    /**
+     * @return the time in microseconds until the block being executed is
+     * completed, or -1 if nothing will happen until more data is received.
+     */
+    public long getMicrosUntilNextEvent() {
+        if (plannerCount == 0 || isPaused()) {
+            return -1;
+        }
+
+        Block block = planner[plannerHead];
+        double speed = getSpeed(block) / 60e6;
+        return Math.max(1, (long) Math.ceil((block.length - block.progress) / speed));
+    }
+
+    /**
+     * Returns and clears the responses which has been written by the controller.
+     *
+     * @return the responses, each line terminated by "\r\n"
+     */
+    public String takeOutput() {
+        if (output.length() == 0) {
+            return "";
+        }
+        String result = output.toString();
+        output.setLength(0);
+        return result;
+    }
+
+    /**
+     * Triggers an alarm, for instance a hard limit, which stops all motion
+     * and flushes the buffers. The alarm is cleared with "$X" or "$H".
+     *
+     * @param code the alarm code to report
+     */
+    public void triggerAlarm(int code) {
+        flush();
+        alarm = code;
+        feedRate = 0;
+        appendLine("ALARM:" + code);
+    }
+
+    private boolean handleRealTimeCommand(byte b) {
+        switch (b) {
+            case GrblUtils.GRBL_STATUS_COMMAND:
+                appendStatus();
+                return true;
+            case GrblUtils.GRBL_PAUSE_COMMAND:
+                if (plannerCount > 0 || pendingIndex < pendingMoves.size()) {
+                    hold = true;
+                }
+                return true;
+            case GrblUtils.GRBL_RESUME_COMMAND:
+                hold = false;
+                door = false;
+                return true;
+            case GrblUtils.GRBL_RESET_COMMAND:
+                softReset();
+                return true;
+            case GrblUtils.GRBL_DOOR_COMMAND:
+                door = true;
+                return true;
+            case GrblUtils.GRBL_JOG_CANCEL_COMMAND:
+                cancelJog();
+                return true;
+            default:
+                break;
+        }
+
+        int command = b & 0xff;
+        if (command < 0x80) {
+            return false;
+        }
+
+        switch (command) {
+            case 0x90:
+                feedOverride = 100;
+                break;
+            case 0x91:
+                feedOverride = Math.min(200, feedOverride + 10);
+                break;
+            case 0x92:
+                feedOverride = Math.max(10, feedOverride - 10);
+                break;
+            case 0x93:
+                feedOverride = Math.min(200, feedOverride + 1);
+                break;
+            case 0x94:
+                feedOverride = Math.max(10, feedOverride - 1);
+                break;
+            case 0x95:
+                rapidOverride = 100;
+                break;
+            case 0x96:
+                rapidOverride = 50;
+                break;
+            case 0x97:
+                rapidOverride = 25;
+                break;
+            case 0x99:
+                spindleOverride = 100;
+                break;
+            case 0x9A:
+                spindleOverride = Math.min(200, spindleOverride + 10);
+                break;
+            case 0x9B:
+                spindleOverride = Math.max(10, spindleOverride - 10);
+                break;
+            case 0x9C:
+                spindleOverride = Math.min(200, spindleOverride + 1);
+                break;
+            case 0x9D:
+                spindleOverride = Math.max(10, spindleOverride - 1);
+                break;
+            default:
+                // Spindle stop, coolant and unknown commands.
+                return true;
+        }
+
+        // Report the new values in the next status report.
+        ovrCounter = 0;
+        return true;
+    }
+
+    private void softReset() {
+        if (plannerCount > 0 && !isPaused()) {
+            appendLine("ALARM:" + ALARM_ABORT_CYCLE);
+            flush();
+            reset();
+            alarm = ALARM_ABORT_CYCLE;
+            appendLine("[MSG:'$H'|'$X' to unlock]");
+        } else {
+            int previousAlarm = alarm;
+            reset();
+            alarm = previousAlarm;
+            if (alarm != 0) {
+                appendLine("[MSG:'$H'|'$X' to unlock]");
+            }
+        }
+    }
+
+    private void cancelJog() {
+        if (plannerCount > 0 && planner[plannerHead].jog || pendingJog) {
+            flush();
+            hold = false;
+        }
+    }
+
+    /**
+     * Removes everything from the buffers, the position is where the machine
+     * stopped.
+     */
+    private void flush() {
+        rxHead = 0;
+        rxCount = 0;
+        plannerHead = 0;
+        plannerCount = 0;
+        pendingMoves.clear();
+        pendingIndex = 0;
+        pendingJog = false;
+        plannerEnd.set(position);
+        syncParserPosition();
+    }
+
+    private void syncParserPosition() {
+        double scale = gcodeState.isMetric ? 1 : 1 / 25.4;
+        gcodeState.currentPoint = new Position(position.x * scale, position.y * scale, position.z * scale,
+                gcodeState.isMetric ? Units.MM : Units.INCH);
+    }
+
+    private boolean isPaused() {
+        return hold || door || alarm != 0;
+    }
+
+    private double getSpeed(Block block) {
+        if (block.rapid) {
+            return rapidRate * rapidOverride / 100.0;
+        }
+        return block.feedRate * feedOverride / 100.0;
+    }
+
+    /**
+     * Executes the lines in the RX buffer until the planner is full.
+     */
+    private void processLines() {
+        while (fillPlanner() && takeLine()) {
+            linesProcessed++;
+            executeLine(lineBuilder);
+        }
+    }
+
+    /**
+     * Takes the next complete line out of the RX buffer, spaces are removed
+     * and letters are converted to upper case like Grbl does.
+     *
+     * @return false if there isn't a complete line in the buffer
+     */
+    private boolean takeLine() {
+        int length = -1;
+        for (int i = 0; i < rxCount; i++) {
+            if (rxBuffer[(rxHead + i) % rxBufferSize] == '\n') {
+                length = i;
+                break;
+            }
+        }
+        if (length < 0) {
+            return false;
+        }
+
+        lineBuilder.setLength(0);
+        for (int i = 0; i < length; i++) {
+            char c = (char) rxBuffer[(rxHead + i) % rxBufferSize];
+            if (c > ' ') {
+                lineBuilder.append(Character.toUpperCase(c));
+            }
+        }
+        rxHead = (rxHead + length + 1) % rxBufferSize;
+        rxCount -= length + 1;
+        return true;
+    }
+
+    private void executeLine(CharSequence line) {
+        if (line.length() == 0) {
+            appendLine("ok");
+        } else if (line.length() > LINE_BUFFER_SIZE) {
+            appendError(ERROR_OVERFLOW);
+        } else if (line.charAt(0) == '$') {
+            executeSystemCommand(line.toString());
+        } else if (alarm != 0) {
+            appendError(ERROR_SYSTEM_GC_LOCK);
+        } else {
+            executeGcode(line.toString());
+        }
+    }
+
+    private void executeSystemCommand(String line) {
+        if (line.equals("$")) {
+            appendLine("[HLP:$$ $# $G $I $N $x=val $Nx=line $J=line $SLP $C $X $H ~ ! ? ctrl-x]");
+            appendLine("ok");
+        } else if (line.equals("$$")) {
+            appendSettings();
+            appendLine("ok");
+        } else if (line.equals("$G")) {
+            appendParserState();
+            appendLine("ok");
+        } else if (line.equals("$I")) {
+            appendLine("[VER:1.1f.20170801:]");
+            appendLine("[OPT:V," + plannerBlocks + "," + rxBufferSize + "]");
+            appendLine("ok");
+        } else if (line.equals("$X")) {
+            if (alarm != 0) {
+                alarm = 0;
+                appendLine("[MSG:Caution: Unlocked]");
+            }
+            appendLine("ok");
+        } else if (line.equals("$H")) {
+            if (plannerCount > 0) {
+                appendError(ERROR_IDLE_ERROR);
+                return;
+            }
+            alarm = 0;
+            position.set(0, 0, 0);
+            plannerEnd.set(position);
+            syncParserPosition();
+            appendLine("ok");
+        } else if (line.equals("$C")) {
+            checkMode = !checkMode;
+            if (checkMode) {
+                appendLine("[MSG:Enabled]");
+                appendLine("ok");
+            } else {
+                appendLine("[MSG:Disabled]");
+                appendLine("ok");
+                reset();
+            }
+        } else if (line.startsWith("$J=")) {
+            executeJog(line.substring(3));
+        } else if (line.startsWith("$") && line.length() > 1 && Character.isLetterOrDigit(line.charAt(1))) {
+            // Settings and startup lines are accepted but not stored.
+            appendLine("ok");
+        } else {
+            appendError(ERROR_INVALID_STATEMENT);
+        }
+    }
+
+    private void executeGcode(String line) {
+        if (!Character.isLetter(line.charAt(0))) {
+            appendError(ERROR_EXPECTED_COMMAND_LETTER);
+            return;
+        }
+
+        List<GcodeMeta> metas;
+        try {
+            metas = GcodeParser.processCommand(line, lineNumber++, gcodeState, true);
+        } catch (GcodeParserException | RuntimeException e) {
+            appendError(ERROR_UNSUPPORTED_COMMAND);
+            return;
+        }
+        if (metas == null || metas.isEmpty()) {
+            appendLine("ok");
+            return;
+        }
+
+        // Validate the line before any of it is executed.
+        for (GcodeMeta meta : metas) {
+            if (meta.point != null && !meta.point.isFastTraverse() && meta.state.speed <= 0) {
+                appendError(ERROR_UNDEFINED_FEED_RATE);
+                return;
+            }
+        }
+
+        gcodeState = metas.get(metas.size() - 1).state;
+        spindleSpeed = gcodeState.spindleSpeed;
+        if (checkMode) {
+            appendLine("ok");
+            return;
+        }
+
+        queueMoves(metas, false);
+    }
+
+    private void executeJog(String command) {
+        if (alarm != 0) {
+            appendError(ERROR_SYSTEM_GC_LOCK);
+            return;
+        }
+        if (plannerCount > 0 && !planner[plannerHead].jog) {
+            appendError(ERROR_IDLE_ERROR);
+            return;
+        }
+
+        // The jog doesn't change the modal state of the parser.
+        GcodeState jogState = gcodeState.copy();
+        jogState.currentMotionMode = Code.G1;
+        List<GcodeMeta> metas;
+        try {
+            metas = GcodeParser.processCommand(command, lineNumber++, jogState, true);
+        } catch (GcodeParserException | RuntimeException e) {
+            appendError(ERROR_INVALID_STATEMENT);
+            return;
+        }
+        if (metas == null || metas.isEmpty() || metas.get(metas.size() - 1).state.speed <= 0) {
+            appendError(ERROR_UNDEFINED_FEED_RATE);
+            return;
+        }
+
+        queueMoves(metas, true);
+
+        // Continue from the end of the jog.
+        Point3d end = plannerEndAfterPendingMoves();
+        double scale = gcodeState.isMetric ? 1 : 1 / 25.4;
+        gcodeState.currentPoint = new Position(end.x * scale, end.y * scale, end.z * scale,
+                gcodeState.isMetric ? Units.MM : Units.INCH);
+    }
+
+    private void queueMoves(List<GcodeMeta> metas, boolean jog) {
+        pendingMoves.clear();
+        pendingIndex = 0;
+        pendingJog = jog;
+        for (GcodeMeta meta : metas) {
+            if (meta.point != null) {
+                pendingMoves.add(meta);
+            }
+        }
+
+        if (pendingMoves.isEmpty()) {
+            appendLine("ok");
+        } else {
+            fillPlanner();
+        }
+    }
+
+    /**
+     * Moves the pending moves into the planner, "ok" is sent for the line once
+     * all of its moves has been planned.
+     *
+     * @return true if there are no more pending moves
+     */
+    private boolean fillPlanner() {
+        if (pendingMoves.isEmpty()) {
+            return true;
+        }
+
+        while (pendingIndex < pendingMoves.size()) {
+            if (plannerCount == plannerBlocks) {
+                return false;
+            }
+
+            GcodeMeta meta = pendingMoves.get(pendingIndex++);
+            Block block = planner[(plannerHead + plannerCount) % plannerBlocks];
+            if (planBlock(block, meta.point, meta.state.speed)) {
+                block.jog = pendingJog;
+                plannerCount++;
+                plannerEnd.set(block.end);
+            }
+        }
+
+        pendingMoves.clear();
+        pendingIndex = 0;
+        pendingJog = false;
+        appendLine("ok");
+        return true;
+    }
+
+    /**
+     * @return false if the segment doesn't move the machine
+     */
+    private boolean planBlock(Block block, PointSegment segment, double feedRate) {
+        double scale = segment.isMetric() ? 1 : 25.4;
+        Position end = segment.point();
+        block.start.set(plannerEnd);
+        block.end.set(end.x * scale, end.y * scale, end.z * scale);
+        block.rapid = segment.isFastTraverse();
+        block.feedRate = feedRate * scale;
+        block.progress = 0;
+
+        if (segment.isArc()) {
+            block.length = getArcLength(block.start, block.end, segment, scale);
+        } else {
+            block.length = block.start.distance(block.end);
+        }
+        return block.length > 0;
+    }
+
+    private static double getArcLength(Point3d start, Point3d end, PointSegment segment, double scale) {
+        PlaneFormatter plane = new PlaneFormatter(segment.getPlaneState());
+        Position c = segment.center();
+        Point3d center = new Point3d(c.x * scale, c.y * scale, c.z * scale);
+
+        double startAngle = Math.atan2(plane.axis1(start) - plane.axis1(center), plane.axis0(start) - plane.axis0(center));
+        double endAngle = Math.atan2(plane.axis1(end) - plane.axis1(center), plane.axis0(end) - plane.axis0(center));
+        double sweep = endAngle - startAngle;
+        if (segment.isClockwise() && sweep >= 0) {
+            sweep -= 2 * Math.PI;
+        } else if (!segment.isClockwise() && sweep <= 0) {
+            sweep += 2 * Math.PI;
+        }
+
+        double arcLength = Math.abs(sweep) * segment.getRadius() * scale;
+        return Math.hypot(arcLength, plane.linear(end) - plane.linear(start));
+    }
+
+    private Point3d plannerEndAfterPendingMoves() {
+        if (pendingIndex >= pendingMoves.size()) {
+            return plannerEnd;
+        }
+        PointSegment last = pendingMoves.get(pendingMoves.size() - 1).point;
+        double scale = last.isMetric() ? 1 : 25.4;
+        return new Point3d(last.point().x * scale, last.point().y * scale, last.point().z * scale);
+    }
+
+    private String getStateName() {
+        if (alarm != 0) {
+            return "Alarm";
+        } else if (door) {
+            return "Door:0";
+        } else if (hold) {
+            return "Hold:0";
+        } else if (checkMode) {
+            return "Check";
+        } else if (plannerCount > 0) {
+            return planner[plannerHead].jog ? "Jog" : "Run";
+        }
+        return "Idle";
+    }
+
+    private void appendStatus() {
+        boolean busy = plannerCount > 0;
+        output.append('<').append(getStateName()).append("|MPos:");
+        appendFixed(output, position.x).append(',');
+        appendFixed(output, position.y).append(',');
+        appendFixed(output, position.z);
+        output.append("|Bf:").append(plannerBlocks - plannerCount).append(',').append(rxBufferSize - rxCount);
+
+        double currentFeed = 0;
+        if (busy && !isPaused()) {
+            currentFeed = getSpeed(planner[plannerHead]);
+        }
+        output.append("|FS:").append(Math.round(currentFeed)).append(',')
+                .append(Math.round(spindleSpeed * spindleOverride / 100.0));
+
+        if (wcoCounter > 0) {
+            wcoCounter--;
+        } else {
+            wcoCounter = (busy ? WCO_REFRESH_BUSY_COUNT : WCO_REFRESH_IDLE_COUNT) - 1;
+            output.append("|WCO:0.000,0.000,0.000");
+        }
+
+        if (ovrCounter > 0) {
+            ovrCounter--;
+        } else {
+            ovrCounter = (busy ? OVR_REFRESH_BUSY_COUNT : OVR_REFRESH_IDLE_COUNT) - 1;
+            output.append("|Ov:").append(feedOverride).append(',')
+                    .append(rapidOverride).append(',')
+                    .append(spindleOverride);
+        }
+        output.append(">\r\n");
+    }
+
+    private void appendSettings() {
+        appendLine("$0=10");
+        appendLine("$1=25");
+        appendLine("$2=0");
+        appendLine("$3=0");
+        appendLine("$4=0");
+        appendLine("$5=0");
+        appendLine("$6=0");
+        appendLine("$10=3");
+        appendLine("$11=0.010");
+        appendLine("$12=0.002");
+        appendLine("$13=0");
+        appendLine("$20=0");
+        appendLine("$21=0");
+        appendLine("$22=0");
+        appendLine("$23=0");
+        appendLine("$24=25.000");
+        appendLine("$25=500.000");
+        appendLine("$26=250");
+        appendLine("$27=1.000");
+        appendLine("$30=1000");
+        appendLine("$31=0");
+        appendLine("$32=0");
+        for (int axis = 0; axis < 3; axis++) {
+            appendLine("$10" + axis + "=250.000");
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            output.append("$11").append(axis).append('=');
+            appendFixed(output, rapidRate).append("\r\n");
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            appendLine("$12" + axis + "=10.000");
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            appendLine("$13" + axis + "=200.000");
+        }
+    }
+
+    private void appendParserState() {
+        Code motion = gcodeState.currentMotionMode != null ? gcodeState.currentMotionMode : Code.G0;
+        output.append("[GC:").append(motion)
+                .append(' ').append(gcodeState.offset)
+                .append(' ').append(gcodeState.plane.code)
+                .append(' ').append(gcodeState.units)
+                .append(' ').append(gcodeState.distanceMode)
+                .append(' ').append(gcodeState.feedMode)
+                .append(" M5 M9 T0 F").append(Math.round(gcodeState.speed))
+                .append(" S").append(Math.round(gcodeState.spindleSpeed))
+                .append("]\r\n");
+    }
+
+    private void appendError(int code) {
+        output.append("error:").append(code).append("\r\n");
+    }
+
+    private void appendLine(String line) {
+        output.append(line).append("\r\n");
+    }
+
+    /**
+     * Appends a value with three decimals without going through String.format.
+     */
+    private static StringBuilder appendFixed(StringBuilder sb, double value) {
+        long thousandths = Math.round(value * 1000);
+        if (thousandths < 0) {
+            sb.append('-');
+            thousandths = -thousandths;
+        }
+        long fraction = thousandths % 1000;
+        sb.append(thousandths / 1000).append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /**
+     * @return the current machine position in mm
+     */
+    public Point3d getPosition() {
+        return new Point3d(position);
+    }
+
+    public int getFeedOverride() {
+        return feedOverride;
+    }
+
+    public int getRapidOverride() {
+        return rapidOverride;
+    }
+
+    public int getSpindleOverride() {
+        return spindleOverride;
+    }
+
+    /**
+     * @return the current alarm code or 0 if there is no alarm
+     */
+    public int getAlarm() {
+        return alarm;
+    }
+
+    /**
+     * @return the number of bytes in the RX buffer
+     */
+    public int getRxBufferCount() {
+        return rxCount;
+    }
+
+    /**
+     * @return the number of bytes which were dropped because the RX buffer was full
+     */
+    public long getRxOverflowCount() {
+        return rxOverflowCount;
+    }
+
+    /**
+     * @return the number of blocks in the planner, including the one being executed
+     */
+    public int getPlannerBlockCount() {
+        return plannerCount;
+    }
+
+    /**
+     * @return true if the controller won't do anything until it receives more data
+     */
+    public boolean isIdle() {
+        return plannerCount == 0 && pendingMoves.isEmpty();
+    }
+
+    /**
+     * @return the time the machine has been in motion in microseconds
+     */
+    public long getMachineTimeMicros() {
+        return Math.round(machineTimeMicros);
+    }
+
+    /**
+     * @return the number of lines taken out of the RX buffer
+     */
+    public long getLinesProcessed() {
+        return linesProcessed;
+    }
+
+    /**
+     * @return the number of planner blocks which has been completed
+     */
+    public long getBlocksExecuted() {
+        return blocksExecuted;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.connection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection to a simulated Grbl controller, see {@link GrblSimulator}.
+ *
+ * The simulated time runs at a multiple of the wall clock given by the speed
+ * factor, with an infinite speed factor the moves are completed as soon as
+ * they are planned which measures the throughput of the sender itself.
+ * Responses are delivered from a thread of its own like a serial port would.
+ *
+ * @author wwinder
+ */
+public class GrblSimulatorConnection extends AbstractConnection {
+    private final GrblSimulator simulator;
+    private final double speedFactor;
+
+    private Thread thread;
+    private volatile boolean open;
+
+    // The wall clock time which the simulator has been advanced to.
+    private long lastAdvanceTime;
+    private double remainingMicros;
+
+    /**
+     * Creates a connection to a simulator with the default configuration
+     * running in real time.
+     */
+    public GrblSimulatorConnection() {
+        this(new GrblSimulator(), 1);
+    }
+
+    /**
+     * @param simulator   the simulated controller
+     * @param speedFactor how many times faster than real time the simulator
+     *                    runs, {@link Double#POSITIVE_INFINITY} to run as fast
+     *                    as possible
+     */
+    public GrblSimulatorConnection(GrblSimulator simulator, double speedFactor) {
+        if (!(speedFactor > 0)) {
+            throw new IllegalArgumentException("The speed factor must be positive");
+        }
+        this.simulator = simulator;
+        this.speedFactor = speedFactor;
+    }
+
+    public GrblSimulator getSimulator() {
+        return simulator;
+    }
+
+    @Override
+    public void setUri(String uri) {
+    }
+
+    @Override
+    public synchronized boolean openPort() {
+        if (open) {
+            return true;
+        }
+
+        synchronized (simulator) {
+            lastAdvanceTime = System.nanoTime();
+            remainingMicros = 0;
+            simulator.reset();
+        }
+
+        open = true;
+        thread = new Thread(this::run, "GrblSimulator");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void closePort() throws Exception {
+        open = false;
+        if (thread != null) {
+            synchronized (simulator) {
+                simulator.notifyAll();
+            }
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public List<String> getPortNames() {
+        return Collections.singletonList("simulator");
+    }
+
+    @Override
+    public void sendByteImmediately(byte b) {
+        synchronized (simulator) {
+            advance();
+            simulator.receive(b);
+            simulator.notifyAll();
+        }
+    }
+
+    @Override
+    public void sendStringToComm(String command) {
+        byte[] bytes = command.getBytes(StandardCharsets.US_ASCII);
+        sendBytesToComm(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void sendBytesToComm(byte[] bytes, int offset, int length) {
+        synchronized (simulator) {
+            advance();
+            simulator.receive(bytes, offset, length);
+            simulator.notifyAll();
+        }
+    }
+
+    /**
+     * Advances the simulator to the current time, must be called while
+     * holding the simulator lock.
+     */
+    private void advance() {
+        long now = System.nanoTime();
+        if (Double.isInfinite(speedFactor)) {
+            simulator.advance(Long.MAX_VALUE);
+        } else {
+            // Keep the fractions so that no time is lost at high speed factors.
+            remainingMicros += (now - lastAdvanceTime) * speedFactor / 1000.0;
+            long micros = (long) remainingMicros;
+            remainingMicros -= micros;
+            simulator.advance(micros);
+        }
+        lastAdvanceTime = now;
+    }
+
+    private void run() {
+        while (open) {
+            String output;
+            synchronized (simulator) {
+                advance();
+                output = simulator.takeOutput();
+                if (output.isEmpty()) {
+                    waitForEvent();
+                    continue;
+                }
+            }
+
+            // Deliver the responses without holding the lock, the listener
+            // will most likely send the next command.
+            responseMessageHandler.handleResponse(output);
+        }
+    }
+
+    private void waitForEvent() {
+        try {
+            long micros = simulator.getMicrosUntilNextEvent();
+            if (micros < 0) {
+                simulator.wait();
+            } else {
+                long millis = (long) Math.ceil(micros / speedFactor / 1000.0);
+                simulator.wait(Math.max(1, millis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            open = false;
+        }
+    }
+}
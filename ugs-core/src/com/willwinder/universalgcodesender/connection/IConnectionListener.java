@@ -12,4 +12,19 @@ public interface IConnectionListener {
      * @param response a response message
      */
     void handleResponseMessage(String response);
+
+    /**
+     * Method is invoked when the connection was dropped. The responses to
+     * the data which was sent before are lost with it, even if the connection
+     * is established again.
+     */
+    default void handleConnectionDropped() {
+    }
+
+    /**
+     * Method is invoked when a dropped connection couldn't be established
+     * again and is closed.
+     */
+    default void handleConnectionClosed() {
+    }
 }
@@ -87,6 +87,11 @@ public class JSerialCommConnection extends AbstractConnection implements SerialP
         serialPort.writeBytes(command.getBytes(), command.length());
     }
 
+    @Override
+    public void sendBytesToComm(byte[] bytes, int offset, int length) throws Exception {
+        serialPort.writeBytes(bytes, length, offset);
+    }
+
     @Override
     public boolean isOpen() {
         return serialPort.isOpen();
@@ -117,8 +122,8 @@ public class JSerialCommConnection extends AbstractConnection implements SerialP
         }
 
         int bytesRead = serialPort.readBytes(buffer, Math.min(buffer.length, bytesAvailable));
-        String response = new String(buffer, 0, bytesRead);
-
-        responseMessageHandler.handleResponse(response);
+        if (bytesRead > 0) {
+            responseMessageHandler.handleResponse(buffer, 0, bytesRead);
+        }
     }
 }
@@ -22,6 +22,7 @@ import com.willwinder.universalgcodesender.GrblUtils;
 import com.willwinder.universalgcodesender.gcode.GcodeParser;
 
 import javax.vecmath.Point3d;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
@@ -136,6 +137,21 @@ public class LoopBackConnection extends AbstractConnection {
     public void sendStringToComm(String command) throws Exception {
         this.sent.put(command);
     }
+
+    @Override
+    public void sendBytesToComm(byte[] bytes, int offset, int length) throws Exception {
+        // Respond to each command in the batch.
+        int start = offset;
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] == '\n') {
+                sendStringToComm(new String(bytes, start, i - start + 1, StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+        }
+        if (start < offset + length) {
+            sendStringToComm(new String(bytes, start, offset + length - start, StandardCharsets.US_ASCII));
+        }
+    }
         
     @Override
     public void sendByteImmediately(byte b) throws Exception {
@@ -18,6 +18,7 @@
  */
 package com.willwinder.universalgcodesender.connection;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -26,19 +27,23 @@ import java.util.Set;
  * until we have a complete line. It will then attempt to dispatch that
  * data to a communicator.
  *
+ * The data is framed as bytes, only the bytes which were added since the
+ * last call are scanned for a line terminator. Short lines such as "ok" are
+ * taken from a small cache of strings instead of being created every time.
+ *
  * @author wwinder
  * @author Joacim Breiler
  */
 public class ResponseMessageHandler {
+    private static final int MAX_CACHED_LINE_LENGTH = 32;
+    private static final int LINE_CACHE_SIZE = 64;
 
-    private final StringBuilder inputBuffer;
-    private Set<IConnectionListener> listeners = new HashSet<>();
-
-    public ResponseMessageHandler() {
-        inputBuffer = new StringBuilder();
-    }
-
+    // The bytes of the current line which hasn't been terminated yet.
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
 
+    private final String[] lineCache = new String[LINE_CACHE_SIZE];
+    private Set<IConnectionListener> listeners = new HashSet<>();
 
     /**
      * Appends the response data to a buffer, then splits out response rows and sends them
@@ -47,34 +52,127 @@ public class ResponseMessageHandler {
      * @param response a complete or part of a response message
      */
     public void handleResponse(String response) {
-        inputBuffer.append(response);
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        handleResponse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends the response data to a buffer, then splits out response rows and sends them
+     * to the communicator using the {@link IConnectionListener#handleResponseMessage(String)}.
+     * The bytes are copied so the buffer may be reused once this returns.
+     *
+     * @param bytes  buffer with a complete or part of a response message
+     * @param offset index of the first byte of the response
+     * @param length number of bytes in the response
+     */
+    public void handleResponse(byte[] bytes, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] == '\n') {
+                if (lineLength == 0) {
+                    // The whole line is in the input, there's no need to copy it.
+                    notifyListeners(createLine(bytes, start, i));
+                } else {
+                    append(bytes, start, i - start);
+                    notifyListeners(createLine(lineBuffer, 0, lineLength));
+                    lineLength = 0;
+                }
+                start = i + 1;
+            }
+        }
 
-        // Only continue if there is a line terminator and split out command(response).
-        if (!inputBuffer.toString().contains("\n")) {
+        // Keep the last part because it didn't have a terminator.
+        append(bytes, start, end - start);
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
             return;
         }
+        if (lineLength + length > lineBuffer.length) {
+            byte[] buffer = new byte[Math.max(lineBuffer.length * 2, lineLength + length)];
+            System.arraycopy(lineBuffer, 0, buffer, 0, lineLength);
+            lineBuffer = buffer;
+        }
+        System.arraycopy(bytes, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Creates the string for a line without its "\r\n" or "\n" terminator.
+     */
+    private String createLine(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
 
-        // Split with the -1 option will give an empty string at
-        // the end if there is a terminator there as well.
-        String[] messages = inputBuffer.toString().split("\\r?\\n", -1);
-        for (int i = 0; i < messages.length; i++) {
-            // Make sure this isn't the last command.
-            if ((i + 1) < messages.length) {
+        int length = end - start;
+        if (length > MAX_CACHED_LINE_LENGTH) {
+            return decode(bytes, start, length);
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
 
-                notifyListeners(messages[i]);
+        int index = (hash ^ (hash >>> 16)) & (LINE_CACHE_SIZE - 1);
+        String cached = lineCache[index];
+        if (cached != null && matches(cached, bytes, start, length)) {
+            return cached;
+        }
+
+        String line = decode(bytes, start, length);
+        lineCache[index] = line;
+        return line;
+    }
+
+    private static boolean matches(String cached, byte[] bytes, int start, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-                // Append last command to input buffer because it didn't have a terminator.
-            } else {
-                inputBuffer.setLength(0);
-                inputBuffer.append(messages[i]);
+    private static String decode(byte[] bytes, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, start, length, StandardCharsets.UTF_8);
             }
         }
+        return new String(bytes, start, length, StandardCharsets.US_ASCII);
     }
 
     public void notifyListeners(String message) {
-        listeners.forEach(listener -> {
+        for (IConnectionListener listener : listeners) {
             listener.handleResponseMessage(message);
-        });
+        }
+    }
+
+    /**
+     * Notifies the listeners that the connection was dropped, the part of a
+     * line which was received before is discarded.
+     */
+    public void notifyConnectionDropped() {
+        lineLength = 0;
+        for (IConnectionListener listener : listeners) {
+            listener.handleConnectionDropped();
+        }
+    }
+
+    /**
+     * Notifies the listeners that the connection was closed after it was dropped.
+     */
+    public void notifyConnectionClosed() {
+        for (IConnectionListener listener : listeners) {
+            listener.handleConnectionClosed();
+        }
     }
 
     public void addListener(IConnectionListener connectionListener) {
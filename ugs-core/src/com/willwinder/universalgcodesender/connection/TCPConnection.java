@@ -18,12 +18,13 @@
 */
 package com.willwinder.universalgcodesender.connection;
 
-import java.io.OutputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.BufferedReader;
 import java.net.*;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -33,18 +34,30 @@ import java.util.ArrayList;
 /**
  * A TCP connection object implementing the connection API.
  *
+ * Responses are read with a blocking SocketChannel so that the reply thread
+ * sleeps until data arrives, and Nagle's algorithm is disabled so that
+ * real-time commands are sent right away. If the remote host drops the
+ * connection the listeners are notified, since the responses to anything in
+ * flight are lost, and a few attempts are made to reconnect before the
+ * connection is closed.
+ *
  * @author Adam Carmicahel <carneeki@carneeki.net>
  */
 public class TCPConnection extends AbstractConnection implements Runnable, Connection {
+	private static final Logger logger = Logger.getLogger(TCPConnection.class.getName());
+
+	private static final int CONNECT_TIMEOUT_MS = 5000;
+	private static final int RECONNECT_ATTEMPTS = 5;
+	private static final int RECONNECT_DELAY_MS = 1000;
+	private static final int READ_BUFFER_SIZE = 1024;
 
 	private String host;
 	private int port;
 
 	// General variables
-	private Socket client;
-	private BufferedReader bufIn;
-	private OutputStream bufOut;
-	private InputStreamReader inStream;
+	private volatile SocketChannel client;
+	private volatile boolean closing;
+	private final Object writeLock = new Object();
 	private Thread replyThread;
 
 	@Override
@@ -66,29 +79,36 @@ public class TCPConnection extends AbstractConnection implements Runnable, Conne
 
 	@Override
 	public boolean openPort() throws Exception {
+		closing = false;
+		client = connect();
+
+		// start thread so replies can be handled
+		replyThread = new Thread(this, "tcp-connection-" + host + ":" + port);
+		replyThread.setDaemon(true);
+		replyThread.start();
+
+		return client.isConnected();
+	}
+
+	private SocketChannel connect() throws IOException {
+		SocketChannel channel = SocketChannel.open();
 		try {
-			client = new Socket(host, port);
+			channel.socket().setTcpNoDelay(true);
+			channel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
 		} catch( BindException e) {
+			channel.close();
 			throw new ConnectionException("Could not bind a local port.", e);
 		} catch( NoRouteToHostException e) {
+			channel.close();
 			throw new ConnectionException("No route to host. The remote host may not be running, blocked by a firewall, or disconnected.", e);
-		} catch( ConnectException e) {
+		} catch( ConnectException | SocketTimeoutException e) {
+			channel.close();
 			throw new ConnectionException("The port is unreachable on the remote host. The server may not be running, or blocked by a firewall.", e);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
 		}
-		
-		if (client == null) {
-			throw new ConnectionException("Socket unable to connect.");
-		}
-
-		bufOut = client.getOutputStream();
-		inStream = new InputStreamReader(client.getInputStream());
-		bufIn = new BufferedReader(inStream);
-
-		// start thread so replies can be handled
-		replyThread = new Thread(this);
-		replyThread.start();
-
-		return client.isConnected();
+		return channel;
 	}
 
 	/**
@@ -97,12 +117,14 @@ public class TCPConnection extends AbstractConnection implements Runnable, Conne
 	 */
 	@Override
 	public void closePort() throws Exception {
-		if (client != null) {
+		closing = true;
+		SocketChannel channel = client;
+		if (channel != null) {
 			try {
 				replyThread.interrupt();
-				client.close();
-			} catch (SocketException e) {
-				// ignore socketexception if connection was broken early
+				channel.close();
+			} catch (IOException e) {
+				// ignore exception if connection was broken early
 			} finally {
 				client = null;
 			}
@@ -111,7 +133,8 @@ public class TCPConnection extends AbstractConnection implements Runnable, Conne
 
 	@Override
 	public boolean isOpen() {
-		return (client != null) && (!client.isClosed());
+		SocketChannel channel = client;
+		return (channel != null) && channel.isOpen();
 	}
 
 	/**
@@ -119,30 +142,39 @@ public class TCPConnection extends AbstractConnection implements Runnable, Conne
 	 * @param command Command to be sent to remote host.
 	 */
 	public void sendStringToComm(String command) throws Exception {
-		try {
-			bufOut.write(command.getBytes());
-			bufOut.flush();
-		} catch (SocketException e) {
-			closePort(); // very likely we got disconnected, attempt to disconnect gracefully
-			throw e;
-		} catch (IOException e) {
-			closePort(); // very likely we got disconnected, attempt to disconnect gracefully
-			throw e;
-		}
+		write(ByteBuffer.wrap(command.getBytes()));
+	}
+
+	/**
+	 * Sends encoded commands to remote host.
+	 */
+	@Override
+	public void sendBytesToComm(byte[] bytes, int offset, int length) throws Exception {
+		write(ByteBuffer.wrap(bytes, offset, length));
 	}
 
 	/**
 	 * Immediately sends a byte, used for real-time commands.
 	 */
 	public void sendByteImmediately(byte b) throws Exception {
+		write(ByteBuffer.wrap(new byte[]{b}));
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		SocketChannel channel = client;
+		if (channel == null) {
+			throw new SocketException("Not connected to " + host + ":" + port);
+		}
+
 		try {
-			bufOut.write(b);
-			bufOut.flush();
-		} catch (SocketException e) {
-			closePort(); // very likely we got disconnected, attempt to disconnect gracefully
-			throw e;
+			synchronized (writeLock) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
 		} catch (IOException e) {
-			closePort(); // very likely we got disconnected, attempt to disconnect gracefully
+			// very likely we got disconnected, the reply thread will try to reconnect
+			channel.close();
 			throw e;
 		}
 	}
@@ -151,23 +183,79 @@ public class TCPConnection extends AbstractConnection implements Runnable, Conne
 	 * Thread to accept data from remote host, and pass it to responseHandler
 	 */
 	public void run() {
-		String resp;
-		while(!Thread.interrupted() && !client.isClosed())
-		{
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		while (!closing) {
+			SocketChannel channel = client;
+			if (channel == null) {
+				return;
+			}
+
 			try {
-				if(inStream.ready() && (resp = bufIn.readLine()) != null) {
-					responseMessageHandler.handleResponse(resp + "\n");
+				// Blocks until there is data, -1 means the remote host closed the connection.
+				int read = channel.read(buffer);
+				if (read < 0) {
+					throw new SocketException("Connection closed by remote host");
+				}
+
+				responseMessageHandler.handleResponse(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			} catch (AsynchronousCloseException e) {
+				if (closing) {
+					return;
+				}
+				// Closed after a failed write.
+				if (!reconnect(channel)) {
+					return;
 				}
-			} catch (SocketException e) {
-				e.printStackTrace();
-				return; // terminate thread if disconnected
-						//TODO: at some point, reconnecting should be considered
 			} catch (IOException e) {
-				e.printStackTrace();
-				return; // terminate thread if disconnected
-						//TODO: at some point, reconnecting should be considered
+				if (closing) {
+					return;
+				}
+				logger.log(Level.WARNING, "Lost connection to " + host + ":" + port, e);
+				if (!reconnect(channel)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tries to connect to the remote host again after the connection was dropped.
+	 *
+	 * @return true if the connection was established again.
+	 */
+	private boolean reconnect(SocketChannel dropped) {
+		try {
+			dropped.close();
+		} catch (IOException ignored) {
+			// Already closed
+		}
+		responseMessageHandler.notifyConnectionDropped();
+
+		for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS && !closing; attempt++) {
+			try {
+				Thread.sleep(RECONNECT_DELAY_MS);
+				SocketChannel channel = connect();
+				if (closing) {
+					channel.close();
+					return false;
+				}
+				client = channel;
+				logger.info("Reconnected to " + host + ":" + port);
+				return true;
+			} catch (InterruptedException e) {
+				return false;
+			} catch (IOException | ConnectionException e) {
+				logger.log(Level.INFO, "Reconnect attempt " + attempt + " to " + host + ":" + port + " failed: " + e.getMessage());
 			}
 		}
+
+		logger.warning("Couldn't reconnect to " + host + ":" + port);
+		client = null;
+		if (!closing) {
+			responseMessageHandler.notifyConnectionClosed();
+		}
+		return false;
 	}
 
 	/**
@@ -18,8 +18,10 @@
  */
 package com.willwinder.universalgcodesender.gcode;
 
-import com.google.common.collect.Iterables;
 import com.willwinder.universalgcodesender.gcode.processors.CommandProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.CommandProcessorAdapter;
+import com.willwinder.universalgcodesender.gcode.processors.MotionProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.ProcessedCommand;
 import com.willwinder.universalgcodesender.gcode.processors.Stats;
 import com.willwinder.universalgcodesender.gcode.util.Code;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
@@ -29,7 +31,6 @@ import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.model.Position;
 import com.willwinder.universalgcodesender.model.UnitUtils;
 import com.willwinder.universalgcodesender.types.PointSegment;
-import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
 import java.util.logging.Logger;
@@ -57,6 +58,9 @@ public class GcodeParser implements IGcodeParser {
 
     private final List<CommandProcessor> processors = new ArrayList<>();
 
+    // The processors as stages of the parsed preprocessing pipeline
+    private final List<MotionProcessor> stages = new ArrayList<>();
+
     private Stats statsProcessor;
 
     /**
@@ -106,6 +110,15 @@ public class GcodeParser implements IGcodeParser {
     @Override
     public void addCommandProcessor(CommandProcessor p) {
         this.processors.add(p);
+        this.stages.add(CommandProcessorAdapter.of(p));
+    }
+
+    /**
+     * @return true if every command processor is stateless, meaning that
+     * preprocessCommand can be called for different lines concurrently.
+     */
+    public boolean hasStatelessProcessors() {
+        return this.processors.stream().allMatch(CommandProcessor::isStateless);
     }
 
     /**
@@ -114,16 +127,18 @@ public class GcodeParser implements IGcodeParser {
     @Override
     public void resetCommandProcessors() {
         this.processors.clear();
+        this.stages.clear();
         this.statsProcessor = new Stats();
     }
 
     /**
-     * Resets the current state.
+     * Resets the current state and the state kept by the command processors.
      */
     public void reset() {
         this.statsProcessor = new Stats();
         this.state.currentPoint = new Position();
         this.state.commandNumber = -1;
+        this.processors.forEach(CommandProcessor::reset);
     }
     
     /**
@@ -193,64 +208,89 @@ public class GcodeParser implements IGcodeParser {
     public static List<GcodeMeta> processCommand(String command, int line, final GcodeState inputState,
             boolean includeNonMotionStates)
             throws GcodeParserException {
-        List<String> args = GcodePreprocessorUtils.splitCommand(command);
+        ParsedCommand args = ParsedCommand.parse(command);
         if (args.isEmpty()) return null;
 
         // Initialize with original state
         GcodeState state = inputState.copy();
 
         state.commandNumber = line;
-        
-        // handle M codes.
-        //codes = GcodePreprocessorUtils.parseCodes(args, 'M');
-        //handleMCode(for each codes);
-
-        List<String> fCodes = GcodePreprocessorUtils.parseCodes(args, 'F');
-        if (!fCodes.isEmpty()) {
-            try {
-                state.speed = Double.parseDouble(Iterables.getOnlyElement(fCodes));
-            } catch (IllegalArgumentException e) {
+
+        int fIndex = args.indexOf('F');
+        if (fIndex >= 0) {
+            if (args.count('F') > 1 || Double.isNaN(args.getValue(fIndex))) {
                 throw new GcodeParserException("Multiple F-codes on one line.");
             }
+            state.speed = args.getValue(fIndex);
         }
 
-        List<String> sCodes = GcodePreprocessorUtils.parseCodes(args, 'S');
-        if (!sCodes.isEmpty()) {
-            try {
-                state.spindleSpeed = Double.parseDouble(Iterables.getOnlyElement(sCodes));
-            } catch (IllegalArgumentException e) {
+        int sIndex = args.indexOf('S');
+        if (sIndex >= 0) {
+            if (args.count('S') > 1 || Double.isNaN(args.getValue(sIndex))) {
                 throw new GcodeParserException("Multiple S-codes on one line.");
             }
+            state.spindleSpeed = args.getValue(sIndex);
         }
         
+        // Keep track of the spindle and coolant from the M codes.
+        for (int i = 0; i < args.size(); i++) {
+            if (args.getLetter(i) == 'M' && !args.isComment(i)) {
+                handleMCode(Code.lookupCode('M', args.getValue(i)), state);
+            }
+        }
+
         // Gather G codes.
-        Set<Code> gCodes = GcodePreprocessorUtils.getGCodes(args);
+        EnumSet<Code> gCodes = GcodePreprocessorUtils.getGCodes(args);
         
-        boolean hasAxisWords = GcodePreprocessorUtils.hasAxisWords(args);
+        boolean hasAxisWords = args.hasAxisWords();
 
         // Error to mix group 1 (Motion) and certain group 0 (NonModal) codes (G10, G28, G30, G92)
-        Collection<Code> motionCodes = gCodes.stream()
-                .filter(Code::consumesMotion)
-                .collect(Collectors.toList());
+        int motionCodes = 0;
+        for (Code code : gCodes) {
+            if (code.consumesMotion()) {
+                motionCodes++;
+            }
+        }
 
         // 1 motion code per line.
-        if (motionCodes.size() > 1) {
+        if (motionCodes > 1) {
             throw new GcodeParserException(Localization.getString("parser.gcode.multiple-axis-commands")
-                    + ": " + StringUtils.join(motionCodes, ", "));
+                    + ": " + gCodes.stream()
+                            .filter(Code::consumesMotion)
+                            .map(Code::toString)
+                            .collect(Collectors.joining(", ")));
         }
 
         // If there are axis words and nothing to use them, add the currentMotionMode.
-        if (hasAxisWords && motionCodes.isEmpty() && state.currentMotionMode != null) {
-            gCodes.add(state.currentMotionMode);
+        Code implicitMotion = null;
+        if (hasAxisWords && motionCodes == 0 && state.currentMotionMode != null) {
+            implicitMotion = state.currentMotionMode;
         }
 
-        // Apply each code to the state.
+        // Apply each code to the state in the order they appear on the line,
+        // codes are removed from the set once they have been applied.
         List<GcodeMeta> results = new ArrayList<>();
-        for (Code i : gCodes) {
+        for (int word = 0; word <= args.size(); word++) {
+            Code i;
+            if (word < args.size()) {
+                i = GcodePreprocessorUtils.getGCode(args, word);
+                if (i == null || !gCodes.remove(i)) {
+                    continue;
+                }
+            } else if (implicitMotion != null) {
+                i = implicitMotion;
+            } else {
+                break;
+            }
+
             if (i == UNKNOWN) {
                 logger.warning("An unknown gcode command was detected in: " + command);
             } else {
                 GcodeMeta meta = handleGCode(i, args, line, state);
+                // Only snapshot the state if another code will modify it, the
+                // last code can keep the state which was copied for this line.
+                boolean hasNext = word < args.size() && (!gCodes.isEmpty() || implicitMotion != null);
+                meta.state = hasNext ? state.copy() : state;
                 meta.command = command;
                 // Commands like 'G21' don't return a point segment.
                 if (meta.point != null) {
@@ -272,6 +312,29 @@ public class GcodeParser implements IGcodeParser {
         return results;
     }
 
+    private static void handleMCode(Code code, GcodeState state) {
+        switch (code) {
+            case M3:
+            case M4:
+            case M5:
+                state.spindle = code;
+                break;
+            case M7:
+            case M8:
+            case M9:
+                state.coolant = code;
+                break;
+            case M2:
+            case M30:
+                // The end of the program turns off the spindle and coolant.
+                state.spindle = M5;
+                state.coolant = M9;
+                break;
+            default:
+                break;
+        }
+    }
+
     private static PointSegment addProbePointSegment(Position nextPoint, boolean fastTraverse, int line, GcodeState state) {
         PointSegment ps = addLinearPointSegment(nextPoint, fastTraverse, line, state);
         ps.setIsProbe(true);
@@ -309,7 +372,7 @@ public class GcodeParser implements IGcodeParser {
     /**
      * Create a PointSegment representing the arc command.
      */
-    private static PointSegment addArcPointSegment(Position nextPoint, boolean clockwise, List<String> args, int line, GcodeState state) {
+    private static PointSegment addArcPointSegment(Position nextPoint, boolean clockwise, ParsedCommand args, int line, GcodeState state) {
         if (nextPoint == null) {
             return null;
         }
@@ -321,7 +384,7 @@ public class GcodeParser implements IGcodeParser {
                 GcodePreprocessorUtils.updateCenterWithCommand(
                         args, state.currentPoint, nextPoint, state.inAbsoluteIJKMode, clockwise, plane);
 
-        double radius = GcodePreprocessorUtils.parseCoord(args, 'R');
+        double radius = args.getValue('R');
 
         // Calculate radius if necessary, according to the current G17/18/19 Plane
         if (Double.isNaN(radius)) {
@@ -346,9 +409,9 @@ public class GcodeParser implements IGcodeParser {
     /**
      * Branch parser to handle specific gcode command.
      * 
-     * A copy of the state object should go in the resulting GcodeMeta object.
+     * The caller is responsible for putting a snapshot of the state in the resulting GcodeMeta object.
      */
-    private static GcodeMeta handleGCode(final Code code, List<String> args, int line, GcodeState state)
+    private static GcodeMeta handleGCode(final Code code, ParsedCommand args, int line, GcodeState state)
             throws GcodeParserException {
         GcodeMeta meta = new GcodeMeta();
 
@@ -460,7 +523,6 @@ public class GcodeParser implements IGcodeParser {
         if (code.getType() == Motion) {
             state.currentMotionMode = code;
         }
-        meta.state = state.copy();
         return meta;
     }
 
@@ -476,45 +538,102 @@ public class GcodeParser implements IGcodeParser {
      * This is also needed for some very particular processing in GUIBackend which
      * gathers comments as a separate step outside the GcodeParser.
      * 
-     * TODO 2: Move this processing logic into another class, or GcodeParserUtils along with testState.
+     * TODO 2: Move this processing logic into another class, or GcodeParserUtils.
      */
     @Override
     public List<String> preprocessCommand(String command, final GcodeState initialState) throws GcodeParserException {
-        List<String> ret = new ArrayList<>();
-        ret.add(command);
+        List<ProcessedCommand> commands = new ArrayList<>();
+        commands.add(ProcessedCommand.fromText(command, initialState));
+        List<String> ret = format(process(commands, initialState, false));
+        statsProcessor.addPreprocessedCommands(1, ret.size());
+        return ret;
+    }
+
+    /**
+     * Returns the commands which processors are still holding back, for
+     * example to merge them with the commands after them. Call this after
+     * preprocessing the last command of a program.
+     *
+     * @param state the state of the program after the last command.
+     */
+    @Override
+    public List<String> flushCommandProcessors(final GcodeState state) throws GcodeParserException {
+        List<String> ret = format(process(new ArrayList<>(), state, true));
+        statsProcessor.addPreprocessedCommands(0, ret.size());
+        return ret;
+    }
+
+    /**
+     * Passes the commands through every processor.
+     *
+     * @param flush true to add the commands held back by each processor.
+     */
+    private List<ProcessedCommand> process(List<ProcessedCommand> commands, final GcodeState initialState,
+            boolean flush) throws GcodeParserException {
         GcodeState tempState;
-        for (CommandProcessor p : processors) {
+        for (MotionProcessor p : stages) {
             // Reset point segments after each pass. The final pass is what we will return.
-            tempState = initialState.copy();
-            // Process each command in the list and add results to the end.
-            // Don't re-process the results with the same preprocessor.
-            for (int i = ret.size(); i > 0; i--) {
-                // The arc expander changes the lastGcodeCommand which causes the following to fail:
-                // G2 Y-0.7 J-14.7
-                // Y28.7 J14.7 (this line treated as a G1)
-                tempState.currentMotionMode = initialState.currentMotionMode;
-                List<String> intermediate = p.processCommand(ret.remove(0), tempState);
+            // Neither the initial state nor the states of the commands are modified.
+            tempState = initialState;
+            List<ProcessedCommand> results = new ArrayList<>();
+            // Process each command in the list, commands that pass through
+            // unchanged keep their parsed data for the next processor.
+            for (ProcessedCommand c : commands) {
+                if (c.isDeferred()) {
+                    // Held back by an earlier processor, it continues from its own state.
+                    tempState = c.getState();
+                } else if (tempState.currentMotionMode != initialState.currentMotionMode) {
+                    // The arc expander changes the lastGcodeCommand which causes the following to fail:
+                    // G2 Y-0.7 J-14.7
+                    // Y28.7 J14.7 (this line treated as a G1)
+                    // tempState is the end state of the previous command, so change a copy.
+                    tempState = tempState.copy();
+                    tempState.currentMotionMode = initialState.currentMotionMode;
+                }
+                int first = results.size();
+                p.processCommand(c.withState(tempState), results);
 
                 // process results to update the state and collect PointSegments
-                for(String c : intermediate) {
-                    tempState = testState(c, tempState);
+                for (int i = first; i < results.size(); i++) {
+                    ProcessedCommand result = results.get(i);
+                    if (c.isDeferred()) {
+                        result = result.deferred();
+                    }
+                    if (!result.isDeferred()) {
+                        result = result.withState(tempState);
+                    }
+                    results.set(i, result);
+                    tempState = result.getEndState();
                 }
-
-                ret.addAll(intermediate);
             }
+            if (flush) {
+                p.flush(results);
+            }
+            commands = results;
         }
+        return commands;
+    }
 
+    /**
+     * Generated commands are only formatted once all processors are done.
+     */
+    private static List<String> format(List<ProcessedCommand> commands) {
+        List<String> ret = new ArrayList<>(commands.size());
+        for (ProcessedCommand c : commands) {
+            ret.add(c.getCommand());
+        }
         return ret;
     }
 
     /**
-     * Helper to statically process the next step in a program without modifying the parser.
+     * Helper to statically apply a command to a state, unlike ProcessedCommand.getEndState this
+     * also includes commands without motion such as "F100" or "G21".
+     *
+     * @return the state after the command, or the input state if it didn't change.
      */
-    static private GcodeState testState(String command, GcodeState state) throws GcodeParserException {
+    public static GcodeState nextState(String command, int line, GcodeState state) throws GcodeParserException {
         GcodeState ret = state;
-
-        // Add command get meta doesn't update the state, so we need to do that manually.
-        Collection<GcodeMeta> metaObjects = processCommand(command, 0, state);
+        Collection<GcodeMeta> metaObjects = processCommand(command, line, state, true);
         if (metaObjects != null) {
             for (GcodeMeta c : metaObjects) {
                 if (c.state != null) {
@@ -522,7 +641,6 @@ public class GcodeParser implements IGcodeParser {
                 }
             }
         }
-
         return ret;
     }
 }
@@ -19,8 +19,8 @@
 package com.willwinder.universalgcodesender.gcode;
 
 import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.DecimalFormatter;
 import com.willwinder.universalgcodesender.gcode.util.PlaneFormatter;
-import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.model.Position;
 
 import java.text.DecimalFormat;
@@ -43,9 +43,11 @@ public class GcodePreprocessorUtils {
     private static final String EMPTY = "";
     private static final Pattern COMMENTPARSE = Pattern.compile("(?<=\\()[^()]*|(?<=;).*|%");
 
-    private static int decimalLength = -1;
-    private static Pattern decimalPattern;
-    private static DecimalFormat decimalFormatter;
+    // The format used for generated lines unless another one is given.
+    private static final DecimalFormatter DEFAULT_FORMATTER = new DecimalFormatter(4);
+
+    // Formatters are thread safe, the last one used for truncating decimals is reused.
+    private static volatile DecimalFormatter truncationFormatter = new DecimalFormatter(4);
 
     /**
      * Searches the command string for an 'f' and replaces the speed value 
@@ -94,51 +96,64 @@ public class GcodePreprocessorUtils {
         return comment;
     }
     
+    /**
+     * Rounds the numbers in a command with more than the given number of
+     * decimals, for example "X1.23456" becomes "X1.2346" with four decimals.
+     * Numbers without a digit before the decimal point are not changed.
+     */
     static public String truncateDecimals(int length, String command) {
-        if (length != decimalLength) {
+        DecimalFormatter formatter = truncationFormatter;
+        if (formatter.getMaximumFractionDigits() != length) {
             //Only build the decimal formatter if the truncation length has changed.
-            updateDecimalFormatter(length);
-
+            formatter = new DecimalFormatter(length);
+            truncationFormatter = formatter;
         }
-        Matcher matcher = decimalPattern.matcher(command);
 
-        // Build up the truncated command.
-        double d;
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            d = Double.parseDouble(matcher.group());
-            matcher.appendReplacement(sb, decimalFormatter.format(d));
-        }
-        matcher.appendTail(sb);
-        
-        // Return new command.
-        return sb.toString();
-    }
-
-    private static void updateDecimalFormatter(int length) {
-        StringBuilder df = new StringBuilder();
+        StringBuilder sb = null;
+        int copied = 0;
+        int i = 0;
+        int commandLength = command.length();
+        while (i < commandLength) {
+            if (!isDigit(command.charAt(i))) {
+                i++;
+                continue;
+            }
 
-        // Build up the decimal formatter.
-        df.append("#");
+            // Find a number with digits, a decimal point and more decimals than the length.
+            int start = i;
+            while (i < commandLength && isDigit(command.charAt(i))) {
+                i++;
+            }
+            if (i + 1 >= commandLength || command.charAt(i) != '.' || !isDigit(command.charAt(i + 1))) {
+                continue;
+            }
+            int end = i + 1;
+            while (end < commandLength && isDigit(command.charAt(end))) {
+                end++;
+            }
+            if (end - i - 1 <= length) {
+                // The decimals may still start the next number, as in "1.2.34567"
+                i++;
+                continue;
+            }
 
-        if (length != 0) {
-            df.append(".");
-        }
-        for (int i = 0; i < length; i++) {
-            df.append('#');
+            if (sb == null) {
+                sb = new StringBuilder(commandLength);
+            }
+            sb.append(command, copied, start);
+            formatter.append(sb, Double.parseDouble(command.substring(start, end)));
+            copied = end;
+            i = end;
         }
 
-        decimalFormatter = new DecimalFormat(df.toString(), Localization.dfs);
-
-        // Build up the regular expression.
-        df = new StringBuilder();
-        df.append("\\d+\\.\\d");
-        for (int i = 0; i < length; i++) {
-            df.append("\\d");
+        if (sb == null) {
+            return command;
         }
-        df.append('+');
-        decimalPattern = Pattern.compile(df.toString());
-        decimalLength = length;
+        return sb.append(command, copied, commandLength).toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     static public List<String> parseCodes(List<String> args, char code) {
@@ -170,6 +185,22 @@ public class GcodePreprocessorUtils {
         return updatePointWithCommand(initial, x, y, z, absoluteMode);
     }
 
+    /**
+     * Update a point given the arguments of a command, using a pre-parsed command.
+     */
+    static public Position updatePointWithCommand(ParsedCommand command, Position initial, boolean absoluteMode) {
+
+        double x = command.getValue('X');
+        double y = command.getValue('Y');
+        double z = command.getValue('Z');
+
+        if (Double.isNaN(x) && Double.isNaN(y) && Double.isNaN(z)) {
+            return null;
+        }
+
+        return updatePointWithCommand(initial, x, y, z, absoluteMode);
+    }
+
     /**
      * Update a point given the new coordinates.
      */
@@ -213,7 +244,35 @@ public class GcodePreprocessorUtils {
         double j      = parseCoord(commandArgs, 'J');
         double k      = parseCoord(commandArgs, 'K');
         double radius = parseCoord(commandArgs, 'R');
-        
+
+        return updateCenterWithCommand(i, j, k, radius, initial, nextPoint, absoluteIJKMode, clockwise, plane);
+    }
+
+    static public Position updateCenterWithCommand(
+            ParsedCommand command,
+            Position initial,
+            Position nextPoint,
+            boolean absoluteIJKMode,
+            boolean clockwise,
+            PlaneFormatter plane) {
+        double i      = command.getValue('I');
+        double j      = command.getValue('J');
+        double k      = command.getValue('K');
+        double radius = command.getValue('R');
+
+        return updateCenterWithCommand(i, j, k, radius, initial, nextPoint, absoluteIJKMode, clockwise, plane);
+    }
+
+    static private Position updateCenterWithCommand(
+            double i,
+            double j,
+            double k,
+            double radius,
+            Position initial,
+            Position nextPoint,
+            boolean absoluteIJKMode,
+            boolean clockwise,
+            PlaneFormatter plane) {
         if (Double.isNaN(i) && Double.isNaN(j) && Double.isNaN(k)) {
             return GcodePreprocessorUtils.convertRToCenter(
                             initial, nextPoint, radius, absoluteIJKMode,
@@ -225,9 +284,8 @@ public class GcodePreprocessorUtils {
     }
 
     static public String generateLineFromPoints(final Code command, final Position start, final Position end, final boolean absoluteMode, DecimalFormat formatter) {
-        DecimalFormat df = formatter;
-        if (df == null) {
-            df = new DecimalFormat("0.####", Localization.dfs);
+        if (formatter == null) {
+            return generateLineFromPoints(command, start, end, absoluteMode, DEFAULT_FORMATTER);
         }
         
         StringBuilder sb = new StringBuilder();
@@ -236,113 +294,91 @@ public class GcodePreprocessorUtils {
         if (absoluteMode) {
             if (!Double.isNaN(end.x)) {
                 sb.append("X");
-                sb.append(df.format(end.x));
+                sb.append(formatter.format(end.x));
             }
             if (!Double.isNaN(end.y)) {
                 sb.append("Y");
-                sb.append(df.format(end.y));
+                sb.append(formatter.format(end.y));
             }
             if (!Double.isNaN(end.z)) {
                 sb.append("Z");
-                sb.append(df.format(end.z));
+                sb.append(formatter.format(end.z));
             }
         } else { // calculate offsets.
             if (!Double.isNaN(end.x)) {
                 sb.append("X");
-                sb.append(df.format(end.x-start.x));
+                sb.append(formatter.format(end.x-start.x));
             }
             if (!Double.isNaN(end.y)) {
                 sb.append("Y");
-                sb.append(df.format(end.y-start.x));
+                sb.append(formatter.format(end.y-start.x));
             }
             if (!Double.isNaN(end.z)) {
                 sb.append("Z");
-                sb.append(df.format(end.z-start.x));
+                sb.append(formatter.format(end.z-start.x));
             }
         }
         
         return sb.toString();
     }
-    
+
     /**
-     * Splits a gcode command by each word/argument, doesn't care about spaces.
-     * This command is about the same speed as the string.split(" ") command,
-     * but might be a little faster using precompiled regex.
+     * Same as {@link #generateLineFromPoints(Code, Position, Position, boolean, DecimalFormat)}
+     * but with a formatter which writes the numbers directly into the line.
+     *
+     * @param formatter the format of the coordinates, or null for four decimals.
      */
-    static public List<String> splitCommand(String command) {
-        // Special handling for GRBL system commands which will not be splitted
-        if(command.startsWith("$")) {
-            return Collections.singletonList(command);
-        }
+    static public String generateLineFromPoints(final Code command, final Position start, final Position end, final boolean absoluteMode, DecimalFormatter formatter) {
+        return appendLineFromPoints(new StringBuilder(48), command, start, end, absoluteMode, formatter).toString();
+    }
 
-        List<String> l = new ArrayList<>();
-        boolean readNumeric = false;
-        boolean readLineComment = false;
-        boolean readBlockComment = false;
-        StringBuilder sb = new StringBuilder();
-        
-        for (int i = 0; i < command.length(); i++){
-            char c = command.charAt(i);
+    /**
+     * Appends a line from the start to the end point to a builder, which can
+     * be reused between lines.
+     *
+     * @return the builder.
+     */
+    static public StringBuilder appendLineFromPoints(StringBuilder sb, final Code command, final Position start, final Position end, final boolean absoluteMode, DecimalFormatter formatter) {
+        DecimalFormatter df = formatter == null ? DEFAULT_FORMATTER : formatter;
+        sb.append(command);
 
-            if (c == '(' && !readLineComment && !readBlockComment) {
-                if( sb.length() > 0 ){
-                    l.add(sb.toString());
-                    sb = new StringBuilder();
-                }
-                sb.append(c);
-                readBlockComment = true;
-                continue;
-            } else if (readBlockComment && c == ')') {
-                readBlockComment = false;
-                sb.append(c);
-                l.add(sb.toString());
-                sb = new StringBuilder();
-                continue;
-            } else if (c == ';' && !readLineComment && !readBlockComment) {
-                if( sb.length() > 0 ){
-                    l.add(sb.toString());
-                    sb = new StringBuilder();
-                }
-                sb.append(c);
-                readLineComment = true;
-                continue;
+        if (absoluteMode) {
+            if (!Double.isNaN(end.x)) {
+                df.append(sb.append('X'), end.x);
             }
-
-
-            if (readLineComment || readBlockComment) {
-                sb.append(c);
-            } else if (Character.isWhitespace(c)) {
-                continue;
+            if (!Double.isNaN(end.y)) {
+                df.append(sb.append('Y'), end.y);
             }
-            // If the last character was numeric (readNumeric is true) and this
-            // character is a letter or whitespace, then we hit a boundary.
-            else if (readNumeric && !Character.isDigit(c) && c != '.') {
-                readNumeric = false; // reset flag.
-                
-                l.add(sb.toString());
-                sb = new StringBuilder();
-                
-                if (Character.isLetter(c)) {
-                    sb.append(c);
-                }
+            if (!Double.isNaN(end.z)) {
+                df.append(sb.append('Z'), end.z);
             }
-
-            else if (Character.isDigit(c) || c == '.' || c == '-') {
-                sb.append(c);
-                readNumeric = true;
+        } else { // calculate offsets.
+            if (!Double.isNaN(end.x)) {
+                df.append(sb.append('X'), end.x-start.x);
             }
-            
-            else if (Character.isLetter(c)) {
-                sb.append(c);
+            if (!Double.isNaN(end.y)) {
+                df.append(sb.append('Y'), end.y-start.x);
+            }
+            if (!Double.isNaN(end.z)) {
+                df.append(sb.append('Z'), end.z-start.x);
             }
         }
         
-        // Add final one
-        if (sb.length() > 0) {
-            l.add(sb.toString());
+        return sb;
+    }
+    
+    /**
+     * Splits a gcode command by each word/argument, doesn't care about spaces.
+     * Prefer {@link ParsedCommand#parse(String)} which doesn't create a string
+     * for each word.
+     */
+    static public List<String> splitCommand(String command) {
+        // Special handling for GRBL system commands which will not be splitted
+        if(command.startsWith("$")) {
+            return Collections.singletonList(command);
         }
-        
-        return l;
+
+        return ParsedCommand.parse(command).toList();
     }
     
     // TODO: Replace everything that uses this with a loop that loops through
@@ -488,6 +524,174 @@ public class GcodePreprocessorUtils {
         return segments;
     }
 
+    /**
+     * Number of segments after which the rotated arc point is recalculated
+     * with sin and cos, to keep rounding errors from adding up.
+     */
+    private static final int ARC_CORRECTION_INTERVAL = 64;
+
+    /**
+     * The smallest chord tolerance used to split arcs, a smaller tolerance
+     * would split a single arc into millions of segments.
+     */
+    public static final double MIN_ARC_CHORD_TOLERANCE = 0.001;
+
+    /**
+     * @return zero if the chord tolerance is disabled, otherwise a tolerance
+     *         of at least {@link #MIN_ARC_CHORD_TOLERANCE}.
+     */
+    static public double clampChordTolerance(double chordTolerance) {
+        if (chordTolerance <= 0 || Double.isNaN(chordTolerance)) {
+            return 0;
+        }
+        return Math.max(chordTolerance, MIN_ARC_CHORD_TOLERANCE);
+    }
+
+    /**
+     * Returns the number of segments to split an arc into.
+     *
+     * @param radius the radius of the arc
+     * @param sweep the angle of the arc in radians
+     * @param arcSegmentLength the maximum length of a segment, zero for no limit
+     * @param chordTolerance the maximum distance between a segment and the
+     *                       arc, zero for no limit, at least
+     *                       {@link #MIN_ARC_CHORD_TOLERANCE}
+     * @return the number of segments, 20 if there are no limits
+     */
+    static public int getArcSegmentCount(double radius, double sweep, double arcSegmentLength, double chordTolerance) {
+        if (arcSegmentLength <= 0 && chordTolerance <= 0) {
+            return 20;
+        }
+
+        chordTolerance = clampChordTolerance(chordTolerance);
+        double segments = 1;
+        if (arcSegmentLength > 0) {
+            segments = Math.max(segments, Math.ceil(sweep * radius / arcSegmentLength));
+        }
+
+        // A chord over the angle a is at most r * (1 - cos(a / 2)) from the arc.
+        if (chordTolerance > 0 && chordTolerance < radius) {
+            double maxAngle = 2 * Math.acos(1 - chordTolerance / radius);
+            segments = Math.max(segments, Math.ceil(sweep / maxAngle));
+        }
+        return (int) Math.min(segments, Integer.MAX_VALUE / 3);
+    }
+
+    /**
+     * Generates the points along an arc into an array without creating any
+     * objects. Instead of calculating sin and cos for each point the offset
+     * from the center is rotated by the angle of one segment, like the
+     * mc_arc function in Grbl.
+     *
+     * The coordinates are written as x, y and z of each point, starting with
+     * the first point after the start and ending with the end point. If the
+     * array is too small nothing is written and the call can be repeated with
+     * a larger array.
+     *
+     * @param arcSegmentLength the maximum length of a segment, zero for no limit
+     * @param chordTolerance the maximum distance between a segment and the
+     *                       arc, zero for no limit
+     * @param points receives the coordinates
+     * @return the number of points of the arc.
+     */
+    static public int generatePointsAlongArc(
+            final Position start,
+            final Position end,
+            final Position center,
+            boolean clockwise,
+            double radius,
+            double arcSegmentLength,
+            double chordTolerance,
+            PlaneFormatter plane,
+            double[] points) {
+        double startAngle = GcodePreprocessorUtils.getAngle(center, start, plane);
+        double endAngle = GcodePreprocessorUtils.getAngle(center, end, plane);
+        double sweep = GcodePreprocessorUtils.calculateSweep(startAngle, endAngle, clockwise);
+
+        double r0 = plane.axis0(start) - plane.axis0(center);
+        double r1 = plane.axis1(start) - plane.axis1(center);
+        if (radius == 0) {
+            radius = Math.sqrt(r0 * r0 + r1 * r1);
+        }
+
+        int segments = getArcSegmentCount(radius, sweep, arcSegmentLength, chordTolerance);
+        if (points.length < segments * 3) {
+            return segments;
+        }
+
+        double angle = clockwise ? -sweep / segments : sweep / segments;
+        double cosAngle = Math.cos(angle);
+        double sinAngle = Math.sin(angle);
+        double center0 = plane.axis0(center);
+        double center1 = plane.axis1(center);
+        double linearStart = plane.linear(start);
+        double linearIncrement = (plane.linear(end) - linearStart) / segments;
+
+        // Indexes of the plane axes within the x, y, z triples
+        int axis0 = plane.axis0Index();
+        int axis1 = plane.axis1Index();
+        int linear = plane.linearIndex();
+
+        for (int i = 1; i < segments; i++) {
+            if (i % ARC_CORRECTION_INTERVAL == 0) {
+                double a = i * angle;
+                double cos = Math.cos(a);
+                double sin = Math.sin(a);
+                double s0 = plane.axis0(start) - center0;
+                double s1 = plane.axis1(start) - center1;
+                r0 = s0 * cos - s1 * sin;
+                r1 = s0 * sin + s1 * cos;
+            } else {
+                double rotated = r0 * sinAngle + r1 * cosAngle;
+                r0 = r0 * cosAngle - r1 * sinAngle;
+                r1 = rotated;
+            }
+
+            int index = (i - 1) * 3;
+            points[index + axis0] = center0 + r0;
+            points[index + axis1] = center1 + r1;
+            points[index + linear] = linearStart + i * linearIncrement;
+        }
+
+        int index = (segments - 1) * 3;
+        points[index] = end.x;
+        points[index + 1] = end.y;
+        points[index + 2] = end.z;
+        return segments;
+    }
+
+    /**
+     * Generates the points along an arc, starting with the first point after
+     * the start and ending with the end point. The arc is split into the
+     * number of segments from {@link #getArcSegmentCount}.
+     *
+     * @param arcSegmentLength the maximum length of a segment, zero for no limit
+     * @param chordTolerance the maximum distance between a segment and the
+     *                       arc, zero for no limit
+     */
+    static public List<Position> generatePointsAlongArc(
+            final Position start,
+            final Position end,
+            final Position center,
+            boolean clockwise,
+            double radius,
+            double arcSegmentLength,
+            double chordTolerance,
+            PlaneFormatter plane) {
+        double startAngle = GcodePreprocessorUtils.getAngle(center, start, plane);
+        double endAngle = GcodePreprocessorUtils.getAngle(center, end, plane);
+        double sweep = GcodePreprocessorUtils.calculateSweep(startAngle, endAngle, clockwise);
+
+        if (radius == 0) {
+            radius = Math.hypot(plane.axis0(start) - plane.axis0(center), plane.axis1(start) - plane.axis1(center));
+        }
+
+        int segments = getArcSegmentCount(radius, sweep, arcSegmentLength, chordTolerance);
+        List<Position> points = generatePointsAlongArcBDring(start, end, center, clockwise, radius, startAngle, sweep, segments, plane);
+        points.remove(0);
+        return points;
+    }
+
     /**
      * Helper method for to convert IJK syntax to center point.
      *
@@ -609,6 +813,32 @@ public class GcodePreprocessorUtils {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
+    /**
+     * Collects the G codes of a command into an EnumSet, which iterates in enum
+     * order rather than in the order of the line. Use {@link #getGCode(ParsedCommand, int)}
+     * while walking the words when the order matters.
+     */
+    static public EnumSet<Code> getGCodes(ParsedCommand command) {
+        EnumSet<Code> codes = EnumSet.noneOf(Code.class);
+        for (int i = 0; i < command.size(); i++) {
+            Code code = getGCode(command, i);
+            if (code != null) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * @return the G code of the word at the given index, or null if it isn't a G word.
+     */
+    static public Code getGCode(ParsedCommand command, int index) {
+        if (command.getLetter(index) != 'G' || command.isComment(index)) {
+            return null;
+        }
+        return Code.lookupCode('G', command.getValue(index));
+    }
+
 
     public static class SplitCommand {
         public String extracted;
@@ -25,6 +25,8 @@ import static com.willwinder.universalgcodesender.gcode.util.Code.G54;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G90;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G91_1;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G94;
+import static com.willwinder.universalgcodesender.gcode.util.Code.M5;
+import static com.willwinder.universalgcodesender.gcode.util.Code.M9;
 import com.willwinder.universalgcodesender.gcode.util.Plane;
 import com.willwinder.universalgcodesender.model.Position;
 import com.willwinder.universalgcodesender.model.UnitUtils;
@@ -60,11 +62,19 @@ public class GcodeState {
     public boolean isMetric = true;
     public Code units = G21;
 
+    // group 7
+    public Code spindle = M5;
+
+    // group 8, only the last coolant code is kept.
+    public Code coolant = M9;
+
     // group 12
     public Code offset = G54;
 
     // Misc
     public double spindleSpeed = 0;
+    // Positions are shared between copies of a state, assign a new Position
+    // rather than modifying this one.
     public Position currentPoint = null;
     public int commandNumber = 0;
 
@@ -86,39 +96,57 @@ public class GcodeState {
         this.currentPoint = new Position(0, 0, 0, Units.MM);
     }
 
-    public GcodeState copy() {
-        GcodeState ret = new GcodeState();
-        ret.currentMotionMode = currentMotionMode;
-        ret.plane = plane;
+    /**
+     * Copy constructor, used by copy() so that the initial position isn't allocated.
+     */
+    private GcodeState(GcodeState other) {
+        this.currentMotionMode = other.currentMotionMode;
+        this.plane = other.plane;
+
+        this.inAbsoluteMode = other.inAbsoluteMode;
+        this.distanceMode = other.distanceMode;
 
-        ret.inAbsoluteMode = inAbsoluteMode;
-        ret.distanceMode = distanceMode;
+        this.inAbsoluteIJKMode = other.inAbsoluteIJKMode;
+        this.arcDistanceMode = other.arcDistanceMode;
 
-        ret.inAbsoluteIJKMode = inAbsoluteIJKMode;
-        ret.arcDistanceMode = arcDistanceMode;
+        this.feedMode = other.feedMode;
 
-        ret.feedMode = feedMode;
+        this.isMetric = other.isMetric;
+        this.units = other.units;
 
-        ret.isMetric = isMetric;
-        ret.units = units;
+        this.speed = other.speed;
+        this.spindleSpeed = other.spindleSpeed;
 
-        ret.speed = speed;
-        ret.spindleSpeed = spindleSpeed;
+        this.offset = other.offset;
 
-        ret.offset = offset;
+        this.spindle = other.spindle;
+        this.coolant = other.coolant;
 
-        if (currentPoint != null) {
-            ret.currentPoint = new Position(currentPoint.x, currentPoint.y, currentPoint.z, UnitUtils.Units.getUnits(units));
+        if (other.currentPoint != null) {
+            Units pointUnits = UnitUtils.Units.getUnits(other.units);
+            if (other.currentPoint.getUnits() == pointUnits) {
+                this.currentPoint = other.currentPoint;
+            } else {
+                this.currentPoint = new Position(other.currentPoint.x, other.currentPoint.y, other.currentPoint.z, pointUnits);
+            }
         }
-        ret.commandNumber = commandNumber;
-        return ret;
+        this.commandNumber = other.commandNumber;
+    }
+
+    /**
+     * Creates a snapshot of the state. The current point is shared with the
+     * copy unless its units need to be updated.
+     */
+    public GcodeState copy() {
+        return new GcodeState(this);
     }
 
     @Override
     public String toString() {
-      String pattern = "metric: %b, motionMode: %s, plane: %s, absoluteMode: %b, ijkMode: %b, feed: %f, spindle: %f, point: %s";
+      String pattern = "metric: %b, motionMode: %s, plane: %s, absoluteMode: %b, ijkMode: %b, feed: %f, spindle: %f, spindleMode: %s, coolant: %s, point: %s";
       return String.format(pattern,
-              isMetric, currentMotionMode, plane, inAbsoluteMode, inAbsoluteIJKMode, speed, spindleSpeed, currentPoint);
+              isMetric, currentMotionMode, plane, inAbsoluteMode, inAbsoluteIJKMode, speed, spindleSpeed, spindle, coolant,
+              currentPoint);
 
     }
 }
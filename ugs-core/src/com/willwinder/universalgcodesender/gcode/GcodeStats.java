@@ -28,4 +28,11 @@ public interface GcodeStats {
     Position getMin();
     Position getMax();
     long getCommandCount();
+
+    /**
+     * @return the number of commands given to the preprocessor divided by the
+     * number of commands it returned. Above 1 when processors merged commands
+     * and below 1 when they split them, 1 if nothing was preprocessed.
+     */
+    double getCommandReductionRatio();
 }
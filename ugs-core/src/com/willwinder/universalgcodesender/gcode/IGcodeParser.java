@@ -65,4 +65,13 @@ public interface IGcodeParser {
      * @throws GcodeParserException 
      */
     List<String> preprocessCommand(String command, GcodeState initial) throws GcodeParserException;
+
+    /**
+     * Returns the postprocessed commands which the ICommandProcessors are
+     * still holding back, call after preprocessing the last command.
+     * @param state the state of the machine after the last command
+     * @return a collection of postprocessed commands
+     * @throws GcodeParserException
+     */
+    List<String> flushCommandProcessors(GcodeState state) throws GcodeParserException;
 }
@@ -0,0 +1,327 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode;
+
+import com.willwinder.universalgcodesender.gcode.util.DecimalParser;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A gcode command split into its words, backed by primitive arrays. The words
+ * are the same as the ones returned by {@link GcodePreprocessorUtils#splitCommand(String)}
+ * but the letter and value of each word is only parsed once and no strings are
+ * created unless they are asked for.
+ *
+ * Instances are immutable once parsed, use {@link #parse(String)} to get one.
+ * The last parsed command is kept per thread since the same line is usually
+ * parsed several times in a row by the command processors and the parser.
+ *
+ * @author wwinder
+ */
+public final class ParsedCommand {
+    private static final ThreadLocal<ParsedCommand> lastParsed = new ThreadLocal<>();
+
+    private final String command;
+
+    // The characters of all words without any whitespace, words are spans within it.
+    private final char[] chars;
+    private final int[] starts;
+    private final int[] ends;
+
+    // Upper case letter of each word, comments use their opening character.
+    private final char[] letters;
+    private final double[] values;
+    private final boolean[] comments;
+    private final int size;
+
+    private ParsedCommand(String command, char[] chars, int[] starts, int[] ends, char[] letters,
+            double[] values, boolean[] comments, int size) {
+        this.command = command;
+        this.chars = chars;
+        this.starts = starts;
+        this.ends = ends;
+        this.letters = letters;
+        this.values = values;
+        this.comments = comments;
+        this.size = size;
+    }
+
+    /**
+     * Splits a gcode command by each word/argument, doesn't care about spaces.
+     */
+    public static ParsedCommand parse(String command) {
+        ParsedCommand last = lastParsed.get();
+        if (last != null && last.command.equals(command)) {
+            return last;
+        }
+
+        ParsedCommand parsed = tokenize(command);
+        lastParsed.set(parsed);
+        return parsed;
+    }
+
+    private static ParsedCommand tokenize(String command) {
+        int length = command.length();
+
+        // Special handling for GRBL system commands which will not be splitted
+        if (command.startsWith("$")) {
+            return new ParsedCommand(command, command.toCharArray(), new int[]{0}, new int[]{length},
+                    new char[]{'$'}, new double[]{Double.NaN}, new boolean[]{false}, 1);
+        }
+
+        // Every word takes up at least one character, a single letter next
+        // to a comment is a word of its own.
+        int maxWords = length + 1;
+        char[] chars = new char[length];
+        int[] starts = new int[maxWords];
+        int[] ends = new int[maxWords];
+        boolean[] comments = new boolean[maxWords];
+
+        int pos = 0;
+        int size = 0;
+        int start = 0;
+        boolean readNumeric = false;
+        boolean readLineComment = false;
+        boolean readBlockComment = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = command.charAt(i);
+
+            if (c == '(' && !readLineComment && !readBlockComment) {
+                if (pos > start) {
+                    size = addWord(size, starts, ends, comments, start, pos, false);
+                    start = pos;
+                }
+                chars[pos++] = c;
+                readBlockComment = true;
+                continue;
+            } else if (readBlockComment && c == ')') {
+                readBlockComment = false;
+                chars[pos++] = c;
+                size = addWord(size, starts, ends, comments, start, pos, true);
+                start = pos;
+                continue;
+            } else if (c == ';' && !readLineComment && !readBlockComment) {
+                if (pos > start) {
+                    size = addWord(size, starts, ends, comments, start, pos, false);
+                    start = pos;
+                }
+                chars[pos++] = c;
+                readLineComment = true;
+                continue;
+            }
+
+            if (readLineComment || readBlockComment) {
+                chars[pos++] = c;
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            }
+            // If the last character was numeric (readNumeric is true) and this
+            // character is a letter or whitespace, then we hit a boundary.
+            else if (readNumeric && !Character.isDigit(c) && c != '.') {
+                readNumeric = false; // reset flag.
+
+                // A comment may already have ended the word.
+                if (pos > start) {
+                    size = addWord(size, starts, ends, comments, start, pos, false);
+                    start = pos;
+                }
+
+                if (Character.isLetter(c)) {
+                    chars[pos++] = c;
+                }
+            }
+
+            else if (Character.isDigit(c) || c == '.' || c == '-') {
+                chars[pos++] = c;
+                readNumeric = true;
+            }
+
+            else if (Character.isLetter(c)) {
+                chars[pos++] = c;
+            }
+        }
+
+        // Add final one
+        if (pos > start) {
+            size = addWord(size, starts, ends, comments, start, pos, readLineComment || readBlockComment);
+        }
+
+        char[] letters = new char[size];
+        double[] values = new double[size];
+        CharBuffer text = CharBuffer.wrap(chars);
+        for (int i = 0; i < size; i++) {
+            letters[i] = Character.toUpperCase(chars[starts[i]]);
+            values[i] = comments[i] ? Double.NaN : DecimalParser.parseDouble(text, starts[i] + 1, ends[i]);
+        }
+
+        return new ParsedCommand(command, chars, starts, ends, letters, values, comments, size);
+    }
+
+    private static int addWord(int size, int[] starts, int[] ends, boolean[] comments, int start, int end, boolean comment) {
+        starts[size] = start;
+        ends[size] = end;
+        comments[size] = comment;
+        return size + 1;
+    }
+
+    /**
+     * @return the command which was parsed.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return true if there are no words or comments in the command.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of words including comments.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return upper case letter of the word at the given index.
+     */
+    public char getLetter(int index) {
+        return letters[index];
+    }
+
+    /**
+     * @return numeric value of the word at the given index, NaN if it doesn't have one.
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return true if the word at the given index is a comment.
+     */
+    public boolean isComment(int index) {
+        return comments[index];
+    }
+
+    /**
+     * @return the word at the given index, for example "X-0.5" or "(comment)".
+     */
+    public String getWord(int index) {
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @return the text after the letter of the word at the given index, for example "-0.5".
+     */
+    public String getValueString(int index) {
+        return new String(chars, starts[index] + 1, ends[index] - starts[index] - 1);
+    }
+
+    /**
+     * Compares the value text of a word without creating a string.
+     */
+    public boolean valueEquals(int index, String value) {
+        int start = starts[index] + 1;
+        int length = ends[index] - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of the first word with the letter, or -1.
+     */
+    public int indexOf(char letter) {
+        char address = Character.toUpperCase(letter);
+        for (int i = 0; i < size; i++) {
+            if (letters[i] == address) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return how many words use the letter.
+     */
+    public int count(char letter) {
+        char address = Character.toUpperCase(letter);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (letters[i] == address) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return value of the first word with the letter, or NaN if there isn't one.
+     */
+    public double getValue(char letter) {
+        int index = indexOf(letter);
+        if (index < 0 || ends[index] - starts[index] < 2) {
+            return Double.NaN;
+        }
+        return values[index];
+    }
+
+    /**
+     * @return true if there are X, Y or Z words with a value.
+     */
+    public boolean hasAxisWords() {
+        for (int i = 0; i < size; i++) {
+            if (ends[i] - starts[i] > 1) {
+                char c = letters[i];
+                if (c == 'X' || c == 'Y' || c == 'Z') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the words as strings, same as {@link GcodePreprocessorUtils#splitCommand(String)}.
+     */
+    public List<String> toList() {
+        List<String> l = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            l.add(getWord(i));
+        }
+        return l;
+    }
+
+    @Override
+    public String toString() {
+        return command;
+    }
+}
@@ -1,7 +1,7 @@
 /**
  * Expand an arc into smaller sections. You can configure the length of each
- * section, and whether it is expanded with a bunch of smaller arcs, or with
- * line segments.
+ * section, or how far the sections may be from the arc, and whether it is
+ * expanded with a bunch of smaller arcs, or with line segments.
  */
 /*
     Copyright 2016-2017 Will Winder
@@ -24,34 +24,39 @@
 package com.willwinder.universalgcodesender.gcode.processors;
 
 import com.google.common.collect.Iterables;
-import com.willwinder.universalgcodesender.gcode.GcodeParser;
 import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
 import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils.SplitCommand;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.DecimalFormatter;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G1;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.gcode.util.PlaneFormatter;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.model.Position;
 import com.willwinder.universalgcodesender.types.PointSegment;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  *
  * @author wwinder
  */
-public class ArcExpander implements CommandProcessor {
+public class ArcExpander implements MotionProcessor {
     final private boolean convertToLines;
     final private double length;
-    final private DecimalFormat df;
+    final private double chordTolerance;
+    final private DecimalFormatter df = new DecimalFormatter(9);
 
     @Override
     public String getHelp() {
+        if (chordTolerance > 0) {
+            return Localization.getString("sender.help.arcs") + "\n"
+                    + Localization.getString("sender.arcs.length")
+                    + ": " + df.format(length) + "\n"
+                    + Localization.getString("sender.arcs.tolerance")
+                    + ": " + df.format(chordTolerance);
+        }
         return Localization.getString("sender.help.arcs") + "\n"
                 + Localization.getString("sender.arcs.length")
                 + ": " + df.format(length);
@@ -62,60 +67,87 @@ public class ArcExpander implements CommandProcessor {
      * @param length the length of each smaller segment.
      */
     public ArcExpander(boolean convertToLines, double length) {
+        this(convertToLines, length, 0);
+    }
+
+    /**
+     * @param convertToLines toggles if smaller lines or arcs are returned.
+     * @param length the length of each smaller segment.
+     * @param chordTolerance the maximum distance between a segment and the
+     *                       arc, when greater than zero arcs are split into
+     *                       enough segments to honor both limits. It is at
+     *                       least {@link GcodePreprocessorUtils#MIN_ARC_CHORD_TOLERANCE}.
+     */
+    public ArcExpander(boolean convertToLines, double length, double chordTolerance) {
         this.convertToLines = convertToLines;
         this.length = length;
-
-        // Setup decimal formatter
-        df = new DecimalFormat("#.#########", Localization.dfs);
+        this.chordTolerance = GcodePreprocessorUtils.clampChordTolerance(chordTolerance);
     }
 
     @Override
-    public List<String> processCommand(String command, GcodeState state) throws GcodeParserException {
+    public void processCommand(ProcessedCommand command, List<ProcessedCommand> results) throws GcodeParserException {
+        GcodeState state = command.getState();
         if (state.currentPoint == null) throw new GcodeParserException(Localization.getString("parser.processor.arc.start-error"));
 
-        List<String> results = new ArrayList<>();
-
-        List<GcodeMeta> commands = GcodeParser.processCommand(command, 0, state);
+        List<GcodeMeta> commands = command.getMeta();
 
         // If this is not an arc, there is nothing to do.
         Code c = hasArcCommand(commands);
         if (c == null) {
-            return Collections.singletonList(command);
+            results.add(command);
+            return;
         }
 
-        SplitCommand sc = GcodePreprocessorUtils.extractMotion(c, command);
+        SplitCommand sc = GcodePreprocessorUtils.extractMotion(c, command.getCommand());
         if (sc.remainder.length() > 0) {
-            results.add(sc.remainder);
+            ProcessedCommand remainder = ProcessedCommand.fromText(sc.remainder, state);
+            results.add(remainder);
+            state = remainder.getEndState();
         }
 
         GcodeMeta arcMeta = Iterables.getLast(commands);
         PointSegment ps = arcMeta.point;
-        Position start = state.currentPoint;
+        Position start = command.getState().currentPoint;
         Position end = arcMeta.point.point();
 
-        List<Position> points = GcodePreprocessorUtils.generatePointsAlongArcBDring(
-                start, end, ps.center(), ps.isClockwise(),
-                ps.getRadius(), 0, this.length, new PlaneFormatter(ps.getPlaneState()));
-
-        // That function returns the first and last points. Exclude the first
-        // point because the previous gcode command ends there already.
-        points.remove(0);
+        List<Position> points = getPointsAlongArc(start, end, ps);
 
         if (convertToLines) {
             // Tack the speed onto the first line segment in case the arc also
             // changed the feed value.
-            String feed = "F" + arcMeta.point.getSpeed();
+            double feed = arcMeta.point.getSpeed();
             for (Position point : points) {
-                results.add(GcodePreprocessorUtils.generateLineFromPoints(G1, start, point, state.inAbsoluteMode, df) + feed);
+                ProcessedCommand line = ProcessedCommand.fromLine(G1, start, point, command.getState().inAbsoluteMode,
+                        feed, df, state);
+                results.add(line);
+                state = line.getEndState();
                 start = point;
-                feed = "";
+                feed = Double.NaN;
             }
         } else {
             // TODO: Generate arc segments.
             throw new UnsupportedOperationException("I have not implemented this.");
         }
+    }
+
+    /**
+     * Returns the points along the arc, excluding the first point because the
+     * previous gcode command ends there already.
+     */
+    private List<Position> getPointsAlongArc(Position start, Position end, PointSegment ps) {
+        PlaneFormatter plane = new PlaneFormatter(ps.getPlaneState());
+        if (chordTolerance <= 0) {
+            List<Position> points = GcodePreprocessorUtils.generatePointsAlongArcBDring(
+                    start, end, ps.center(), ps.isClockwise(),
+                    ps.getRadius(), 0, this.length, plane);
+            points.remove(0);
+            return points;
+        }
 
-        return results;
+        // The segment length stays an upper bound when splitting by tolerance.
+        return GcodePreprocessorUtils.generatePointsAlongArc(
+                start, end, ps.center(), ps.isClockwise(),
+                ps.getRadius(), this.length, chordTolerance, plane);
     }
 
     private static Code hasArcCommand(List<GcodeMeta> commands) {
@@ -127,4 +159,9 @@ public class ArcExpander implements CommandProcessor {
         }
         return null;
     }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
 }
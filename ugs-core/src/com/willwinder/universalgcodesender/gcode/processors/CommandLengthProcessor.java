@@ -35,5 +35,9 @@ public class CommandLengthProcessor implements CommandProcessor {
         ret.add(command);
         return ret;
     }
-    
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
 }
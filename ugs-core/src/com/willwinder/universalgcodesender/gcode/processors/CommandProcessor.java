@@ -39,6 +39,24 @@ public interface CommandProcessor {
      */
     List<String> processCommand(String command, GcodeState state) throws GcodeParserException;
 
+    /**
+     * Returns true if the result only depends on the command and state given
+     * to processCommand, in which case the processor may be called from
+     * several threads to preprocess commands concurrently.
+     * @return true if the processor keeps no state between commands.
+     */
+    default boolean isStateless() {
+        return false;
+    }
+
+    /**
+     * Called before preprocessing a new program to drop anything a stateful
+     * processor kept from the previous one, for example commands it was
+     * holding back when preprocessing failed.
+     */
+    default void reset() {
+    }
+
     /**
      * Returns information about the current command and its configuration.
      * @return 
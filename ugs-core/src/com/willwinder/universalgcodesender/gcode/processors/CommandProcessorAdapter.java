@@ -0,0 +1,89 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+
+import java.util.List;
+
+/**
+ * Runs a string based {@link CommandProcessor} as a {@link MotionProcessor}.
+ * Commands which the processor returns unchanged keep their parsed data.
+ *
+ * @author wwinder
+ */
+public class CommandProcessorAdapter implements MotionProcessor {
+    private final CommandProcessor processor;
+
+    public CommandProcessorAdapter(CommandProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * @return the processor as a motion processor, adapting it if needed.
+     */
+    public static MotionProcessor of(CommandProcessor processor) {
+        if (processor instanceof MotionProcessor) {
+            return (MotionProcessor) processor;
+        }
+        return new CommandProcessorAdapter(processor);
+    }
+
+    public CommandProcessor getProcessor() {
+        return processor;
+    }
+
+    @Override
+    public void processCommand(ProcessedCommand command, List<ProcessedCommand> results) throws GcodeParserException {
+        String text = command.getCommand();
+        List<String> output = processor.processCommand(text, command.getState());
+        if (output.size() == 1 && output.get(0).equals(text)) {
+            results.add(command);
+            return;
+        }
+
+        GcodeState state = command.getState();
+        for (String line : output) {
+            ProcessedCommand result = ProcessedCommand.fromText(line, state);
+            results.add(result);
+            state = result.getEndState();
+        }
+    }
+
+    @Override
+    public List<String> processCommand(String command, GcodeState state) throws GcodeParserException {
+        return processor.processCommand(command, state);
+    }
+
+    @Override
+    public boolean isStateless() {
+        return processor.isStateless();
+    }
+
+    @Override
+    public void reset() {
+        processor.reset();
+    }
+
+    @Override
+    public String getHelp() {
+        return processor.getHelp();
+    }
+}
@@ -57,4 +57,9 @@ public class DecimalProcessor implements CommandProcessor {
         }
         return ret;
     }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
 }
@@ -31,7 +31,7 @@ import java.util.List;
  *
  * @author wwinder
  */
-public class FeedOverrideProcessor implements CommandProcessor {
+public class FeedOverrideProcessor implements MotionProcessor {
     private final double percentOverride;
 
     public FeedOverrideProcessor(double percentOverride) {
@@ -56,4 +56,28 @@ public class FeedOverrideProcessor implements CommandProcessor {
         }
         return ret;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void processCommand(ProcessedCommand command, List<ProcessedCommand> results) {
+        if (percentOverride <= 0) {
+            results.add(command);
+        } else if (command.isGenerated()) {
+            // Scale the feed of generated lines without formatting them
+            double feed = command.getFeed();
+            results.add(Double.isNaN(feed)
+                    ? command
+                    : command.withLine(command.getStart(), command.getEnd(), feed * percentOverride / 100.0));
+        } else {
+            String text = command.getCommand();
+            String overridden = GcodePreprocessorUtils.overrideSpeed(text, percentOverride);
+            results.add(overridden.equals(text)
+                    ? command
+                    : ProcessedCommand.fromText(overridden, command.getState()));
+        }
+    }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
+}
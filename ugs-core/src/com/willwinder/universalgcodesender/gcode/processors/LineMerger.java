@@ -0,0 +1,218 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.ParsedCommand;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.willwinder.universalgcodesender.gcode.util.Code.G1;
+import static com.willwinder.universalgcodesender.gcode.util.Code.G94;
+
+/**
+ * Merge runs of G1 commands which are close to a straight line into a single
+ * G1 command. CAM programs often have many tiny collinear moves which fill up
+ * the planner of the controller and make it slow down.
+ *
+ * Commands are held back until one arrives which can't be merged with them,
+ * the merged command is then returned before it. The commands held back at
+ * the end of the program are returned by {@link #flush(List)}.
+ *
+ * Only G1 commands with nothing but coordinates and a feed rate in absolute
+ * mode are merged. Anything else, including a change of the feed rate,
+ * comments, M-codes and moves along the Z-axis only, ends the run.
+ *
+ * @author wwinder
+ */
+public class LineMerger implements MotionProcessor {
+    // Bounds the work of checking a run against a new end point.
+    private static final int MAX_RUN_LENGTH = 256;
+
+    final double tolerance;
+
+    // The commands held back and the point where each of them ends.
+    private final List<ProcessedCommand> run = new ArrayList<>();
+    private final List<Position> points = new ArrayList<>();
+    private double runFeed;
+
+    /**
+     * @param tolerance the maximum distance in mm between the merged line and the
+     *                  points of the lines it replaces.
+     */
+    public LineMerger(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public String getHelp() {
+        return "Merge G1 commands which are within " + tolerance + "mm of a straight line.";
+    }
+
+    @Override
+    public void processCommand(ProcessedCommand command, List<ProcessedCommand> results) throws GcodeParserException {
+        Position end = getMergeableEnd(command);
+        if (end == null) {
+            flush(results);
+            results.add(command);
+            return;
+        }
+
+        double feed = command.getEndState().speed;
+        if (!run.isEmpty() && !continuesRun(command.getState(), end, feed)) {
+            flush(results);
+        }
+
+        if (run.isEmpty()) {
+            runFeed = feed;
+        }
+        run.add(command);
+        points.add(end);
+    }
+
+    @Override
+    public void flush(List<ProcessedCommand> results) {
+        if (run.size() == 1) {
+            results.add(run.get(0).deferred());
+        } else if (run.size() > 1) {
+            // The feed rate is only needed if the first command changed it.
+            GcodeState state = run.get(0).getState();
+            double feed = runFeed != state.speed ? runFeed : Double.NaN;
+            Position end = points.get(points.size() - 1);
+            results.add(ProcessedCommand.fromLine(G1, state.currentPoint, end, true, feed, null, state).deferred());
+        }
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        run.clear();
+        points.clear();
+    }
+
+    /**
+     * @return the end point of a command which may be merged, or null.
+     */
+    private static Position getMergeableEnd(ProcessedCommand command) throws GcodeParserException {
+        GcodeState state = command.getState();
+        if (state.currentPoint == null || !state.inAbsoluteMode || state.feedMode != G94) {
+            return null;
+        }
+
+        if (command.isGenerated()) {
+            if (command.getCode() != G1) {
+                return null;
+            }
+        } else if (!hasOnlyLineWords(ParsedCommand.parse(command.getCommand()))) {
+            return null;
+        }
+
+        List<GcodeMeta> metas = command.getMeta();
+        if (metas == null || metas.size() != 1) {
+            return null;
+        }
+        GcodeMeta meta = metas.get(0);
+        if (meta.code != G1 || meta.point == null || meta.point.isArc()) {
+            return null;
+        }
+
+        // Plunges and retracts are left alone.
+        Position start = state.currentPoint;
+        Position end = meta.point.point();
+        if (start.x == end.x && start.y == end.y) {
+            return null;
+        }
+        return end;
+    }
+
+    /**
+     * @return true if the command only has a G1 code, coordinates and a feed rate.
+     */
+    private static boolean hasOnlyLineWords(ParsedCommand command) {
+        for (int i = 0; i < command.size(); i++) {
+            if (command.isComment(i)) {
+                return false;
+            }
+            switch (command.getLetter(i)) {
+                case 'G':
+                    if (command.getValue(i) != 1) {
+                        return false;
+                    }
+                    break;
+                case 'X':
+                case 'Y':
+                case 'Z':
+                case 'F':
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a line from the current point to end can be merged into the run.
+     */
+    private boolean continuesRun(GcodeState state, Position end, double feed) {
+        if (feed != runFeed || run.size() >= MAX_RUN_LENGTH) {
+            return false;
+        }
+
+        Position start = state.currentPoint;
+        Position last = points.get(points.size() - 1);
+        if (start.x != last.x || start.y != last.y || start.z != last.z) {
+            return false;
+        }
+
+        // Every point of the run must stay close to the merged line, the
+        // tolerance is in mm and the points are in the units of the program.
+        double programTolerance = tolerance * UnitUtils.scaleUnits(Units.MM, state.isMetric ? Units.MM : Units.INCH);
+        Position runStart = run.get(0).getState().currentPoint;
+        for (Position point : points) {
+            if (distanceToSegment(point, runStart, end) > programTolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double distanceToSegment(Position p, Position start, Position end) {
+        double dx = end.x - start.x;
+        double dy = end.y - start.y;
+        double dz = end.z - start.z;
+        double px = p.x - start.x;
+        double py = p.y - start.y;
+        double pz = p.z - start.z;
+
+        double lengthSquared = dx * dx + dy * dy + dz * dz;
+        double t = lengthSquared == 0 ? 0 : (px * dx + py * dy + pz * dz) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        double x = px - t * dx;
+        double y = py - t * dy;
+        double z = pz - t * dz;
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+}
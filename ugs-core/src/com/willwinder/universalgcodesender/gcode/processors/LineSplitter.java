@@ -25,21 +25,18 @@ import com.google.common.collect.Iterables;
 import com.willwinder.universalgcodesender.gcode.GcodeParser;
 import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
 import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
-import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils.SplitCommand;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.Code;
 import static com.willwinder.universalgcodesender.gcode.util.Code.*;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.model.Position;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  *
  * @author wwinder
  */
-public class LineSplitter implements CommandProcessor {
+public class LineSplitter implements MotionProcessor {
     final double maxSegmentLength;
 
     /**
@@ -68,19 +65,13 @@ public class LineSplitter implements CommandProcessor {
     }
 
     @Override
-    public List<String> processCommand(String commandString, GcodeState state) throws GcodeParserException {
-        List<GcodeParser.GcodeMeta> commands = GcodeParser.processCommand(commandString, 0, state);
-
-        List<String> results = new ArrayList<>();
+    public void processCommand(ProcessedCommand processedCommand, List<ProcessedCommand> results) throws GcodeParserException {
+        List<GcodeParser.GcodeMeta> commands = processedCommand.getMeta();
 
         Code code = hasLine(commands);
         if (code == null) {
-            return Collections.singletonList(commandString);
-        }
-
-        SplitCommand sc = GcodePreprocessorUtils.extractMotion(code, commandString);
-        if (sc.remainder.length() > 0) {
-            results.add(sc.remainder);
+            results.add(processedCommand);
+            return;
         }
 
         GcodeMeta command = Iterables.getLast(commands);
@@ -90,36 +81,60 @@ public class LineSplitter implements CommandProcessor {
         }
 
         // line length
+        GcodeState state = processedCommand.getState();
         Position start = state.currentPoint;
         Position end = command.point.point();
         Position current = start;
         double length = start.distance(end);
 
         // Check if line needs splitting.
-        if (length > this.maxSegmentLength) {
-            int numSegments = (int) Math.ceil(length/this.maxSegmentLength);
-            double segmentLength = length / Math.ceil(length / this.maxSegmentLength);
-
-            // Create line segments, stop before the last one which uses the end point.
-            for (int i = 1; i < numSegments; i++) {
-                double k = 1 / (length / (i * segmentLength));
-                double newX = start.x + k * (end.x - start.x);
-                double newY = start.y + k * (end.y - start.y);
-                double newZ = start.z + k * (end.z - start.z);
-
-                Position next = new Position(newX, newY, newZ, start.getUnits());
-                results.add(GcodePreprocessorUtils.generateLineFromPoints(
-                        command.code, current, next, command.state.inAbsoluteMode, null));
-                current = next;
-            }
+        if (length <= this.maxSegmentLength) {
+            results.add(processedCommand);
+            return;
+        }
 
-            // Add the last line point.
-            results.add(GcodePreprocessorUtils.generateLineFromPoints(
-                    command.code, current, end, command.state.inAbsoluteMode, null));
+        // Split off the words which aren't part of the motion, for generated
+        // lines that is the feed rate.
+        String remainder;
+        if (processedCommand.isGenerated()) {
+            remainder = Double.isNaN(processedCommand.getFeed()) ? "" : "F" + processedCommand.getFeed();
         } else {
-            return Collections.singletonList(commandString);
+            remainder = GcodePreprocessorUtils.extractMotion(code, processedCommand.getCommand()).remainder;
+        }
+        if (remainder.length() > 0) {
+            ProcessedCommand remainderCommand = ProcessedCommand.fromText(remainder, state);
+            results.add(remainderCommand);
+            state = remainderCommand.getEndState();
         }
 
-        return results;
+        int numSegments = (int) Math.ceil(length/this.maxSegmentLength);
+        double segmentLength = length / Math.ceil(length / this.maxSegmentLength);
+
+        // Create line segments, stop before the last one which uses the end point.
+        for (int i = 1; i < numSegments; i++) {
+            double k = 1 / (length / (i * segmentLength));
+            double newX = start.x + k * (end.x - start.x);
+            double newY = start.y + k * (end.y - start.y);
+            double newZ = start.z + k * (end.z - start.z);
+
+            Position next = new Position(newX, newY, newZ, start.getUnits());
+            state = addLine(command.code, current, next, command.state.inAbsoluteMode, state, results);
+            current = next;
+        }
+
+        // Add the last line point.
+        addLine(command.code, current, end, command.state.inAbsoluteMode, state, results);
+    }
+
+    private static GcodeState addLine(Code code, Position start, Position end, boolean absoluteMode,
+            GcodeState state, List<ProcessedCommand> results) throws GcodeParserException {
+        ProcessedCommand line = ProcessedCommand.fromLine(code, start, end, absoluteMode, Double.NaN, null, state);
+        results.add(line);
+        return line.getEndState();
+    }
+
+    @Override
+    public boolean isStateless() {
+        return true;
     }
 }
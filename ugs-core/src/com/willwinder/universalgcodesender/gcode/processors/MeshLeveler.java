@@ -18,16 +18,13 @@
  */
 package com.willwinder.universalgcodesender.gcode.processors;
 
-import com.willwinder.universalgcodesender.gcode.GcodeParser;
 import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
-import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.model.Position;
 import com.willwinder.universalgcodesender.model.UnitUtils;
 import com.willwinder.universalgcodesender.model.UnitUtils.Units;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,7 +32,7 @@ import java.util.List;
  *
  * @author wwinder
  */
-public class MeshLeveler implements CommandProcessor {
+public class MeshLeveler implements MotionProcessor {
     final private double materialSurfaceHeight;
     final private Position[][] surfaceMesh;
     final private Position lowerLeft;
@@ -141,12 +138,13 @@ public class MeshLeveler implements CommandProcessor {
     }
 
     @Override
-    public List<String> processCommand(final String commandString, GcodeState state) throws GcodeParserException {
-        List<GcodeMeta> commands = GcodeParser.processCommand(commandString, 0, state);
+    public void processCommand(ProcessedCommand processedCommand, List<ProcessedCommand> results) throws GcodeParserException {
+        List<GcodeMeta> commands = processedCommand.getMeta();
 
         // If there are no lines, return unmodified input.
         if (!hasJustLines(commands)) {
-            return Collections.singletonList(commandString);
+            results.add(processedCommand);
+            return;
         }
 
         if (commands.size() > 1) {
@@ -159,8 +157,9 @@ public class MeshLeveler implements CommandProcessor {
             throw new GcodeParserException(ERROR_MISSING_POINT_DATA);
         }
 
+        GcodeState state = processedCommand.getState();
         Position start = state.currentPoint;
-        Position end = command.point.point();
+        Position end = new Position(command.point.point());
 
         if (start.z != end.z) {
             this.lastZHeight = end.z;
@@ -180,9 +179,10 @@ public class MeshLeveler implements CommandProcessor {
         end.z = this.lastZHeight + zPointOffset;
         //end.z /= resultScaleFactor;
 
-        String adjustedCommand = GcodePreprocessorUtils.generateLineFromPoints(
-                command.code, start, end, command.state.inAbsoluteMode, null);
-        return Collections.singletonList(adjustedCommand);
+        boolean absoluteMode = processedCommand.isGenerated()
+                ? processedCommand.isAbsoluteMode()
+                : command.state.inAbsoluteMode;
+        results.add(ProcessedCommand.fromLine(command.code, start, end, absoluteMode, Double.NaN, null, state));
     }
 
     protected Position[][] findBoundingArea(double x, double y) throws GcodeParserException {
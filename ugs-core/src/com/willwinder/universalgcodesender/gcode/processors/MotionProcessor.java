@@ -0,0 +1,72 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A command processor which works on parsed commands instead of text. The
+ * parser passes the output of one motion processor directly to the next, so
+ * the commands are only parsed and formatted once for the whole chain.
+ *
+ * @author wwinder
+ */
+public interface MotionProcessor extends CommandProcessor {
+    /**
+     * Given a command returns the commands to replace it with. The command
+     * itself is added to the results to keep it unchanged.
+     *
+     * Each result should be in the end state of the result before it, see
+     * {@link ProcessedCommand#getEndState()}, the first one in the state of
+     * the input command.
+     *
+     * @param command the input command in the state of the program when it will run.
+     * @param results receives the replacement commands.
+     */
+    void processCommand(ProcessedCommand command, List<ProcessedCommand> results) throws GcodeParserException;
+
+    /**
+     * Called at the end of the program to add the commands the processor is
+     * still holding back to the results. A processor which holds commands
+     * back returns them marked with {@link ProcessedCommand#deferred()}.
+     *
+     * @param results receives the held back commands.
+     */
+    default void flush(List<ProcessedCommand> results) throws GcodeParserException {
+    }
+
+    /**
+     * Processes a single gcode string, parsing it and formatting the results.
+     */
+    @Override
+    default List<String> processCommand(String command, GcodeState state) throws GcodeParserException {
+        List<ProcessedCommand> results = new ArrayList<>();
+        processCommand(ProcessedCommand.fromText(command, state), results);
+
+        List<String> ret = new ArrayList<>(results.size());
+        for (ProcessedCommand result : results) {
+            ret.add(result.getCommand());
+        }
+        return ret;
+    }
+}
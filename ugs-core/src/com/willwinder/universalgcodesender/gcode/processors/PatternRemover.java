@@ -50,4 +50,9 @@ public class PatternRemover implements CommandProcessor {
         ret.add(p.matcher(command).replaceAll(""));
         return ret;
     }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
 }
@@ -0,0 +1,272 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeParser.GcodeMeta;
+import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.DecimalFormatter;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.types.PointSegment;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A command passed between the stages of the preprocessor together with the
+ * state it runs in.
+ *
+ * A command is either the text of a gcode line, which is parsed the first
+ * time it is needed, or a line generated by a {@link MotionProcessor} from its
+ * code and end point. Generated lines are only turned into text when
+ * {@link #getCommand()} is called, usually once the last stage is done, so a
+ * line passing through several stages is parsed and formatted at most once.
+ *
+ * @author wwinder
+ */
+public class ProcessedCommand {
+    private final GcodeState state;
+    private String command;
+
+    // Set for generated lines
+    private final Code code;
+    private final Position start;
+    private final Position end;
+    private final boolean absoluteMode;
+    private final double feed;
+    private final DecimalFormatter format;
+
+    // Held back by a processor and returned with a later command
+    private final boolean deferred;
+
+    // Parsed lazily
+    private List<GcodeMeta> metas;
+    private GcodeState endState;
+
+    private ProcessedCommand(String command, GcodeState state, Code code, Position start, Position end,
+                             boolean absoluteMode, double feed, DecimalFormatter format, boolean deferred) {
+        this.command = command;
+        this.state = state;
+        this.code = code;
+        this.start = start;
+        this.end = end;
+        this.absoluteMode = absoluteMode;
+        this.feed = feed;
+        this.format = format;
+        this.deferred = deferred;
+    }
+
+    /**
+     * @param command the gcode text
+     * @param state   the state of the program before the command
+     */
+    public static ProcessedCommand fromText(String command, GcodeState state) {
+        return new ProcessedCommand(command, state, null, null, null, true, Double.NaN, null, false);
+    }
+
+    /**
+     * A generated G0 or G1 line.
+     *
+     * @param code   the motion code
+     * @param start  where the line starts, used for relative coordinates
+     * @param end    where the line ends
+     * @param absoluteMode false to format the line with relative coordinates
+     * @param feed   the feed rate to add to the line, or NaN to leave it out
+     * @param format the format of the coordinates, or null for the default
+     *               of {@link GcodePreprocessorUtils#generateLineFromPoints}
+     * @param state  the state of the program before the line
+     */
+    public static ProcessedCommand fromLine(Code code, Position start, Position end, boolean absoluteMode,
+                                            double feed, DecimalFormatter format, GcodeState state) {
+        return new ProcessedCommand(null, state, code, new Position(start), new Position(end), absoluteMode,
+                feed, format, false);
+    }
+
+    /**
+     * @return true if this is a line created by {@link #fromLine} which
+     * hasn't been converted to text by a string based processor.
+     */
+    public boolean isGenerated() {
+        return code != null;
+    }
+
+    /**
+     * @return true if a processor held this command back and returned it with
+     * the results of a later command, see {@link #deferred()}.
+     */
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Returns this command marked as held back by a processor. A deferred
+     * command keeps its own state instead of starting in the end state of
+     * the command it was returned with, and so do the commands the following
+     * processors replace it with.
+     */
+    public ProcessedCommand deferred() {
+        if (deferred) {
+            return this;
+        }
+        return new ProcessedCommand(command, state, code, start, end, absoluteMode, feed, format, true);
+    }
+
+    /**
+     * @return the state of the program before the command.
+     */
+    public GcodeState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the gcode text, generated lines are formatted the first time
+     * this is called.
+     */
+    public String getCommand() {
+        if (command == null) {
+            StringBuilder line = GcodePreprocessorUtils.appendLineFromPoints(
+                    new StringBuilder(48), code, start, end, absoluteMode, format);
+            if (!Double.isNaN(feed)) {
+                line.append('F').append(feed);
+            }
+            command = line.toString();
+        }
+        return command;
+    }
+
+    /**
+     * @return the motion code of a generated line.
+     */
+    public Code getCode() {
+        return code;
+    }
+
+    /**
+     * @return the start of a generated line.
+     */
+    public Position getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end of a generated line.
+     */
+    public Position getEnd() {
+        return end;
+    }
+
+    /**
+     * @return false if a generated line uses relative coordinates.
+     */
+    public boolean isAbsoluteMode() {
+        return absoluteMode;
+    }
+
+    /**
+     * @return the feed rate added to a generated line, or NaN.
+     */
+    public double getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return the format of the coordinates of a generated line.
+     */
+    public DecimalFormatter getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the parsed command, the same as
+     * {@link GcodeParser#processCommand(String, int, GcodeState)} on the text.
+     * Generated lines are not parsed, their meta data is created directly.
+     *
+     * @return the parsed commands, or null if the command has no words.
+     */
+    public List<GcodeMeta> getMeta() throws GcodeParserException {
+        if (metas == null && endState == null) {
+            if (isGenerated()) {
+                GcodeMeta meta = new GcodeMeta();
+                meta.code = code;
+                meta.state = state.copy();
+                meta.state.currentMotionMode = code;
+                meta.state.currentPoint = new Position(end);
+                meta.state.commandNumber = 0;
+                if (!Double.isNaN(feed)) {
+                    meta.state.speed = feed;
+                }
+                meta.point = new PointSegment(end, 0);
+                meta.point.setIsMetric(meta.state.isMetric);
+                meta.point.setIsFastTraverse(code == Code.G0);
+                meta.point.setIsZMovement(start.z != end.z);
+                meta.point.setSpeed(meta.state.speed);
+                metas = Collections.singletonList(meta);
+            } else {
+                metas = GcodeParser.processCommand(command, 0, state);
+            }
+
+            endState = state;
+            if (metas != null) {
+                for (GcodeMeta meta : metas) {
+                    if (meta.state != null) {
+                        endState = meta.state;
+                    }
+                }
+            }
+        }
+        return metas;
+    }
+
+    /**
+     * @return the state of the program after the command, the same object as
+     * {@link #getState()} if the command doesn't move the machine.
+     */
+    public GcodeState getEndState() throws GcodeParserException {
+        getMeta();
+        return endState;
+    }
+
+    /**
+     * Returns this command in another state. Commands are parsed again in the
+     * new state, a generated line keeps its coordinates.
+     */
+    public ProcessedCommand withState(GcodeState newState) {
+        if (newState == state) {
+            return this;
+        }
+        return new ProcessedCommand(isGenerated() ? null : command, newState, code, start, end, absoluteMode, feed,
+                format, deferred);
+    }
+
+    /**
+     * Returns a generated line with new coordinates but otherwise the same
+     * settings.
+     */
+    public ProcessedCommand withLine(Position newStart, Position newEnd, double newFeed) {
+        return fromLine(code, newStart, newEnd, absoluteMode, newFeed, format, state);
+    }
+
+    @Override
+    public String toString() {
+        return getCommand();
+    }
+}
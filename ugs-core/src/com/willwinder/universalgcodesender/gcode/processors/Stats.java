@@ -21,9 +21,11 @@ package com.willwinder.universalgcodesender.gcode.processors;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils;
 import com.willwinder.universalgcodesender.model.UnitUtils.Units;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.vecmath.Point3d;
 import com.willwinder.universalgcodesender.gcode.GcodeStats;
 
@@ -39,22 +41,29 @@ public class Stats implements CommandProcessor, GcodeStats {
 
     private long commandCount = 0;
 
+    // Commands given to and returned by the preprocessor, which may run on
+    // several threads.
+    private final AtomicLong preprocessedCommands = new AtomicLong();
+    private final AtomicLong processedCommands = new AtomicLong();
+
     @Override
     public List<String> processCommand(String command, GcodeState state) throws GcodeParserException {
         Point3d c = state.currentPoint;
         if (c != null) {
-            Position p = new Position(c.x, c.y, c.z, state.isMetric ? Units.MM : Units.INCH)
-                            .getPositionIn(defaultUnits);
+            double scale = UnitUtils.scaleUnits(state.isMetric ? Units.MM : Units.INCH, defaultUnits);
+            double x = c.x * scale;
+            double y = c.y * scale;
+            double z = c.z * scale;
 
             // Update min
-            min.x = Math.min(min.x, p.x);
-            min.y = Math.min(min.y, p.y);
-            min.z = Math.min(min.z, p.z);
+            min.x = Math.min(min.x, x);
+            min.y = Math.min(min.y, y);
+            min.z = Math.min(min.z, z);
 
             // Update max
-            max.x = Math.max(max.x, p.x);
-            max.y = Math.max(max.y, p.y);
-            max.z = Math.max(max.z, p.z);
+            max.x = Math.max(max.x, x);
+            max.y = Math.max(max.y, y);
+            max.z = Math.max(max.z, z);
 
             // Num commands
             commandCount++;
@@ -63,6 +72,17 @@ public class Stats implements CommandProcessor, GcodeStats {
         return Collections.singletonList(command);
     }
 
+    /**
+     * Counts commands which went through the preprocessor.
+     *
+     * @param given number of commands given to the preprocessor.
+     * @param returned number of commands it returned for them.
+     */
+    public void addPreprocessedCommands(long given, long returned) {
+        preprocessedCommands.addAndGet(given);
+        processedCommands.addAndGet(returned);
+    }
+
     @Override
     public String getHelp() {
         return "Caches program metrics, shouldn't be enabled or disabled.";
@@ -82,5 +102,14 @@ public class Stats implements CommandProcessor, GcodeStats {
     public final long getCommandCount() {
         return commandCount;
     }
+
+    @Override
+    public final double getCommandReductionRatio() {
+        long returned = processedCommands.get();
+        if (returned == 0) {
+            return 1;
+        }
+        return (double) preprocessedCommands.get() / returned;
+    }
     
 }
@@ -31,7 +31,7 @@ import org.apache.commons.lang3.StringUtils;
  *
  * @author wwinder
  */
-public class Translator implements CommandProcessor {
+public class Translator implements MotionProcessor {
 
   private final Position offset;
 
@@ -102,8 +102,38 @@ public class Translator implements CommandProcessor {
     return Collections.singletonList(sb.toString());
   }
 
+  @Override
+  public void processCommand(ProcessedCommand command, List<ProcessedCommand> results) throws GcodeParserException {
+    GcodeState state = command.getState();
+    if (!command.isGenerated()) {
+      String text = command.getCommand();
+      String translated = processCommand(text, state).get(0);
+      results.add(translated.equals(text) ? command : ProcessedCommand.fromText(translated, state));
+      return;
+    }
+
+    // Generated lines are moved without formatting them, unless they are
+    // relative in which case they don't change.
+    if (!state.inAbsoluteMode) {
+      results.add(command);
+      return;
+    }
+
+    Position shift = offset.getPositionIn(UnitUtils.Units.getUnits(state.units));
+    results.add(command.withLine(translate(command.getStart(), shift), translate(command.getEnd(), shift), command.getFeed()));
+  }
+
+  private static Position translate(Position position, Position shift) {
+    return new Position(position.x + shift.x, position.y + shift.y, position.z + shift.z, position.getUnits());
+  }
+
   @Override
   public String getHelp() {
     return "Translates gcode location.";
   }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
 }
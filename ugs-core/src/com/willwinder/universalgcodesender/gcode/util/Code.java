@@ -19,9 +19,6 @@
 package com.willwinder.universalgcodesender.gcode.util;
 
 import static com.willwinder.universalgcodesender.gcode.util.Code.ModalGroup.*;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  *
@@ -174,9 +171,24 @@ public enum Code {
         Unknown
     }
 
-    static final Map<String,Code> codeLookup =
-        Arrays.stream(Code.values())
-                .collect(Collectors.toMap(Code::toString, c -> c));
+    // Codes are looked up by their number multiplied by ten, G38.2 is found at index 382.
+    private static final int MAX_LOOKUP_VALUE = 1000;
+    private static final Code[] G_CODES = new Code[MAX_LOOKUP_VALUE];
+    private static final Code[] M_CODES = new Code[MAX_LOOKUP_VALUE];
+
+    static {
+        for (Code c : values()) {
+            if (c == UNKNOWN) {
+                continue;
+            }
+            String name = c.name();
+            int underscore = name.indexOf('_');
+            int value = underscore < 0
+                    ? Integer.parseInt(name.substring(1)) * 10
+                    : Integer.parseInt(name.substring(1, underscore)) * 10 + Integer.parseInt(name.substring(underscore + 1));
+            lookupTable(name.charAt(0))[value] = c;
+        }
+    }
 
     private final ModalGroup type;
     private final boolean nonModalMotionCode;
@@ -214,9 +226,30 @@ public enum Code {
         return this.type;
     }
 
+    private static Code[] lookupTable(char letter) {
+        switch (letter) {
+            case 'G':
+            case 'g':
+                return G_CODES;
+            case 'M':
+            case 'm':
+                return M_CODES;
+            default:
+                return null;
+        }
+    }
+
+    private static Code lookupCode(Code[] table, int tenths) {
+        if (table == null || tenths < 0 || tenths >= MAX_LOOKUP_VALUE) {
+            return UNKNOWN;
+        }
+        Code c = table[tenths];
+        return c == null ? UNKNOWN : c;
+    }
+
     /**
-     * Lookup code from lookup map.
-     * @param code String representation of an enum, like G1 or G38.2
+     * Lookup code from the lookup table without creating any strings.
+     * @param code String representation of an enum, like G1, G01 or G38.2
      * @return the enum value
      */
     public static Code lookupCode(String code) {
@@ -224,19 +257,50 @@ public enum Code {
             return null;
         }
 
-        char type = Character.toUpperCase(code.charAt(0));
+        Code[] table = lookupTable(code.charAt(0));
+        if (table == null || code.length() < 2) {
+            return UNKNOWN;
+        }
 
-        // Strip leading zeros in a way that leaves the last zero in case of 'G0'
-        int subStr = 1;
+        int value = 0;
+        int decimals = -1;
         for (int i = 1; i < code.length(); i++) {
-            subStr = i;
-            if (code.charAt(i) != '0') {
-                break;
+            char c = code.charAt(i);
+            if (c == '.' && decimals < 0 && i > 1) {
+                decimals = 0;
+            } else if (c < '0' || c > '9') {
+                return UNKNOWN;
+            } else if (decimals < 0) {
+                value = value * 10 + (c - '0');
+                if (value >= MAX_LOOKUP_VALUE) {
+                    return UNKNOWN;
+                }
+            } else if (++decimals == 1) {
+                value = value * 10 + (c - '0');
+            } else if (c != '0') {
+                // Only a single decimal is used by the codes, G38.20 is the same as G38.2.
+                return UNKNOWN;
             }
         }
-        String rest = code.substring(subStr);
 
-        Code c = codeLookup.get(type + rest);
-        return c == null ? UNKNOWN : c;
+        if (decimals == 0) {
+            return UNKNOWN;
+        }
+        return lookupCode(table, decimals < 0 ? value * 10 : value);
+    }
+
+    /**
+     * Lookup code from the letter and numeric value of a word.
+     * @param letter the address, G or M
+     * @param value the number of the word, like 1 or 38.2
+     * @return the enum value, UNKNOWN if there isn't a code for the word
+     */
+    public static Code lookupCode(char letter, double value) {
+        double tenths = value * 10;
+        int index = (int) Math.round(tenths);
+        if (Double.isNaN(tenths) || Math.abs(tenths - index) > 1e-6) {
+            return UNKNOWN;
+        }
+        return lookupCode(lookupTable(letter), index);
     }
 }
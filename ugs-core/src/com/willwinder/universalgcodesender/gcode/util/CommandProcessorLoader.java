@@ -22,11 +22,13 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.processors.ArcExpander;
 import com.willwinder.universalgcodesender.gcode.processors.CommandLengthProcessor;
 import com.willwinder.universalgcodesender.gcode.processors.CommentProcessor;
 import com.willwinder.universalgcodesender.gcode.processors.DecimalProcessor;
 import com.willwinder.universalgcodesender.gcode.processors.FeedOverrideProcessor;
+import com.willwinder.universalgcodesender.gcode.processors.LineMerger;
 import com.willwinder.universalgcodesender.gcode.processors.M30Processor;
 import com.willwinder.universalgcodesender.gcode.processors.SpindleOnDweller;
 import com.willwinder.universalgcodesender.gcode.processors.PatternRemover;
@@ -131,7 +133,8 @@ public class CommandProcessorLoader {
      *         "enabled": <enabled>,
      *         "optional": <optional>,
      *         "args": {
-     *             "segmentLengthMM": <double>
+     *             "segmentLengthMM": <double>,
+     *             "chordToleranceMM": <optional double>
      *         }
      *     },{
      *         "name": "CommandLenghtProcessor",
@@ -159,6 +162,13 @@ public class CommandProcessorLoader {
      *             "speed": <double>
      *         }
      *     },{
+     *         "name": "LineMerger",
+     *         "enabled": <enabled>,
+     *         "optional": <optional>,
+     *         "args": {
+     *             "toleranceMM": <double>
+     *         }
+     *     },{
      *         "name": "M30Processor",
      *         "enabled": <enabled>
      *         "optional": <optional>,
@@ -192,8 +202,7 @@ public class CommandProcessorLoader {
 
             switch (pc.name) {
                 case "ArcExpander":
-                    double length = pc.args.get("segmentLengthMM").getAsDouble();
-                    p = new ArcExpander(true, length);
+                    p = createArcExpander(pc.args);
                     break;
                 case "CommandLengthProcessor":
                     int commandLength = pc.args.get("commandLength").getAsInt();
@@ -213,6 +222,10 @@ public class CommandProcessorLoader {
                 case "M30Processor":
                     p = new M30Processor();
                     break;
+                case "LineMerger":
+                    double tolerance = pc.args.get("toleranceMM").getAsDouble();
+                    p = new LineMerger(tolerance);
+                    break;
                 case "PatternRemover":
                     String pattern = pc.args.get("pattern").getAsString();
                     p = new PatternRemover(pattern);
@@ -244,8 +257,7 @@ public class CommandProcessorLoader {
         try {
             switch (pc.name) {
                 case "ArcExpander":
-                    double length = pc.args.get("segmentLengthMM").getAsDouble();
-                    p = new ArcExpander(true, length);
+                    p = createArcExpander(pc.args);
                     break;
                 case "CommandLengthProcessor":
                     int commandLength = pc.args.get("commandLength").getAsInt();
@@ -265,6 +277,10 @@ public class CommandProcessorLoader {
                 case "M30Processor":
                     p = new M30Processor();
                     break;
+                case "LineMerger":
+                    double tolerance = pc.args.get("toleranceMM").getAsDouble();
+                    p = new LineMerger(tolerance);
+                    break;
                 case "PatternRemover":
                     String pattern = pc.args.get("pattern").getAsString();
                     p = new PatternRemover(pattern);
@@ -285,4 +301,18 @@ public class CommandProcessorLoader {
                     + ": " + Localization.getString(pc.name);
         }
     }
+
+    /**
+     * The chord tolerance is optional, without it the arcs are split by
+     * segment length.
+     */
+    private static ArcExpander createArcExpander(JsonObject args) {
+        double length = args.get("segmentLengthMM").getAsDouble();
+        double chordTolerance = 0;
+        if (args.has("chordToleranceMM") && !args.get("chordToleranceMM").isJsonNull()) {
+            chordTolerance = GcodePreprocessorUtils.clampChordTolerance(
+                    args.get("chordToleranceMM").getAsDouble());
+        }
+        return new ArcExpander(true, length, chordTolerance);
+    }
 }
@@ -0,0 +1,135 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.util;
+
+import com.willwinder.universalgcodesender.i18n.Localization;
+
+import java.text.DecimalFormat;
+
+/**
+ * Writes numbers for generated gcode with a maximum number of decimals and
+ * without trailing zeros. The output is the same as a {@link DecimalFormat}
+ * with the pattern "0.###" using {@link Localization#dfs}, but the digits are
+ * appended straight into a StringBuilder.
+ *
+ * Numbers which are close to half way between two results, or too large to
+ * scale into a long, are formatted with a DecimalFormat so that they are
+ * rounded the same way. The formatter has no state and may be shared between
+ * threads.
+ *
+ * @author wwinder
+ */
+public class DecimalFormatter {
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Scaled values above this are formatted with a DecimalFormat
+    private static final double MAX_SCALED = 1L << 52;
+
+    private final int maximumFractionDigits;
+    private final long integerScale;
+    private final double scale;
+
+    // DecimalFormat isn't thread safe, one is kept per thread for the few
+    // numbers which need it.
+    private final ThreadLocal<DecimalFormat> fallback;
+
+    /**
+     * @param maximumFractionDigits the maximum number of decimals.
+     */
+    public DecimalFormatter(int maximumFractionDigits) {
+        if (maximumFractionDigits < 0) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + maximumFractionDigits);
+        }
+        this.maximumFractionDigits = maximumFractionDigits;
+        // With more decimals than fit in a long every number is formatted
+        // with a DecimalFormat.
+        this.scale = maximumFractionDigits < POWERS_OF_TEN.length
+                ? POWERS_OF_TEN[maximumFractionDigits]
+                : Double.POSITIVE_INFINITY;
+        this.integerScale = (long) Math.min(scale, Long.MAX_VALUE);
+        this.fallback = ThreadLocal.withInitial(() -> {
+            DecimalFormat format = new DecimalFormat("0", Localization.dfs);
+            format.setMaximumFractionDigits(maximumFractionDigits);
+            return format;
+        });
+    }
+
+    public int getMaximumFractionDigits() {
+        return maximumFractionDigits;
+    }
+
+    /**
+     * @return the number as a string.
+     */
+    public String format(double value) {
+        return append(new StringBuilder(24), value).toString();
+    }
+
+    /**
+     * Appends the number to the builder.
+     *
+     * @return the builder.
+     */
+    public StringBuilder append(StringBuilder sb, double value) {
+        double scaled = Math.abs(value) * scale;
+        if (!(scaled < MAX_SCALED)) {
+            // Also catches NaN and infinity
+            return sb.append(fallback.get().format(value));
+        }
+
+        // The product may be off by an ulp, so a result that close to a tie
+        // could be rounded differently than DecimalFormat does.
+        double floor = Math.floor(scaled);
+        if (Math.abs(scaled - floor - 0.5) <= 4 * Math.ulp(scaled)) {
+            return sb.append(fallback.get().format(value));
+        }
+
+        long rounded = (long) Math.rint(scaled);
+        long integerPart = rounded / integerScale;
+        long fraction = rounded % integerScale;
+
+        // DecimalFormat keeps the sign of negative zero and of small
+        // negative numbers that round to zero.
+        if (Double.doubleToRawLongBits(value) < 0) {
+            sb.append('-');
+        }
+        sb.append(integerPart);
+
+        if (fraction != 0) {
+            int digits = maximumFractionDigits;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+
+            sb.append('.');
+            for (int i = digits - 1; i >= 0 && fraction < POWERS_OF_TEN[i]; i--) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.util;
+
+/**
+ * Reads decimal numbers from a part of a gcode command or controller response
+ * without creating a string for them. The digits are collected into a long
+ * which is divided by a power of ten, both are exact so the result is the
+ * same as {@link Double#parseDouble(String)}.
+ *
+ * Numbers with too many digits to be converted exactly, or in an unusual
+ * format such as an exponent, are handed to Double.parseDouble. Anything that
+ * isn't a number is returned as NaN instead of throwing an exception.
+ *
+ * @author wwinder
+ */
+public final class DecimalParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parses the characters from start to end as a decimal number.
+     *
+     * @return the value or NaN if it isn't a number.
+     */
+    public static double parseDouble(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return Double.NaN;
+        }
+
+        int i = start;
+        boolean negative = s.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean decimalPoint = false;
+        boolean exact = true;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    exact = false;
+                    break;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (decimalPoint) {
+                    decimals++;
+                }
+            } else if (c == '.' && !decimalPoint) {
+                decimalPoint = true;
+            } else {
+                exact = false;
+                break;
+            }
+        }
+
+        if (!exact || decimals >= POWERS_OF_TEN.length) {
+            try {
+                return Double.parseDouble(s.subSequence(start, end).toString());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        if (digits == 0) {
+            return Double.NaN;
+        }
+
+        // Both operands are exact so the division is correctly rounded.
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+}
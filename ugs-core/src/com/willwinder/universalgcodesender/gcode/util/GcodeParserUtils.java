@@ -18,8 +18,10 @@
  */
 package com.willwinder.universalgcodesender.gcode.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.willwinder.universalgcodesender.gcode.GcodeParser;
 import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 import com.willwinder.universalgcodesender.utils.GcodeStreamReader;
 import com.willwinder.universalgcodesender.utils.GcodeStreamWriter;
@@ -27,7 +29,15 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,19 +51,80 @@ import org.apache.commons.lang3.StringUtils;
 public class GcodeParserUtils {
     private static final Logger logger = Logger.getLogger(GcodeParserUtils.class.getName());
 
+    // Number of lines handed to a preprocessor worker at a time.
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Reads the next command and comment from an input.
+     */
+    @FunctionalInterface
+    private interface LineReader {
+        /**
+         * @return the command and its comment, or null when the input is exhausted.
+         */
+        String[] read() throws IOException;
+    }
+
     /**
      * Helper method to apply processors to gcode.
+     *
+     * @return the number of lines which were processed.
      */
-    public static void processAndExport(GcodeParser gcp, File input, File output)
+    public static int processAndExport(GcodeParser gcp, File input, File output)
             throws IOException, GcodeParserException {
-        try(BufferedReader br = new BufferedReader(new FileReader(input))) {
-            if (processAndExportGcodeStream(gcp, br, output)) {
-                return;
-            }
+        // Start over in case the parser was used for another file.
+        gcp.reset();
+
+        // Preprocess a GcodeStream file, either binary or the older text format.
+        try (IGcodeStreamReader gsr = new GcodeStreamReader(input)) {
+            return export(gcp, () -> {
+                if (gsr.getNumRowsRemaining() <= 0) {
+                    return null;
+                }
+                GcodeCommand gc = gsr.getNextCommand();
+                return new String[]{gc.getCommandString(), gc.getComment()};
+            }, output);
+        } catch (GcodeStreamReader.NotGcodeStreamFile ex) {
+            // File exists, but isn't a stream reader. So go ahead and try parsing it as a raw gcode file.
         }
 
+        // Preprocess a regular gcode file.
         try(BufferedReader br = new BufferedReader(new FileReader(input))) {
-            processAndExportText(gcp, br, output);
+            return export(gcp, () -> {
+                String line = br.readLine();
+                if (line == null) {
+                    return null;
+                }
+                return new String[]{line, GcodePreprocessorUtils.parseComment(line)};
+            }, output);
+        }
+    }
+
+    /**
+     * Applies the processors to every line of the input, concurrently if the
+     * processors are stateless.
+     */
+    private static int export(GcodeParser gcp, LineReader input, File output)
+            throws IOException, GcodeParserException {
+        try (GcodeStreamWriter gsw = new GcodeStreamWriter(output)) {
+            if (THREADS > 1 && gcp.hasStatelessProcessors()) {
+                return exportConcurrently(gcp, input, gsw);
+            }
+
+            int i = 0;
+            for (String[] line; (line = input.read()) != null; ) {
+                i++;
+                write(gcp, gsw, line[0], line[1], i);
+            }
+
+            // Stateful processors may still be holding commands back.
+            GcodeState state = gcp.getCurrentState();
+            for (String processedLine : gcp.flushCommandProcessors(state)) {
+                gsw.addLine(processedLine, processedLine, "", i, state);
+            }
+            return i;
         }
     }
 
@@ -65,15 +136,23 @@ public class GcodeParserUtils {
             logger.log(Level.FINE, "gcode processing line: " + idx);
         }
 
+        // The state before the command is kept at checkpoint rows for resuming the program.
+        GcodeState state = gcp.getCurrentState();
         if (StringUtils.isEmpty(command)) {
-            gsw.addLine(command, command, comment, idx);
+            gsw.addLine(command, command, comment, idx, state);
         }
         else {
             // Parse the gcode for the buffer.
-            Collection<String> lines = gcp.preprocessCommand(command, gcp.getCurrentState());
+            Collection<String> lines = gcp.preprocessCommand(command, state);
 
             for(String processedLine : lines) {
-                gsw.addLine(command, processedLine, comment, idx);
+                gsw.addLine(command, processedLine, comment, idx, state);
+            }
+
+            // Commands held back by a processor still get a row, the state at
+            // later rows is found by applying the original command of each row.
+            if (lines.isEmpty()) {
+                gsw.addLine(command, "", comment, idx, state);
             }
 
             gcp.addCommand(command);
@@ -81,47 +160,138 @@ public class GcodeParserUtils {
     }
 
     /**
-     * Attempts to read the input file in GcodeStream format.
-     * @return whether or not we succeed processing the file.
+     * Pipelined version of the sequential export. The calling thread reads the
+     * input and tracks the modal state of every line, chunks of lines are
+     * preprocessed by a pool of workers and a single writer stores the results
+     * in their original order.
      */
-    private static boolean processAndExportGcodeStream(GcodeParser gcp, BufferedReader input, File output)
+    private static int exportConcurrently(GcodeParser gcp, LineReader input, GcodeStreamWriter gsw)
             throws IOException, GcodeParserException {
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactoryBuilder().setNameFormat("gcode-preprocessor-%d").setDaemon(true).build());
+        ExecutorService writer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("gcode-writer-%d").setDaemon(true).build());
 
-        // Preprocess a GcodeStream file.
+        // Bound the number of chunks in memory.
+        Deque<Future<?>> pending = new ArrayDeque<>();
         try {
-            IGcodeStreamReader gsr = new GcodeStreamReader(input);
-            try (GcodeStreamWriter gsw = new GcodeStreamWriter(output)) {
-                int i = 0;
-                while (gsr.getNumRowsRemaining() > 0) {
-                    i++;
-                    GcodeCommand gc = gsr.getNextCommand();
-                    write(gcp, gsw, gc.getCommandString(), gc.getComment(), i);
+            int i = 0;
+            Chunk chunk = new Chunk(i + 1);
+            for (String[] line; (line = input.read()) != null; ) {
+                i++;
+                if (i % 100000 == 0) {
+                    logger.log(Level.FINE, "gcode processing line: " + i);
+                }
+
+                // The state is replaced or updated by addCommand, keep a copy for the workers.
+                chunk.add(line[0], line[1], gcp.getCurrentState().copy());
+                if (StringUtils.isNotEmpty(line[0])) {
+                    gcp.addCommand(line[0]);
                 }
 
-                // Done processing GcodeStream file.
-                return true;
+                if (chunk.size == CHUNK_SIZE) {
+                    submit(gcp, gsw, chunk, workers, writer, pending);
+                    chunk = new Chunk(i + 1);
+                }
+                while (pending.size() > THREADS * 2) {
+                    await(pending.removeFirst());
+                }
             }
-        } catch (GcodeStreamReader.NotGcodeStreamFile ex) {
-            // File exists, but isn't a stream reader. So go ahead and try parsing it as a raw gcode file.
+
+            if (chunk.size > 0) {
+                submit(gcp, gsw, chunk, workers, writer, pending);
+            }
+            while (!pending.isEmpty()) {
+                await(pending.removeFirst());
+            }
+            return i;
+        } finally {
+            workers.shutdownNow();
+            writer.shutdownNow();
         }
-        return false;
+    }
+
+    private static void submit(GcodeParser gcp, GcodeStreamWriter gsw, Chunk chunk,
+            ExecutorService workers, ExecutorService writer, Deque<Future<?>> pending) {
+        Future<List<List<String>>> processed = workers.submit(() -> chunk.preprocess(gcp));
+        pending.add(writer.submit(() -> {
+            chunk.write(gsw, processed.get());
+            return null;
+        }));
     }
 
     /**
-     * Attempts to read the input file in gcode-text format.
-     * @return whether or not we succeed processing the file.
+     * Waits for a chunk to be written and rethrows any failure.
      */
-    private static void processAndExportText(GcodeParser gcp, BufferedReader input, File output)
-            throws IOException, GcodeParserException {
-        // Preprocess a regular gcode file.
-        try(BufferedReader br = input) {
-            try (GcodeStreamWriter gsw = new GcodeStreamWriter(output)) {
-                int i = 0;
-                for(String line; (line = br.readLine()) != null; ) {
-                    i++;
-
-                    String comment = GcodePreprocessorUtils.parseComment(line);
-                    write(gcp, gsw, line, comment, i);
+    private static void await(Future<?> future) throws IOException, GcodeParserException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while preprocessing gcode", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof ExecutionException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof GcodeParserException) {
+                throw (GcodeParserException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A run of consecutive lines together with the state preceding each of them.
+     */
+    private static class Chunk {
+        private final int firstIndex;
+        private final String[] commands = new String[CHUNK_SIZE];
+        private final String[] comments = new String[CHUNK_SIZE];
+        private final GcodeState[] states = new GcodeState[CHUNK_SIZE];
+        private int size = 0;
+
+        private Chunk(int firstIndex) {
+            this.firstIndex = firstIndex;
+        }
+
+        private void add(String command, String comment, GcodeState state) {
+            commands[size] = command;
+            comments[size] = comment;
+            states[size] = state;
+            size++;
+        }
+
+        /**
+         * @return the processed lines of each command, null for empty commands.
+         */
+        private List<List<String>> preprocess(GcodeParser gcp) throws GcodeParserException {
+            List<List<String>> results = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (StringUtils.isNotEmpty(commands[i])) {
+                    results.add(gcp.preprocessCommand(commands[i], states[i]));
+                } else {
+                    results.add(null);
+                }
+            }
+            return results;
+        }
+
+        private void write(GcodeStreamWriter gsw, List<List<String>> processed) {
+            for (int i = 0; i < size; i++) {
+                int idx = firstIndex + i;
+                if (processed.get(i) == null) {
+                    gsw.addLine(commands[i], commands[i], comments[i], idx, states[i]);
+                } else if (processed.get(i).isEmpty()) {
+                    gsw.addLine(commands[i], "", comments[i], idx, states[i]);
+                } else {
+                    for (String processedLine : processed.get(i)) {
+                        gsw.addLine(commands[i], processedLine, comments[i], idx, states[i]);
+                    }
                 }
             }
         }
@@ -19,6 +19,7 @@
 package com.willwinder.universalgcodesender.gcode.util;
 
 import com.willwinder.universalgcodesender.Utils;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.model.PartialPosition;
 import com.willwinder.universalgcodesender.model.UnitUtils.Units;
 
@@ -134,4 +135,45 @@ public class GcodeUtils {
         return sb.toString();
     }
 
-}
\ No newline at end of file
+    /**
+     * Generate a command restoring the modal state of a program, used before
+     * resuming a program from a line in the middle of the file. The motion
+     * mode is only restored for linear moves as arcs require axis words. The
+     * spindle and coolant are always restored, including turning them off.
+     *
+     * @param state the state to restore
+     * @return a command string
+     */
+    public static String generateModalStateCommand(GcodeState state) {
+        StringBuilder sb = new StringBuilder();
+        appendCode(sb, state.units);
+        appendCode(sb, state.distanceMode);
+        appendCode(sb, state.arcDistanceMode);
+        appendCode(sb, state.plane == null ? null : state.plane.code);
+        appendCode(sb, state.offset);
+        appendCode(sb, state.feedMode);
+
+        if (state.currentMotionMode == Code.G0 || state.currentMotionMode == Code.G1) {
+            appendCode(sb, state.currentMotionMode);
+        }
+
+        if (state.speed > 0) {
+            sb.append("F").append(Utils.formatter.format(state.speed));
+        }
+
+        if (state.spindleSpeed > 0) {
+            sb.append("S").append(Utils.formatter.format(state.spindleSpeed));
+        }
+
+        appendCode(sb, state.spindle);
+        appendCode(sb, state.coolant);
+
+        return sb.toString();
+    }
+
+    private static void appendCode(StringBuilder sb, Code code) {
+        if (code != null) {
+            sb.append(code.toString());
+        }
+    }
+}
@@ -88,4 +88,40 @@ public class PlaneFormatter {
             default: throw new IllegalArgumentException("Plane not supported: " + plane);
         }
     }
+
+    /**
+     * @return the index of the first axis of the plane in an x, y, z array.
+     */
+    public int axis0Index() {
+        switch(plane) {
+            case XY: return 0;
+            case ZX: return 2;
+            case YZ: return 1;
+            default: throw new IllegalArgumentException("Plane not supported: " + plane);
+        }
+    }
+
+    /**
+     * @return the index of the second axis of the plane in an x, y, z array.
+     */
+    public int axis1Index() {
+        switch(plane) {
+            case XY: return 1;
+            case ZX: return 0;
+            case YZ: return 2;
+            default: throw new IllegalArgumentException("Plane not supported: " + plane);
+        }
+    }
+
+    /**
+     * @return the index of the linear axis in an x, y, z array.
+     */
+    public int linearIndex() {
+        switch(plane) {
+            case XY: return 2;
+            case ZX: return 1;
+            case YZ: return 0;
+            default: throw new IllegalArgumentException("Plane not supported: " + plane);
+        }
+    }
 }
@@ -55,4 +55,18 @@ public interface CommunicatorListener {
      * processing of commands.
      */
     void communicatorPausedOnError();
+
+    /**
+     * This method will be called when the connection was dropped, the commands
+     * which were sent but not completed yet won't get a response.
+     */
+    default void communicatorConnectionDropped() {
+    }
+
+    /**
+     * This method will be called when a dropped connection couldn't be
+     * established again and was closed.
+     */
+    default void communicatorConnectionClosed() {
+    }
 }
@@ -0,0 +1,127 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.listeners;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The groups of fields in a {@link ControllerStatus} which listeners can
+ * subscribe to, a listener is only notified when one of its fields changed.
+ *
+ * @author wwinder
+ */
+public enum ControllerStatusField {
+    STATE,
+    /** Machine and work coordinates and the work coordinate offset. */
+    POSITION,
+    FEED_SPINDLE,
+    OVERRIDES,
+    /** Enabled pins and accessory states. */
+    PINS;
+
+    private static final ControllerStatusField[] FIELDS = values();
+
+    public static final int ALL = (1 << FIELDS.length) - 1;
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    public static int mask(Set<ControllerStatusField> fields) {
+        int mask = 0;
+        for (ControllerStatusField field : fields) {
+            mask |= field.mask();
+        }
+        return mask;
+    }
+
+    public static Set<ControllerStatusField> fromMask(int mask) {
+        EnumSet<ControllerStatusField> fields = EnumSet.noneOf(ControllerStatusField.class);
+        for (ControllerStatusField field : FIELDS) {
+            if ((mask & field.mask()) != 0) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Compares two statuses.
+     *
+     * @param previous the previous status, may be null.
+     * @param current the new status.
+     * @return a mask of the fields which are different.
+     */
+    public static int changes(ControllerStatus previous, ControllerStatus current) {
+        if (previous == current) {
+            return 0;
+        }
+        if (previous == null || current == null) {
+            return ALL;
+        }
+
+        int mask = 0;
+        if (previous.getState() != current.getState()) {
+            mask |= STATE.mask();
+        }
+        if (!Objects.equals(previous.getMachineCoord(), current.getMachineCoord())
+                || !Objects.equals(previous.getWorkCoord(), current.getWorkCoord())
+                || !Objects.equals(previous.getWorkCoordinateOffset(), current.getWorkCoordinateOffset())) {
+            mask |= POSITION.mask();
+        }
+        if (!Objects.equals(previous.getFeedSpeed(), current.getFeedSpeed())
+                || !Objects.equals(previous.getSpindleSpeed(), current.getSpindleSpeed())
+                || previous.getFeedSpeedUnits() != current.getFeedSpeedUnits()) {
+            mask |= FEED_SPINDLE.mask();
+        }
+        if (!sameOverrides(previous.getOverrides(), current.getOverrides())) {
+            mask |= OVERRIDES.mask();
+        }
+        if (!samePins(previous.getEnabledPins(), current.getEnabledPins())
+                || !sameAccessories(previous.getAccessoryStates(), current.getAccessoryStates())) {
+            mask |= PINS.mask();
+        }
+        return mask;
+    }
+
+    private static boolean sameOverrides(ControllerStatus.OverridePercents a, ControllerStatus.OverridePercents b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.feed == b.feed && a.rapid == b.rapid && a.spindle == b.spindle;
+    }
+
+    private static boolean samePins(ControllerStatus.EnabledPins a, ControllerStatus.EnabledPins b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.X == b.X && a.Y == b.Y && a.Z == b.Z && a.Probe == b.Probe
+                && a.Door == b.Door && a.Hold == b.Hold && a.SoftReset == b.SoftReset && a.CycleStart == b.CycleStart;
+    }
+
+    private static boolean sameAccessories(ControllerStatus.AccessoryStates a, ControllerStatus.AccessoryStates b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.SpindleCW == b.SpindleCW && a.SpindleCCW == b.SpindleCCW
+                && a.Flood == b.Flood && a.Mist == b.Mist;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import java.util.Map;
+
+/**
+ * A value tracked by the {@link MetricsRegistry}.
+ *
+ * @author wwinder
+ */
+public interface Metric {
+    /**
+     * @return the current values of the metric by field name, in a stable order.
+     */
+    Map<String, Number> snapshot();
+
+    /**
+     * Starts over, for instance when a new file is streamed.
+     */
+    default void reset() {
+    }
+}
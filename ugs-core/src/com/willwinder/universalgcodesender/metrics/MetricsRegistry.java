@@ -0,0 +1,123 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * A named collection of metrics. Metrics are created on first use and can be
+ * exported as JSON or CSV to compare runs across machines and settings.
+ *
+ * @author wwinder
+ */
+public class MetricsRegistry {
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name) {
+        return get(name, Counter.class, Counter::new);
+    }
+
+    public Rate rate(String name) {
+        return get(name, Rate.class, Rate::new);
+    }
+
+    public Histogram histogram(String name) {
+        return get(name, Histogram.class, Histogram::new);
+    }
+
+    /**
+     * Registers a gauge, replacing any previous gauge with the same name.
+     */
+    public void gauge(String name, Gauge gauge) {
+        metrics.put(name, gauge);
+    }
+
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    public Metric getMetric(String name) {
+        return metrics.get(name);
+    }
+
+    private <T extends Metric> T get(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = metrics.computeIfAbsent(name, n -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("The metric " + name + " is a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Resets all metrics.
+     */
+    public void reset() {
+        metrics.values().forEach(Metric::reset);
+    }
+
+    /**
+     * @return the values of all metrics by metric name, sorted by name.
+     */
+    public Map<String, Map<String, Number>> snapshot() {
+        Map<String, Map<String, Number>> values = new LinkedHashMap<>();
+        metrics.forEach((name, metric) -> values.put(name, metric.snapshot()));
+        return values;
+    }
+
+    public String toJson() {
+        return new GsonBuilder()
+                .setPrettyPrinting()
+                .serializeSpecialFloatingPointValues()
+                .create()
+                .toJson(snapshot());
+    }
+
+    /**
+     * Writes the metrics with one row per value: metric,field,value
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("metric,field,value\n");
+        for (Map.Entry<String, Map<String, Number>> metric : snapshot().entrySet()) {
+            for (Map.Entry<String, Number> field : metric.getValue().entrySet()) {
+                writer.write(metric.getKey());
+                writer.write(',');
+                writer.write(field.getKey());
+                writer.write(',');
+                writer.write(format(field.getValue()));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private static String format(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format(Locale.ROOT, "%.3f", value.doubleValue());
+        }
+        return value.toString();
+    }
+}
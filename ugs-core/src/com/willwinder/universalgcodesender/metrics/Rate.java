@@ -0,0 +1,103 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events per second over a sliding window of one second buckets.
+ * Marking events is lock free, a bucket is reclaimed by the first thread
+ * which marks an event in a new second.
+ *
+ * @author wwinder
+ */
+public final class Rate implements Metric {
+    private static final int WINDOW_SECONDS = 10;
+
+    private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+    private final LongAdder total = new LongAdder();
+    private final long origin = System.nanoTime();
+
+    public Rate() {
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            seconds.set(i, -1);
+        }
+    }
+
+    public void mark() {
+        mark(1);
+    }
+
+    public void mark(long events) {
+        long second = currentSecond();
+        int index = (int) (second % WINDOW_SECONDS);
+        long bucketSecond = seconds.get(index);
+        if (bucketSecond != second && seconds.compareAndSet(index, bucketSecond, second)) {
+            counts.set(index, 0);
+        }
+        counts.addAndGet(index, events);
+        total.add(events);
+    }
+
+    /**
+     * @return events per second over the window, excluding the current second.
+     */
+    public double getRatePerSecond() {
+        long now = currentSecond();
+        long events = 0;
+        long elapsed = Math.min(WINDOW_SECONDS - 1, now);
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            long second = seconds.get(i);
+            if (second < now && second >= now - elapsed) {
+                events += counts.get(i);
+            }
+        }
+        return elapsed == 0 ? 0 : (double) events / elapsed;
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - origin);
+    }
+
+    @Override
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("perSecond", getRatePerSecond());
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        total.reset();
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            seconds.set(i, -1);
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how commands flow to the controller while streaming, to tell
+ * whether the controller is kept busy or is starved of commands:
+ *
+ * <ul>
+ * <li>sent commands and bytes per second</li>
+ * <li>the latency from sending a command until it is acknowledged</li>
+ * <li>the number of bytes in flight in the controller RX buffer</li>
+ * <li>the free planner blocks and RX bytes reported by the controller</li>
+ * <li>starvation events, where the planner ran empty while streaming</li>
+ * </ul>
+ *
+ * @author wwinder
+ */
+public class StreamingMetrics {
+    public static final String COMMANDS_SENT = "stream.commands.sent";
+    public static final String BYTES_SENT = "stream.bytes.sent";
+    public static final String COMMANDS_COMPLETED = "stream.commands.completed";
+    public static final String ACK_LATENCY = "stream.ack.latency.us";
+    public static final String RX_BUFFER_BYTES = "stream.rx.buffer.bytes";
+    public static final String PLANNER_BLOCKS_FREE = "controller.planner.blocks.free";
+    public static final String RX_BYTES_FREE = "controller.rx.bytes.free";
+    public static final String PLANNER_STARVATION = "controller.planner.starvation";
+
+    private final MetricsRegistry registry;
+    private final Rate commandsSent;
+    private final Rate bytesSent;
+    private final Rate commandsCompleted;
+    private final Histogram ackLatency;
+    private final Histogram rxBufferBytes;
+    private final Histogram plannerBlocksFree;
+    private final Histogram rxBytesFree;
+    private final Counter plannerStarvation;
+
+    // Planner state, only updated from status reports.
+    private int plannerBlocksTotal;
+    private boolean plannerBusy;
+    private boolean plannerStarved;
+
+    public StreamingMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        commandsSent = registry.rate(COMMANDS_SENT);
+        bytesSent = registry.rate(BYTES_SENT);
+        commandsCompleted = registry.rate(COMMANDS_COMPLETED);
+        ackLatency = registry.histogram(ACK_LATENCY);
+        rxBufferBytes = registry.histogram(RX_BUFFER_BYTES);
+        plannerBlocksFree = registry.histogram(PLANNER_BLOCKS_FREE);
+        rxBytesFree = registry.histogram(RX_BYTES_FREE);
+        plannerStarvation = registry.counter(PLANNER_STARVATION);
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * A batch of commands was written to the controller.
+     *
+     * @param commands number of commands
+     * @param bytes number of bytes written
+     * @param bufferedBytes bytes in flight in the controller RX buffer after the write
+     */
+    public void commandsSent(int commands, int bytes, int bufferedBytes) {
+        commandsSent.mark(commands);
+        bytesSent.mark(bytes);
+        rxBufferBytes.record(bufferedBytes);
+    }
+
+    /**
+     * The controller acknowledged a command.
+     *
+     * @param sentTime the {@link System#nanoTime()} when the command was sent.
+     */
+    public void commandCompleted(long sentTime) {
+        commandsCompleted.mark();
+        if (sentTime != 0) {
+            ackLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentTime));
+        }
+    }
+
+    /**
+     * The controller reported the state of its buffers, a starvation event
+     * is counted when the planner runs empty while streaming after it had
+     * been filled. The planner always drains at the end of a stream, so it
+     * is only counted while there are rows which haven't been completed.
+     *
+     * @param blocksFree free planner blocks
+     * @param bytesFree free bytes in the controller RX buffer
+     * @param streaming if a file is being streamed
+     * @param rowsRemaining rows of the stream which haven't been completed
+     */
+    public synchronized void controllerBuffer(int blocksFree, int bytesFree, boolean streaming, int rowsRemaining) {
+        plannerBlocksFree.record(blocksFree);
+        rxBytesFree.record(bytesFree);
+
+        // The largest number of free blocks seen is the size of the planner.
+        plannerBlocksTotal = Math.max(plannerBlocksTotal, blocksFree);
+        if (!streaming || rowsRemaining <= 0) {
+            plannerBusy = false;
+            plannerStarved = false;
+            return;
+        }
+
+        boolean empty = blocksFree >= plannerBlocksTotal;
+        if (!empty) {
+            plannerBusy = true;
+        } else if (plannerBusy && !plannerStarved) {
+            plannerStarvation.increment();
+        }
+        plannerStarved = empty;
+    }
+}
@@ -93,6 +93,15 @@ public interface BackendAPI extends BackendAPIReadOnly {
     void offsetTool(String axis, double offset, UnitUtils.Units units) throws Exception;
 
     void send() throws Exception;
+
+    /**
+     * Sends the processed gcode file starting with the given line, used for
+     * resuming a job which was interrupted.
+     *
+     * @param startLine the line in the gcode file to start from
+     * @throws Exception if the file couldn't be sent
+     */
+    void send(int startLine) throws Exception;
     void pauseResume() throws Exception;
     void cancel() throws Exception;
     void returnToZero() throws Exception;
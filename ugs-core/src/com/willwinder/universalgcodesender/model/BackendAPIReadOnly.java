@@ -22,10 +22,13 @@ import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.listeners.MessageListener;
 import com.willwinder.universalgcodesender.listeners.ControllerListener;
 import com.willwinder.universalgcodesender.listeners.ControllerStateListener;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
 import com.willwinder.universalgcodesender.utils.Settings;
 import com.willwinder.universalgcodesender.model.UGSEvent.ControlState;
 import java.io.File;
+import java.util.Set;
 import com.willwinder.universalgcodesender.listeners.UGSEventListener;
+import com.willwinder.universalgcodesender.metrics.MetricsRegistry;
 
 /**
  * Read only API used by front ends to interface with the model.
@@ -54,6 +57,18 @@ public interface BackendAPIReadOnly {
      */
     void addControllerStateListener(ControllerStateListener listener);
 
+    /**
+     * Listener for controller status events which is only notified when one
+     * of the given fields changed.
+     *
+     * @param listener the listener to be added
+     * @param fields the fields the listener is interested in
+     * @param minIntervalMillis the minimum time between two events, changes in
+     *                          between are combined into one event. Use 0 to
+     *                          be notified about every change.
+     */
+    void addControllerStateListener(ControllerStateListener listener, Set<ControllerStatusField> fields, long minIntervalMillis);
+
     /**
      * Removes a controller state listener
      *
@@ -113,6 +128,15 @@ public interface BackendAPIReadOnly {
 
     long getSendDuration();
     long getSendRemainingDuration();
+
+    /**
+     * Returns the metrics of the current controller connection such as the
+     * streaming rate and command latencies, these can be exported as JSON
+     * or CSV.
+     *
+     * @return the metrics, empty if there is no controller.
+     */
+    MetricsRegistry getMetrics();
     String getPauseResumeText();
 
     // Shouldn't be needed often.
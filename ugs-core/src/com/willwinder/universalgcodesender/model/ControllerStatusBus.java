@@ -0,0 +1,190 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.model;
+
+import com.willwinder.universalgcodesender.listeners.ControllerStateListener;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fans out controller status updates to {@link ControllerStateListener}s.
+ *
+ * Each status is compared with the previously published one and listeners
+ * are only notified if one of the fields they subscribed to changed, so an
+ * idle machine doesn't generate any events. A listener may also limit how
+ * often it is notified, changes in between are coalesced into one event
+ * with the latest status which is delivered once the interval has passed.
+ *
+ * @author wwinder
+ */
+public class ControllerStatusBus {
+    private static final Logger logger = Logger.getLogger(ControllerStatusBus.class.getName());
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private ControllerStatus lastStatus;
+
+    /**
+     * Adds a listener which is notified about changes to any field.
+     */
+    public void subscribe(ControllerStateListener listener) {
+        subscribe(listener, ControllerStatusField.ALL, 0);
+    }
+
+    /**
+     * @param listener the listener
+     * @param fields mask of {@link ControllerStatusField}s the listener is interested in
+     * @param minIntervalMillis minimum time between two events, or 0 to be notified about every change.
+     */
+    public void subscribe(ControllerStateListener listener, int fields, long minIntervalMillis) {
+        if (contains(listener)) {
+            return;
+        }
+        logger.log(Level.INFO, "Adding controller state listener: " + listener.getClass().getSimpleName());
+        subscriptions.add(new Subscription(listener, fields, TimeUnit.MILLISECONDS.toNanos(minIntervalMillis)));
+    }
+
+    public void unsubscribe(ControllerStateListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                logger.log(Level.INFO, "Removing controller state listener: " + listener.getClass().getSimpleName());
+                subscriptions.remove(subscription);
+                subscription.cancel();
+            }
+        }
+    }
+
+    public boolean contains(ControllerStateListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the last status so that the next one is delivered to all
+     * listeners, used when the controller changes.
+     */
+    public synchronized void reset() {
+        lastStatus = null;
+    }
+
+    /**
+     * Publishes a new status to the listeners whose fields changed.
+     *
+     * @return the mask of fields which changed.
+     */
+    public int publish(ControllerStatus status) {
+        int changes;
+        synchronized (this) {
+            changes = ControllerStatusField.changes(lastStatus, status);
+            lastStatus = status;
+        }
+        if (changes == 0) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(status, changes, now);
+        }
+        return changes;
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ControllerStatusBus");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    private final class Subscription {
+        private final ControllerStateListener listener;
+        private final int fields;
+        private final long minIntervalNanos;
+
+        // Changes which haven't been delivered yet.
+        private int pendingChanges;
+        private ControllerStatus pendingStatus;
+        private boolean scheduled;
+        private boolean cancelled;
+        private long lastDelivery;
+
+        private Subscription(ControllerStateListener listener, int fields, long minIntervalNanos) {
+            this.listener = listener;
+            this.fields = fields;
+            this.minIntervalNanos = minIntervalNanos;
+            this.lastDelivery = System.nanoTime() - minIntervalNanos;
+        }
+
+        private synchronized void offer(ControllerStatus status, int changes, long now) {
+            if ((changes & fields) == 0 || cancelled) {
+                return;
+            }
+            pendingChanges |= changes & fields;
+            pendingStatus = status;
+
+            long wait = lastDelivery + minIntervalNanos - now;
+            if (wait <= 0) {
+                deliver(now);
+            } else if (!scheduled) {
+                scheduled = true;
+                getScheduler().schedule(this::flush, wait, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void flush() {
+            scheduled = false;
+            if (pendingStatus != null && !cancelled) {
+                deliver(System.nanoTime());
+            }
+        }
+
+        private void deliver(long now) {
+            UGSEvent event = new UGSEvent(pendingStatus, ControllerStatusField.fromMask(pendingChanges));
+            pendingStatus = null;
+            pendingChanges = 0;
+            lastDelivery = now;
+            try {
+                listener.UGSEvent(event);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Controller state listener failed: " + listener.getClass().getSimpleName(), e);
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            pendingStatus = null;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.willwinder.universalgcodesender.gcode.processors.*;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserUtils;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.listeners.*;
+import com.willwinder.universalgcodesender.metrics.MetricsRegistry;
 import com.willwinder.universalgcodesender.model.UGSEvent.ControlState;
 import com.willwinder.universalgcodesender.model.UGSEvent.EventType;
 import com.willwinder.universalgcodesender.model.UGSEvent.FileState;
@@ -71,7 +72,7 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
 
     private final Collection<ControllerListener> controllerListeners = new ArrayList<>();
     private final Collection<UGSEventListener> ugsEventListener = new ArrayList<>();
-    private final Collection<ControllerStateListener> controllerStateListener = new ArrayList<>();
+    private final ControllerStatusBus controllerStatusBus = new ControllerStatusBus();
 
     // GUI State
     private File gcodeFile = null;
@@ -103,18 +104,17 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
 
     @Override
     public void addControllerStateListener(ControllerStateListener listener) {
-        if (!controllerStateListener.contains(listener)) {
-            logger.log(Level.INFO, "Adding controller state listener: " + listener.getClass().getSimpleName());
-            controllerStateListener.add(listener);
-        }
+        controllerStatusBus.subscribe(listener);
+    }
+
+    @Override
+    public void addControllerStateListener(ControllerStateListener listener, Set<ControllerStatusField> fields, long minIntervalMillis) {
+        controllerStatusBus.subscribe(listener, ControllerStatusField.mask(fields), minIntervalMillis);
     }
 
     @Override
     public void removeControllerStateListener(ControllerStateListener listener) {
-        if (controllerStateListener.contains(listener)) {
-            logger.log(Level.INFO, "Removing controller state listener: " + listener.getClass().getSimpleName());
-            controllerStateListener.remove(listener);
-        }
+        controllerStatusBus.unsubscribe(listener);
     }
 
     @Override
@@ -165,10 +165,12 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
      * stored in a GcodeStream formatted file.
      * Additional rules:
      * * Comment lines are left
+     *
+     * @return the number of lines which were processed.
      */
-    protected void preprocessAndExportToFile(GcodeParser gcp, File input, File output) throws Exception {
+    protected int preprocessAndExportToFile(GcodeParser gcp, File input, File output) throws Exception {
         logger.log(Level.INFO, "Preprocessing {0} to {1}", new Object[]{input.getCanonicalPath(), output.getCanonicalPath()});
-        GcodeParserUtils.processAndExport(gcp, input, output);
+        return GcodeParserUtils.processAndExport(gcp, input, output);
     }
 
     private void initGcodeParser() {
@@ -213,6 +215,7 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
         applySettings(settings);
 
         this.controller.addListener(this);
+        this.controllerStatusBus.reset();
         for (ControllerListener l : controllerListeners) {
             this.controller.addListener(l);
         }
@@ -404,6 +407,12 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
         return this.controller;
     }
 
+    @Override
+    public MetricsRegistry getMetrics() {
+        IController c = this.controller;
+        return c == null ? new MetricsRegistry() : c.getMetrics();
+    }
+
     private File getTempDir() {
         if (tempDir == null) {
             tempDir = Files.createTempDir();
@@ -502,6 +511,20 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
             throw new Exception(Localization.getString("mainWindow.error.startingStream"), e);
         }
     }
+
+    @Override
+    public void send(int startLine) throws Exception {
+        logger.log(Level.INFO, "Sending gcode file from line " + startLine + ".");
+
+        try {
+            this.controller.isReadyToStreamFile();
+            this.controller.queueStream(new GcodeStreamReader(this.processedGcodeFile));
+            this.controller.beginStreaming(startLine);
+        } catch (Exception e) {
+            this.sendUGSEvent(new UGSEvent(ControlState.COMM_IDLE), false);
+            throw new Exception(Localization.getString("mainWindow.error.startingStream"), e);
+        }
+    }
     
     @Override
     public long getNumRows() {
@@ -707,7 +730,7 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
         this.machineCoord = status.getMachineCoord();
         this.workCoord = status.getWorkCoord();
         this.lastResponse = System.currentTimeMillis();
-        this.sendControllerStateEvent(new UGSEvent(status));
+        this.controllerStatusBus.publish(status);
     }
     
     ////////////////////
@@ -806,6 +829,7 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
             }
             logger.info("Start preprocessing");
             long start = System.currentTimeMillis();
+            int lines = 0;
             if (this.processedGcodeFile == null || forceReprocess) {
                 gcp.reset();
 
@@ -819,15 +843,18 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
                 }
                 this.processedGcodeFile =
                         new File(this.getTempDir(), name + "_ugs_" + System.currentTimeMillis());
-                this.preprocessAndExportToFile(gcodeParser, startFile, this.processedGcodeFile);
+                lines = this.preprocessAndExportToFile(gcodeParser, startFile, this.processedGcodeFile);
 
                 // Store gcode file stats.
                 GcodeStats gs = gcp.getCurrentStats();
                 this.settings.setFileStats(new FileStats(
                     gs.getMin(), gs.getMax(), gs.getCommandCount()));
+                logger.info(String.format("Preprocessing reduced the number of commands by a ratio of %.2f",
+                        gs.getCommandReductionRatio()));
             }
             long end = System.currentTimeMillis();
-            logger.info("Took " + (end - start) + "ms to preprocess");
+            long linesPerSecond = lines * 1000L / Math.max(1, end - start);
+            logger.info("Took " + (end - start) + "ms to preprocess " + lines + " lines (" + linesPerSecond + " lines/sec)");
         }
     }
     
@@ -844,14 +871,6 @@ public class GUIBackend implements BackendAPI, ControllerListener, SettingChange
         ugsEventListener.forEach(l -> l.UGSEvent(event));
     }
 
-    private void sendControllerStateEvent(UGSEvent event) {
-        if (!event.isControllerStatusEvent()) return;
-
-        for (ControllerStateListener l : controllerStateListener) {
-            l.UGSEvent(event);
-        }
-    }
-
     @Override
     public void sendOverrideCommand(Overrides override) throws Exception {
         this.controller.sendOverrideCommand(override);
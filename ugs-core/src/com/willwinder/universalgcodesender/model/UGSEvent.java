@@ -20,8 +20,12 @@ package com.willwinder.universalgcodesender.model;
 
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * These objects are passed around by the GUI API to notify listeners of state
  * changes.
@@ -36,6 +40,7 @@ public class UGSEvent {
     private FileState fileState = null;
     private Position probePosition = null;
     private ControllerStatus controllerStatus = null;
+    private Set<ControllerStatusField> changedFields = null;
     private String file = null;
 
     public enum EventType {
@@ -154,8 +159,17 @@ public class UGSEvent {
      * Create a controller status event.
      */
     public UGSEvent(ControllerStatus controllerStatus) {
+        this(controllerStatus, EnumSet.allOf(ControllerStatusField.class));
+    }
+
+    /**
+     * Create a controller status event.
+     * @param changedFields the fields which changed since the previous event.
+     */
+    public UGSEvent(ControllerStatus controllerStatus, Set<ControllerStatusField> changedFields) {
         evt = EventType.CONTROLLER_STATUS_EVENT;
         this.controllerStatus = controllerStatus;
+        this.changedFields = changedFields;
     }
 
     /**
@@ -192,6 +206,13 @@ public class UGSEvent {
         return controllerStatus;
     }
 
+    /**
+     * The fields which changed with a controller status event.
+     */
+    public Set<ControllerStatusField> getChangedFields() {
+        return changedFields;
+    }
+
     public GcodeState getGcodeState() {
       return gcodeState;
     }
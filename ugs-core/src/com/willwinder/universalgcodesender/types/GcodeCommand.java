@@ -52,6 +52,11 @@ public class GcodeCommand {
     private boolean isTemporaryParserModalChange = false;
     private Integer id = ID_GENERATOR.getAndIncrement();
 
+    /**
+     * The {@link System#nanoTime()} when the command was written to the controller.
+     */
+    private long sentTime;
+
     public GcodeCommand(String command) {
         this(command, -1);
     }
@@ -95,6 +100,14 @@ public class GcodeCommand {
         this.sent = sent;
     }
     
+    public void setSentTime(long sentTime) {
+        this.sentTime = sentTime;
+    }
+
+    public long getSentTime() {
+        return sentTime;
+    }
+
     public void setSkipped(Boolean skipped) {
         this.isSkipped = skipped;
     }
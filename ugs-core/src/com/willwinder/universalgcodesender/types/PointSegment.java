@@ -79,7 +79,6 @@ final public class PointSegment {
     
     public PointSegment(final Position b, final int num)
     {
-        this();
         this.point = new Position (b);
         this.lineNumber = num;
     }
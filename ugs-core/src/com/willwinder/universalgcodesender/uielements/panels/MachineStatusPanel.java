@@ -25,6 +25,7 @@ import com.willwinder.universalgcodesender.listeners.ControllerState;
 import com.willwinder.universalgcodesender.listeners.ControllerStateListener;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus.EnabledPins;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
 import com.willwinder.universalgcodesender.listeners.UGSEventListener;
 import com.willwinder.universalgcodesender.model.Axis;
 import static com.willwinder.universalgcodesender.model.Axis.*;
@@ -54,6 +55,7 @@ import java.text.DecimalFormat;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
 import static com.willwinder.universalgcodesender.utils.GUIHelpers.displayErrorDialog;
@@ -103,6 +105,8 @@ public class MachineStatusPanel extends JPanel implements UGSEventListener, Cont
     private final BackendAPI backend;
     private final Timer statePollTimer;
 
+    private static final long STATUS_UPDATE_INTERVAL_MILLIS = 50;
+
     private Units units;
     private final DecimalFormat decimalFormatter;
 
@@ -111,7 +115,12 @@ public class MachineStatusPanel extends JPanel implements UGSEventListener, Cont
         this.backend = backend;
         if (this.backend != null) {
             this.backend.addUGSEventListener(this);
-            this.backend.addControllerStateListener(this);
+            // The panel doesn't display overrides, and repainting it at more
+            // than 20Hz is wasted effort.
+            this.backend.addControllerStateListener(this,
+                    EnumSet.of(ControllerStatusField.STATE, ControllerStatusField.POSITION,
+                            ControllerStatusField.FEED_SPINDLE, ControllerStatusField.PINS),
+                    STATUS_UPDATE_INTERVAL_MILLIS);
         }
         decimalFormatter = new DecimalFormat("0.000");
         statePollTimer = createTimer();
@@ -23,6 +23,7 @@ import com.google.gson.JsonObject;
 import com.willwinder.universalgcodesender.G2CoreController;
 import com.willwinder.universalgcodesender.GrblController;
 import com.willwinder.universalgcodesender.IController;
+import com.willwinder.universalgcodesender.GrblSimulatorCommunicator;
 import com.willwinder.universalgcodesender.LoopBackCommunicator;
 import com.willwinder.universalgcodesender.SmoothieController;
 import com.willwinder.universalgcodesender.TinyGController;
@@ -74,7 +75,8 @@ public class ControllerSettings {
         G2CORE("g2core"),
         XLCD("XLCD"),
         LOOPBACK("Loopback"),
-        LOOPBACK_SLOW("Loopback_Slow");
+        LOOPBACK_SLOW("Loopback_Slow"),
+        GRBL_SIMULATOR("Grbl_Simulator");
 
         final String name;
         CONTROLLER(String name) {
@@ -126,6 +128,8 @@ public class ControllerSettings {
                 return new GrblController(new LoopBackCommunicator());
             case LOOPBACK_SLOW:
                 return new GrblController(new LoopBackCommunicator(100));
+            case GRBL_SIMULATOR:
+                return new GrblController(new GrblSimulatorCommunicator());
             default:
                 throw new AssertionError(controller.name());
         }
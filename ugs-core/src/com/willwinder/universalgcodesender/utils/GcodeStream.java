@@ -7,7 +7,7 @@
  * Created on Jan 7, 2016
  */
 /*
-    Copyright 2016-2017 Will Winder
+    Copyright 2016-2020 Will Winder
 
     This file is part of Universal Gcode Sender (UGS).
 
@@ -26,6 +26,13 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.Plane;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils;
+
+import java.nio.ByteBuffer;
 import java.util.regex.Pattern;
 
 /**
@@ -43,4 +50,90 @@ public abstract class GcodeStream {
     protected final String separator = "++";
     protected final Pattern splitPattern = Pattern.compile(Pattern.quote(separator));
     protected final String metaPrefix = "gsw_meta:";
+
+    // Binary format, version 3:
+    //   header:      magic (4 bytes) | version (int) | row count (int) | index offset (long)
+    //                | checkpoint offset (long) | checkpoint interval (int)
+    //   rows:        command number (int) | original, processed, comment (int length + UTF-8 bytes each)
+    //   index:       one long per row with the absolute offset of that row
+    //   checkpoints: modal gcode state before every 'checkpoint interval' rows, version 2
+    //                checkpoints are ignored as they don't have the spindle and coolant
+    protected static final byte[] BINARY_MAGIC = {'U', 'G', 'S', 'B'};
+    protected static final int BINARY_VERSION = 3;
+    protected static final int BINARY_HEADER_SIZE = 32;
+    protected static final int BINARY_INDEX_ENTRY_SIZE = Long.BYTES;
+    protected static final int CHECKPOINT_INTERVAL = 1024;
+    protected static final int CHECKPOINT_SIZE = 64;
+
+    /**
+     * Writes the modal parts of a gcode state as a fixed size checkpoint
+     * record, a missing state is written as an invalid record.
+     */
+    protected static void writeCheckpoint(ByteBuffer buffer, GcodeState state) {
+        int start = buffer.position();
+        buffer.put((byte) (state == null ? 0 : 1));
+        if (state != null) {
+            buffer.put((byte) ((state.inAbsoluteMode ? 1 : 0)
+                    | (state.inAbsoluteIJKMode ? 2 : 0)
+                    | (state.isMetric ? 4 : 0)));
+            buffer.putShort(ordinal(state.currentMotionMode));
+            buffer.putShort(ordinal(state.plane));
+            buffer.putShort(ordinal(state.distanceMode));
+            buffer.putShort(ordinal(state.arcDistanceMode));
+            buffer.putShort(ordinal(state.feedMode));
+            buffer.putShort(ordinal(state.units));
+            buffer.putShort(ordinal(state.offset));
+            buffer.putShort(ordinal(state.spindle));
+            buffer.putShort(ordinal(state.coolant));
+            buffer.putInt(state.commandNumber);
+            buffer.putDouble(state.speed);
+            buffer.putDouble(state.spindleSpeed);
+            Position p = state.currentPoint == null ? new Position(0, 0, 0, UnitUtils.Units.MM) : state.currentPoint;
+            buffer.putDouble(p.x);
+            buffer.putDouble(p.y);
+            buffer.putDouble(p.z);
+        }
+        while (buffer.position() < start + CHECKPOINT_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Reads a checkpoint record written by {@link #writeCheckpoint}.
+     * @return the state or null if the record is invalid.
+     */
+    protected static GcodeState readCheckpoint(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+
+        GcodeState state = new GcodeState();
+        byte flags = buffer.get();
+        state.inAbsoluteMode = (flags & 1) != 0;
+        state.inAbsoluteIJKMode = (flags & 2) != 0;
+        state.isMetric = (flags & 4) != 0;
+        state.currentMotionMode = lookup(Code.values(), buffer.getShort());
+        state.plane = lookup(Plane.values(), buffer.getShort());
+        state.distanceMode = lookup(Code.values(), buffer.getShort());
+        state.arcDistanceMode = lookup(Code.values(), buffer.getShort());
+        state.feedMode = lookup(Code.values(), buffer.getShort());
+        state.units = lookup(Code.values(), buffer.getShort());
+        state.offset = lookup(Code.values(), buffer.getShort());
+        state.spindle = lookup(Code.values(), buffer.getShort());
+        state.coolant = lookup(Code.values(), buffer.getShort());
+        state.commandNumber = buffer.getInt();
+        state.speed = buffer.getDouble();
+        state.spindleSpeed = buffer.getDouble();
+        state.currentPoint = new Position(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                state.isMetric ? UnitUtils.Units.MM : UnitUtils.Units.INCH);
+        return state;
+    }
+
+    private static short ordinal(Enum<?> value) {
+        return (short) (value == null ? -1 : value.ordinal());
+    }
+
+    private static <T> T lookup(T[] values, short ordinal) {
+        return ordinal < 0 || ordinal >= values.length ? null : values[ordinal];
+    }
 }
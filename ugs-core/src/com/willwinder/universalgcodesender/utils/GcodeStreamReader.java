@@ -18,21 +18,52 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Reads a 'GcodeStream' file containing command processing information, actual
  * command to send and other metadata like total number of commands.
  *
+ * Files written by the {@link GcodeStreamWriter} are read in binary form
+ * through a memory mapped buffer which allows seeking to any row, older text
+ * files are still supported but can only be read sequentially.
+ *
  * @author wwinder
  */
 public class GcodeStreamReader extends GcodeStream implements IGcodeStreamReader {
+    // The largest region of the row data mapped at a time.
+    private static final int WINDOW_SIZE = 32 * 1024 * 1024;
+
+    // Text format
     private BufferedReader reader;
+
+    // Binary format
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private LongBuffer index;
+    private ByteBuffer checkpoints;
+    private int checkpointInterval;
+    private long rowsEnd;
+    private ByteBuffer window;
+    private long windowStart;
+    private byte[] stringBuffer = new byte[256];
+    private int nextRow;
+
     private int numRows;
     private int numRowsRemaining;
 
@@ -40,24 +71,96 @@ public class GcodeStreamReader extends GcodeStream implements IGcodeStreamReader
 
     public GcodeStreamReader(BufferedReader reader) throws NotGcodeStreamFile {
         this.reader = reader;
-        
+        readTextMetadata();
+    }
+
+    public GcodeStreamReader(File f) throws NotGcodeStreamFile, FileNotFoundException {
+        this(f, new RandomAccessFile(f, "r"));
+    }
+
+    private GcodeStreamReader(File f, RandomAccessFile raf) throws NotGcodeStreamFile, FileNotFoundException {
+        if (!openBinary(raf)) {
+            this.reader = new BufferedReader(new FileReader(f));
+            readTextMetadata();
+        }
+    }
+
+    /**
+     * Maps the header and index of a binary stream file.
+     * @return false if the file isn't in the binary format.
+     */
+    private boolean openBinary(RandomAccessFile raf) throws NotGcodeStreamFile {
         try {
-            String metadata = reader.readLine().trim();
+            FileChannel fc = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE);
+            while (header.hasRemaining() && fc.read(header, header.position()) > 0) {
+                // keep reading until the header is full or the file ends
+            }
+            header.flip();
+
+            byte[] magic = new byte[BINARY_MAGIC.length];
+            if (header.remaining() < BINARY_HEADER_SIZE) {
+                raf.close();
+                return false;
+            }
+            header.get(magic);
+            if (!Arrays.equals(magic, BINARY_MAGIC)) {
+                raf.close();
+                return false;
+            }
 
-            if (!metadata.startsWith(super.metaPrefix)) {
+            int version = header.getInt();
+            int rows = header.getInt();
+            long indexOffset = header.getLong();
+            long indexSize = (long) rows * BINARY_INDEX_ENTRY_SIZE;
+            if (version < 1 || version > BINARY_VERSION || rows < 0 || indexOffset < BINARY_HEADER_SIZE
+                    || indexSize > Integer.MAX_VALUE || indexOffset + indexSize > fc.size()) {
+                raf.close();
                 throw new NotGcodeStreamFile();
             }
 
-            metadata = metadata.substring(super.metaPrefix.length());
-            numRows = Integer.parseInt(metadata);
-            numRowsRemaining = numRows;
-        } catch (IOException | NumberFormatException e) {
+            file = raf;
+            channel = fc;
+            index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexSize).asLongBuffer();
+
+            // Version 1 files don't have any checkpoints, the checkpoints of
+            // version 2 files are incomplete and the state is replayed instead.
+            if (version >= 3) {
+                long checkpointOffset = header.getLong();
+                checkpointInterval = header.getInt();
+                long checkpointSize = checkpointInterval <= 0 ? 0 :
+                        (long) ((rows + checkpointInterval - 1) / checkpointInterval) * CHECKPOINT_SIZE;
+                if (checkpointSize > 0 && checkpointOffset + checkpointSize <= fc.size()) {
+                    checkpoints = channel.map(FileChannel.MapMode.READ_ONLY, checkpointOffset, checkpointSize);
+                }
+            }
+            rowsEnd = indexOffset;
+            numRows = rows;
+            numRowsRemaining = rows;
+            nextRow = 0;
+            return true;
+        } catch (IOException e) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+                // Already failing.
+            }
             throw new NotGcodeStreamFile();
         }
     }
 
-    public GcodeStreamReader(File f) throws NotGcodeStreamFile, FileNotFoundException {
-        this(new BufferedReader(new FileReader(f)));
+    private void readTextMetadata() throws NotGcodeStreamFile {
+        try {
+            String metadata = reader.readLine();
+            if (metadata == null || !metadata.trim().startsWith(super.metaPrefix)) {
+                throw new NotGcodeStreamFile();
+            }
+
+            numRows = Integer.parseInt(metadata.trim().substring(super.metaPrefix.length()));
+            numRowsRemaining = numRows;
+        } catch (IOException | NumberFormatException e) {
+            throw new NotGcodeStreamFile();
+        }
     }
     
     @Override
@@ -83,6 +186,13 @@ public class GcodeStreamReader extends GcodeStream implements IGcodeStreamReader
     public GcodeCommand getNextCommand() throws IOException {
         if (numRowsRemaining == 0) return null;
 
+        if (channel != null) {
+            GcodeCommand command = readRow(nextRow);
+            nextRow++;
+            numRowsRemaining--;
+            return command;
+        }
+
         String line = reader.readLine();
         String[] nextLine = parseLine(line);
         if (nextLine.length != NUM_COLUMNS) {
@@ -97,8 +207,169 @@ public class GcodeStreamReader extends GcodeStream implements IGcodeStreamReader
                 false);
     }
 
+    @Override
+    public void seek(int row) throws IOException {
+        if (row < 0 || row > numRows) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+
+        if (channel != null) {
+            nextRow = row;
+            numRowsRemaining = numRows - row;
+            return;
+        }
+
+        // The text format can only move forward by reading rows.
+        int currentRow = numRows - numRowsRemaining;
+        if (row < currentRow) {
+            throw new IOException("Can't seek backwards in a text gcode stream.");
+        }
+        for (int i = currentRow; i < row; i++) {
+            getNextCommand();
+        }
+    }
+
+    @Override
+    public GcodeCommand getCommandAt(int row) throws IOException {
+        if (channel == null) {
+            throw new IOException("Random access isn't supported by text gcode streams.");
+        }
+        if (row < 0 || row >= numRows) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+        return readRow(row);
+    }
+
+    @Override
+    public int getRowForCommandNumber(int commandNumber) throws IOException {
+        if (channel == null) {
+            throw new IOException("Random access isn't supported by text gcode streams.");
+        }
+
+        // Command numbers are increasing, find the first row with the number.
+        int low = 0;
+        int high = numRows - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midNumber = readCommandNumber(mid);
+            if (midNumber < commandNumber) {
+                low = mid + 1;
+            } else {
+                if (midNumber == commandNumber) {
+                    result = mid;
+                }
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public GcodeState getStateAt(int row) throws IOException {
+        if (channel == null) {
+            throw new IOException("Random access isn't supported by text gcode streams.");
+        }
+        if (row < 0 || row >= numRows) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+
+        // Find the closest checkpoint with a known state.
+        GcodeState state = null;
+        int startRow = 0;
+        if (checkpoints != null) {
+            for (int c = row / checkpointInterval; c >= 0 && state == null; c--) {
+                ByteBuffer record = checkpoints.duplicate();
+                record.position(c * CHECKPOINT_SIZE);
+                state = readCheckpoint(record);
+                startRow = c * checkpointInterval;
+            }
+        }
+        if (state == null) {
+            state = new GcodeState();
+            startRow = 0;
+        }
+
+        // The checkpoint is the state before the original command, apply each
+        // original command once even if it was expanded into several rows.
+        GcodeCommand pending = null;
+        for (int r = startRow; r <= row; r++) {
+            GcodeCommand command = readRow(r);
+            if (pending != null && pending.getCommandNumber() != command.getCommandNumber()) {
+                try {
+                    state = GcodeParser.nextState(pending.getOriginalCommandString(),
+                            pending.getCommandNumber(), state);
+                } catch (GcodeParserException e) {
+                    // The command couldn't be parsed when the stream was created either.
+                }
+            }
+            pending = command;
+        }
+        return state;
+    }
+
+    private int readCommandNumber(int row) throws IOException {
+        long start = index.get(row);
+        ByteBuffer buffer = mapRegion(start, start + Integer.BYTES);
+        return buffer.getInt((int) (start - windowStart));
+    }
+
+    /**
+     * Reads a row from a binary stream using the offset index.
+     */
+    private GcodeCommand readRow(int row) throws IOException {
+        long start = index.get(row);
+        long end = row + 1 < numRows ? index.get(row + 1) : rowsEnd;
+        if (start < BINARY_HEADER_SIZE || end < start || end > rowsEnd) {
+            throw new IOException("Corrupt data found while processing gcode stream at row: " + row);
+        }
+
+        ByteBuffer buffer = mapRegion(start, end);
+        buffer.position((int) (start - windowStart));
+        int commandNumber = buffer.getInt();
+        String original = readString(buffer);
+        String processed = readString(buffer);
+        String comment = readString(buffer);
+        return new GcodeCommand(processed, original, comment, commandNumber, false);
+    }
+
+    /**
+     * Makes sure the mapped window covers the given region of the file.
+     */
+    private ByteBuffer mapRegion(long start, long end) throws IOException {
+        if (window == null || start < windowStart || end > windowStart + window.capacity()) {
+            long size = Math.min(Math.max(WINDOW_SIZE, end - start), rowsEnd - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+        }
+        return window;
+    }
+
+    private String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt data found while processing gcode stream.");
+        }
+        if (length == 0) {
+            return "";
+        }
+        if (length > stringBuffer.length) {
+            stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+        }
+        buffer.get(stringBuffer, 0, length);
+        return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
     @Override
     public void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        }
+        if (file != null) {
+            window = null;
+            index = null;
+            checkpoints = null;
+            file.close();
+        }
     }
 }
@@ -7,7 +7,7 @@
  * Created on Jan 7, 2016
  */
 /*
-    Copyright 2016-2017 Will Winder
+    Copyright 2016-2020 Will Winder
 
     This file is part of Universal Gcode Sender (UGS).
 
@@ -26,30 +26,58 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 /**
+ * Writes a 'GcodeStream' file in the binary format. Rows are appended as they
+ * arrive, the row offsets are collected in a side file which is appended as a
+ * fixed width index when the stream is closed, followed by the modal state
+ * checkpoints used to resume a program from an arbitrary row.
  *
  * @author wwinder
  */
 public class GcodeStreamWriter extends GcodeStream implements Closeable {
-    File file;
-    PrintWriter fileWriter;
-    Integer lineCount = 0;
-    String metadataReservedSize = "                                                  ";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final File indexFile;
+    private final DataOutputStream rowWriter;
+    private final DataOutputStream indexWriter;
+    private final ByteArrayOutputStream checkpoints = new ByteArrayOutputStream();
+    private final ByteBuffer checkpoint = ByteBuffer.allocate(CHECKPOINT_SIZE);
+    private long position;
+    private int lineCount = 0;
+    private IOException error;
 
     public GcodeStreamWriter(File f) throws FileNotFoundException {
         file = f;
-        fileWriter = new PrintWriter(f);
-        // 50 bytes at the beginning of the file to store metadata
-        fileWriter.append(metadataReservedSize);
-        fileWriter.append("\n");
+        indexFile = new File(f.getPath() + ".idx");
+        rowWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), BUFFER_SIZE));
+        indexWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), BUFFER_SIZE));
+
+        // Reserve the header, it is written once the row count is known.
+        try {
+            rowWriter.write(new byte[BINARY_HEADER_SIZE]);
+            position = BINARY_HEADER_SIZE;
+        } catch (IOException e) {
+            error = e;
+        }
     }
 
     private String getString(String str) {
@@ -57,73 +85,100 @@ public class GcodeStreamWriter extends GcodeStream implements Closeable {
     }
 
     public void addLine(GcodeCommand command) {
-        lineCount++;
-        String sep = "";
-        for (int i = 0; i < NUM_COLUMNS; i++) {
-            fileWriter.append(sep);
-            switch (i) {
-                case COL_ORIGINAL_COMMAND:
-                    fileWriter.append(command.getOriginalCommandString());
-                    break;
-                case COL_PROCESSED_COMMAND:
-                    fileWriter.append(command.getCommandString());
-                    break;
-                case COL_COMMENT:
-                    fileWriter.append(command.getComment());
-                    break;
-                case COL_COMMAND_NUMBER:
-                    fileWriter.append(Integer.toString(command.getCommandNumber()));
-                    break;
-                default:
-                    break;
-            }
-            sep = separator;
-        }
-        fileWriter.append("\n");
+        writeRow(command.getOriginalCommandString(), command.getCommandString(),
+                command.getComment(), command.getCommandNumber(), null);
     }
 
     public void addLine(String original, String processed, String comment, int commandNumber) {
-        if (    (original != null && original.trim().contains("\n")) || 
+        addLine(original, processed, comment, commandNumber, null);
+    }
+
+    /**
+     * Adds a row to the stream.
+     *
+     * @param state the modal state before the original command was executed,
+     *              stored at checkpoint rows so the program can be resumed.
+     */
+    public void addLine(String original, String processed, String comment, int commandNumber, GcodeState state) {
+        if (    (original != null && original.trim().contains("\n")) ||
                 (processed != null && processed.trim().contains("\n")) ||
                 (comment != null && comment.trim().contains("\n"))) {
             throw new IllegalArgumentException("Cannot include newlines in gcode stream.");
         }
 
-        lineCount++;
-        String sep = "";
-        for (int i = 0; i < NUM_COLUMNS; i++) {
-            fileWriter.append(sep);
-            switch (i) {
-                case COL_ORIGINAL_COMMAND:
-                    fileWriter.append(getString(original));
-                    break;
-                case COL_PROCESSED_COMMAND:
-                    fileWriter.append(getString(processed));
-                    break;
-                case COL_COMMENT:
-                    fileWriter.append(getString(comment));
-                    break;
-                case COL_COMMAND_NUMBER:
-                    fileWriter.append(Integer.toString(commandNumber));
-                    break;
-                default:
-                    break;
+        writeRow(getString(original), getString(processed), getString(comment), commandNumber, state);
+    }
+
+    private void writeRow(String original, String processed, String comment, int commandNumber, GcodeState state) {
+        if (error != null) {
+            return;
+        }
+
+        try {
+            if (lineCount % CHECKPOINT_INTERVAL == 0) {
+                checkpoint.clear();
+                writeCheckpoint(checkpoint, state);
+                checkpoints.write(checkpoint.array(), 0, CHECKPOINT_SIZE);
             }
-            sep = separator;
+
+            indexWriter.writeLong(position);
+            rowWriter.writeInt(commandNumber);
+            position += Integer.BYTES;
+            position += writeString(original);
+            position += writeString(processed);
+            position += writeString(comment);
+            lineCount++;
+        } catch (IOException e) {
+            // Reported when the stream is closed, similar to the PrintWriter this replaced.
+            error = e;
         }
-        fileWriter.append("\n");
+    }
+
+    private int writeString(String str) throws IOException {
+        byte[] bytes = str == null ? new byte[0] : str.getBytes(StandardCharsets.UTF_8);
+        rowWriter.writeInt(bytes.length);
+        rowWriter.write(bytes);
+        return Integer.BYTES + bytes.length;
     }
 
     @Override
     public void close() throws IOException {
-        fileWriter.close();
-        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
-            raw.seek(0);
-            String metadata = "gsw_meta:" + lineCount.toString();
-            if (metadata.length() > metadataReservedSize.length()) {
-                throw new IOException("Too many lines to write metadata for GcodeStreamWriter!");
+        try {
+            rowWriter.close();
+            indexWriter.close();
+            if (error != null) {
+                throw error;
+            }
+
+            // Append the row index and checkpoints after the last row.
+            long checkpointOffset = position + (long) lineCount * BINARY_INDEX_ENTRY_SIZE;
+            try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 FileChannel in = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                long transferred = 0;
+                long size = in.size();
+                while (transferred < size) {
+                    transferred += in.transferTo(transferred, size - transferred, out);
+                }
+
+                ByteBuffer checkpointBuffer = ByteBuffer.wrap(checkpoints.toByteArray());
+                while (checkpointBuffer.hasRemaining()) {
+                    out.write(checkpointBuffer);
+                }
+            }
+
+            try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+                ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE);
+                header.put(BINARY_MAGIC);
+                header.putInt(BINARY_VERSION);
+                header.putInt(lineCount);
+                header.putLong(position);
+                header.putLong(checkpointOffset);
+                header.putInt(CHECKPOINT_INTERVAL);
+                raw.seek(0);
+                raw.write(header.array());
             }
-            raw.write(metadata.getBytes(), 0, metadata.length());
+        } finally {
+            Files.deleteIfExists(indexFile.toPath());
         }
     }
 }
@@ -1,5 +1,5 @@
 /*
-    Copyright 2019 Will Winder
+    Copyright 2019-2020 Will Winder
 
     This file is part of Universal Gcode Sender (UGS).
 
@@ -18,6 +18,7 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 
 import java.io.Closeable;
@@ -58,4 +59,42 @@ public interface IGcodeStreamReader extends Closeable {
      * @throws IOException if the stream can not be read
      */
     GcodeCommand getNextCommand() throws IOException;
+
+    /**
+     * Moves the stream to the given row, the next call to {@link #getNextCommand()}
+     * will return that row and the number of remaining rows is updated accordingly.
+     *
+     * @param row the zero based row to move to
+     * @throws IOException if the stream can not be read or can't be moved to the row
+     */
+    void seek(int row) throws IOException;
+
+    /**
+     * Returns the command at the given row without moving the stream
+     *
+     * @param row the zero based row
+     * @return the command at the row
+     * @throws IOException if the stream can not be read or doesn't support random access
+     */
+    GcodeCommand getCommandAt(int row) throws IOException;
+
+    /**
+     * Finds the first row generated from the given command number, which is
+     * the line number in the original gcode file.
+     *
+     * @param commandNumber the command number to look for
+     * @return the row or -1 if there are no rows for the command number
+     * @throws IOException if the stream can not be read
+     */
+    int getRowForCommandNumber(int commandNumber) throws IOException;
+
+    /**
+     * Returns the modal state of the gcode program before the command at the
+     * given row is executed, used when resuming a program from that row.
+     *
+     * @param row the zero based row
+     * @return the state before the row
+     * @throws IOException if the stream can not be read
+     */
+    GcodeState getStateAt(int row) throws IOException;
 }
@@ -18,6 +18,9 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 import org.apache.commons.io.IOUtils;
 
@@ -89,6 +92,49 @@ public class SimpleGcodeStreamReader implements IGcodeStreamReader {
         return commands.get(currentLine++);
     }
 
+    @Override
+    public void seek(int row) throws IOException {
+        if (row < 0 || row > commands.size()) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+        currentLine = row;
+    }
+
+    @Override
+    public GcodeCommand getCommandAt(int row) throws IOException {
+        if (row < 0 || row >= commands.size()) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+        return commands.get(row);
+    }
+
+    @Override
+    public int getRowForCommandNumber(int commandNumber) {
+        for (int i = 0; i < commands.size(); i++) {
+            if (commands.get(i).getCommandNumber() == commandNumber) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public GcodeState getStateAt(int row) throws IOException {
+        if (row < 0 || row >= commands.size()) {
+            throw new IOException("Row " + row + " is outside of the gcode stream.");
+        }
+
+        GcodeState state = new GcodeState();
+        for (int i = 0; i < row; i++) {
+            try {
+                state = GcodeParser.nextState(commands.get(i).getCommandString(), i, state);
+            } catch (GcodeParserException e) {
+                throw new IOException("Couldn't parse the command on row " + i, e);
+            }
+        }
+        return state;
+    }
+
     @Override
     public void close() {
         currentLine = 0;
@@ -39,7 +39,6 @@ import com.willwinder.universalgcodesender.types.PointSegment;
 import com.willwinder.universalgcodesender.utils.IGcodeStreamReader;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 
@@ -48,13 +47,16 @@ public class GcodeViewParse {
     // Parsed object
     private final Position min;
     private final Position max;
-    private final List<LineSegment> lines;
+    private LineSegmentStore lines;
+
+    // Reused for the points of expanded arcs, three values per point
+    private double[] arcPoints = new double[3 * 64];
 
     public GcodeViewParse()
     {
         min = new Position();
         max = new Position();
-        lines = new ArrayList<>();
+        lines = new LineSegmentStore();
     }
 
     public Position getMinimumExtremes()
@@ -112,7 +114,7 @@ public class GcodeViewParse {
     }
 
     /**
-     * Almost the same as toObjRedux, convert gcode to a LineSegment collection.
+     * Almost the same as toObjRedux, convert gcode to line segments.
      * I've tried refactoring this, but the function is so small that merging
      * toObjFromReader and toObjRedux adds more complexity than having these two
      * methods.
@@ -120,9 +122,24 @@ public class GcodeViewParse {
      * @param reader a stream with commands to parse.
      * @param arcSegmentLength length of line segments when expanding an arc.
      */
-    public List<LineSegment> toObjFromReader(IGcodeStreamReader reader,
+    public LineSegmentStore toObjFromReader(IGcodeStreamReader reader,
                                              double arcSegmentLength) throws IOException, GcodeParserException {
-        lines.clear();
+        return toObjFromReader(reader, arcSegmentLength, 0);
+    }
+
+    /**
+     * Same as toObjFromReader, with the option to expand arcs by how far the
+     * line segments may be from the arc.
+     *
+     * @param reader a stream with commands to parse.
+     * @param arcSegmentLength length of line segments when expanding an arc.
+     * @param arcChordTolerance the maximum distance between the line segments
+     *                          and the arc, when greater than zero it is used
+     *                          instead of the segment length.
+     */
+    public LineSegmentStore toObjFromReader(IGcodeStreamReader reader,
+                                             double arcSegmentLength, double arcChordTolerance) throws IOException, GcodeParserException {
+        lines = new LineSegmentStore();
         GcodeParser gp = getParser(arcSegmentLength);
 
         // Save the state
@@ -135,26 +152,41 @@ public class GcodeViewParse {
                 List<GcodeMeta> points = gp.addCommand(command, commandObject.getCommandNumber());
                 for (GcodeMeta meta : points) {
                     if (meta.point != null) {
-                        addLinesFromPointSegment(start, meta.point, arcSegmentLength, lines);
+                        addLinesFromPointSegment(start, meta.point, arcSegmentLength, arcChordTolerance, lines);
                         start.set(meta.point.point());
                     }
                 }
             }
         }
 
+        lines.trimToSize();
         return lines;
     }
     
     /**
-     * The original (working) gcode to LineSegment collection code.
+     * The original (working) gcode to line segments code.
      *
      * @param gcode commands to visualize.
      * @param arcSegmentLength length of line segments when expanding an arc.
      */
-    public List<LineSegment> toObjRedux(List<String> gcode, double arcSegmentLength) throws GcodeParserException {
+    public LineSegmentStore toObjRedux(List<String> gcode, double arcSegmentLength) throws GcodeParserException {
+        return toObjRedux(gcode, arcSegmentLength, 0);
+    }
+
+    /**
+     * Same as toObjRedux, with the option to expand arcs by how far the line
+     * segments may be from the arc.
+     *
+     * @param gcode commands to visualize.
+     * @param arcSegmentLength length of line segments when expanding an arc.
+     * @param arcChordTolerance the maximum distance between the line segments
+     *                          and the arc, when greater than zero it is used
+     *                          instead of the segment length.
+     */
+    public LineSegmentStore toObjRedux(List<String> gcode, double arcSegmentLength, double arcChordTolerance) throws GcodeParserException {
         GcodeParser gp = getParser(arcSegmentLength);
 
-        lines.clear();
+        lines = new LineSegmentStore();
 
         // Save the state
         Position start = new Position();
@@ -165,7 +197,7 @@ public class GcodeViewParse {
                 List<GcodeMeta> points = gp.addCommand(command);
                 for (GcodeMeta meta : points) {
                     if (meta.point != null) {
-                        addLinesFromPointSegment(start, meta.point, arcSegmentLength, lines);
+                        addLinesFromPointSegment(start, meta.point, arcSegmentLength, arcChordTolerance, lines);
                         // if the last set point is in a different or unknown unit, crate a new point-instance with the correct unit set
                         if (start.getUnits() != UnitUtils.Units.MM && gp.getCurrentState().isMetric){
                             start=new Position(
@@ -183,53 +215,71 @@ public class GcodeViewParse {
             }
         }
         
+        lines.trimToSize();
         return lines;
     }
     
     /**
-     * Turns a point segment into one or more LineSegment. Arcs are expanded.
+     * Turns a point segment into one or more line segments. Arcs are expanded.
      * Keeps track of the minimum and maximum x/y/z locations.
      */
-    private List<LineSegment> addLinesFromPointSegment(final Position start, final PointSegment endSegment, double arcSegmentLength, List<LineSegment> ret) {
+    private void addLinesFromPointSegment(final Position start, final PointSegment endSegment,
+            double arcSegmentLength, double arcChordTolerance, LineSegmentStore ret) {
         // For a line segment list ALL arcs must be converted to lines.
-        double minArcLength = 0;
-        LineSegment ls;
         endSegment.convertToMetric();
-        
-        Position end = new Position(endSegment.point());
+
+        Position end = endSegment.point();
+        byte flags = getFlags(endSegment);
+        int lineNumber = endSegment.getLineNumber();
 
         // start is null for the first iteration.
         if (start != null) {
             // Expand arc for graphics.
             if (endSegment.isArc()) {
-                List<Position> points =
-                    GcodePreprocessorUtils.generatePointsAlongArcBDring(
+                PlaneFormatter plane = new PlaneFormatter(endSegment.getPlaneState());
+                if (arcChordTolerance > 0) {
+                    arcSegmentLength = 0;
+                }
+                int count = GcodePreprocessorUtils.generatePointsAlongArc(
                         start, end, endSegment.center(), endSegment.isClockwise(),
-                        endSegment.getRadius(), minArcLength, arcSegmentLength, new PlaneFormatter(endSegment.getPlaneState()));
+                        endSegment.getRadius(), arcSegmentLength, arcChordTolerance, plane, arcPoints);
+                if (count * 3 > arcPoints.length) {
+                    arcPoints = new double[count * 3];
+                    GcodePreprocessorUtils.generatePointsAlongArc(
+                            start, end, endSegment.center(), endSegment.isClockwise(),
+                            endSegment.getRadius(), arcSegmentLength, arcChordTolerance, plane, arcPoints);
+                }
+
                 // Create line segments from points.
-                if (points != null) {
-                    Position startPoint = start;
-                    for (Position nextPoint : points) {
-                        ls = new LineSegment(startPoint, nextPoint, endSegment.getLineNumber());
-                        ls.setIsArc(endSegment.isArc());
-                        ls.setIsFastTraverse(endSegment.isFastTraverse());
-                        ls.setIsZMovement(endSegment.isZMovement());
-                        this.testExtremes(nextPoint);
-                        ret.add(ls);
-                        startPoint = nextPoint;
-                    }
+                double x = start.x;
+                double y = start.y;
+                double z = start.z;
+                for (int i = 0; i < count * 3; i += 3) {
+                    ret.add(x, y, z, arcPoints[i], arcPoints[i + 1], arcPoints[i + 2], lineNumber, flags);
+                    x = arcPoints[i];
+                    y = arcPoints[i + 1];
+                    z = arcPoints[i + 2];
+                    this.testExtremes(x, y, z);
                 }
             // Line
             } else {
-                ls = new LineSegment(start, end, endSegment.getLineNumber());
-                ls.setIsArc(endSegment.isArc());
-                ls.setIsFastTraverse(endSegment.isFastTraverse());
-                ls.setIsZMovement(endSegment.isZMovement());
+                ret.add(start.x, start.y, start.z, end.x, end.y, end.z, lineNumber, flags);
                 this.testExtremes(end);
-                ret.add(ls);
             }
         }
-        
-        return ret;
     }
-}
\ No newline at end of file
+
+    private static byte getFlags(PointSegment segment) {
+        byte flags = 0;
+        if (segment.isArc()) {
+            flags |= LineSegmentStore.FLAG_ARC;
+        }
+        if (segment.isFastTraverse()) {
+            flags |= LineSegmentStore.FLAG_RAPID;
+        }
+        if (segment.isZMovement()) {
+            flags |= LineSegmentStore.FLAG_PLUNGE;
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+/**
+ * Bounding boxes of the segments in a {@link LineSegmentStore}, split into
+ * chunks of consecutive segments.
+ *
+ * The chunks follow the order of the program instead of a spatial tree so
+ * that the visible parts can still be drawn as ranges of the same vertex
+ * array, and the line numbers of the segments keep increasing. A toolpath
+ * rarely jumps around so the chunks are small compared to the model.
+ *
+ * @author wwinder
+ */
+public class LineSegmentBounds {
+    public static final int DEFAULT_SEGMENTS_PER_CHUNK = 1024;
+
+    private final int segmentsPerChunk;
+    private final int segmentCount;
+    private final int chunkCount;
+
+    // Six values per chunk, the minimum and maximum x, y and z
+    private final float[] bounds;
+
+    public LineSegmentBounds(LineSegmentStore segments) {
+        this(segments, DEFAULT_SEGMENTS_PER_CHUNK);
+    }
+
+    public LineSegmentBounds(LineSegmentStore segments, int segmentsPerChunk) {
+        this.segmentsPerChunk = segmentsPerChunk;
+        this.segmentCount = segments.size();
+        this.chunkCount = (segmentCount + segmentsPerChunk - 1) / segmentsPerChunk;
+        this.bounds = new float[chunkCount * 6];
+
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int index = chunk * 6;
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[index + axis] = Float.POSITIVE_INFINITY;
+                bounds[index + 3 + axis] = Float.NEGATIVE_INFINITY;
+            }
+
+            for (int segment = getChunkStart(chunk); segment < getChunkEnd(chunk); segment++) {
+                for (int vertex = 0; vertex < 2; vertex++) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        float value = segments.getCoordinate(segment, vertex, axis);
+                        bounds[index + axis] = Math.min(bounds[index + axis], value);
+                        bounds[index + 3 + axis] = Math.max(bounds[index + 3 + axis], value);
+                    }
+                }
+            }
+        }
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getChunkStart(int chunk) {
+        return chunk * segmentsPerChunk;
+    }
+
+    public int getChunkEnd(int chunk) {
+        return Math.min(segmentCount, (chunk + 1) * segmentsPerChunk);
+    }
+
+    private boolean isOutside(ViewFrustum frustum, int chunk) {
+        int index = chunk * 6;
+        return frustum.isOutside(bounds[index], bounds[index + 1], bounds[index + 2],
+                bounds[index + 3], bounds[index + 4], bounds[index + 5]);
+    }
+
+    /**
+     * Finds the segments which may be visible.
+     *
+     * @param frustum the visible volume
+     * @param ranges  receives pairs of the first segment and the segment
+     *                after the last, must have room for two values per chunk
+     * @return the number of ranges
+     */
+    public int findVisibleRanges(ViewFrustum frustum, int[] ranges) {
+        int count = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (isOutside(frustum, chunk)) {
+                continue;
+            }
+
+            // Merge with the previous range if they are next to each other
+            if (count > 0 && ranges[count * 2 - 1] == getChunkStart(chunk)) {
+                ranges[count * 2 - 1] = getChunkEnd(chunk);
+            } else {
+                ranges[count * 2] = getChunkStart(chunk);
+                ranges[count * 2 + 1] = getChunkEnd(chunk);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds how many pixels a unit of length is at most on the screen in the
+     * visible chunks.
+     *
+     * @return the number of pixels, or zero if nothing is visible
+     */
+    public double getPixelsPerUnit(ViewFrustum frustum) {
+        double result = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (isOutside(frustum, chunk)) {
+                continue;
+            }
+
+            int index = chunk * 6;
+            result = Math.max(result, frustum.getPixelsPerUnit(bounds[index], bounds[index + 1], bounds[index + 2],
+                    bounds[index + 3], bounds[index + 4], bounds[index + 5]));
+        }
+        return result;
+    }
+}
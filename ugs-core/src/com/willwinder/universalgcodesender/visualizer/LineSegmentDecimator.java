@@ -0,0 +1,127 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+/**
+ * Creates simplified versions of a toolpath for drawing it when zoomed out.
+ *
+ * Connected segments with the same flags are merged into one segment for as
+ * long as none of the points in between are further away from it than the
+ * tolerance. Segments shorter than the tolerance disappear this way. The
+ * merged segment gets the line number of the last segment so that the line
+ * numbers keep increasing.
+ *
+ * @author wwinder
+ */
+public class LineSegmentDecimator {
+    /**
+     * The maximum number of segments merged into one, this limits the work
+     * of checking the points in between.
+     */
+    private static final int MAX_MERGED_SEGMENTS = 32;
+
+    private LineSegmentDecimator() {
+    }
+
+    /**
+     * @param source    the segments to simplify
+     * @param tolerance the maximum distance between the original and the
+     *                  simplified path
+     * @return a new store with the simplified segments
+     */
+    public static LineSegmentStore decimate(LineSegmentStore source, double tolerance) {
+        LineSegmentStore result = new LineSegmentStore(Math.max(1, source.size() / 2));
+        double toleranceSquared = tolerance * tolerance;
+
+        int runStart = 0;
+        for (int i = 1; i <= source.size(); i++) {
+            if (i == source.size() || !canMerge(source, runStart, i, toleranceSquared)) {
+                addMerged(source, runStart, i - 1, result);
+                runStart = i;
+            }
+        }
+
+        result.trimToSize();
+        return result;
+    }
+
+    /**
+     * Checks if the segments from the first to the given segment can be
+     * replaced by one segment.
+     */
+    private static boolean canMerge(LineSegmentStore source, int first, int segment, double toleranceSquared) {
+        if (segment - first >= MAX_MERGED_SEGMENTS || source.getFlags(segment) != source.getFlags(first)) {
+            return false;
+        }
+
+        // The segments must be connected
+        for (int axis = 0; axis < 3; axis++) {
+            if (source.getCoordinate(segment, 0, axis) != source.getCoordinate(segment - 1, 1, axis)) {
+                return false;
+            }
+        }
+
+        // All points in between must be within the tolerance
+        for (int i = first; i < segment; i++) {
+            if (distanceSquared(source, first, segment, i) > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The squared distance from the end of a segment to the segment from
+     * the start of the first to the end of the last segment.
+     */
+    private static double distanceSquared(LineSegmentStore source, int first, int last, int segment) {
+        double ax = source.getCoordinate(first, 0, 0);
+        double ay = source.getCoordinate(first, 0, 1);
+        double az = source.getCoordinate(first, 0, 2);
+        double abx = source.getCoordinate(last, 1, 0) - ax;
+        double aby = source.getCoordinate(last, 1, 1) - ay;
+        double abz = source.getCoordinate(last, 1, 2) - az;
+        double apx = source.getCoordinate(segment, 1, 0) - ax;
+        double apy = source.getCoordinate(segment, 1, 1) - ay;
+        double apz = source.getCoordinate(segment, 1, 2) - az;
+
+        double lengthSquared = abx * abx + aby * aby + abz * abz;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, (apx * abx + apy * aby + apz * abz) / lengthSquared));
+        }
+
+        double dx = apx - t * abx;
+        double dy = apy - t * aby;
+        double dz = apz - t * abz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static void addMerged(LineSegmentStore source, int first, int last, LineSegmentStore result) {
+        result.add(
+                source.getCoordinate(first, 0, 0),
+                source.getCoordinate(first, 0, 1),
+                source.getCoordinate(first, 0, 2),
+                source.getCoordinate(last, 1, 0),
+                source.getCoordinate(last, 1, 1),
+                source.getCoordinate(last, 1, 2),
+                source.getLineNumber(last),
+                source.getFlags(last));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils;
+
+import javax.vecmath.Point3d;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * The line segments of a toolpath stored in columns instead of one object per
+ * segment.
+ *
+ * The start and end points are stored as floats in a direct buffer in the
+ * layout used by GL_LINES, so it can be handed to OpenGL as a vertex array
+ * without copying it. The line number and the flags of each segment are kept
+ * in arrays next to it, which adds up to 29 bytes per segment. All
+ * coordinates are in millimeters.
+ *
+ * @author wwinder
+ */
+public class LineSegmentStore {
+    public static final int FLOATS_PER_SEGMENT = 6;
+
+    public static final byte FLAG_ARC = 1;
+    public static final byte FLAG_RAPID = 1 << 1;
+    public static final byte FLAG_PLUNGE = 1 << 2;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private FloatBuffer vertices;
+    private int[] lineNumbers;
+    private byte[] flags;
+    private int size;
+
+    public LineSegmentStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LineSegmentStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        vertices = allocate(capacity);
+        lineNumbers = new int[capacity];
+        flags = new byte[capacity];
+    }
+
+    private static FloatBuffer allocate(int segments) {
+        return ByteBuffer.allocateDirect(segments * FLOATS_PER_SEGMENT * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+
+    private void ensureCapacity(int segments) {
+        if (segments <= lineNumbers.length) {
+            return;
+        }
+
+        int capacity = Math.max(segments, lineNumbers.length + (lineNumbers.length >> 1));
+        FloatBuffer buffer = allocate(capacity);
+        FloatBuffer old = vertices.duplicate();
+        old.position(0).limit(size * FLOATS_PER_SEGMENT);
+        buffer.put(old);
+        vertices = buffer;
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    /**
+     * Adds a segment to the end of the store.
+     *
+     * @param lineNumber the line in the program which the segment comes from
+     * @param flags      a combination of {@link #FLAG_ARC}, {@link #FLAG_RAPID} and {@link #FLAG_PLUNGE}
+     */
+    public void add(double x1, double y1, double z1, double x2, double y2, double z2, int lineNumber, byte flags) {
+        ensureCapacity(size + 1);
+        int index = size * FLOATS_PER_SEGMENT;
+        vertices.put(index, (float) x1);
+        vertices.put(index + 1, (float) y1);
+        vertices.put(index + 2, (float) z1);
+        vertices.put(index + 3, (float) x2);
+        vertices.put(index + 4, (float) y2);
+        vertices.put(index + 5, (float) z2);
+        this.lineNumbers[size] = lineNumber;
+        this.flags[size] = flags;
+        size++;
+    }
+
+    /**
+     * Releases the unused capacity, for when no more segments will be added.
+     */
+    public void trimToSize() {
+        if (size == lineNumbers.length || size == 0) {
+            return;
+        }
+        FloatBuffer buffer = allocate(size);
+        FloatBuffer old = vertices.duplicate();
+        old.position(0).limit(size * FLOATS_PER_SEGMENT);
+        buffer.put(old);
+        vertices = buffer;
+        lineNumbers = Arrays.copyOf(lineNumbers, size);
+        flags = Arrays.copyOf(flags, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the vertices of all segments, two vertices of three floats per
+     * segment. The buffer is a view of the store which may be passed to
+     * OpenGL directly, it must not be modified.
+     */
+    public FloatBuffer getVertexBuffer() {
+        FloatBuffer buffer = vertices.duplicate();
+        buffer.position(0).limit(size * FLOATS_PER_SEGMENT);
+        return buffer;
+    }
+
+    /**
+     * @param segment the index of the segment
+     * @param vertex  0 for the start point and 1 for the end point
+     * @param axis    0, 1 or 2 for x, y or z
+     */
+    public float getCoordinate(int segment, int vertex, int axis) {
+        return vertices.get(segment * FLOATS_PER_SEGMENT + vertex * 3 + axis);
+    }
+
+    public void getStart(int segment, Point3d point) {
+        int index = segment * FLOATS_PER_SEGMENT;
+        point.set(vertices.get(index), vertices.get(index + 1), vertices.get(index + 2));
+    }
+
+    public void getEnd(int segment, Point3d point) {
+        int index = segment * FLOATS_PER_SEGMENT + 3;
+        point.set(vertices.get(index), vertices.get(index + 1), vertices.get(index + 2));
+    }
+
+    public int getLineNumber(int segment) {
+        return lineNumbers[segment];
+    }
+
+    /**
+     * Finds the first segment from the given line or a later line. The
+     * segments are expected to be added in the order of the program so that
+     * the line numbers are increasing.
+     *
+     * @return the index of the segment, or the size of the store if there are
+     *         no such segments
+     */
+    public int indexOfLineNumber(int lineNumber) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lineNumbers[middle] < lineNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public byte getFlags(int segment) {
+        return flags[segment];
+    }
+
+    public boolean isArc(int segment) {
+        return (flags[segment] & FLAG_ARC) != 0;
+    }
+
+    public boolean isFastTraverse(int segment) {
+        return (flags[segment] & FLAG_RAPID) != 0;
+    }
+
+    public boolean isZMovement(int segment) {
+        return (flags[segment] & FLAG_PLUNGE) != 0;
+    }
+
+    /**
+     * Creates a {@link LineSegment} object for a segment, for code which
+     * needs one.
+     */
+    public LineSegment getLineSegment(int segment) {
+        Position start = new Position(0, 0, 0, UnitUtils.Units.MM);
+        Position end = new Position(0, 0, 0, UnitUtils.Units.MM);
+        getStart(segment, start);
+        getEnd(segment, end);
+
+        LineSegment lineSegment = new LineSegment(start, end, lineNumbers[segment]);
+        lineSegment.setIsArc(isArc(segment));
+        lineSegment.setIsFastTraverse(isFastTraverse(segment));
+        lineSegment.setIsZMovement(isZMovement(segment));
+        return lineSegment;
+    }
+}
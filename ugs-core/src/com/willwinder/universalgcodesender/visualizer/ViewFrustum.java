@@ -0,0 +1,121 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+/**
+ * The volume visible on the screen, given by the combined projection and
+ * modelview matrix. Used for skipping the parts of a model which are outside
+ * of the view and for finding how large the model is on the screen.
+ *
+ * @author wwinder
+ */
+public class ViewFrustum {
+    private final double[] matrix;
+    private final double halfWidth;
+    private final double halfHeight;
+
+    // Temporary storage for the corners of a box in clip coordinates
+    private final double[] clip = new double[4 * 8];
+
+    /**
+     * @param projection the projection matrix in column major order as
+     *                   returned by glGetDoublev
+     * @param modelView  the modelview matrix in column major order
+     * @param width      the width of the viewport in pixels
+     * @param height     the height of the viewport in pixels
+     */
+    public ViewFrustum(double[] projection, double[] modelView, int width, int height) {
+        this.matrix = multiply(projection, modelView);
+        this.halfWidth = width / 2.0;
+        this.halfHeight = height / 2.0;
+    }
+
+    private static double[] multiply(double[] a, double[] b) {
+        double[] result = new double[16];
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0;
+                for (int i = 0; i < 4; i++) {
+                    sum += a[i * 4 + row] * b[column * 4 + i];
+                }
+                result[column * 4 + row] = sum;
+            }
+        }
+        return result;
+    }
+
+    private void transformCorners(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        for (int corner = 0; corner < 8; corner++) {
+            double x = (corner & 1) == 0 ? minX : maxX;
+            double y = (corner & 2) == 0 ? minY : maxY;
+            double z = (corner & 4) == 0 ? minZ : maxZ;
+            for (int row = 0; row < 4; row++) {
+                clip[corner * 4 + row] = matrix[row] * x + matrix[4 + row] * y + matrix[8 + row] * z + matrix[12 + row];
+            }
+        }
+    }
+
+    /**
+     * @return true if the box is completely outside of the view
+     */
+    public boolean isOutside(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        transformCorners(minX, minY, minZ, maxX, maxY, maxZ);
+
+        // The box is outside if all corners are outside of the same plane
+        for (int axis = 0; axis < 3; axis++) {
+            boolean allBelow = true;
+            boolean allAbove = true;
+            for (int corner = 0; corner < 8; corner++) {
+                double value = clip[corner * 4 + axis];
+                double w = clip[corner * 4 + 3];
+                allBelow &= value < -w;
+                allAbove &= value > w;
+            }
+            if (allBelow || allAbove) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds how many pixels a unit of length in the box is at most on the
+     * screen.
+     *
+     * @return the number of pixels, or infinity if the box reaches behind
+     *         the camera
+     */
+    public double getPixelsPerUnit(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        transformCorners(minX, minY, minZ, maxX, maxY, maxZ);
+
+        double minW = Double.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            minW = Math.min(minW, clip[corner * 4 + 3]);
+        }
+        if (minW <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // The length of the x and y rows of the matrix is the most that a
+        // unit vector can be scaled by on the screen.
+        double scaleX = Math.sqrt(matrix[0] * matrix[0] + matrix[4] * matrix[4] + matrix[8] * matrix[8]);
+        double scaleY = Math.sqrt(matrix[1] * matrix[1] + matrix[5] * matrix[5] + matrix[9] * matrix[9]);
+        return Math.max(scaleX * halfWidth, scaleY * halfHeight) / minW;
+    }
+}
@@ -250,6 +250,65 @@ public class AbstractControllerTest {
         verify(mockCommunicator, instance);
     }
 
+    @Test
+    public void testBeginStreamingFromLine() throws Exception {
+        String port = "/some/port";
+        int rate = 1234;
+
+        openInstanceExpectUtility(port, rate, false);
+        streamInstanceExpectUtility();
+
+        // The modal state is restored before the stream is sent.
+        Capture<GcodeCommand> modalStateCommand = newCapture();
+        mockCommunicator.queueCommand(capture(modalStateCommand));
+        expect(expectLastCall()).once();
+        mockCommunicator.queueStreamForComm(anyObject(IGcodeStreamReader.class));
+        expect(expectLastCall()).once();
+        replay(instance, mockCommunicator);
+
+        SimpleGcodeStreamReader stream = new SimpleGcodeStreamReader("G20 G91", "G1 X1 F100", "G1 X2", "G1 X3");
+        instance.openCommPort(getSettings().getConnectionDriver(), port, rate);
+        instance.queueStream(stream);
+        instance.beginStreaming(2);
+
+        assertEquals("G20G91G91.1G17G54G94G1F100M5M9", modalStateCommand.getValue().getCommandString());
+        assertEquals(2, stream.getNumRowsRemaining());
+        assertEquals("G1 X2", stream.getNextCommand().getCommandString());
+
+        // Skipped rows count as completed, plus the modal state command.
+        assertEquals(5, instance.rowsInSend());
+        assertEquals(3, instance.rowsRemaining());
+
+        verify(mockCommunicator, instance);
+    }
+
+    @Test
+    public void testBeginStreamingAfterSpindleStart() throws Exception {
+        String port = "/some/port";
+        int rate = 1234;
+
+        openInstanceExpectUtility(port, rate, false);
+        streamInstanceExpectUtility();
+
+        // The spindle is started again before the stream is resumed.
+        Capture<GcodeCommand> modalStateCommand = newCapture();
+        mockCommunicator.queueCommand(capture(modalStateCommand));
+        expect(expectLastCall()).once();
+        mockCommunicator.queueStreamForComm(anyObject(IGcodeStreamReader.class));
+        expect(expectLastCall()).once();
+        replay(instance, mockCommunicator);
+
+        SimpleGcodeStreamReader stream = new SimpleGcodeStreamReader("G1 X1 F100", "M3 S1000", "G1 X2", "G1 X3");
+        instance.openCommPort(getSettings().getConnectionDriver(), port, rate);
+        instance.queueStream(stream);
+        instance.beginStreaming(2);
+
+        assertEquals("G21G90G91.1G17G54G94G1F100S1000M3M9", modalStateCommand.getValue().getCommandString());
+        assertEquals("G1 X2", stream.getNextCommand().getCommandString());
+
+        verify(mockCommunicator, instance);
+    }
+
     @Test
     public void testRowStats() throws Exception {
         testQueueStreamForComm();
@@ -21,6 +21,7 @@ package com.willwinder.universalgcodesender;
 import com.willwinder.universalgcodesender.connection.Connection;
 import com.willwinder.universalgcodesender.connection.ConnectionDriver;
 import com.willwinder.universalgcodesender.listeners.CommunicatorListener;
+import com.willwinder.universalgcodesender.mockobjects.MockConnection;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 import com.willwinder.universalgcodesender.utils.GcodeStreamReader;
 import com.willwinder.universalgcodesender.utils.GcodeStreamTest;
@@ -35,6 +36,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
@@ -44,8 +46,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -60,6 +66,7 @@ public class BufferedCommunicatorTest {
     private BufferedCommunicator instance;
     private LinkedBlockingDeque<GcodeCommand> cb;
     private LinkedBlockingDeque<GcodeCommand> asl;
+    private ByteArrayOutputStream sent;
 
     public BufferedCommunicatorTest() {
     }
@@ -90,6 +97,14 @@ public class BufferedCommunicatorTest {
         f.set(instance, false);
 
         EasyMock.reset(mockConnection, mockScl);
+        sent = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Replaces the mock connection with one that records everything written.
+     */
+    private void recordSentBytes() {
+        instance.setConnection(new MockConnection(null, sent));
     }
 
     /**
@@ -133,34 +148,32 @@ public class BufferedCommunicatorTest {
 
         // Check events and connection:
         // console message, connection stream, sent event
-        mockConnection.sendStringToComm(input + "\n");
-        EasyMock.expect(EasyMock.expectLastCall()).times(2);
+        recordSentBytes();
         mockScl.commandSent(EasyMock.anyObject(GcodeCommand.class));
         EasyMock.expect(EasyMock.expectLastCall()).times(2);
 
-        EasyMock.replay(mockConnection, mockScl);
+        EasyMock.replay(mockScl);
 
         // Test
         instance.queueCommand(new GcodeCommand(input));
         instance.queueCommand(new GcodeCommand(input));
         instance.streamCommands();
 
-        EasyMock.verify(mockConnection, mockScl);
+        assertEquals(input + "\n" + input + "\n", sent.toString());
+        EasyMock.verify(mockScl);
     }
 
     @Test
     public void testSimpleStreamStream() throws Exception {
         String[] inputs = {"input1", "input2"};
 
+        recordSentBytes();
         for (String i : inputs) {
-            mockConnection.sendStringToComm(i + "\n");
-            EasyMock.expect(EasyMock.expectLastCall());
-
             mockScl.commandSent(EasyMock.<GcodeCommand>anyObject());
             EasyMock.expect(EasyMock.expectLastCall());
         }
 
-        EasyMock.replay(mockConnection, mockScl);
+        EasyMock.replay(mockScl);
         
         File f = new File(tempDir,"gcodeFile");
 
@@ -176,8 +189,9 @@ public class BufferedCommunicatorTest {
         instance.streamCommands();
 
         assertEquals("input1, input2, 0 streaming commands.", instance.activeCommandSummary());
+        assertEquals("input1\ninput2\n", sent.toString());
 
-        EasyMock.verify(mockConnection, mockScl);
+        EasyMock.verify(mockScl);
     }
 
     /**
@@ -190,8 +204,7 @@ public class BufferedCommunicatorTest {
         String input = "input";
 
         // Setup 2 active commands.
-        mockConnection.sendStringToComm(input + "\n");
-        EasyMock.expect(EasyMock.expectLastCall()).times(2);
+        recordSentBytes();
 
         mockScl.commandSent(EasyMock.<GcodeCommand>anyObject());
         EasyMock.expect(EasyMock.expectLastCall()).times(2);
@@ -202,7 +215,7 @@ public class BufferedCommunicatorTest {
         mockScl.rawResponseListener("ok");
         EasyMock.expect(EasyMock.expectLastCall()).times(2);
 
-        EasyMock.replay(mockConnection, mockScl);
+        EasyMock.replay(mockScl);
 
         //////////////
         // THE TEST //
@@ -228,7 +241,8 @@ public class BufferedCommunicatorTest {
         assertEquals(false, instance.areActiveCommands());
 
         assertEquals(0, instance.numActiveCommands());
-        EasyMock.verify(mockConnection, mockScl);
+        assertEquals(input + "\n" + input + "\n", sent.toString());
+        EasyMock.verify(mockScl);
     }
 
     /**
@@ -239,11 +253,7 @@ public class BufferedCommunicatorTest {
         System.out.println("pauseSend");
 
         String input = "123456789";
-        for (int i = 0; i < 11; i++) {
-            mockConnection.sendStringToComm(input + "\n");
-            EasyMock.expect(EasyMock.expectLastCall());
-        }
-        EasyMock.replay(mockConnection);
+        recordSentBytes();
 
         // Send the first 10 commands, pause 11th
         for (int i = 0; i < 11; i++) {
@@ -253,6 +263,7 @@ public class BufferedCommunicatorTest {
         instance.pauseSend();
 
         assertEquals("First 10 commands sent.", 10, asl.size());
+        assertEquals(100, sent.size());
         for (int i = 0; i < 10; i++) {
             instance.handleResponseMessage("ok");
         }
@@ -262,7 +273,7 @@ public class BufferedCommunicatorTest {
         instance.resumeSend();
 
         assertEquals("Last comamnd active.", 1, asl.size());
-        EasyMock.verify(mockConnection);
+        assertEquals(110, sent.size());
     }
 
     /**
@@ -358,12 +369,7 @@ public class BufferedCommunicatorTest {
         byte b = 10;
 
         String tenChar = "123456789";
-        for (int i = 0; i < 10; i++) {
-            mockConnection.sendStringToComm(tenChar + "\n");
-        }
-        mockConnection.sendByteImmediately(b);
-
-        EasyMock.replay(mockConnection);
+        recordSentBytes();
 
         // Queue up 200 characters.
         for (int i = 0; i < 20; i++) {
@@ -371,10 +377,12 @@ public class BufferedCommunicatorTest {
         }
         instance.streamCommands();
 
-        // Make sure the byte is sent.
+        // Make sure the byte is sent after the ten commands which fit in the buffer.
         instance.sendByteImmediately(b);
 
-        EasyMock.verify(mockConnection);
+        byte[] bytes = sent.toByteArray();
+        assertEquals(101, bytes.length);
+        assertEquals(b, bytes[100]);
     }
 
     /**
@@ -398,11 +406,7 @@ public class BufferedCommunicatorTest {
     @Test
     public void testStreamCommandsOrderStringCommandsFirst() throws Exception {
         // Given
-        Connection connection = mock(Connection.class);
-        instance.setConnection(connection);
-
-        ArgumentCaptor<String> commandCaptor = ArgumentCaptor.forClass(String.class);
-        doNothing().when(connection).sendStringToComm(commandCaptor.capture());
+        recordSentBytes();
 
         // Create a gcode file stream
         File gcodeFile = new File(tempDir,"gcodeFile");
@@ -417,9 +421,32 @@ public class BufferedCommunicatorTest {
         instance.streamCommands();
 
         // Then
-        assertEquals(2, commandCaptor.getAllValues().size());
-        assertEquals("The first command processed should be the string command", "G1\n", commandCaptor.getAllValues().get(0));
-        assertEquals("The second command should be from the stream", "G0\n", commandCaptor.getAllValues().get(1));
+        assertEquals("The string command should be processed before the stream", "G1\nG0\n", sent.toString());
+    }
+
+    @Test
+    public void streamCommandsShouldWriteAllCommandsWhichFitInOneCall() throws Exception {
+        // Given
+        Connection connection = mock(Connection.class);
+        instance.setConnection(connection);
+
+        ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+        doNothing().when(connection).sendBytesToComm(bytesCaptor.capture(), eq(0), eq(14));
+
+        // The last command doesn't fit in the buffer of 101 bytes
+        instance.queueCommand(new GcodeCommand("G1 X10"));
+        instance.queueCommand(new GcodeCommand("  G1 X20\n"));
+        instance.queueCommand(new GcodeCommand(String.format("%090d", 0)));
+
+        // When
+        instance.streamCommands();
+
+        // Then
+        verify(connection, times(1)).sendBytesToComm(any(byte[].class), eq(0), eq(14));
+        verify(connection, never()).sendStringToComm(anyString());
+        assertEquals("G1 X10\nG1 X20\n", new String(bytesCaptor.getValue(), 0, 14));
+        assertEquals(2, asl.size());
+        assertEquals(3, instance.numActiveCommands());
     }
 
     @Test
@@ -481,6 +508,45 @@ public class BufferedCommunicatorTest {
         verify(communicatorListener, times(1)).communicatorPausedOnError();
     }
 
+    @Test
+    public void connectionDroppedShouldClearTheActiveCommands() {
+        // Given
+        Connection connection = mock(Connection.class);
+        instance.setConnection(connection);
+
+        CommunicatorListener communicatorListener = mock(CommunicatorListener.class);
+        instance.addListener(communicatorListener);
+
+        instance.queueCommand(new GcodeCommand("G0 X1"));
+        instance.queueCommand(new GcodeCommand("G0 X2"));
+        instance.streamCommands();
+        assertEquals(2, instance.numActiveCommands());
+
+        // When
+        instance.handleConnectionDropped();
+
+        // Then the responses aren't waited for and the buffer can be used again
+        assertFalse(instance.areActiveCommands());
+        verify(communicatorListener, times(1)).communicatorConnectionDropped();
+
+        instance.queueCommand(new GcodeCommand("G0 X3"));
+        instance.streamCommands();
+        assertEquals(1, instance.numActiveCommands());
+    }
+
+    @Test
+    public void connectionClosedShouldDispatchEvent() {
+        // Given
+        CommunicatorListener communicatorListener = mock(CommunicatorListener.class);
+        instance.addListener(communicatorListener);
+
+        // When
+        instance.handleConnectionClosed();
+
+        // Then
+        verify(communicatorListener, times(1)).communicatorConnectionClosed();
+    }
+
     @Test
     public void responseMessageOnErrorOnManualCommandShouldPauseTheCommunicator() {
         // Given
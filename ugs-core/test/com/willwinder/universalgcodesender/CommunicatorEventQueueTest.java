@@ -0,0 +1,140 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender;
+
+import com.willwinder.universalgcodesender.AbstractCommunicator.SerialCommunicatorEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.willwinder.universalgcodesender.AbstractCommunicator.SerialCommunicatorEvent.COMMAND_SENT;
+import static com.willwinder.universalgcodesender.AbstractCommunicator.SerialCommunicatorEvent.RAW_RESPONSE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author wwinder
+ */
+public class CommunicatorEventQueueTest {
+
+    @Test
+    public void drainDeliversEventsInOrder() {
+        CommunicatorEventQueue queue = new CommunicatorEventQueue(16);
+        assertTrue(queue.isEmpty());
+
+        queue.add(COMMAND_SENT, "one");
+        queue.add(RAW_RESPONSE, "two");
+        assertFalse(queue.isEmpty());
+
+        List<String> delivered = new ArrayList<>();
+        assertEquals(2, queue.drain((event, payload) -> delivered.add(event + ":" + payload)));
+        assertEquals(2, delivered.size());
+        assertEquals("COMMAND_SENT:one", delivered.get(0));
+        assertEquals("RAW_RESPONSE:two", delivered.get(1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void eventsOverflowingTheRingKeepTheirOrder() {
+        CommunicatorEventQueue queue = new CommunicatorEventQueue(4);
+        for (int i = 0; i < 10; i++) {
+            queue.add(RAW_RESPONSE, i);
+        }
+
+        List<Object> delivered = new ArrayList<>();
+        queue.drain((event, payload) -> delivered.add(payload));
+
+        // The ring can be used again once the overflow has been delivered.
+        queue.add(RAW_RESPONSE, 10);
+        queue.drain((event, payload) -> delivered.add(payload));
+
+        assertEquals(11, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(i, delivered.get(i));
+        }
+    }
+
+    @Test
+    public void clearDropsPendingEvents() {
+        CommunicatorEventQueue queue = new CommunicatorEventQueue(4);
+        for (int i = 0; i < 6; i++) {
+            queue.add(RAW_RESPONSE, i);
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+
+        queue.add(RAW_RESPONSE, "after");
+        List<Object> delivered = new ArrayList<>();
+        queue.drain((event, payload) -> delivered.add(payload));
+        assertEquals(1, delivered.size());
+        assertEquals("after", delivered.get(0));
+    }
+
+    @Test
+    public void eventThreadReceivesEventsFromSeveralProducers() throws Exception {
+        CommunicatorEventQueue queue = new CommunicatorEventQueue(64);
+        int producers = 4;
+        int eventsPerProducer = 20000;
+
+        int[] lastSeen = new int[producers];
+        int[] received = new int[1];
+        boolean[] outOfOrder = new boolean[1];
+        CountDownLatch done = new CountDownLatch(1);
+
+        Thread consumer = new Thread(() -> {
+            try {
+                while (received[0] < producers * eventsPerProducer) {
+                    queue.awaitEvents();
+                    queue.drain((SerialCommunicatorEvent event, Object payload) -> {
+                        int[] value = (int[]) payload;
+                        outOfOrder[0] |= value[1] != lastSeen[value[0]] + 1;
+                        lastSeen[value[0]] = value[1];
+                        received[0]++;
+                    });
+                }
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        consumer.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= eventsPerProducer; i++) {
+                    queue.add(RAW_RESPONSE, new int[]{producer, i});
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("The event thread didn't receive all events", done.await(10, TimeUnit.SECONDS));
+        assertFalse("Events from one producer were delivered out of order", outOfOrder[0]);
+        assertEquals(producers * eventsPerProducer, received[0]);
+    }
+}
@@ -23,6 +23,9 @@ import com.willwinder.universalgcodesender.gcode.GcodeParser;
 import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.Plane;
+import com.willwinder.universalgcodesender.gcode.util.PlaneFormatter;
+import com.willwinder.universalgcodesender.model.Position;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -39,6 +42,7 @@ import static com.willwinder.universalgcodesender.gcode.util.Code.G3;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G38_2;
 import static com.willwinder.universalgcodesender.gcode.util.Code.G92_1;
 import static org.assertj.core.api.Assertions.assertThat;
+import static com.willwinder.universalgcodesender.model.UnitUtils.Units.MM;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -162,6 +166,13 @@ public class GcodePreprocessorUtilsTest {
         expResult = "G1 X1.235 Y9.877 Z104.494";
         result = GcodePreprocessorUtils.truncateDecimals(length, command);
         assertEquals(expResult, result);
+
+        // Negative numbers, numbers without leading digits and short numbers.
+        length = 2;
+        command = "G1 X-1.23456 Y.98765 Z1.2 F1.2.3456";
+        expResult = "G1 X-1.23 Y.98765 Z1.2 F1.2.35";
+        result = GcodePreprocessorUtils.truncateDecimals(length, command);
+        assertEquals(expResult, result);
     }
     
     @Test
@@ -292,4 +303,61 @@ public class GcodePreprocessorUtilsTest {
         splitted = GcodePreprocessorUtils.splitCommand("(1)(2)G3(3)");
         assertThat(splitted.size()).isEqualTo(4);
     }
+
+    @Test
+    public void generatePointsAlongArcShouldMatchTheListOfPositions() {
+        Position center = new Position(1, 1, 1, MM);
+        for (Plane plane : new Plane[]{Plane.XY, Plane.ZX, Plane.YZ}) {
+            PlaneFormatter formatter = new PlaneFormatter(plane);
+            for (boolean clockwise : new boolean[]{true, false}) {
+                Position start = new Position(1, 1, 1, MM);
+                Position end = new Position(1, 1, 1, MM);
+                formatter.setAxis0(start, 3);
+                formatter.setAxis1(end, 3);
+                formatter.setLinear(end, 2);
+
+                List<Position> expected = GcodePreprocessorUtils.generatePointsAlongArcBDring(
+                        start, end, center, clockwise, 2, 0, 0.1, formatter);
+                double[] points = new double[expected.size() * 3];
+                int count = GcodePreprocessorUtils.generatePointsAlongArc(
+                        start, end, center, clockwise, 2, 0.1, 0, formatter, points);
+
+                // The list also contains the start point
+                assertEquals(expected.size() - 1, count);
+                for (int i = 0; i < count; i++) {
+                    Position point = expected.get(i + 1);
+                    assertEquals(point.x, points[i * 3], 1e-9);
+                    assertEquals(point.y, points[i * 3 + 1], 1e-9);
+                    assertEquals(point.z, points[i * 3 + 2], 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void generatePointsAlongArcShouldNotWriteToASmallArray() {
+        Position start = new Position(0, 0, 0, MM);
+        Position center = new Position(5, 0, 0, MM);
+        double[] points = new double[3];
+        int count = GcodePreprocessorUtils.generatePointsAlongArc(
+                start, start, center, true, 0, 1, 0, new PlaneFormatter(Plane.XY), points);
+        assertEquals(32, count);
+        assertEquals(0, points[0], 0);
+    }
+
+    @Test
+    public void getArcSegmentCount() {
+        // No limits
+        assertEquals(20, GcodePreprocessorUtils.getArcSegmentCount(10, Math.PI, 0, 0));
+
+        // Half a circle with radius 10 is 31.4 long
+        assertEquals(32, GcodePreprocessorUtils.getArcSegmentCount(10, Math.PI, 1, 0));
+
+        // The chord of a quarter circle is 2.93 from the arc, an eighth is 0.76
+        assertEquals(2, GcodePreprocessorUtils.getArcSegmentCount(10, Math.PI / 2, 0, 1));
+
+        // The limit which needs the most segments is used
+        assertEquals(32, GcodePreprocessorUtils.getArcSegmentCount(10, Math.PI, 1, 1));
+        assertEquals(1, GcodePreprocessorUtils.getArcSegmentCount(10, Math.PI / 2, 0, 100));
+    }
 }
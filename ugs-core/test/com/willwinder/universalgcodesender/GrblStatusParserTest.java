@@ -0,0 +1,363 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender;
+
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.AccessoryStates;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.EnabledPins;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus.OverridePercents;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author wwinder
+ */
+public class GrblStatusParserTest {
+
+    @Test
+    public void parsesStatusReport() {
+        GrblStatusParser parser = new GrblStatusParser();
+        ControllerStatus status = parser.parse(null,
+                "<Hold:0|MPos:1.000,-2.500,3.125,4.000|FS:500,12000|WCO:0.500,0.500,0.500|Ov:100,90,80|Pn:XPz|A:SM>",
+                Units.MM);
+
+        assertEquals(ControllerState.HOLD, status.getState());
+        assertEquals(new Position(1, -2.5, 3.125, Units.MM), status.getMachineCoord());
+        assertEquals(new Position(0.5, -3, 2.625, Units.MM), status.getWorkCoord());
+        assertEquals(new Position(0.5, 0.5, 0.5, Units.MM), status.getWorkCoordinateOffset());
+        assertEquals(500, status.getFeedSpeed(), 0);
+        assertEquals(12000, status.getSpindleSpeed(), 0);
+        assertEquals(90, status.getOverrides().rapid);
+        assertEquals("true false true true false false false false", pins(status.getEnabledPins()));
+        assertEquals(true, status.getAccessoryStates().SpindleCW);
+        assertEquals(true, status.getAccessoryStates().Mist);
+        assertEquals(false, status.getAccessoryStates().Flood);
+    }
+
+    @Test
+    public void parsesBufferState() {
+        GrblStatusParser parser = new GrblStatusParser();
+        parser.parse(null, "<Idle|MPos:1,2,3|Bf:15,128|FS:0,0>", Units.MM);
+        assertEquals(15, parser.getPlannerBlocksFree());
+        assertEquals(128, parser.getRxBytesFree());
+
+        parser.parse(null, "<Run|MPos:1,2,3|Bf:0,64>", Units.MM);
+        assertEquals(0, parser.getPlannerBlocksFree());
+        assertEquals(64, parser.getRxBytesFree());
+
+        // Missing and malformed fields aren't kept from the previous report.
+        parser.parse(null, "<Idle|MPos:1,2,3|FS:0,0>", Units.MM);
+        assertEquals(-1, parser.getPlannerBlocksFree());
+        assertEquals(-1, parser.getRxBytesFree());
+
+        parser.parse(null, "<Idle|MPos:1,2,3|Bf:x,1>", Units.MM);
+        assertEquals(-1, parser.getPlannerBlocksFree());
+        assertEquals(-1, parser.getRxBytesFree());
+    }
+
+    @Test
+    public void unchangedStatusReturnsLastStatus() {
+        GrblStatusParser parser = new GrblStatusParser();
+        ControllerStatus first = parser.parse(null, "<Idle|MPos:1.000,2.000,3.000|FS:0,0|WCO:0.000,0.000,0.000>", Units.MM);
+        ControllerStatus second = parser.parse(first, "<Idle|MPos:1.000,2.000,3.000|FS:0,0>", Units.MM);
+        assertSame(first, second);
+
+        // Only the changed position is replaced.
+        ControllerStatus moved = parser.parse(second, "<Run|MPos:1.000,2.000,3.000|FS:100,0>", Units.MM);
+        assertNotSame(second, moved);
+        assertEquals(ControllerState.RUN, moved.getState());
+        assertSame(second.getMachineCoord(), moved.getMachineCoord());
+        assertSame(second.getWorkCoordinateOffset(), moved.getWorkCoordinateOffset());
+    }
+
+    @Test
+    public void malformedFieldsKeepTheLastValues() {
+        GrblStatusParser parser = new GrblStatusParser();
+        ControllerStatus first = parser.parse(null,
+                "<Idle|MPos:1.000,2.000,3.000|FS:500,12000|WCO:0.000,0.000,0.000|Ov:100,90,80>", Units.MM);
+
+        String[] reports = {
+                "<Idle|MPos:1.000,2.000,3.000|FS:abc,0>",
+                "<Idle|MPos:1.000,2.000,3.000|FS:500>",
+                "<Idle|MPos:1.000,2.000,3.000|FS:,>",
+                "<Idle|MPos:1.000,2.000,3.000|F:>",
+                "<Idle|MPos:1.000,2.000,3.000|F:x>",
+        };
+        for (String report : reports) {
+            assertSame(report, first, parser.parse(first, report, Units.MM));
+        }
+
+        // A malformed position is left out like a missing one.
+        ControllerStatus status = parser.parse(first, "<Run|MPos:1.000,,3.000|WCO:-|FS:500,12000>", Units.MM);
+        assertEquals(ControllerState.RUN, status.getState());
+        assertNull(status.getMachineCoord());
+        assertSame(first.getWorkCoordinateOffset(), status.getWorkCoordinateOffset());
+
+        // Malformed overrides are ignored.
+        status = parser.parse(first, "<Idle|MPos:1.000,2.000,3.000|FS:500,12000|Ov:100,,80>", Units.MM);
+        assertSame(first.getOverrides(), status.getOverrides());
+    }
+
+    /**
+     * Compares random status reports with the regular expression based parser
+     * which was used before, feeding each parser its own previous status.
+     */
+    @Test
+    public void fuzzAgainstRegexParser() {
+        Random random = new Random(1);
+        GrblStatusParser parser = new GrblStatusParser();
+        ControllerStatus last = null;
+        ControllerStatus lastExpected = null;
+        for (int i = 0; i < 50000; i++) {
+            // Start over every now and then.
+            if (random.nextInt(100) == 0) {
+                last = null;
+                lastExpected = null;
+            }
+            String status = randomStatus(random);
+            Units units = random.nextInt(10) == 0 ? Units.INCH : Units.MM;
+
+            lastExpected = parseWithRegex(lastExpected, status, units);
+            last = parser.parse(last, status, units);
+            assertEquals(status, describe(lastExpected), describe(last));
+        }
+    }
+
+    private static String randomStatus(Random random) {
+        String[] states = {"Idle", "Run", "Hold:0", "Hold:1", "Jog", "Alarm", "Door:0", "Door:3", "Check", "Home", "Sleep", "idle", "Tool"};
+        List<String> fields = new ArrayList<>();
+        if (random.nextBoolean()) {
+            fields.add("MPos:" + randomPosition(random));
+        } else if (random.nextInt(10) > 0) {
+            fields.add("WPos:" + randomPosition(random));
+        }
+        if (random.nextInt(4) == 0) {
+            fields.add("WCO:" + randomPosition(random));
+        }
+        if (random.nextBoolean()) {
+            fields.add("Bf:15,128");
+        }
+        if (random.nextInt(4) == 0) {
+            fields.add("Ln:" + random.nextInt(10000));
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+                fields.add("F:" + randomNumber(random));
+                break;
+            case 1:
+                fields.add("F:" + randomNumber(random) + "," + randomNumber(random) + "," + randomNumber(random));
+                break;
+            case 2:
+                break;
+            default:
+                fields.add("FS:" + randomNumber(random) + "," + random.nextInt(24000));
+        }
+        if (random.nextInt(5) == 0) {
+            fields.add("Ov:" + (10 + random.nextInt(190)) + "," + (25 * (1 + random.nextInt(4))) + "," + (10 + random.nextInt(190)));
+        }
+        if (random.nextInt(5) == 0) {
+            fields.add("Pn:" + randomLetters(random, "XYZPDHRSxyz"));
+        }
+        if (random.nextInt(5) == 0) {
+            fields.add("A:" + randomLetters(random, "SCFM"));
+        }
+        Collections.shuffle(fields, random);
+        fields.add(0, "<" + states[random.nextInt(states.length)]);
+        return String.join("|", fields) + ">";
+    }
+
+    private static String randomPosition(Random random) {
+        int axes = 3 + random.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < axes; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(randomNumber(random));
+        }
+        return sb.toString();
+    }
+
+    private static String randomNumber(Random random) {
+        // Most reports repeat a handful of values.
+        if (random.nextInt(4) == 0) {
+            return "0.000";
+        }
+        double value = (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(5));
+        return String.format(Locale.ROOT, "%." + random.nextInt(5) + "f", value);
+    }
+
+    private static String randomLetters(Random random, String letters) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < letters.length(); i++) {
+            if (random.nextBoolean()) {
+                sb.append(letters.charAt(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String describe(ControllerStatus status) {
+        OverridePercents overrides = status.getOverrides();
+        AccessoryStates accessories = status.getAccessoryStates();
+        return status.getState()
+                + " mpos=" + describe(status.getMachineCoord())
+                + " wpos=" + describe(status.getWorkCoord())
+                + " wco=" + describe(status.getWorkCoordinateOffset())
+                + " feed=" + status.getFeedSpeed()
+                + " spindle=" + status.getSpindleSpeed()
+                + " units=" + status.getFeedSpeedUnits()
+                + " ov=" + (overrides == null ? null : overrides.feed + "," + overrides.rapid + "," + overrides.spindle)
+                + " pins=" + (status.getEnabledPins() == null ? null : pins(status.getEnabledPins()))
+                + " accessories=" + (accessories == null ? null :
+                accessories.SpindleCW + "," + accessories.SpindleCCW + "," + accessories.Flood + "," + accessories.Mist);
+    }
+
+    private static String describe(Position position) {
+        return position == null ? null : position.x + "," + position.y + "," + position.z + " " + position.getUnits();
+    }
+
+    private static String pins(EnabledPins pins) {
+        return pins.X + " " + pins.Y + " " + pins.Z + " " + pins.Probe + " "
+                + pins.Door + " " + pins.Hold + " " + pins.SoftReset + " " + pins.CycleStart;
+    }
+
+    private static final Pattern MACHINE_PATTERN = Pattern.compile("(?<=MPos:)(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*)");
+    private static final Pattern WORK_PATTERN = Pattern.compile("(?<=WPos:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
+    private static final Pattern WCO_PATTERN = Pattern.compile("(?<=WCO:)(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*),(\\-?\\d*\\.?\\d*)");
+
+    /**
+     * The regular expression based implementation which was replaced by {@link GrblStatusParser}.
+     */
+    private static ControllerStatus parseWithRegex(ControllerStatus lastStatus, String status, Units reportingUnits) {
+        String stateString = "";
+        Position MPos = null;
+        Position WPos = null;
+        Position WCO = null;
+
+        OverridePercents overrides = null;
+        EnabledPins pins = null;
+        AccessoryStates accessoryStates = null;
+
+        double feedSpeed = 0;
+        double spindleSpeed = 0;
+        if (lastStatus != null) {
+            feedSpeed = lastStatus.getFeedSpeed();
+            spindleSpeed = lastStatus.getSpindleSpeed();
+        }
+        boolean isOverrideReport = false;
+
+        for (String part : status.substring(0, status.length() - 1).split("\\|")) {
+            if (part.startsWith("<")) {
+                int idx = part.indexOf(':');
+                if (idx == -1)
+                    stateString = part.substring(1);
+                else
+                    stateString = part.substring(1, idx);
+            } else if (part.startsWith("MPos:")) {
+                MPos = getPositionFromStatusString(status, MACHINE_PATTERN, reportingUnits);
+            } else if (part.startsWith("WPos:")) {
+                WPos = getPositionFromStatusString(status, WORK_PATTERN, reportingUnits);
+            } else if (part.startsWith("WCO:")) {
+                WCO = getPositionFromStatusString(status, WCO_PATTERN, reportingUnits);
+            } else if (part.startsWith("Ov:")) {
+                isOverrideReport = true;
+                String[] overrideParts = part.substring(3).trim().split(",");
+                if (overrideParts.length == 3) {
+                    overrides = new OverridePercents(
+                            Integer.parseInt(overrideParts[0]),
+                            Integer.parseInt(overrideParts[1]),
+                            Integer.parseInt(overrideParts[2]));
+                }
+            } else if (part.startsWith("F:")) {
+                String[] feedStrings = StringUtils.split(part.substring(2), ",");
+                if (feedStrings.length > 1) {
+                    feedSpeed = feedStrings.length >= 3 ? Double.parseDouble(feedStrings[0]) : 0;
+                } else {
+                    feedSpeed = Double.parseDouble(part.substring(2));
+                }
+            } else if (part.startsWith("FS:")) {
+                String[] parts = part.substring(3).split(",");
+                feedSpeed = Double.parseDouble(parts[0]);
+                spindleSpeed = Double.parseDouble(parts[1]);
+            } else if (part.startsWith("Pn:")) {
+                pins = new EnabledPins(part.substring(part.indexOf(':') + 1));
+            } else if (part.startsWith("A:")) {
+                accessoryStates = new AccessoryStates(part.substring(part.indexOf(':') + 1));
+            }
+        }
+
+        if (WCO == null) {
+            if (lastStatus != null && lastStatus.getWorkCoordinateOffset() != null) {
+                WCO = lastStatus.getWorkCoordinateOffset();
+            } else {
+                WCO = new Position(0, 0, 0, reportingUnits);
+            }
+        }
+
+        if (WPos == null && MPos != null) {
+            WPos = new Position(MPos.x - WCO.x, MPos.y - WCO.y, MPos.z - WCO.z, reportingUnits);
+        } else if (MPos == null && WPos != null) {
+            MPos = new Position(WPos.x + WCO.x, WPos.y + WCO.y, WPos.z + WCO.z, reportingUnits);
+        }
+
+        if (!isOverrideReport && lastStatus != null) {
+            overrides = lastStatus.getOverrides();
+            pins = lastStatus.getEnabledPins();
+            accessoryStates = lastStatus.getAccessoryStates();
+        } else if (isOverrideReport) {
+            if (pins == null) {
+                pins = new EnabledPins("");
+            }
+            if (accessoryStates == null) {
+                accessoryStates = new AccessoryStates("");
+            }
+        }
+
+        ControllerState state = GrblUtils.getControllerStateFromStateString(stateString);
+        return new ControllerStatus(state, MPos, WPos, feedSpeed, reportingUnits, spindleSpeed, overrides, WCO, pins, accessoryStates);
+    }
+
+    private static Position getPositionFromStatusString(String status, Pattern pattern, Units reportingUnits) {
+        Matcher matcher = pattern.matcher(status);
+        if (matcher.find()) {
+            return new Position(Double.parseDouble(matcher.group(1)),
+                    Double.parseDouble(matcher.group(2)),
+                    Double.parseDouble(matcher.group(3)),
+                    reportingUnits);
+        }
+        return null;
+    }
+}
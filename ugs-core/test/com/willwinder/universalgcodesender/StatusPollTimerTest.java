@@ -0,0 +1,209 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender;
+
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UGSEvent.ControlState;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author wwinder
+ */
+public class StatusPollTimerTest {
+    private static final int RATE = 20;
+
+    private IController controller;
+    private ManualScheduler scheduler;
+    private StatusPollTimer timer;
+    private AtomicInteger polls;
+    private long responseDelay;
+
+    @Before
+    public void setUp() throws Exception {
+        controller = mock(IController.class);
+        when(controller.getStatusUpdatesEnabled()).thenReturn(true);
+        when(controller.getStatusUpdateRate()).thenReturn(RATE);
+        when(controller.getControlState()).thenReturn(ControlState.COMM_IDLE);
+        setState(ControllerState.RUN);
+
+        scheduler = new ManualScheduler();
+        timer = new StatusPollTimer(controller, scheduler);
+        polls = new AtomicInteger();
+        responseDelay = 0;
+
+        // Answer every status request, optionally after a delay.
+        doAnswer(invocation -> {
+            polls.incrementAndGet();
+            if (responseDelay == 0) {
+                timer.receivedStatus();
+            } else {
+                scheduler.schedule(timer::receivedStatus, responseDelay);
+            }
+            return null;
+        }).when(controller).requestStatusReport();
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    private void setState(ControllerState state) {
+        Position position = new Position(0, 0, 0, Units.MM);
+        when(controller.getControllerStatus()).thenReturn(new ControllerStatus(state, position, position));
+    }
+
+    @Test
+    public void pollsLessOftenWhileIdle() throws Exception {
+        timer.start();
+        scheduler.advance(1000);
+        assertEquals(51, polls.get());
+
+        setState(ControllerState.IDLE);
+        scheduler.advance(100);
+        polls.set(0);
+        scheduler.advance(1000);
+        assertEquals(12, polls.get());
+        assertEquals(RATE * 4, timer.getPollIntervalMs());
+        assertEquals(0, timer.getPollJitterMs(), 0);
+    }
+
+    @Test
+    public void pollsAtTheConfiguredRateWhileStreaming() throws Exception {
+        setState(ControllerState.IDLE);
+        when(controller.getControlState()).thenReturn(ControlState.COMM_SENDING);
+        timer.start();
+        scheduler.advance(200);
+        assertEquals(11, polls.get());
+        assertEquals(RATE, timer.getPollIntervalMs());
+    }
+
+    @Test
+    public void onlyOnePollIsOutstanding() throws Exception {
+        // The response is lost.
+        doAnswer(invocation -> {
+            polls.incrementAndGet();
+            return null;
+        }).when(controller).requestStatusReport();
+
+        timer.start();
+        scheduler.advance(RATE * 10);
+        assertEquals(1, polls.get());
+
+        // Another poll is sent after twenty intervals.
+        scheduler.advance(RATE * 10);
+        assertEquals(2, polls.get());
+    }
+
+    @Test
+    public void slowResponsesIncreaseTheInterval() throws Exception {
+        responseDelay = 100;
+        timer.start();
+        scheduler.advance(1500);
+
+        assertEquals(100, timer.getAverageRoundTripMs(), 0.001);
+        assertEquals(100, timer.getLastRoundTripMs(), 0.001);
+        assertEquals(200, timer.getPollIntervalMs());
+    }
+
+    @Test
+    public void stopStopsPolling() throws Exception {
+        timer.start();
+        scheduler.advance(100);
+        timer.stop();
+        int count = polls.get();
+        scheduler.advance(200);
+        assertEquals(6, count);
+        assertEquals(count, polls.get());
+        assertEquals(count, timer.getPollCount());
+    }
+
+    /**
+     * Runs the scheduled tasks when the test advances the time, in the order
+     * they are due.
+     */
+    private static class ManualScheduler implements StatusPollTimer.Scheduler {
+        private final List<Task> tasks = new ArrayList<>();
+        private long now = TimeUnit.SECONDS.toNanos(1);
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public Future<?> schedule(Runnable task, long delayMs) {
+            Task scheduled = new Task(task, now + TimeUnit.MILLISECONDS.toNanos(delayMs));
+            tasks.add(scheduled);
+            return scheduled;
+        }
+
+        @Override
+        public void shutdown() {
+            // Cancelled tasks are never run.
+        }
+
+        void advance(long ms) {
+            long end = now + TimeUnit.MILLISECONDS.toNanos(ms);
+            Task next;
+            while ((next = nextTaskDueBy(end)) != null) {
+                tasks.remove(next);
+                now = next.time;
+                next.run();
+            }
+            now = end;
+        }
+
+        private Task nextTaskDueBy(long time) {
+            Task next = null;
+            for (Task task : tasks) {
+                if (task.time <= time && (next == null || task.time < next.time)) {
+                    next = task;
+                }
+            }
+            return next;
+        }
+    }
+
+    private static class Task extends FutureTask<Void> {
+        private final long time;
+
+        Task(Runnable runnable, long time) {
+            super(runnable, null);
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.connection;
+
+import com.willwinder.universalgcodesender.GrblSimulatorCommunicator;
+import com.willwinder.universalgcodesender.GrblStatusParser;
+import com.willwinder.universalgcodesender.GrblUtils;
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.model.UnitUtils;
+import com.willwinder.universalgcodesender.types.GcodeCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GrblSimulatorTest {
+    private static final double DELTA = 0.0001;
+
+    private GrblSimulator simulator;
+
+    @Before
+    public void setUp() {
+        simulator = new GrblSimulator();
+        simulator.reset();
+        assertEquals(GrblSimulator.WELCOME_MESSAGE + "\r\n", simulator.takeOutput());
+    }
+
+    private void send(String... lines) {
+        for (String line : lines) {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+            simulator.receive(bytes, 0, bytes.length);
+        }
+    }
+
+    private List<String> takeLines() {
+        String output = simulator.takeOutput();
+        if (output.isEmpty()) {
+            return Arrays.asList();
+        }
+        return Arrays.asList(output.split("\r\n"));
+    }
+
+    private String rawStatus() {
+        simulator.receive(GrblUtils.GRBL_STATUS_COMMAND);
+        List<String> lines = takeLines();
+        assertEquals(1, lines.size());
+        return lines.get(0);
+    }
+
+    private ControllerStatus status() {
+        return GrblUtils.getStatusFromStatusStringV1(null, rawStatus(), UnitUtils.Units.MM);
+    }
+
+    @Test
+    public void movesShouldTakeTheTimeGivenByTheFeedRate() {
+        send("G1 X10 F600");
+        assertEquals(Arrays.asList("ok"), takeLines());
+
+        // 10mm at 10mm/s.
+        assertEquals(1_000_000, simulator.getMicrosUntilNextEvent());
+        simulator.advance(500_000);
+
+        ControllerStatus status = status();
+        assertEquals(ControllerState.RUN, status.getState());
+        assertEquals(5, status.getMachineCoord().x, DELTA);
+        assertEquals(600, status.getFeedSpeed(), DELTA);
+
+        simulator.advance(500_000);
+        status = status();
+        assertEquals(ControllerState.IDLE, status.getState());
+        assertEquals(10, status.getMachineCoord().x, DELTA);
+        assertEquals(1_000_000, simulator.getMachineTimeMicros());
+        assertEquals(-1, simulator.getMicrosUntilNextEvent());
+    }
+
+    @Test
+    public void okShouldBeDelayedUntilThereIsRoomInThePlanner() {
+        for (int i = 1; i <= 20; i++) {
+            send("G1 X" + i + " F60");
+        }
+
+        // One "ok" for each planner block, the next line waits for a free
+        // block and the rest are still in the RX buffer.
+        assertEquals(GrblSimulator.DEFAULT_PLANNER_BLOCKS, takeLines().size());
+        assertEquals(GrblSimulator.DEFAULT_PLANNER_BLOCKS, simulator.getPlannerBlockCount());
+        assertEquals(GrblSimulator.DEFAULT_PLANNER_BLOCKS + 1, simulator.getLinesProcessed());
+
+        int bufferedBytes = simulator.getRxBufferCount();
+        assertEquals("G1 X17 F60\nG1 X18 F60\nG1 X19 F60\nG1 X20 F60\n".length(), bufferedBytes);
+
+        GrblStatusParser parser = new GrblStatusParser();
+        parser.parse(null, rawStatus(), UnitUtils.Units.MM);
+        assertEquals(0, parser.getPlannerBlocksFree());
+        assertEquals(GrblSimulator.DEFAULT_RX_BUFFER_SIZE - bufferedBytes, parser.getRxBytesFree());
+
+        // Completing the first block lets the pending line in.
+        simulator.advance(1_000_000);
+        assertEquals(Arrays.asList("ok"), takeLines());
+        assertEquals(GrblSimulator.DEFAULT_PLANNER_BLOCKS, simulator.getPlannerBlockCount());
+
+        simulator.advance(Long.MAX_VALUE);
+        assertEquals(4, takeLines().size());
+        assertEquals(20, simulator.getPosition().x, DELTA);
+        assertEquals(0, simulator.getRxOverflowCount());
+    }
+
+    @Test
+    public void bytesShouldBeDroppedWhenTheRxBufferIsFull() {
+        for (int i = 1; i <= 40; i++) {
+            send("G1 X" + i + " F60");
+        }
+        assertEquals(GrblSimulator.DEFAULT_RX_BUFFER_SIZE, simulator.getRxBufferCount());
+        assertTrue(simulator.getRxOverflowCount() > 0);
+    }
+
+    @Test
+    public void overridesShouldChangeTheSpeedOfTheMove() {
+        send("G1 X10 F600");
+        takeLines();
+
+        simulator.receive((byte) 0x91);
+        simulator.receive((byte) 0x93);
+        assertEquals(111, simulator.getFeedOverride());
+
+        ControllerStatus status = status();
+        assertEquals(111, status.getOverrides().feed);
+        assertEquals(666, status.getFeedSpeed(), DELTA);
+
+        simulator.receive((byte) 0x90);
+        simulator.receive((byte) 0x97);
+        assertEquals(100, simulator.getFeedOverride());
+        assertEquals(25, simulator.getRapidOverride());
+
+        // Rapids are at 5000mm/min.
+        send("G0 X0");
+        simulator.advance(1_000_000);
+        takeLines();
+        assertEquals(10 / (5000 * 0.25 / 60e6), simulator.getMicrosUntilNextEvent(), 1);
+    }
+
+    @Test
+    public void feedHoldShouldPauseTheMove() {
+        send("G1 X10 F600");
+        simulator.advance(100_000);
+        simulator.receive(GrblUtils.GRBL_PAUSE_COMMAND);
+        simulator.advance(1_000_000);
+        takeLines();
+
+        ControllerStatus status = status();
+        assertEquals(ControllerState.HOLD, status.getState());
+        assertEquals(1, status.getMachineCoord().x, DELTA);
+
+        simulator.receive(GrblUtils.GRBL_RESUME_COMMAND);
+        simulator.advance(1_000_000);
+        assertEquals(10, simulator.getPosition().x, DELTA);
+    }
+
+    @Test
+    public void resetWhileMovingShouldTriggerAnAlarm() {
+        send("G1 X10 F600");
+        simulator.advance(500_000);
+        takeLines();
+
+        simulator.receive(GrblUtils.GRBL_RESET_COMMAND);
+        assertEquals(Arrays.asList("ALARM:3", GrblSimulator.WELCOME_MESSAGE, "[MSG:'$H'|'$X' to unlock]"), takeLines());
+        assertEquals(3, simulator.getAlarm());
+        assertEquals(ControllerState.ALARM, status().getState());
+
+        send("G1 X0 F600");
+        assertEquals(Arrays.asList("error:9"), takeLines());
+
+        // The parser continues from where the machine stopped.
+        send("$X", "G91 G1 X1 F600");
+        assertEquals(Arrays.asList("[MSG:Caution: Unlocked]", "ok", "ok"), takeLines());
+        simulator.advance(Long.MAX_VALUE);
+        assertEquals(6, simulator.getPosition().x, DELTA);
+    }
+
+    @Test
+    public void triggeredAlarmShouldFlushTheBuffers() {
+        for (int i = 1; i <= 20; i++) {
+            send("G1 X" + i + " F60");
+        }
+        takeLines();
+
+        simulator.triggerAlarm(1);
+        assertEquals(Arrays.asList("ALARM:1"), takeLines());
+        assertEquals(0, simulator.getPlannerBlockCount());
+        assertEquals(0, simulator.getRxBufferCount());
+        assertTrue(simulator.isIdle());
+    }
+
+    @Test
+    public void jogShouldNotChangeTheParserState() {
+        send("$J=G91 X5 F600");
+        assertEquals(Arrays.asList("ok"), takeLines());
+        simulator.advance(250_000);
+        assertEquals(ControllerState.JOG, status().getState());
+
+        simulator.receive(GrblUtils.GRBL_JOG_CANCEL_COMMAND);
+        assertEquals(ControllerState.IDLE, status().getState());
+        assertEquals(2.5, simulator.getPosition().x, DELTA);
+
+        // The jog continues from where the machine stopped and the parser is
+        // still in absolute mode.
+        send("$J=G91 X5 F600", "$G");
+        simulator.advance(Long.MAX_VALUE);
+        assertEquals(7.5, simulator.getPosition().x, DELTA);
+        assertEquals(Arrays.asList("ok", "[GC:G0 G54 G17 G21 G90 G94 M5 M9 T0 F0 S0]", "ok"), takeLines());
+
+        send("G1 X0 F600");
+        simulator.advance(Long.MAX_VALUE);
+        assertEquals(0, simulator.getPosition().x, DELTA);
+    }
+
+    @Test
+    public void errorsShouldBeReported() {
+        send("G1 X10", "G1 X10 G0 Y1 F100", "$J=X10", "1234");
+        assertEquals(Arrays.asList("error:22", "error:20", "error:22", "error:1"), takeLines());
+        assertTrue(simulator.isIdle());
+    }
+
+    @Test
+    public void checkModeShouldNotMoveTheMachine() {
+        send("$C", "G1 X10 F100");
+        assertEquals(Arrays.asList("[MSG:Enabled]", "ok", "ok"), takeLines());
+        assertEquals(ControllerState.CHECK, status().getState());
+        assertTrue(simulator.isIdle());
+
+        send("$C");
+        assertEquals(Arrays.asList("[MSG:Disabled]", "ok", GrblSimulator.WELCOME_MESSAGE), takeLines());
+        assertEquals(0, simulator.getPosition().x, DELTA);
+    }
+
+    @Test
+    public void arcsShouldTakeTheTimeGivenByTheirLength() {
+        send("G2 X10 Y0 I5 J0 F600");
+        simulator.advance(Long.MAX_VALUE);
+
+        // Half a circle with a radius of 5mm at 10mm/s.
+        assertEquals(Math.PI * 5 / 10 * 1e6, simulator.getMachineTimeMicros(), 1);
+        assertEquals(10, simulator.getPosition().x, DELTA);
+    }
+
+    @Test
+    public void communicatorShouldStreamWithoutOverflowingTheRxBuffer() throws Exception {
+        GrblSimulator grbl = new GrblSimulator();
+        GrblSimulatorCommunicator communicator = new GrblSimulatorCommunicator(grbl, Double.POSITIVE_INFINITY);
+        communicator.connect(ConnectionDriver.JSERIALCOMM, "simulator", 115200);
+        try {
+            int lines = 2000;
+            for (int i = 1; i <= lines; i++) {
+                communicator.queueCommand(new GcodeCommand("G1 X" + (i % 100) + " Y" + (i % 7) + " F5000"));
+            }
+            communicator.streamCommands();
+
+            long timeout = System.currentTimeMillis() + 10_000;
+            while ((communicator.numActiveCommands() > 0 || communicator.numBufferedCommands() > 0)
+                    && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(0, communicator.numActiveCommands());
+            assertEquals(0, communicator.numBufferedCommands());
+            synchronized (grbl) {
+                assertEquals(lines, grbl.getLinesProcessed());
+                assertEquals(0, grbl.getRxOverflowCount());
+            }
+        } finally {
+            communicator.disconnect();
+        }
+    }
+}
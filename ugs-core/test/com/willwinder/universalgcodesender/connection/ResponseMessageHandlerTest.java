@@ -22,6 +22,13 @@ import com.willwinder.universalgcodesender.AbstractCommunicator;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -120,4 +127,49 @@ public class ResponseMessageHandlerTest {
         verify(communicator, times(1)).handleResponseMessage(" test2 ");
         verify(communicator, times(1)).handleResponseMessage("test3");
     }
+
+    @Test
+    public void bytesShouldBeFramedIntoLines() {
+        // Given
+        List<String> messages = new ArrayList<>();
+        responseMessageHandler.addListener(messages::add);
+        byte[] bytes = "xxok\r\n<Idle|MPos:1.000,2.000,3.000|FS:0,0>\nerr".getBytes(StandardCharsets.US_ASCII);
+
+        // When
+        responseMessageHandler.handleResponse(bytes, 2, bytes.length - 2);
+        responseMessageHandler.handleResponse("or:20\r".getBytes(StandardCharsets.US_ASCII), 0, 6);
+        responseMessageHandler.handleResponse("\n".getBytes(StandardCharsets.US_ASCII), 0, 1);
+
+        // Then
+        assertEquals(Arrays.asList("ok", "<Idle|MPos:1.000,2.000,3.000|FS:0,0>", "error:20"), messages);
+    }
+
+    @Test
+    public void shortLinesShouldBeReused() {
+        // Given
+        List<String> messages = new ArrayList<>();
+        responseMessageHandler.addListener(messages::add);
+
+        // When
+        responseMessageHandler.handleResponse("ok\nok\n");
+
+        // Then
+        assertEquals(2, messages.size());
+        assertSame(messages.get(0), messages.get(1));
+    }
+
+    @Test
+    public void utf8LinesShouldBeDecoded() {
+        // Given
+        List<String> messages = new ArrayList<>();
+        responseMessageHandler.addListener(messages::add);
+        byte[] bytes = "[MSG:Temp 20°C]\n".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        responseMessageHandler.handleResponse(bytes, 0, 5);
+        responseMessageHandler.handleResponse(bytes, 5, bytes.length - 5);
+
+        // Then
+        assertEquals(Arrays.asList("[MSG:Temp 20°C]"), messages);
+    }
 }
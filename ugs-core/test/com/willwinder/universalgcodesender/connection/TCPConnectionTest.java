@@ -0,0 +1,139 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TCPConnectionTest {
+
+    private ServerSocket server;
+    private TCPConnection connection;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0);
+        connection = new TCPConnection();
+        connection.setUri("tcp://localhost:" + server.getLocalPort());
+        connection.addListener(new IConnectionListener() {
+            @Override
+            public void handleResponseMessage(String response) {
+                responses.add(response);
+            }
+
+            @Override
+            public void handleConnectionDropped() {
+                events.add("dropped");
+            }
+
+            @Override
+            public void handleConnectionClosed() {
+                events.add("closed");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.closePort();
+        server.close();
+    }
+
+    @Test
+    public void sendAndReceiveLines() throws Exception {
+        assertTrue(connection.openPort());
+        try (Socket socket = server.accept()) {
+            socket.getOutputStream().write("ok\r\n<Idle|MPos:0.000,0.000,0.000".getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().write("|FS:0,0>\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("ok", responses.poll(5, TimeUnit.SECONDS));
+            assertEquals("<Idle|MPos:0.000,0.000,0.000|FS:0,0>", responses.poll(5, TimeUnit.SECONDS));
+
+            connection.sendStringToComm("G0 X1\n");
+            connection.sendBytesToComm("XXG1 X2\nXX".getBytes(StandardCharsets.US_ASCII), 2, 6);
+            connection.sendByteImmediately((byte) '?');
+
+            assertEquals("G0 X1\nG1 X2\n?", read(socket.getInputStream(), 13));
+        }
+    }
+
+    @Test
+    public void reconnectWhenRemoteHostDropsTheConnection() throws Exception {
+        assertTrue(connection.openPort());
+        server.accept().close();
+        assertEquals("dropped", events.poll(5, TimeUnit.SECONDS));
+
+        // The reply thread connects again.
+        server.setSoTimeout(10000);
+        try (Socket socket = server.accept()) {
+            socket.getOutputStream().write("ok\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("ok", responses.poll(5, TimeUnit.SECONDS));
+            assertTrue(connection.isOpen());
+        }
+    }
+
+    @Test
+    public void closedWhenReconnectFails() throws Exception {
+        assertTrue(connection.openPort());
+        server.accept().close();
+        server.close();
+
+        assertEquals("dropped", events.poll(5, TimeUnit.SECONDS));
+        assertEquals("closed", events.poll(30, TimeUnit.SECONDS));
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void closePortStopsTheConnection() throws Exception {
+        assertTrue(connection.openPort());
+        try (Socket ignored = server.accept()) {
+            connection.closePort();
+            assertFalse(connection.isOpen());
+        }
+        assertTrue(events.isEmpty());
+    }
+
+    private static String read(InputStream in, int length) throws Exception {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return new String(bytes, 0, read, StandardCharsets.US_ASCII);
+    }
+}
@@ -44,6 +44,8 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static com.willwinder.universalgcodesender.gcode.util.Code.*;
@@ -315,6 +317,67 @@ public class GcodeParserTest {
         output.toFile().delete();
     }
 
+    @Test
+    public void statelessProcessorsExportSameAsSequential() throws Exception {
+        // Stateless processors are exported concurrently.
+        GcodeParser concurrent = new GcodeParser();
+        concurrent.addCommandProcessor(new CommentProcessor());
+        concurrent.addCommandProcessor(new ArcExpander(true, 0.1));
+        concurrent.addCommandProcessor(new LineSplitter(1));
+        assertThat(concurrent.hasStatelessProcessors()).isTrue();
+
+        // A processor which doesn't declare itself stateless forces a sequential export.
+        GcodeParser sequential = new GcodeParser();
+        sequential.addCommandProcessor(new CommentProcessor());
+        sequential.addCommandProcessor(new ArcExpander(true, 0.1));
+        sequential.addCommandProcessor(new LineSplitter(1));
+        sequential.addCommandProcessor(new CommandProcessor() {
+            @Override
+            public List<String> processCommand(String command, GcodeState state) {
+                return Collections.singletonList(command);
+            }
+
+            @Override
+            public String getHelp() {
+                return "";
+            }
+        });
+        assertThat(sequential.hasStatelessProcessors()).isFalse();
+
+        // Repeat the program to span several chunks.
+        File input = File.createTempFile("stateless_export_test", ".nc");
+        URL file = this.getClass().getClassLoader().getResource("./gcode/circle_test.nc");
+        String program = IOUtils.toString(file.openStream(), "UTF-8");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            content.append(program);
+        }
+        FileUtils.writeStringToFile(input, content.toString(), "UTF-8");
+
+        File concurrentOutput = File.createTempFile("stateless_export_test", ".concurrent");
+        File sequentialOutput = File.createTempFile("stateless_export_test", ".sequential");
+        int lines = GcodeParserUtils.processAndExport(concurrent, input, concurrentOutput);
+        assertEquals(lines, GcodeParserUtils.processAndExport(sequential, input, sequentialOutput));
+
+        try (IGcodeStreamReader expected = new GcodeStreamReader(sequentialOutput);
+             IGcodeStreamReader actual = new GcodeStreamReader(concurrentOutput)) {
+            assertEquals(expected.getNumRows(), actual.getNumRows());
+            while (expected.getNumRowsRemaining() > 0) {
+                GcodeCommand e = expected.getNextCommand();
+                GcodeCommand a = actual.getNextCommand();
+                assertEquals(e.getCommandNumber(), a.getCommandNumber());
+                assertEquals(e.getOriginalCommandString(), a.getOriginalCommandString());
+                assertEquals(e.getCommandString(), a.getCommandString());
+                assertEquals(e.getComment(), a.getComment());
+            }
+        }
+        assertEquals(concurrent.getCurrentStats().getCommandCount(), sequential.getCurrentStats().getCommandCount());
+
+        input.delete();
+        concurrentOutput.delete();
+        sequentialOutput.delete();
+    }
+
     @Test
     public void nonGcodeIgnoresImplicitGcode() throws Exception {
         GcodeParser gcp = new GcodeParser();
@@ -338,6 +401,46 @@ public class GcodeParserTest {
 
     }
 
+    /**
+     * Each expanded arc segment is passed to the next processor in the
+     * current motion mode of the program, which must not change the state of
+     * the segment before it.
+     */
+    @Test
+    public void preprocessorDoesNotModifyStatesOfCommands() throws Exception {
+        List<ProcessedCommand> received = new ArrayList<>();
+        List<Code> endModes = new ArrayList<>();
+        MotionProcessor recorder = new MotionProcessor() {
+            @Override
+            public void processCommand(ProcessedCommand command, List<ProcessedCommand> results)
+                    throws GcodeParserException {
+                received.add(command);
+                endModes.add(command.getEndState().currentMotionMode);
+                results.add(command);
+            }
+
+            @Override
+            public String getHelp() {
+                return "";
+            }
+        };
+
+        GcodeParser gcp = new GcodeParser();
+        gcp.addCommandProcessor(new ArcExpander(true, 0.5));
+        gcp.addCommandProcessor(recorder);
+
+        GcodeState initial = gcp.getCurrentState();
+        initial.currentMotionMode = G2;
+        initial.currentPoint = new Position(-1, 0, 0, MM);
+        List<String> result = gcp.preprocessCommand("Y0 X1 R1", initial);
+        assertThat(result.size()).isGreaterThan(2);
+
+        assertEquals(G2, initial.currentMotionMode);
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(endModes.get(i), received.get(i).getEndState().currentMotionMode);
+        }
+    }
+
     @Test
     public void stateInitialized() throws Exception {
         GcodeState state = new GcodeState();
@@ -0,0 +1,73 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode;
+
+import com.willwinder.universalgcodesender.model.Position;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import org.junit.Test;
+
+import static com.willwinder.universalgcodesender.gcode.util.Code.G1;
+import static com.willwinder.universalgcodesender.gcode.util.Code.G20;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author wwinder
+ */
+public class GcodeStateTest {
+
+    @Test
+    public void copySharesCurrentPoint() {
+        GcodeState state = new GcodeState();
+        state.currentMotionMode = G1;
+        state.speed = 100;
+
+        GcodeState copy = state.copy();
+        assertNotSame(state, copy);
+        assertSame(state.currentPoint, copy.currentPoint);
+        assertEquals(G1, copy.currentMotionMode);
+        assertEquals(100, copy.speed, 0);
+    }
+
+    @Test
+    public void copyUpdatesPointUnits() {
+        GcodeState state = new GcodeState();
+        state.units = G20;
+        state.isMetric = false;
+        state.currentPoint = new Position(1, 2, 3, Units.UNKNOWN);
+
+        GcodeState copy = state.copy();
+        assertNotSame(state.currentPoint, copy.currentPoint);
+        assertEquals(new Position(1, 2, 3, Units.INCH), copy.currentPoint);
+    }
+
+    @Test
+    public void lastCodeKeepsLineState() throws Exception {
+        GcodeState state = new GcodeState();
+        GcodeState next = GcodeParser.nextState("G21 G1 X10", 1, state);
+
+        assertNotSame(state, next);
+        assertEquals(G1, next.currentMotionMode);
+        assertEquals(10, next.currentPoint.x, 0);
+
+        // The input is never modified.
+        assertEquals(0, state.currentPoint.x, 0);
+    }
+}
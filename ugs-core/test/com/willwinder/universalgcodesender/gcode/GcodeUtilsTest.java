@@ -18,7 +18,9 @@
  */
 package com.willwinder.universalgcodesender.gcode;
 
+import com.willwinder.universalgcodesender.gcode.util.Code;
 import com.willwinder.universalgcodesender.gcode.util.GcodeUtils;
+import com.willwinder.universalgcodesender.gcode.util.Plane;
 import com.willwinder.universalgcodesender.model.PartialPosition;
 import com.willwinder.universalgcodesender.model.UnitUtils;
 import org.junit.Test;
@@ -77,4 +79,25 @@ public class GcodeUtilsTest {
         result = GcodeUtils.generateMoveToCommand("G90G1", new PartialPosition(-1.0, -2.0, -3.1, UnitUtils.Units.INCH), -10);
         assertEquals("G20G90G1X-1Y-2Z-3.1", result);
     }
+
+    @Test
+    public void generateModalStateCommand() {
+        GcodeState state = new GcodeState();
+        assertEquals("G21G90G91.1G17G54G94G0M5M9", GcodeUtils.generateModalStateCommand(state));
+
+        state.units = Code.G20;
+        state.distanceMode = Code.G91;
+        state.plane = Plane.ZX;
+        state.offset = Code.G55;
+        state.currentMotionMode = Code.G1;
+        state.speed = 100.5;
+        state.spindleSpeed = 12000;
+        state.spindle = Code.M3;
+        state.coolant = Code.M8;
+        assertEquals("G20G91G91.1G18G55G94G1F100.5S12000M3M8", GcodeUtils.generateModalStateCommand(state));
+
+        // Arcs can't be restored without axis words
+        state.currentMotionMode = Code.G2;
+        assertEquals("G20G91G91.1G18G55G94F100.5S12000M3M8", GcodeUtils.generateModalStateCommand(state));
+    }
 }
@@ -0,0 +1,146 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author wwinder
+ */
+public class ParsedCommandTest {
+
+    @Test
+    public void parseWords() {
+        ParsedCommand command = ParsedCommand.parse("g1 x-1.5 Y 2 f100");
+        assertEquals(4, command.size());
+        assertEquals(Arrays.asList("g1", "x-1.5", "Y2", "f100"), command.toList());
+
+        assertEquals('G', command.getLetter(0));
+        assertEquals(1.0, command.getValue(0), 0);
+        assertEquals(-1.5, command.getValue('X'), 0);
+        assertEquals(2.0, command.getValue('y'), 0);
+        assertEquals(100.0, command.getValue('F'), 0);
+        assertTrue(Double.isNaN(command.getValue('Z')));
+        assertTrue(command.hasAxisWords());
+        assertTrue(command.valueEquals(1, "-1.5"));
+        assertEquals("-1.5", command.getValueString(1));
+    }
+
+    @Test
+    public void parseComments() {
+        ParsedCommand command = ParsedCommand.parse("(comment)G1X10(comment 2);end");
+        assertEquals(Arrays.asList("(comment)", "G1", "X10", "(comment 2)", ";end"), command.toList());
+        assertTrue(command.isComment(0));
+        assertFalse(command.isComment(1));
+        assertTrue(command.isComment(3));
+        assertTrue(command.isComment(4));
+        assertTrue(Double.isNaN(command.getValue(0)));
+
+        // Comments only contain a single word.
+        command = ParsedCommand.parse("(X10)");
+        assertFalse(command.isEmpty());
+        assertFalse(command.hasAxisWords());
+    }
+
+    @Test
+    public void commentAfterNumberDoesNotCreateEmptyWord() {
+        ParsedCommand command = ParsedCommand.parse("G1X10(comment)Y5");
+        assertEquals(Arrays.asList("G1", "X10", "(comment)", "Y5"), command.toList());
+        assertEquals(5.0, command.getValue('Y'), 0);
+    }
+
+    @Test
+    public void singleCharacterWordsBetweenComments() throws Exception {
+        ParsedCommand command = ParsedCommand.parse("1()2()3()4()5()6()");
+        assertEquals(12, command.size());
+        assertEquals(Arrays.asList("1", "()", "2", "()", "3", "()", "4", "()", "5", "()", "6", "()"),
+                GcodePreprocessorUtils.splitCommand("1()2()3()4()5()6()"));
+
+        command = ParsedCommand.parse("X()X()X()X()X()X()X()X()");
+        assertEquals(16, command.size());
+        assertEquals(8, command.count('X'));
+        new GcodeParser().addCommand("X()X()X()X()X()X()X()X()");
+    }
+
+    @Test
+    public void parseSystemCommand() {
+        ParsedCommand command = ParsedCommand.parse("$X");
+        assertEquals(Arrays.asList("$X"), command.toList());
+        assertFalse(command.hasAxisWords());
+    }
+
+    @Test
+    public void parseEmpty() {
+        assertTrue(ParsedCommand.parse("").isEmpty());
+        assertTrue(ParsedCommand.parse("   ").isEmpty());
+    }
+
+    @Test
+    public void missingAndInvalidValues() {
+        ParsedCommand command = ParsedCommand.parse("X Y1.2.3 Z-");
+        assertEquals(Arrays.asList("XY1.2.3", "Z-"), command.toList());
+        assertTrue(Double.isNaN(command.getValue('X')));
+        assertTrue(Double.isNaN(command.getValue('Z')));
+        assertEquals(2, ParsedCommand.parse("G0G1").count('G'));
+    }
+
+    @Test
+    public void reusesLastParsedCommand() {
+        ParsedCommand command = ParsedCommand.parse("G1X1");
+        assertSame(command, ParsedCommand.parse(new String("G1X1")));
+    }
+
+    @Test
+    public void wordValuesMatchJava() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 100000; i++) {
+            String value;
+            switch (i % 3) {
+                case 0:
+                    value = Double.toString((random.nextDouble() - 0.5) * 1000);
+                    break;
+                case 1:
+                    value = String.format(Locale.ROOT, "%.4f", random.nextDouble() * 100);
+                    break;
+                default:
+                    value = Long.toString(random.nextLong() % 100000) + "." + Math.abs(random.nextInt(1000));
+                    break;
+            }
+
+            if (value.contains("E")) {
+                continue;
+            }
+
+            assertEquals(value, Double.parseDouble(value), ParsedCommand.parse("X" + value).getValue('X'), 0);
+        }
+
+        assertEquals(123456789012345678901234.5, ParsedCommand.parse("X123456789012345678901234.5").getValue('X'), 0);
+        assertTrue(Double.isNaN(ParsedCommand.parse("X-").getValue('X')));
+        assertTrue(Double.isNaN(ParsedCommand.parse("X1.2.3").getValue('X')));
+    }
+}
@@ -117,26 +117,25 @@ public class FixturesTest {
         // process the input file and write it to the output temp file
         GcodeParserUtils.processAndExport(gcp, tempFile, output.toFile());
 
-        // read the output back in and compare it to the fixture
-        //GcodeStreamReader reader = new GcodeStreamReader(output.toFile());
-        URI outputTest = output.toUri();
-
-        // compare the generated raw stream output
-        Iterator<String> testLines = Files.lines(Paths.get(outputTest)).iterator();
+        // read the output back in and compare it to the fixture, the stream
+        // rows are compared in the original text representation.
+        List<String> stream = new ArrayList<>();
+        List<String> gcode = new ArrayList<>();
+        try (IGcodeStreamReader reader = new GcodeStreamReader(output.toFile())) {
+            stream.add("gsw_meta:" + reader.getNumRows());
+
+            GcodeCommand c;
+            while ((c = reader.getNextCommand()) != null) {
+                stream.add(Joiner.on("++").join(c.getOriginalCommandString(), c.getCommandString(),
+                        c.getCommandNumber(), c.getComment()));
+                gcode.add(c.getCommandString().trim());
+            }
+        }
 
         // check the generated stream
-        checkOrInitializeFixture(fixtureName + "-stream", streamOutputFixture, testLines);
-
-        // compare the generated output, parsed
-        IGcodeStreamReader reader = new GcodeStreamReader(output.toFile());
+        checkOrInitializeFixture(fixtureName + "-stream", streamOutputFixture, stream.iterator());
 
         // also verify the parsed representation of the GCode against a separate fixture
-        List<String> gcode = new ArrayList<>();
-
-        GcodeCommand c;
-        while ((c = reader.getNextCommand()) != null) {
-            gcode.add(c.getCommandString().trim());
-        }
         checkOrInitializeFixture(fixtureName + "-gcode", outputxFixture, gcode.iterator());
 
     }
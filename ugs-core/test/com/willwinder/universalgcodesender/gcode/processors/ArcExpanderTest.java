@@ -19,6 +19,7 @@
 
 package com.willwinder.universalgcodesender.gcode.processors;
 
+import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.gcode.util.Plane;
@@ -162,6 +163,59 @@ public class ArcExpanderTest {
         }
     }
 
+    @Test
+    public void expandArcWithChordTolerance() throws Exception {
+        System.out.println("expandArcWithChordTolerance");
+        GcodeState state = new GcodeState();
+        state.currentPoint = new Position(-50,0,0,MM);
+        state.plane = XY;
+
+        double tolerance = 0.01;
+        ArcExpander instance = new ArcExpander(true, 100, tolerance);
+
+        // Half circle clockwise with a radius of 50, the tolerance needs more
+        // segments than the segment length.
+        List<String> result = instance.processCommand("G2 Y0 X50 R50", state);
+        int expected = (int) Math.ceil(Math.PI / (2 * Math.acos(1 - tolerance / 50)));
+        assertThat(result.size()).isEqualTo(expected);
+        assertThat(result.get(result.size() - 1)).isEqualTo("G1X50Y0Z0");
+        verifyLines(new Position(0,0,0,MM), result, 50., new Position(-50, 0, 0,MM), new Position(50,50,0,MM), state.plane);
+
+        // The middle of each segment stays within the tolerance of the arc.
+        double x = -50;
+        double y = 0;
+        for (String line : result) {
+            Matcher m = LINE_COORDS.matcher(line);
+            assertThat(m.find()).isTrue();
+            double nextX = Double.parseDouble(m.group(1));
+            double nextY = Double.parseDouble(m.group(2));
+            double distance = Math.hypot((x + nextX) / 2, (y + nextY) / 2);
+            assertThat(50 - distance).isBetween(0., tolerance);
+            x = nextX;
+            y = nextY;
+        }
+    }
+
+    @Test
+    public void expandArcWithChordToleranceAndLength() throws Exception {
+        System.out.println("expandArcWithChordToleranceAndLength");
+        GcodeState state = new GcodeState();
+        state.currentPoint = new Position(-50,0,0,MM);
+        state.plane = XY;
+
+        // The segment length is still an upper bound.
+        ArcExpander instance = new ArcExpander(true, 0.3, 0.01);
+        List<String> result = instance.processCommand("G2 Y0 X50 R50", state);
+        assertThat(result.size()).isEqualTo((int) Math.ceil(50 * Math.PI / 0.3));
+        verifyLines(new Position(0,0,0,MM), result, 50., new Position(-50, 0, 0,MM), new Position(50,50,0,MM), state.plane);
+
+        // Tiny tolerances are raised to the minimum.
+        instance = new ArcExpander(true, 100, 1e-9);
+        result = instance.processCommand("G2 Y0 X50 R50", state);
+        double minimum = GcodePreprocessorUtils.MIN_ARC_CHORD_TOLERANCE;
+        assertThat(result.size()).isEqualTo((int) Math.ceil(Math.PI / (2 * Math.acos(1 - minimum / 50))));
+    }
+
 
     /**
      * Verify that the points around given center point have a known radius and
@@ -0,0 +1,175 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserUtils;
+import com.willwinder.universalgcodesender.utils.GcodeStreamReader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author wwinder
+ */
+public class LineMergerTest {
+    /**
+     * Preprocesses a program the same way as GcodeParserUtils.processAndExport.
+     */
+    private static List<String> process(GcodeParser gcp, String... lines) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (String line : lines) {
+            result.addAll(gcp.preprocessCommand(line, gcp.getCurrentState()));
+            gcp.addCommand(line);
+        }
+        result.addAll(gcp.flushCommandProcessors(gcp.getCurrentState()));
+        return result;
+    }
+
+    private static List<String> merge(String... lines) throws Exception {
+        GcodeParser gcp = new GcodeParser();
+        gcp.addCommandProcessor(new LineMerger(0.005));
+        return process(gcp, lines);
+    }
+
+    @Test
+    public void mergesCollinearLines() throws Exception {
+        System.out.println("mergesCollinearLines");
+        assertEquals(Arrays.asList("G1X4Y0Z0F100.0"),
+                merge("G1X1Y0F100", "G1X2Y0", "X3Y0.001", "G1X4Y0F100"));
+    }
+
+    @Test
+    public void keepsCorners() throws Exception {
+        System.out.println("keepsCorners");
+        assertEquals(Arrays.asList("G1X2Y0Z0", "G1X2Y2Z0"),
+                merge("G1X1Y0", "G1X2Y0", "G1X2Y1", "G1X2Y1.5", "G1X2Y2"));
+        assertEquals(Arrays.asList("G1X1Y0", "G1X1Y1", "G1X2Y1"),
+                merge("G1X1Y0", "G1X1Y1", "G1X2Y1"));
+
+        // Points beyond the end of the merged line aren't close to it.
+        assertEquals(Arrays.asList("G1X2", "G1X1"),
+                merge("G1X2", "G1X1"));
+    }
+
+    @Test
+    public void toleranceIsInMillimeters() throws Exception {
+        System.out.println("toleranceIsInMillimeters");
+
+        // 0.004 inches is about 0.1mm from the merged line.
+        assertEquals(Arrays.asList("G20", "G1X0Y0F100", "G1X1Y0.004", "G1X2Y0"),
+                merge("G20", "G1X0Y0F100", "G1X1Y0.004", "G1X2Y0"));
+        assertEquals(Arrays.asList("G20", "G1X0Y0F100", "G1X2Y0Z0"),
+                merge("G20", "G1X0Y0F100", "G1X1Y0.0001", "G1X2Y0"));
+    }
+
+    @Test
+    public void doesNotMergeAcrossOtherCommands() throws Exception {
+        System.out.println("doesNotMergeAcrossOtherCommands");
+
+        // Feed rate changes
+        assertEquals(Arrays.asList("G1X1F100", "G1X2F200"),
+                merge("G1X1F100", "G1X2F200"));
+
+        // Comments and M-codes
+        assertEquals(Arrays.asList("G1X1", "(comment)", "G1X2", "G1X3M8"),
+                merge("G1X1", "(comment)", "G1X2", "G1X3M8"));
+
+        // Moves along the Z-axis only
+        assertEquals(Arrays.asList("G1Z1", "G1Z2"),
+                merge("G1Z1", "G1Z2"));
+
+        // Relative moves
+        assertEquals(Arrays.asList("G91", "G1X1", "G1X1"),
+                merge("G91", "G1X1", "G1X1"));
+
+        // Rapid moves and arcs
+        assertEquals(Arrays.asList("G1X1", "G0X2", "G1X3", "G2X5Y0R1"),
+                merge("G1X1", "G0X2", "G1X3", "G2X5Y0R1"));
+    }
+
+    @Test
+    public void mergedLinesStartWhereTheRunStarted() throws Exception {
+        System.out.println("mergedLinesStartWhereTheRunStarted");
+
+        // The splitter after the merger needs the start of the merged line,
+        // and the rapid move starts where the merged line ends.
+        GcodeParser gcp = new GcodeParser();
+        gcp.addCommandProcessor(new LineMerger(0.005));
+        gcp.addCommandProcessor(new LineSplitter(1.5));
+
+        List<String> result = process(gcp, "G1X1", "G1X2", "G1X3", "G0X0", "G1X1", "G1X2", "G1X3");
+        assertEquals(Arrays.asList("G1X1.5Y0Z0", "G1X3Y0Z0", "G0X1.5Y0Z0", "G0X0Y0Z0", "G1X1.5Y0Z0", "G1X3Y0Z0"),
+                result);
+    }
+
+    @Test
+    public void failedProgramDoesNotLeakIntoTheNextOne() throws Exception {
+        System.out.println("failedProgramDoesNotLeakIntoTheNextOne");
+        GcodeParser gcp = new GcodeParser();
+        gcp.addCommandProcessor(new LineMerger(0.005));
+
+        File first = File.createTempFile("first", ".nc");
+        File second = File.createTempFile("second", ".nc");
+        File output = File.createTempFile("output", ".nc");
+        try {
+            // The run is held back when the invalid line fails.
+            FileUtils.writeLines(first, Arrays.asList("G1X1F100", "G1X2", "G1X3F1F2"));
+            try {
+                GcodeParserUtils.processAndExport(gcp, first, output);
+                fail("Expected the invalid line to fail");
+            } catch (GcodeParserException e) {
+                // expected
+            }
+
+            FileUtils.writeLines(second, Arrays.asList("G0Y5", "G1Y6F100"));
+            GcodeParserUtils.processAndExport(gcp, second, output);
+
+            List<String> commands = new ArrayList<>();
+            try (GcodeStreamReader gsr = new GcodeStreamReader(output)) {
+                while (gsr.getNumRowsRemaining() > 0) {
+                    commands.add(gsr.getNextCommand().getCommandString());
+                }
+            }
+            // The last line is held back until the end, leaving an empty row.
+            assertEquals(Arrays.asList("G0Y5", "", "G1Y6F100"), commands);
+        } finally {
+            FileUtils.deleteQuietly(first);
+            FileUtils.deleteQuietly(second);
+            FileUtils.deleteQuietly(output);
+        }
+    }
+
+    @Test
+    public void reportsReductionRatio() throws Exception {
+        System.out.println("reportsReductionRatio");
+        GcodeParser gcp = new GcodeParser();
+        assertEquals(1, gcp.getCurrentStats().getCommandReductionRatio(), 0);
+
+        gcp.addCommandProcessor(new LineMerger(0.005));
+        process(gcp, "G1X1", "G1X2", "G1X3", "G1X4", "G1X5", "G1X6", "G0X0", "G1Y1");
+        assertEquals(8 / 3., gcp.getCurrentStats().getCommandReductionRatio(), 0.0001);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.processors;
+
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.model.Position;
+import static com.willwinder.universalgcodesender.gcode.util.Code.G1;
+import static com.willwinder.universalgcodesender.model.UnitUtils.Units.MM;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author wwinder
+ */
+public class ProcessedCommandTest {
+    private static GcodeState startState() {
+        GcodeState state = new GcodeState();
+        state.currentPoint = new Position(0, 0, 0, MM);
+        state.inAbsoluteMode = true;
+        return state;
+    }
+
+    @Test
+    public void textCommandIsParsedOnce() throws Exception {
+        ProcessedCommand command = ProcessedCommand.fromText("G1X1Y2F100", startState());
+
+        assertSame(command.getMeta(), command.getMeta());
+        assertEquals(new Position(1, 2, 0, MM), command.getEndState().currentPoint);
+        assertEquals(100, command.getEndState().speed, 0);
+    }
+
+    @Test
+    public void commandWithoutMotionKeepsState() throws Exception {
+        GcodeState state = startState();
+        ProcessedCommand command = ProcessedCommand.fromText("M3", state);
+        assertSame(state, command.getEndState());
+    }
+
+    @Test
+    public void generatedLineIsFormattedWhenNeeded() throws Exception {
+        GcodeState state = startState();
+        ProcessedCommand command = ProcessedCommand.fromLine(G1, state.currentPoint,
+                new Position(1.5, 2, 0, MM), true, 200, null, state);
+
+        assertTrue(command.isGenerated());
+        assertEquals(G1, command.getMeta().get(0).code);
+        assertEquals(new Position(1.5, 2, 0, MM), command.getEndState().currentPoint);
+        assertEquals(200, command.getEndState().speed, 0);
+        assertEquals("G1X1.5Y2Z0F200.0", command.getCommand());
+    }
+
+    @Test
+    public void adapterKeepsUnchangedCommands() throws Exception {
+        MotionProcessor adapter = CommandProcessorAdapter.of(new WhitespaceProcessor());
+        ProcessedCommand command = ProcessedCommand.fromText("G1X1", startState());
+
+        List<ProcessedCommand> results = new ArrayList<>();
+        adapter.processCommand(command, results);
+        assertSame(command, results.get(0));
+
+        results.clear();
+        adapter.processCommand(ProcessedCommand.fromText("G1 X1", startState()), results);
+        assertEquals("G1X1", results.get(0).getCommand());
+    }
+
+    @Test
+    public void motionProcessorsAreAdaptedAsThemselves() {
+        LineSplitter splitter = new LineSplitter(1);
+        assertSame(splitter, CommandProcessorAdapter.of(splitter));
+    }
+
+    /**
+     * Chaining the motion processors in the parser gives the same result as
+     * running them one after another on the text.
+     */
+    @Test
+    public void pipelineMatchesTextProcessing() throws Exception {
+        GcodeState state = startState();
+        state.currentMotionMode = G1;
+        String command = "G2 X2 Y0 I1 J0 F100";
+
+        GcodeParser parser = new GcodeParser();
+        parser.addCommandProcessor(new ArcExpander(true, 0.5));
+        parser.addCommandProcessor(new LineSplitter(0.2));
+        parser.addCommandProcessor(new FeedOverrideProcessor(50));
+        List<String> pipelined = parser.preprocessCommand(command, state);
+
+        List<String> expected = new ArrayList<>();
+        GcodeState lineState = state;
+        for (String line : new ArcExpander(true, 0.5).processCommand(command, state)) {
+            for (String split : new LineSplitter(0.2).processCommand(line, lineState)) {
+                expected.addAll(new FeedOverrideProcessor(50).processCommand(split, lineState));
+                lineState = GcodeParser.nextState(split, 0, lineState);
+            }
+        }
+
+        // The coordinates may differ in the last digit because the
+        // intermediate lines are no longer rounded.
+        assertEquals(expected.size(), pipelined.size());
+        for (int i = 0; i < expected.size(); i++) {
+            GcodeState a = ProcessedCommand.fromText(expected.get(i), state).getEndState();
+            GcodeState b = ProcessedCommand.fromText(pipelined.get(i), state).getEndState();
+            assertEquals(a.speed, b.speed, 0);
+            assertEquals(a.currentPoint.x, b.currentPoint.x, 0.0002);
+            assertEquals(a.currentPoint.y, b.currentPoint.y, 0.0002);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.util;
+
+import org.junit.Test;
+
+import static com.willwinder.universalgcodesender.gcode.util.Code.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author wwinder
+ */
+public class CodeTest {
+
+    @Test
+    public void lookupEveryCode() {
+        for (Code code : Code.values()) {
+            if (code == UNKNOWN) {
+                continue;
+            }
+            assertEquals(code, Code.lookupCode(code.toString()));
+            assertEquals(code, Code.lookupCode(code.toString().toLowerCase()));
+
+            double value = Double.parseDouble(code.toString().substring(1));
+            assertEquals(code, Code.lookupCode(code.toString().charAt(0), value));
+        }
+    }
+
+    @Test
+    public void lookupLeadingZeros() {
+        assertEquals(G0, Code.lookupCode("G0"));
+        assertEquals(G0, Code.lookupCode("G00"));
+        assertEquals(G1, Code.lookupCode("G01"));
+        assertEquals(G38_2, Code.lookupCode("G038.2"));
+        assertEquals(M3, Code.lookupCode("M03"));
+    }
+
+    @Test
+    public void lookupUnknown() {
+        assertNull(Code.lookupCode(null));
+        assertNull(Code.lookupCode(""));
+        assertEquals(UNKNOWN, Code.lookupCode("G"));
+        assertEquals(UNKNOWN, Code.lookupCode("G1."));
+        assertEquals(UNKNOWN, Code.lookupCode("G.1"));
+        assertEquals(UNKNOWN, Code.lookupCode("G-1"));
+        assertEquals(UNKNOWN, Code.lookupCode("G38.25"));
+        assertEquals(UNKNOWN, Code.lookupCode("G1000"));
+        assertEquals(UNKNOWN, Code.lookupCode("G5"));
+        assertEquals(UNKNOWN, Code.lookupCode("X10"));
+        assertEquals(UNKNOWN, Code.lookupCode("(G1)"));
+
+        assertEquals(UNKNOWN, Code.lookupCode('G', Double.NaN));
+        assertEquals(UNKNOWN, Code.lookupCode('G', 1.25));
+        assertEquals(UNKNOWN, Code.lookupCode('G', -1));
+        assertEquals(UNKNOWN, Code.lookupCode('X', 1));
+    }
+
+    @Test
+    public void lookupModalGroup() {
+        assertEquals(ModalGroup.Motion, Code.lookupCode('G', 38.2).getType());
+        assertEquals(ModalGroup.WCS, Code.lookupCode("G59.3").getType());
+        assertEquals(ModalGroup.Coolant, Code.lookupCode('m', 8).getType());
+    }
+}
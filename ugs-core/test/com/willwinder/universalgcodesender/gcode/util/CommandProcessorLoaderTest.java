@@ -22,7 +22,11 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
 import com.willwinder.universalgcodesender.gcode.processors.*;
+import com.willwinder.universalgcodesender.i18n.Localization;
+import com.willwinder.universalgcodesender.model.Position;
+import static com.willwinder.universalgcodesender.model.UnitUtils.Units.MM;
 import java.util.List;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -78,6 +82,39 @@ public class CommandProcessorLoaderTest {
         assertTrue(threwException);
     }
 
+    @Test
+    public void testArcExpanderChordTolerance() throws Exception {
+        System.out.println("ArcExpanderChordTolerance");
+        GcodeState state = new GcodeState();
+        state.currentPoint = new Position(-50, 0, 0, MM);
+        state.plane = Plane.XY;
+        String arc = "G2 Y0 X50 R50";
+
+        JsonObject args = new JsonObject();
+        args.addProperty("segmentLengthMM", 10);
+        JsonObject object = new JsonObject();
+        object.addProperty("name", "ArcExpander");
+        object.add("args", args);
+        JsonArray array = new JsonArray();
+        array.add(object);
+
+        List<CommandProcessor> processors = CommandProcessorLoader.initializeWithProcessors(array.toString());
+        int lengthSegments = processors.get(0).processCommand(arc, state).size();
+        assertEquals((int) Math.ceil(50 * Math.PI / 10), lengthSegments);
+
+        // The tolerance is optional and null means it isn't set.
+        args.add("chordToleranceMM", null);
+        processors = CommandProcessorLoader.initializeWithProcessors(array.toString());
+        assertEquals(lengthSegments, processors.get(0).processCommand(arc, state).size());
+
+        args.addProperty("chordToleranceMM", 0.1);
+        processors = CommandProcessorLoader.initializeWithProcessors(array.toString());
+        int toleranceSegments = processors.get(0).processCommand(arc, state).size();
+        assertEquals((int) Math.ceil(Math.PI / (2 * Math.acos(1 - 0.1 / 50))), toleranceSegments);
+        assertTrue(toleranceSegments > lengthSegments);
+        assertTrue(processors.get(0).getHelp().contains(Localization.getString("sender.arcs.tolerance")));
+    }
+
     /**
      * Test of initializeWithProcessors method, of class CommandProcessorLoader.
      */
@@ -145,10 +182,17 @@ public class CommandProcessorLoaderTest {
         object.add("args", args);
         array.add(object);
 
+        args = new JsonObject();
+        args.addProperty("toleranceMM", 0.01);
+        object = new JsonObject();
+        object.addProperty("name", "LineMerger");
+        object.add("args", args);
+        array.add(object);
+
         String jsonConfig = array.toString();
         List<CommandProcessor> processors = CommandProcessorLoader.initializeWithProcessors(jsonConfig);
 
-        assertEquals(9, processors.size());
+        assertEquals(10, processors.size());
         assertEquals(ArcExpander.class, processors.get(0).getClass());
         assertEquals(CommentProcessor.class, processors.get(1).getClass());
         assertEquals(DecimalProcessor.class, processors.get(2).getClass());
@@ -158,6 +202,7 @@ public class CommandProcessorLoaderTest {
         assertEquals(CommandLengthProcessor.class, processors.get(6).getClass());
         assertEquals(WhitespaceProcessor.class, processors.get(7).getClass());
         assertEquals(SpindleOnDweller.class, processors.get(8).getClass());
+        assertEquals(LineMerger.class, processors.get(9).getClass());
     }
     
     private static JsonElement with(String name, Boolean enabled) {
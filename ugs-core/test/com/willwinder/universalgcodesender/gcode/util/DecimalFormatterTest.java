@@ -0,0 +1,83 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.util;
+
+import com.willwinder.universalgcodesender.i18n.Localization;
+import java.text.DecimalFormat;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author wwinder
+ */
+public class DecimalFormatterTest {
+    private static void assertSameAsDecimalFormat(String pattern, int decimals, double value) {
+        String expected = new DecimalFormat(pattern, Localization.dfs).format(value);
+        assertEquals("Formatting " + value, expected, new DecimalFormatter(decimals).format(value));
+    }
+
+    @Test
+    public void formatsLikeDecimalFormat() {
+        double[] values = {0, -0.0, 0.5, -0.5, 1, -1, 2.5, 3.5, 0.00005, 0.00015, -0.00001, 0.1 + 0.2,
+                1e-10, 1234567.0, 1e20, -1e20, 12.3456789, 0.999999999, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertSameAsDecimalFormat("#.#########", 9, value);
+            assertSameAsDecimalFormat("0.####", 4, value);
+            assertSameAsDecimalFormat("#", 0, value);
+        }
+    }
+
+    @Test
+    public void formatsRandomNumbersLikeDecimalFormat() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            // A mix of arbitrary numbers and numbers with few decimals which
+            // are likely to hit a tie.
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(8));
+            if (i % 2 == 0) {
+                value = Math.round(value * 100000) / 100000.0;
+            }
+            assertSameAsDecimalFormat("#.#########", 9, value);
+            assertSameAsDecimalFormat("0.####", 4, value);
+            assertSameAsDecimalFormat("#.#", 1, value);
+        }
+    }
+
+    @Test
+    public void appendsToBuilder() {
+        StringBuilder sb = new StringBuilder("X");
+        new DecimalFormatter(3).append(sb, 1.23456).append("Y");
+        new DecimalFormatter(3).append(sb, -0.001);
+        assertEquals("X1.235Y-0.001", sb.toString());
+    }
+
+    @Test
+    public void formatsWithManyDecimals() {
+        assertSameAsDecimalFormat("0.##################", 18, 0.1);
+        assertSameAsDecimalFormat("0.####################", 20, 1.0 / 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDecimals() {
+        new DecimalFormatter(-1);
+    }
+}
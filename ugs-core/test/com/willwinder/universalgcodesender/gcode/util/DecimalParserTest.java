@@ -0,0 +1,64 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.gcode.util;
+
+import java.nio.CharBuffer;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author wwinder
+ */
+public class DecimalParserTest {
+    private static double parse(String s) {
+        return DecimalParser.parseDouble(s, 0, s.length());
+    }
+
+    @Test
+    public void parsesLikeDoubleParseDouble() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+            String s = String.format(Locale.ROOT, "%." + random.nextInt(8) + "f", value);
+            assertEquals(s, Double.parseDouble(s), parse(s), 0);
+        }
+
+        String[] values = {"0", "-0", ".5", "5.", "-.25", "1e3", "123456789012345678901234",
+                "123456789012345678901234.5", "0.0000000000000000000000001"};
+        for (String s : values) {
+            assertEquals(s, Double.parseDouble(s), parse(s), 0);
+        }
+    }
+
+    @Test
+    public void parsesPartOfTheInput() {
+        assertEquals(-1.5, DecimalParser.parseDouble("X-1.5Y2", 1, 5), 0);
+        assertEquals(2, DecimalParser.parseDouble(CharBuffer.wrap("X-1.5Y2".toCharArray()), 6, 7), 0);
+    }
+
+    @Test
+    public void invalidNumbersAreNaN() {
+        for (String s : new String[]{"", "-", ".", "abc", "1.2.3", "--1", "1-", "1e"}) {
+            assertTrue(s, Double.isNaN(parse(s)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author wwinder
+ */
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        long previous = -1;
+        for (long value : new long[]{0, 1, 63, 64, 65, 127, 128, 1000, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int index = Histogram.indexOf(value);
+            long highest = Histogram.highestEquivalentValue(index);
+            assertTrue(value + " <= " + highest, value <= highest);
+            assertTrue(value >= previous);
+            // Buckets are at most 1/32 of their values wide.
+            assertTrue(value + " in bucket up to " + highest, highest - value <= Math.max(0, value / 32));
+            previous = value;
+        }
+        assertEquals(Histogram.indexOf(64) + 1, Histogram.indexOf(66));
+    }
+
+    @Test
+    public void percentilesAreWithinThreePercent() {
+        Random random = new Random(0);
+        Histogram histogram = new Histogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextDouble() * 12));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + expected + " ~ " + actual,
+                    actual >= expected && actual <= expected + expected / 32 + 1);
+        }
+    }
+
+    @Test
+    public void recordingFromSeveralThreads() throws Exception {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    histogram.record(i % 1000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400000, histogram.getCount());
+        assertEquals(999, histogram.getMax());
+        assertEquals(499.5, histogram.getMean(), 0.001);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
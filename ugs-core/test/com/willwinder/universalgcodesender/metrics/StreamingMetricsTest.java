@@ -0,0 +1,118 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author wwinder
+ */
+public class StreamingMetricsTest {
+
+    @Test
+    public void recordsSentAndCompletedCommands() {
+        MetricsRegistry registry = new MetricsRegistry();
+        StreamingMetrics metrics = new StreamingMetrics(registry);
+
+        metrics.commandsSent(3, 30, 30);
+        metrics.commandsSent(1, 12, 42);
+        metrics.commandCompleted(System.nanoTime() - 5_000_000);
+
+        assertEquals(4, registry.rate(StreamingMetrics.COMMANDS_SENT).getCount());
+        assertEquals(42, registry.rate(StreamingMetrics.BYTES_SENT).getCount());
+        assertEquals(1, registry.rate(StreamingMetrics.COMMANDS_COMPLETED).getCount());
+        assertEquals(42, registry.histogram(StreamingMetrics.RX_BUFFER_BYTES).getMax());
+
+        long latency = registry.histogram(StreamingMetrics.ACK_LATENCY).getMax();
+        assertTrue("Latency " + latency, latency >= 5000 && latency < 5_000_000);
+    }
+
+    @Test
+    public void countsPlannerStarvation() {
+        MetricsRegistry registry = new MetricsRegistry();
+        StreamingMetrics metrics = new StreamingMetrics(registry);
+
+        // The planner is empty before streaming starts.
+        metrics.controllerBuffer(15, 128, false, 0);
+        metrics.controllerBuffer(15, 128, true, 100);
+        metrics.controllerBuffer(3, 20, true, 90);
+        metrics.controllerBuffer(0, 0, true, 80);
+
+        // Runs empty, twice in a row is one event.
+        metrics.controllerBuffer(15, 128, true, 70);
+        metrics.controllerBuffer(15, 128, true, 70);
+        metrics.controllerBuffer(7, 50, true, 60);
+        metrics.controllerBuffer(15, 128, true, 60);
+
+        // Finishing the stream isn't starvation.
+        metrics.controllerBuffer(15, 128, false, 0);
+        metrics.controllerBuffer(15, 128, true, 100);
+
+        assertEquals(2, registry.counter(StreamingMetrics.PLANNER_STARVATION).getCount());
+        assertEquals(10, registry.histogram(StreamingMetrics.PLANNER_BLOCKS_FREE).getCount());
+    }
+
+    @Test
+    public void drainingAtTheEndOfTheStreamIsNotStarvation() {
+        MetricsRegistry registry = new MetricsRegistry();
+        StreamingMetrics metrics = new StreamingMetrics(registry);
+
+        metrics.controllerBuffer(15, 128, true, 20);
+        metrics.controllerBuffer(0, 0, true, 10);
+        metrics.controllerBuffer(8, 100, true, 0);
+
+        // The last status report is parsed before the stream is finished.
+        metrics.controllerBuffer(15, 128, true, 0);
+        metrics.controllerBuffer(15, 128, false, 0);
+
+        assertEquals(0, registry.counter(StreamingMetrics.PLANNER_STARVATION).getCount());
+    }
+
+    @Test
+    public void exportsCsvAndJson() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b.counter").add(3);
+        registry.gauge("a.gauge", () -> 1.5);
+
+        StringWriter writer = new StringWriter();
+        registry.writeCsv(writer);
+        assertEquals("metric,field,value\n" +
+                "a.gauge,value,1.500\n" +
+                "b.counter,count,3\n", writer.toString());
+
+        String json = registry.toJson();
+        assertTrue(json, json.contains("\"a.gauge\""));
+        assertTrue(json, json.contains("\"count\": 3"));
+
+        registry.reset();
+        assertEquals(0, registry.counter("b.counter").getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void metricNamesHaveOneType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("metric");
+        registry.histogram("metric");
+    }
+}
@@ -0,0 +1,134 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.model;
+
+import com.willwinder.universalgcodesender.listeners.ControllerState;
+import com.willwinder.universalgcodesender.listeners.ControllerStateListener;
+import com.willwinder.universalgcodesender.listeners.ControllerStatus;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
+import com.willwinder.universalgcodesender.model.UnitUtils.Units;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author wwinder
+ */
+public class ControllerStatusBusTest {
+
+    private static ControllerStatus status(ControllerState state, double x, double feed) {
+        return new ControllerStatus(state, new Position(x, 0, 0, Units.MM), new Position(x, 0, 0, Units.MM),
+                feed, Units.MM, 0.0, null, new Position(0, 0, 0, Units.MM), null, null);
+    }
+
+    @Test
+    public void unchangedStatusIsNotPublished() {
+        ControllerStatusBus bus = new ControllerStatusBus();
+        List<UGSEvent> events = new ArrayList<>();
+        bus.subscribe(events::add);
+
+        assertEquals(ControllerStatusField.ALL, bus.publish(status(ControllerState.IDLE, 1, 0)));
+        assertEquals(0, bus.publish(status(ControllerState.IDLE, 1, 0)));
+        assertEquals(0, bus.publish(status(ControllerState.IDLE, 1, 0)));
+        assertEquals(1, events.size());
+
+        bus.publish(status(ControllerState.RUN, 1, 0));
+        assertEquals(2, events.size());
+        assertEquals(EnumSet.of(ControllerStatusField.STATE), events.get(1).getChangedFields());
+
+        // Everything is delivered again after a reset.
+        bus.reset();
+        bus.publish(status(ControllerState.RUN, 1, 0));
+        assertEquals(3, events.size());
+    }
+
+    @Test
+    public void listenersOnlyReceiveTheirFields() {
+        ControllerStatusBus bus = new ControllerStatusBus();
+        List<UGSEvent> positions = new ArrayList<>();
+        List<UGSEvent> states = new ArrayList<>();
+        bus.subscribe(positions::add, ControllerStatusField.POSITION.mask(), 0);
+        bus.subscribe(states::add, ControllerStatusField.STATE.mask(), 0);
+
+        bus.publish(status(ControllerState.IDLE, 1, 0));
+        bus.publish(status(ControllerState.IDLE, 1, 100));
+        bus.publish(status(ControllerState.RUN, 1, 100));
+        bus.publish(status(ControllerState.RUN, 2, 100));
+        bus.publish(status(ControllerState.RUN, 3, 100));
+
+        assertEquals(3, positions.size());
+        assertEquals(2, states.size());
+        assertEquals(ControllerState.RUN, states.get(1).getControllerStatus().getState());
+    }
+
+    @Test
+    public void unsubscribedListenerIsNotNotified() {
+        ControllerStatusBus bus = new ControllerStatusBus();
+        List<UGSEvent> events = new ArrayList<>();
+        ControllerStateListener listener = events::add;
+        bus.subscribe(listener);
+        bus.subscribe(listener);
+        bus.publish(status(ControllerState.IDLE, 1, 0));
+        assertEquals(1, events.size());
+
+        bus.unsubscribe(listener);
+        bus.publish(status(ControllerState.RUN, 1, 0));
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void changesAreCoalescedToTheLatestStatus() throws Exception {
+        ControllerStatusBus bus = new ControllerStatusBus();
+        List<UGSEvent> events = new ArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+        bus.subscribe(event -> {
+            synchronized (events) {
+                events.add(event);
+            }
+            delivered.countDown();
+        }, ControllerStatusField.ALL, 200);
+
+        // The first change is delivered right away, the rest is held back.
+        bus.publish(status(ControllerState.IDLE, 1, 0));
+        bus.publish(status(ControllerState.RUN, 2, 0));
+        bus.publish(status(ControllerState.RUN, 3, 0));
+        ControllerStatus last = status(ControllerState.RUN, 4, 100);
+        bus.publish(last);
+        synchronized (events) {
+            assertEquals(1, events.size());
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        synchronized (events) {
+            assertEquals(2, events.size());
+            assertSame(last, events.get(1).getControllerStatus());
+            assertEquals(EnumSet.of(ControllerStatusField.STATE, ControllerStatusField.POSITION, ControllerStatusField.FEED_SPINDLE),
+                    events.get(1).getChangedFields());
+        }
+    }
+}
@@ -18,6 +18,13 @@
  */
 package com.willwinder.universalgcodesender.utils;
 
+import com.willwinder.universalgcodesender.gcode.GcodeParser;
+import com.willwinder.universalgcodesender.gcode.GcodeState;
+import com.willwinder.universalgcodesender.gcode.processors.LineMerger;
+import com.willwinder.universalgcodesender.gcode.util.Code;
+import com.willwinder.universalgcodesender.gcode.util.GcodeParserUtils;
+import com.willwinder.universalgcodesender.gcode.util.GcodeUtils;
+import com.willwinder.universalgcodesender.gcode.util.Plane;
 import com.willwinder.universalgcodesender.types.GcodeCommand;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -108,4 +115,236 @@ public class GcodeStreamTest {
             FileUtils.forceDelete(f);
         }
     }
+
+    @Test
+    public void testGcodeStreamReadWriteComments() throws IOException, GcodeStreamReader.NotGcodeStreamFile {
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (GcodeStreamWriter gsw = new GcodeStreamWriter(f)) {
+                gsw.addLine("G0 X1 ; first ++ move", "G0X1", "first ++ move", 1);
+                gsw.addLine("(hörn)", "", "hörn", 2);
+                gsw.addLine(null, null, null, 3);
+            }
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                Assert.assertEquals(3, gsr.getNumRows());
+
+                GcodeCommand gc = gsr.getNextCommand();
+                Assert.assertEquals("G0 X1 ; first ++ move", gc.getOriginalCommandString());
+                Assert.assertEquals("G0X1", gc.getCommandString());
+                Assert.assertEquals("first ++ move", gc.getComment());
+                Assert.assertEquals(1, gc.getCommandNumber());
+
+                gc = gsr.getNextCommand();
+                Assert.assertEquals("(hörn)", gc.getOriginalCommandString());
+                Assert.assertEquals("hörn", gc.getComment());
+
+                gc = gsr.getNextCommand();
+                Assert.assertEquals("", gc.getCommandString());
+                Assert.assertEquals(3, gc.getCommandNumber());
+
+                Assert.assertNull(gsr.getNextCommand());
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+        }
+    }
+
+    /**
+     * Files written in the original text format should still be readable.
+     */
+    @Test
+    public void testTextGcodeStreamRead() throws IOException, GcodeStreamReader.NotGcodeStreamFile {
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (PrintWriter writer = new PrintWriter(f)) {
+                writer.println("gsw_meta:2                                        ");
+                writer.println("G0 X1 (move)++G0X1++1++move");
+                writer.println("G1 Y2++G1Y2++2++");
+            }
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                Assert.assertEquals(2, gsr.getNumRows());
+
+                GcodeCommand gc = gsr.getNextCommand();
+                Assert.assertEquals("G0 X1 (move)", gc.getOriginalCommandString());
+                Assert.assertEquals("G0X1", gc.getCommandString());
+                Assert.assertEquals("move", gc.getComment());
+                Assert.assertEquals(1, gc.getCommandNumber());
+
+                gc = gsr.getNextCommand();
+                Assert.assertEquals("G1Y2", gc.getCommandString());
+                Assert.assertEquals(2, gc.getCommandNumber());
+                Assert.assertEquals(0, gsr.getNumRowsRemaining());
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+        }
+    }
+
+    @Test
+    public void testGcodeStreamSeek() throws IOException, GcodeStreamReader.NotGcodeStreamFile {
+        int rows = 5000;
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (GcodeStreamWriter gsw = new GcodeStreamWriter(f)) {
+                for (int i = 0; i < rows; i++) {
+                    // Two rows per command, like an expanded arc.
+                    gsw.addLine("Line " + i / 2, "Row " + i, null, i / 2);
+                }
+            }
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                Assert.assertEquals("Row 4321", gsr.getCommandAt(4321).getCommandString());
+                Assert.assertEquals(rows, gsr.getNumRowsRemaining());
+
+                Assert.assertEquals(4000, gsr.getRowForCommandNumber(2000));
+                Assert.assertEquals(0, gsr.getRowForCommandNumber(0));
+                Assert.assertEquals(-1, gsr.getRowForCommandNumber(rows));
+
+                gsr.seek(4000);
+                Assert.assertEquals(1000, gsr.getNumRowsRemaining());
+                Assert.assertEquals("Row 4000", gsr.getNextCommand().getCommandString());
+
+                gsr.seek(10);
+                Assert.assertEquals("Row 10", gsr.getNextCommand().getCommandString());
+                Assert.assertEquals(rows - 11, gsr.getNumRowsRemaining());
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+        }
+    }
+
+    @Test
+    public void testGcodeStreamStateAt() throws Exception {
+        File input = new File(tempDir, "input.nc");
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (PrintWriter writer = new PrintWriter(input)) {
+                writer.println("G20 G91");
+                for (int i = 0; i < 3000; i++) {
+                    writer.println("G1 X1 F" + (i + 1));
+                    if (i == 2500) {
+                        writer.println("G0 G90 G18 G55 X0 S1000");
+                    }
+                }
+            }
+            GcodeParserUtils.processAndExport(new GcodeParser(), input, f);
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                // Line numbers are one based
+                GcodeState state = gsr.getStateAt(gsr.getRowForCommandNumber(2));
+                Assert.assertEquals(Code.G20, state.units);
+                Assert.assertEquals(Code.G91, state.distanceMode);
+                Assert.assertEquals(0, state.speed, 0);
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(2002));
+                Assert.assertEquals(Code.G1, state.currentMotionMode);
+                Assert.assertEquals(2000, state.speed, 0);
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(2503));
+                Assert.assertEquals(Code.G1, state.currentMotionMode);
+                Assert.assertEquals(Code.G91, state.distanceMode);
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(2900));
+                Assert.assertEquals(Code.G1, state.currentMotionMode);
+                Assert.assertEquals(Code.G90, state.distanceMode);
+                Assert.assertEquals(Code.G55, state.offset);
+                Assert.assertEquals(Plane.ZX, state.plane);
+                Assert.assertEquals(1000, state.spindleSpeed, 0);
+                Assert.assertEquals(2897, state.speed, 0);
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+            FileUtils.forceDelete(input);
+        }
+    }
+
+    @Test
+    public void testGcodeStreamStateAtAfterSpindleStart() throws Exception {
+        File input = new File(tempDir, "input.nc");
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (PrintWriter writer = new PrintWriter(input)) {
+                for (int i = 0; i < 3000; i++) {
+                    writer.println("G1 X" + i + " F100");
+                    if (i == 10) {
+                        writer.println("M3 S1000");
+                    } else if (i == 20) {
+                        writer.println("M8");
+                    } else if (i == 2500) {
+                        writer.println("M5 M9");
+                    }
+                }
+            }
+            GcodeParserUtils.processAndExport(new GcodeParser(), input, f);
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                GcodeState state = gsr.getStateAt(gsr.getRowForCommandNumber(5));
+                Assert.assertEquals(Code.M5, state.spindle);
+                Assert.assertEquals(Code.M9, state.coolant);
+
+                // Resuming on the line after the spindle was started, the
+                // states after the first checkpoint are read from it.
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(13));
+                Assert.assertEquals(Code.M3, state.spindle);
+                Assert.assertEquals(Code.M9, state.coolant);
+                Assert.assertEquals("G21G90G91.1G17G54G94G1F100S1000M3M9",
+                        GcodeUtils.generateModalStateCommand(state));
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(2100));
+                Assert.assertEquals(Code.M3, state.spindle);
+                Assert.assertEquals(Code.M8, state.coolant);
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(2900));
+                Assert.assertEquals(Code.M5, state.spindle);
+                Assert.assertEquals(Code.M9, state.coolant);
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+            FileUtils.forceDelete(input);
+        }
+    }
+
+    @Test
+    public void testGcodeStreamStateAtAcrossMergedLines() throws Exception {
+        File input = new File(tempDir, "input.nc");
+        File f = new File(tempDir,"gcodeFile");
+        try {
+            try (PrintWriter writer = new PrintWriter(input)) {
+                writer.println("G21");
+                writer.println("G1 X1 F100");
+                writer.println("G1 X2");
+                writer.println("G1 X3");
+                writer.println("G0 X0");
+                writer.println("M5");
+            }
+            GcodeParser gcp = new GcodeParser();
+            gcp.addCommandProcessor(new LineMerger(0.005));
+            GcodeParserUtils.processAndExport(gcp, input, f);
+
+            try (IGcodeStreamReader gsr = new GcodeStreamReader(f)) {
+                // The lines held back by the merger have empty rows.
+                GcodeCommand held = gsr.getCommandAt(gsr.getRowForCommandNumber(3));
+                Assert.assertEquals("G1 X2", held.getOriginalCommandString());
+                Assert.assertEquals("", held.getCommandString());
+
+                // The merged line is emitted with the line ending the run,
+                // after the feed rate of the first line was applied.
+                int row = gsr.getRowForCommandNumber(5);
+                Assert.assertEquals("G1X3Y0Z0F100.0", gsr.getCommandAt(row).getCommandString());
+                GcodeState state = gsr.getStateAt(row);
+                Assert.assertEquals(100, state.speed, 0);
+                Assert.assertEquals(Code.G1, state.currentMotionMode);
+                Assert.assertEquals(3, state.currentPoint.x, 0);
+
+                state = gsr.getStateAt(gsr.getRowForCommandNumber(6));
+                Assert.assertEquals(Code.G0, state.currentMotionMode);
+                Assert.assertEquals(0, state.currentPoint.x, 0);
+            }
+        } finally {
+            FileUtils.forceDelete(f);
+            FileUtils.forceDelete(input);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineSegmentBoundsTest {
+    private static final double DELTA = 0.0001;
+    private static final double[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    private LineSegmentBounds bounds;
+
+    @Before
+    public void setUp() {
+        // Ten segments along the x axis from 0 to 10 in chunks of two
+        LineSegmentStore store = new LineSegmentStore();
+        for (int i = 0; i < 10; i++) {
+            store.add(i, 0, 0, i + 1, 0, 0, i + 1, (byte) 0);
+        }
+        bounds = new LineSegmentBounds(store, 2);
+    }
+
+    /**
+     * An orthographic projection like glOrtho.
+     */
+    private static double[] ortho(double left, double right, double bottom, double top, double near, double far) {
+        return new double[]{
+                2 / (right - left), 0, 0, 0,
+                0, 2 / (top - bottom), 0, 0,
+                0, 0, -2 / (far - near), 0,
+                -(right + left) / (right - left), -(top + bottom) / (top - bottom), -(far + near) / (far - near), 1};
+    }
+
+    @Test
+    public void chunksShouldCoverAllSegments() {
+        assertEquals(5, bounds.getChunkCount());
+        assertEquals(8, bounds.getChunkStart(4));
+        assertEquals(10, bounds.getChunkEnd(4));
+    }
+
+    @Test
+    public void chunksOutsideOfTheViewShouldBeSkipped() {
+        ViewFrustum frustum = new ViewFrustum(ortho(3.5, 6.5, -1, 1, -1, 1), IDENTITY, 300, 200);
+
+        int[] ranges = new int[bounds.getChunkCount() * 2];
+        assertEquals(1, bounds.findVisibleRanges(frustum, ranges));
+        assertEquals(2, ranges[0]);
+        assertEquals(8, ranges[1]);
+    }
+
+    @Test
+    public void everythingShouldBeVisibleWhenZoomedOut() {
+        ViewFrustum frustum = new ViewFrustum(ortho(-20, 20, -20, 20, -1, 1), IDENTITY, 400, 400);
+
+        int[] ranges = new int[bounds.getChunkCount() * 2];
+        assertEquals(1, bounds.findVisibleRanges(frustum, ranges));
+        assertEquals(0, ranges[0]);
+        assertEquals(10, ranges[1]);
+
+        // 40 units on 400 pixels
+        assertEquals(10, bounds.getPixelsPerUnit(frustum), DELTA);
+    }
+
+    @Test
+    public void pixelsPerUnitShouldBeInfiniteBehindTheCamera() {
+        // A perspective projection where w is -z
+        double[] projection = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, -1, -1, 0, 0, -0.2, 0};
+        ViewFrustum frustum = new ViewFrustum(projection, IDENTITY, 100, 100);
+        assertTrue(Double.isInfinite(frustum.getPixelsPerUnit(-1, -1, -1, 1, 1, 1)));
+        assertEquals(50, frustum.getPixelsPerUnit(-1, -1, -2, 1, 1, -1), DELTA);
+    }
+}
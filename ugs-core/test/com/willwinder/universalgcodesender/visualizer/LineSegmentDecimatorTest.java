@@ -0,0 +1,77 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineSegmentDecimatorTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void collinearSegmentsShouldBeMerged() {
+        LineSegmentStore store = new LineSegmentStore();
+        for (int i = 0; i < 10; i++) {
+            store.add(i, 0, 0, i + 1, 0, 0, i + 1, (byte) 0);
+        }
+
+        LineSegmentStore result = LineSegmentDecimator.decimate(store, 0.01);
+        assertEquals(1, result.size());
+        assertEquals(0, result.getCoordinate(0, 0, 0), DELTA);
+        assertEquals(10, result.getCoordinate(0, 1, 0), DELTA);
+        assertEquals(10, result.getLineNumber(0));
+    }
+
+    @Test
+    public void pointsFurtherAwayThanTheToleranceShouldBeKept() {
+        LineSegmentStore store = new LineSegmentStore();
+        store.add(0, 0, 0, 1, 0.005, 0, 1, (byte) 0);
+        store.add(1, 0.005, 0, 2, 0, 0, 2, (byte) 0);
+        store.add(2, 0, 0, 3, 1, 0, 3, (byte) 0);
+        store.add(3, 1, 0, 4, 0, 0, 4, (byte) 0);
+
+        LineSegmentStore result = LineSegmentDecimator.decimate(store, 0.01);
+        assertEquals(3, result.size());
+        assertEquals(2, result.getCoordinate(0, 1, 0), DELTA);
+        assertEquals(2, result.getLineNumber(0));
+        assertEquals(3, result.getLineNumber(1));
+        assertEquals(4, result.getLineNumber(2));
+    }
+
+    @Test
+    public void segmentsWithDifferentFlagsOrGapsShouldNotBeMerged() {
+        LineSegmentStore store = new LineSegmentStore();
+        store.add(0, 0, 0, 1, 0, 0, 1, LineSegmentStore.FLAG_RAPID);
+        store.add(1, 0, 0, 2, 0, 0, 2, (byte) 0);
+        store.add(2, 0, 0, 3, 0, 0, 3, (byte) 0);
+        store.add(4, 0, 0, 5, 0, 0, 4, (byte) 0);
+
+        LineSegmentStore result = LineSegmentDecimator.decimate(store, 0.01);
+        assertEquals(3, result.size());
+        assertEquals(LineSegmentStore.FLAG_RAPID, result.getFlags(0));
+        assertEquals(3, result.getCoordinate(1, 1, 0), DELTA);
+        assertEquals(4, result.getCoordinate(2, 0, 0), DELTA);
+    }
+
+    @Test
+    public void emptyStoreShouldGiveAnEmptyStore() {
+        assertEquals(0, LineSegmentDecimator.decimate(new LineSegmentStore(), 1).size());
+    }
+}
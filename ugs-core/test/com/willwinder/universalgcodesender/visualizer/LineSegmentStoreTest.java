@@ -0,0 +1,101 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.universalgcodesender.visualizer;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineSegmentStoreTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void segmentsShouldBeStoredInTheOrderTheyAreAdded() {
+        LineSegmentStore store = new LineSegmentStore(1);
+        for (int i = 0; i < 100; i++) {
+            store.add(i, i + 1, i + 2, i + 3, i + 4, i + 5, i, (byte) (i % 8));
+        }
+        store.trimToSize();
+
+        assertEquals(100, store.size());
+        assertEquals(42, store.getLineNumber(42));
+        assertEquals(45, store.getCoordinate(42, 1, 0), DELTA);
+        assertEquals(44, store.getCoordinate(42, 0, 2), DELTA);
+
+        // 42 % 8 = 2 which is a rapid
+        assertFalse(store.isArc(42));
+        assertTrue(store.isFastTraverse(42));
+        assertFalse(store.isZMovement(42));
+    }
+
+    @Test
+    public void vertexBufferShouldContainAllVerticesInOrder() {
+        LineSegmentStore store = new LineSegmentStore();
+        store.add(1, 2, 3, 4, 5, 6, 1, (byte) 0);
+        store.add(4, 5, 6, 7, 8, 9, 2, (byte) 0);
+
+        FloatBuffer buffer = store.getVertexBuffer();
+        assertEquals(12, buffer.remaining());
+
+        float[] vertices = new float[12];
+        buffer.get(vertices);
+        assertEquals("[1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0]", Arrays.toString(vertices));
+
+        // Reading the buffer doesn't change the store.
+        assertEquals(12, store.getVertexBuffer().remaining());
+    }
+
+    @Test
+    public void indexOfLineNumberShouldFindTheFirstSegmentOfTheLine() {
+        LineSegmentStore store = new LineSegmentStore();
+        int[] lineNumbers = {1, 2, 2, 2, 5, 6};
+        for (int lineNumber : lineNumbers) {
+            store.add(0, 0, 0, 1, 1, 1, lineNumber, (byte) 0);
+        }
+
+        assertEquals(0, store.indexOfLineNumber(0));
+        assertEquals(0, store.indexOfLineNumber(1));
+        assertEquals(1, store.indexOfLineNumber(2));
+        assertEquals(4, store.indexOfLineNumber(3));
+        assertEquals(4, store.indexOfLineNumber(5));
+        assertEquals(6, store.indexOfLineNumber(7));
+        assertEquals(0, new LineSegmentStore().indexOfLineNumber(1));
+    }
+
+    @Test
+    public void gcodeViewParseShouldFlagTheSegments() throws Exception {
+        GcodeViewParse parse = new GcodeViewParse();
+        LineSegmentStore store = parse.toObjRedux(Arrays.asList("G0 X10", "G1 Z-1 F100", "G1 X0", "G2 X10 I5"), 1);
+
+        assertTrue(store.isFastTraverse(0));
+        assertTrue(store.isZMovement(1));
+        assertEquals(0, store.getFlags(2));
+        assertTrue(store.isArc(store.size() - 1));
+        assertEquals(3, store.getLineNumber(store.size() - 1));
+
+        LineSegment lineSegment = store.getLineSegment(0);
+        assertTrue(lineSegment.isFastTraverse());
+        assertEquals(10, lineSegment.getEnd().x, DELTA);
+    }
+}
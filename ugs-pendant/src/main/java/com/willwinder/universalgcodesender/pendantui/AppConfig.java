@@ -3,6 +3,7 @@ package com.willwinder.universalgcodesender.pendantui;
 import com.willwinder.universalgcodesender.model.BackendAPI;
 import com.willwinder.universalgcodesender.pendantui.v1.resources.FilesResource;
 import com.willwinder.universalgcodesender.pendantui.v1.resources.MachineResource;
+import com.willwinder.universalgcodesender.pendantui.v1.resources.MetricsResource;
 import com.willwinder.universalgcodesender.pendantui.v1.resources.MacrosResource;
 import com.willwinder.universalgcodesender.pendantui.v1.resources.SettingsResource;
 import com.willwinder.universalgcodesender.pendantui.v1.resources.StatusResource;
@@ -25,6 +26,7 @@ public class AppConfig extends ResourceConfig {
         register(MacrosResource.class);
         register(SettingsResource.class);
         register(FilesResource.class);
+        register(MetricsResource.class);
         register(MultiPartFeature.class);
 
         BackendAPI backendAPI = BackendAPIFactory.getInstance().getBackendAPI();
@@ -0,0 +1,35 @@
+package com.willwinder.universalgcodesender.pendantui.v1.resources;
+
+import com.willwinder.universalgcodesender.model.BackendAPI;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+@Path("/v1/metrics")
+public class MetricsResource {
+
+    @Inject
+    private BackendAPI backendAPI;
+
+    @GET
+    @Path("getMetrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Map<String, Number>> getMetrics() {
+        return backendAPI.getMetrics().snapshot();
+    }
+
+    @GET
+    @Path("getMetricsCsv")
+    @Produces("text/csv")
+    public String getMetricsCsv() throws IOException {
+        StringWriter writer = new StringWriter();
+        backendAPI.getMetrics().writeCsv(writer);
+        return writer.toString();
+    }
+}
@@ -25,10 +25,10 @@ import com.jogamp.opengl.GLAutoDrawable;
 import com.willwinder.ugs.nbm.visualizer.options.VisualizerOptions;
 import com.willwinder.ugs.nbm.visualizer.renderables.GcodeModel;
 import static com.willwinder.ugs.nbm.visualizer.options.VisualizerOptions.VISUALIZER_OPTION_HIGHLIGHT;
-import com.willwinder.universalgcodesender.visualizer.LineSegment;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentStore;
 import java.awt.Color;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.TreeSet;
 import javax.vecmath.Point3d;
 
 /**
@@ -41,8 +41,11 @@ public class Highlight extends Renderable {
 
     private Collection<Integer> highlightedLines = null;
 
-    private int numberOfVertices = -1;
-    private float[] lineVertexData = null;
+    // Ranges of highlighted segments, pairs of the first segment and the
+    // segment after the last one.
+    private LineSegmentStore segments = null;
+    private int[] segmentRanges = null;
+    private int rangeCount = 0;
 
     // Preferences
     private Color highlightColor;
@@ -80,22 +83,28 @@ public class Highlight extends Renderable {
 
     @Override
     public void draw(GLAutoDrawable drawable, boolean idle, Point3d machineCoord, Point3d workCoord, Point3d focusMin, Point3d focusMax, double scaleFactor, Point3d mouseCoordinates, Point3d rotation) {
-        if (lineVertexData == null || highlightedLines == null || highlightedLines.isEmpty()) {
+        if (segments == null || rangeCount == 0 || highlightedLines == null || highlightedLines.isEmpty()) {
             return;
         }
 
+        float[] c = VisualizerOptions.colorToFloatArray(Color.YELLOW);
         GL2 gl = drawable.getGL().getGL2();
+        gl.glLineWidth(2.0f);
+
+        // Use the vertex buffer of the model when it is available
+        if (model.drawSegments(drawable, segments, segmentRanges, rangeCount, c)) {
+            return;
+        }
 
         //gl.glEnable(GL2.GL_LINE_SMOOTH);
         gl.glBegin(GL_LINES);
-        gl.glLineWidth(2.0f);
-
-        float[] c = VisualizerOptions.colorToFloatArray(Color.YELLOW);
-        for (int verts = 0; verts < (this.numberOfVertices * 3); ) {
-            gl.glColor4fv(c, 0);
-            gl.glVertex3d(lineVertexData[verts++], lineVertexData[verts++], lineVertexData[verts++]);
-            gl.glColor4fv(c, 0);
-            gl.glVertex3d(lineVertexData[verts++], lineVertexData[verts++], lineVertexData[verts++]);
+        for (int range = 0; range < rangeCount; range++) {
+            for (int i = segmentRanges[range * 2]; i < segmentRanges[range * 2 + 1]; i++) {
+                gl.glColor4fv(c, 0);
+                gl.glVertex3d(segments.getCoordinate(i, 0, 0), segments.getCoordinate(i, 0, 1), segments.getCoordinate(i, 0, 2));
+                gl.glColor4fv(c, 0);
+                gl.glVertex3d(segments.getCoordinate(i, 1, 0), segments.getCoordinate(i, 1, 1), segments.getCoordinate(i, 1, 2));
+            }
         }
 
         gl.glEnd();
@@ -104,35 +113,36 @@ public class Highlight extends Renderable {
     public void setHighlightedLines(Collection<Integer> lines) {
         this.highlightedLines = lines;
 
-        if (lines.isEmpty()) {
-            this.numberOfVertices = -1;
-            this.lineVertexData = null;
+        if (lines.isEmpty() || model.getLineList() == null) {
+            this.segments = null;
+            this.segmentRanges = null;
+            this.rangeCount = 0;
             return;
         }
 
-        ArrayList<LineSegment> highlights = new ArrayList<>();
-        int vertIndex = 0;
-        for (LineSegment ls : model.getLineList()) {
-            if (lines.contains(ls.getLineNumber() -1)) {
-                highlights.add(ls);
+        // The segments of a line are next to each other, the line numbers of
+        // the segments are one higher than the lines of the editor.
+        LineSegmentStore store = model.getLineList();
+        int[] ranges = new int[lines.size() * 2];
+        int count = 0;
+        for (int line : new TreeSet<>(lines)) {
+            int start = store.indexOfLineNumber(line + 1);
+            int end = store.indexOfLineNumber(line + 2);
+            if (start == end) {
+                continue;
             }
-        }
 
-        this.numberOfVertices = highlights.size() * 2;
-        this.lineVertexData = new float[numberOfVertices * 3];
-
-        for (LineSegment ls : highlights) {
-            Point3d p1 = ls.getStart();
-            Point3d p2 = ls.getEnd();
-
-            // p1 location
-            lineVertexData[vertIndex++] = (float)p1.x;
-            lineVertexData[vertIndex++] = (float)p1.y;
-            lineVertexData[vertIndex++] = (float)p1.z;
-            //p2
-            lineVertexData[vertIndex++] = (float)p2.x;
-            lineVertexData[vertIndex++] = (float)p2.y;
-            lineVertexData[vertIndex++] = (float)p2.z;
+            if (count > 0 && ranges[count * 2 - 1] == start) {
+                ranges[count * 2 - 1] = end;
+            } else {
+                ranges[count * 2] = start;
+                ranges[count * 2 + 1] = end;
+                count++;
+            }
         }
+
+        this.segments = store;
+        this.segmentRanges = ranges;
+        this.rangeCount = count;
     }
 }
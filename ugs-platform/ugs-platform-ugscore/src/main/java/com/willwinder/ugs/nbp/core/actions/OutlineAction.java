@@ -37,7 +37,7 @@ import com.willwinder.universalgcodesender.utils.MathUtils;
 import com.willwinder.universalgcodesender.utils.SimpleGcodeStreamReader;
 import com.willwinder.universalgcodesender.utils.ThreadHelper;
 import com.willwinder.universalgcodesender.visualizer.GcodeViewParse;
-import com.willwinder.universalgcodesender.visualizer.LineSegment;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentStore;
 import com.willwinder.universalgcodesender.visualizer.VisualizerUtils;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
@@ -53,6 +53,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -122,15 +123,16 @@ public final class OutlineAction extends AbstractAction implements UGSEventListe
     }
 
     public List<GcodeCommand> generateOutlineCommands(File gcodeFile) throws IOException, GcodeParserException {
-        List<LineSegment> gcodeLineList = parseGcodeLinesFromFile(gcodeFile);
+        LineSegmentStore gcodeLineList = parseGcodeLinesFromFile(gcodeFile);
 
         // We only care about carving motion, filter those commands out
-        List<PartialPosition> pointList = gcodeLineList.parallelStream()
-                .filter(lineSegment -> !lineSegment.isFastTraverse())
-                .flatMap(lineSegment -> {
-                    // We map both the start and end points in MM
-                    PartialPosition start = PartialPosition.fromXY(lineSegment.getStart().getPositionIn(UnitUtils.Units.MM));
-                    PartialPosition end = PartialPosition.fromXY(lineSegment.getEnd().getPositionIn(UnitUtils.Units.MM));
+        List<PartialPosition> pointList = IntStream.range(0, gcodeLineList.size()).parallel()
+                .filter(segment -> !gcodeLineList.isFastTraverse(segment))
+                .boxed()
+                .flatMap(segment -> {
+                    // Both the start and end points are stored in MM
+                    PartialPosition start = toXYPosition(gcodeLineList, segment, 0);
+                    PartialPosition end = toXYPosition(gcodeLineList, segment, 1);
                     return Stream.of(start, end);
                 })
                 .distinct()
@@ -142,8 +144,14 @@ public final class OutlineAction extends AbstractAction implements UGSEventListe
                 .collect(Collectors.toList());
     }
 
-    private List<LineSegment> parseGcodeLinesFromFile(File gcodeFile) throws IOException, GcodeParserException {
-        List<LineSegment> result;
+    private static PartialPosition toXYPosition(LineSegmentStore segments, int segment, int vertex) {
+        double x = segments.getCoordinate(segment, vertex, 0);
+        double y = segments.getCoordinate(segment, vertex, 1);
+        return new PartialPosition(x, y, UnitUtils.Units.MM);
+    }
+
+    private LineSegmentStore parseGcodeLinesFromFile(File gcodeFile) throws IOException, GcodeParserException {
+        LineSegmentStore result;
 
         GcodeViewParse gcvp = new GcodeViewParse();
         try (IGcodeStreamReader gsr = new GcodeStreamReader(gcodeFile)) {
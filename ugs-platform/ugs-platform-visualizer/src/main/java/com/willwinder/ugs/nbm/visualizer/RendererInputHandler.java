@@ -25,6 +25,7 @@ import com.willwinder.ugs.nbm.visualizer.renderables.SizeDisplay;
 import com.willwinder.ugs.nbm.visualizer.shared.GcodeRenderer;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.listeners.ControllerListener;
+import com.willwinder.universalgcodesender.listeners.ControllerStateListener;
 import com.willwinder.universalgcodesender.listeners.ControllerStatus;
 import com.willwinder.universalgcodesender.listeners.UGSEventListener;
 import com.willwinder.universalgcodesender.model.Alarm;
@@ -51,7 +52,7 @@ import java.util.prefs.PreferenceChangeListener;
 public class RendererInputHandler implements
         WindowListener, MouseWheelListener, MouseMotionListener,
         MouseListener, KeyListener, PreferenceChangeListener,
-        ControllerListener, UGSEventListener {
+        ControllerListener, UGSEventListener, ControllerStateListener {
     final private GcodeRenderer gcodeRenderer;
     final private FPSAnimator animator;
     private final BackendAPI backend;
@@ -131,6 +132,12 @@ public class RendererInputHandler implements
         if(cse.isSettingChangeEvent()) {
             sizeDisplay.setUnits(settings.getPreferredUnits());
         }
+
+        if (cse.isControllerStatusEvent()) {
+            ControllerStatus status = cse.getControllerStatus();
+            gcodeRenderer.setMachineCoordinate(status.getMachineCoord());
+            gcodeRenderer.setWorkCoordinate(status.getWorkCoord());
+        }
     }
 
 
@@ -338,8 +345,7 @@ public class RendererInputHandler implements
      */
     @Override
     public void statusStringListener(ControllerStatus status) {
-        gcodeRenderer.setMachineCoordinate(status.getMachineCoord());
-        gcodeRenderer.setWorkCoordinate(status.getWorkCoord());
+        // Positions are received as controller state events when they change.
     }
 
     @Override
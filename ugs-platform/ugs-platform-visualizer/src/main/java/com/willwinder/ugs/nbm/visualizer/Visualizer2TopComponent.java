@@ -27,6 +27,7 @@ import com.willwinder.ugs.nbp.lib.lookup.CentralLookup;
 import com.willwinder.ugs.nbp.lib.services.LocalizingService;
 import com.willwinder.ugs.nbp.lib.services.TopComponentLocalizer;
 import com.willwinder.universalgcodesender.i18n.Localization;
+import com.willwinder.universalgcodesender.listeners.ControllerStatusField;
 import com.willwinder.universalgcodesender.model.BackendAPI;
 import org.apache.commons.lang3.StringUtils;
 import org.openide.awt.ActionID;
@@ -40,6 +41,7 @@ import org.openide.windows.WindowManager;
 
 import java.awt.*;
 import java.io.File;
+import java.util.EnumSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
@@ -115,6 +117,7 @@ public final class Visualizer2TopComponent extends TopComponent {
 
         if (rih != null) {
             backend.removeControllerListener(rih);
+            backend.removeControllerStateListener(rih);
             backend.removeUGSEventListener(rih);
         }
 
@@ -165,6 +168,7 @@ public final class Visualizer2TopComponent extends TopComponent {
 
         // Install listeners...
         backend.addControllerListener(this.rih);
+        backend.addControllerStateListener(this.rih, EnumSet.of(ControllerStatusField.POSITION), 0);
         backend.addUGSEventListener(this.rih);
 
         // shutdown hook...
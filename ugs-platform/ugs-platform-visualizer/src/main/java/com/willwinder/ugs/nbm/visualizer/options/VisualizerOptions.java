@@ -63,6 +63,11 @@ public class VisualizerOptions extends ArrayList<Option> {
     public static final String VISUALIZER_OPTION_BOUNDRY_BASE = "platform.visualizer.color.boundry-base";
     public static final String VISUALIZER_OPTION_BOUNDRY_SIDES = "platform.visualizer.color.boundry-sides";
 
+    // GcodeModel arc expansion, zero splits arcs by segment length. Smaller
+    // values are raised to GcodePreprocessorUtils.MIN_ARC_CHORD_TOLERANCE.
+    public static final String VISUALIZER_OPTION_ARC_TOLERANCE = "platform.visualizer.arc-tolerance";
+    public static final double DEFAULT_ARC_TOLERANCE = 0.01;
+
 
     public class ColorPref {
         public String preference;
@@ -110,12 +115,19 @@ public class VisualizerOptions extends ArrayList<Option> {
         // Machine boundries
         add(getOption(VISUALIZER_OPTION_BOUNDRY_BASE, "", new Color(167, 183, 206, 64)));
         add(getOption(VISUALIZER_OPTION_BOUNDRY_SIDES, "", new Color(119, 139, 168, 64)));
+
+        // GcodeModel arc expansion
+        add(getOption(VISUALIZER_OPTION_ARC_TOLERANCE, "", DEFAULT_ARC_TOLERANCE));
     }
 
     private Option<Color> getOption(String op, String desc, Color def) {
         return new Option<>(op, Localization.getString(op), desc, getColorOption(op, def));
     }
 
+    private Option<Double> getOption(String op, String desc, double def) {
+        return new Option<>(op, Localization.getString(op), desc, getDoubleOption(op, def));
+    }
+
     public Option<Color> getOptionForKey(String key) {
         for (Option op : this) {
             if (op.option.equals(key)) {
@@ -142,4 +154,12 @@ public class VisualizerOptions extends ArrayList<Option> {
     public static void setColorOption(String option, Color color) {
         NbPreferences.forModule(VisualizerOptions.class).putInt(option, color.getRGB());
     }
+
+    public static double getDoubleOption(String option, double defaultValue) {
+        return NbPreferences.forModule(VisualizerOptions.class).getDouble(option, defaultValue);
+    }
+
+    public static void setDoubleOption(String option, double value) {
+        NbPreferences.forModule(VisualizerOptions.class).putDouble(option, value);
+    }
 }
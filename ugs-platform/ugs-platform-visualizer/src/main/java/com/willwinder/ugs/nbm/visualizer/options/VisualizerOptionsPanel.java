@@ -45,7 +45,12 @@ final public class VisualizerOptionsPanel extends AbstractOptionsPanel {
             String preference = (String) optionTable.getModel().getValueAt(i, 0);
             for (Option op : vo) {
                 if (op.localized.equals(preference)) {
-                    VisualizerOptions.setColorOption(op.option, (Color)optionTable.getModel().getValueAt(i,1));
+                    Object value = optionTable.getModel().getValueAt(i,1);
+                    if (value instanceof Double) {
+                        VisualizerOptions.setDoubleOption(op.option, (Double)value);
+                    } else {
+                        VisualizerOptions.setColorOption(op.option, (Color)value);
+                    }
                 }
             }
         }
@@ -18,19 +18,21 @@
  */
 package com.willwinder.ugs.nbm.visualizer.renderables;
 
-import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.willwinder.ugs.nbm.visualizer.options.VisualizerOptions;
 import com.willwinder.ugs.nbm.visualizer.shared.Renderable;
+import com.willwinder.universalgcodesender.gcode.GcodePreprocessorUtils;
 import com.willwinder.universalgcodesender.gcode.util.GcodeParserException;
 import com.willwinder.universalgcodesender.i18n.Localization;
 import com.willwinder.universalgcodesender.utils.GUIHelpers;
 import com.willwinder.universalgcodesender.utils.GcodeStreamReader;
 import com.willwinder.universalgcodesender.utils.IGcodeStreamReader;
 import com.willwinder.universalgcodesender.visualizer.GcodeViewParse;
-import com.willwinder.universalgcodesender.visualizer.LineSegment;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentDecimator;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentStore;
+import com.willwinder.universalgcodesender.visualizer.ViewFrustum;
 import com.willwinder.universalgcodesender.visualizer.VisualizerUtils;
 
 import javax.vecmath.Point3d;
@@ -38,37 +40,56 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static com.jogamp.opengl.GL.GL_LINES;
-import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_COLOR_ARRAY;
-import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_VERTEX_ARRAY;
+import static com.jogamp.opengl.fixedfunc.GLMatrixFunc.GL_MODELVIEW_MATRIX;
+import static com.jogamp.opengl.fixedfunc.GLMatrixFunc.GL_PROJECTION_MATRIX;
 import static com.willwinder.ugs.nbm.visualizer.options.VisualizerOptions.*;
 
 /**
+ * Draws the toolpath of the loaded gcode file.
+ *
+ * The segments are kept in a few levels of detail which are simplified with
+ * an increasing tolerance. Each frame the coarsest level which is accurate
+ * to half a pixel is drawn, and only the chunks of it which are inside of
+ * the view.
  *
  * @author wwinder
  */
 public class GcodeModel extends Renderable {
     private static final Logger logger = Logger.getLogger(GcodeModel.class.getName());
 
-    private boolean colorArrayDirty, vertexArrayDirty, vertexBufferDirty;
+    // How far from the real toolpath a simplified level may be on the screen
+    private static final double MAX_ERROR_PIXELS = 0.5;
+
+    // The tolerances of the simplified levels relative to the model size
+    private static final double FIRST_LEVEL_TOLERANCE = 1.0 / 16384;
+    private static final double LAST_LEVEL_TOLERANCE = 1.0 / 64;
+
+    // A level is only kept if it has this much fewer segments
+    private static final double MIN_LEVEL_REDUCTION = 0.75;
+
+    private boolean vertexBufferDirty;
 
     // Gcode file data
     private String gcodeFile = null;
     private boolean isDrawable = false; //True if a file is loaded; false if not
-    private List<LineSegment> gcodeLineList; //An ArrayList of linesegments composing the model
-    private int currentCommandNumber = 0;
+    private LineSegmentStore gcodeLineList; //The line segments composing the model
+    private volatile int currentCommandNumber = 0;
+
+    // The levels of detail, the first one has all segments
+    private volatile List<GcodeModelLevel> levels = Collections.emptyList();
 
-    // OpenGL Object Buffer Variables
-    private int numberOfVertices = -1;
-    private float[] lineVertexData = null;
-    private byte[] lineColorData = null;
-    private FloatBuffer lineVertexBuffer = null;
-    private ByteBuffer lineColorBuffer = null;
+    // Levels of a previous file which have buffer objects to release
+    private final List<GcodeModelLevel> disposedLevels = Collections.synchronizedList(new ArrayList<>());
+
+    private final double[] projectionMatrix = new double[16];
+    private final double[] modelViewMatrix = new double[16];
+    private final int[] viewport = new int[4];
 
     private Point3d objectMin;
     private Point3d objectMax;
@@ -81,6 +102,9 @@ public class GcodeModel extends Renderable {
     private Color plungeColor;
     private Color completedColor;
 
+    // Arcs are split by segment length when this is zero
+    private double arcChordTolerance;
+
     public GcodeModel(String title) {
         super(10, title);
         objectSize = new Point3d();
@@ -95,6 +119,17 @@ public class GcodeModel extends Renderable {
         plungeColor = vo.getOptionForKey(VISUALIZER_OPTION_PLUNGE).value;
         completedColor = vo.getOptionForKey(VISUALIZER_OPTION_COMPLETE).value;
         vertexBufferDirty = true;
+
+        // The geometry depends on the arc tolerance, regenerate it if a file
+        // is already loaded.
+        double tolerance = GcodePreprocessorUtils.clampChordTolerance(
+                getDoubleOption(VISUALIZER_OPTION_ARC_TOLERANCE, DEFAULT_ARC_TOLERANCE));
+        if (tolerance != arcChordTolerance) {
+            arcChordTolerance = tolerance;
+            if (gcodeFile != null) {
+                generateObject();
+            }
+        }
     }
 
     /**
@@ -115,14 +150,15 @@ public class GcodeModel extends Renderable {
     }
 
     /**
-     * This is used to gray out completed commands.
+     * This is used to gray out completed commands. Only the colors of the
+     * segments between the previous and the new command are updated when
+     * the next frame is drawn.
      */
     public void setCurrentCommandNumber(int num) {
         currentCommandNumber = num;
-        vertexBufferDirty = true;
     }
 
-    public List<LineSegment> getLineList() {
+    public LineSegmentStore getLineList() {
         return this.gcodeLineList;
     }
 
@@ -148,64 +184,99 @@ public class GcodeModel extends Renderable {
 
     @Override
     public void draw(GLAutoDrawable drawable, boolean idle, Point3d machineCoord, Point3d workCoord, Point3d focusMin, Point3d focusMax, double scaleFactor, Point3d mouseCoordinates, Point3d rotation) {
+        GL2 gl = drawable.getGL().getGL2();
+        disposeLevels(gl);
         if (!isDrawable) return;
 
-        GL2 gl = drawable.getGL().getGL2();
-        
-        // Batch mode if available 
-        boolean forceOldStyle = false;
-        if(!forceOldStyle
-                && gl.isFunctionAvailable( "glGenBuffers" )
-                && gl.isFunctionAvailable( "glBindBuffer" )
-                && gl.isFunctionAvailable( "glBufferData" )
-                && gl.isFunctionAvailable( "glDeleteBuffers" ) ) {
-            
-            // Initialize OpenGL arrays if required.
-            if (this.vertexBufferDirty && !vertexArrayDirty && !colorArrayDirty) {
-                updateVertexBuffers();
-                this.vertexBufferDirty = false;
-            }
-            if (this.colorArrayDirty) {
-                this.updateGLColorArray(drawable);
-                this.colorArrayDirty = false;
-            }
-            if (this.vertexArrayDirty) {
-                this.updateGLGeometryArray(drawable);
-                this.vertexArrayDirty = false;
-            }
-            gl.glLineWidth(1.0f);
-            gl.glEnableClientState(GL_VERTEX_ARRAY);
-            gl.glEnableClientState(GL_COLOR_ARRAY);
-            gl.glDrawArrays( GL.GL_LINES, 0, numberOfVertices);
-            gl.glDisableClientState(GL_COLOR_ARRAY);
-            gl.glDisableClientState(GL_VERTEX_ARRAY);
+        if (this.vertexBufferDirty) {
+            updateVertexBuffers();
+            this.vertexBufferDirty = false;
+        } else {
+            updateCompletedColors();
+        }
+
+        // Only draw the chunks of the level of detail needed for this view
+        ViewFrustum frustum = getViewFrustum(gl);
+        GcodeModelLevel level = selectLevel(frustum);
+        int rangeCount = level.bounds.findVisibleRanges(frustum, level.visibleRanges);
+
+        gl.glLineWidth(1.0f);
+        if (isVertexBufferObjectSupported(gl)) {
+            level.drawBufferObjects(gl, level.visibleRanges, rangeCount, true);
         }
         // Traditional OpenGL
         else {
-
-            // TODO: By using a GL_LINE_STRIP I can easily use half the number of
-            //       verticies. May lose some control over line colors though.
             //gl.glEnable(GL2.GL_LINE_SMOOTH);
-            gl.glBegin(GL_LINES);
-            gl.glLineWidth(1.0f);
-
-            int verts = 0;
-            int colors = 0;
-            for(LineSegment ls : gcodeLineList)
-            {
-                gl.glColor3ub(lineColorData[colors++],lineColorData[colors++],lineColorData[colors++]);
-                gl.glVertex3d(lineVertexData[verts++], lineVertexData[verts++], lineVertexData[verts++]);
-                gl.glColor3ub(lineColorData[colors++],lineColorData[colors++],lineColorData[colors++]);
-                gl.glVertex3d(lineVertexData[verts++], lineVertexData[verts++], lineVertexData[verts++]);
-            }
-
-            gl.glEnd();
+            level.drawImmediate(gl, level.visibleRanges, rangeCount);
         }
 
         // makes the gui stay on top of elements
         // drawn before.
     }
-    
+
+    private ViewFrustum getViewFrustum(GL2 gl) {
+        gl.glGetDoublev(GL_PROJECTION_MATRIX, projectionMatrix, 0);
+        gl.glGetDoublev(GL_MODELVIEW_MATRIX, modelViewMatrix, 0);
+        gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+        return new ViewFrustum(projectionMatrix, modelViewMatrix, viewport[2], viewport[3]);
+    }
+
+    /**
+     * Finds the coarsest level which is accurate enough for the view, the
+     * scale is taken from the part of the model closest to the camera.
+     */
+    private GcodeModelLevel selectLevel(ViewFrustum frustum) {
+        double pixelsPerUnit = levels.get(0).bounds.getPixelsPerUnit(frustum);
+        GcodeModelLevel result = levels.get(0);
+        for (GcodeModelLevel level : levels) {
+            if (level.tolerance * pixelsPerUnit <= MAX_ERROR_PIXELS) {
+                result = level;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Draws ranges of segments in a single color using the vertex buffer
+     * object of the model, so that the vertices don't need to be uploaded
+     * again.
+     *
+     * @param segments the segments which the ranges refer to
+     * @param ranges   pairs of the first segment and the segment after the last
+     * @param rangeCount the number of pairs in the ranges array
+     * @return false if the model isn't drawn with a vertex buffer object for
+     *         the given segments, the caller has to draw them itself then
+     */
+    public boolean drawSegments(GLAutoDrawable drawable, LineSegmentStore segments, int[] ranges, int rangeCount, float[] color) {
+        GL2 gl = drawable.getGL().getGL2();
+        List<GcodeModelLevel> currentLevels = this.levels;
+        if (!isDrawable || currentLevels.isEmpty() || segments != currentLevels.get(0).segments
+                || !isVertexBufferObjectSupported(gl)) {
+            return false;
+        }
+
+        gl.glColor4fv(color, 0);
+        currentLevels.get(0).drawBufferObjects(gl, ranges, rangeCount, false);
+        return true;
+    }
+
+    private static boolean isVertexBufferObjectSupported(GL2 gl) {
+        return gl.isFunctionAvailable( "glGenBuffers" )
+                && gl.isFunctionAvailable( "glBindBuffer" )
+                && gl.isFunctionAvailable( "glBufferData" )
+                && gl.isFunctionAvailable( "glBufferSubData" )
+                && gl.isFunctionAvailable( "glDeleteBuffers" );
+    }
+
+    private void disposeLevels(GL2 gl) {
+        synchronized (disposedLevels) {
+            for (GcodeModelLevel level : disposedLevels) {
+                level.dispose(gl);
+            }
+            disposedLevels.clear();
+        }
+    }
+
     public Point3d getMin() {
         return this.objectMin;
     }
@@ -227,11 +298,11 @@ public class GcodeModel extends Renderable {
             logger.log(Level.INFO, "About to process {}", gcodeFile);
             try {
                 IGcodeStreamReader gsr = new GcodeStreamReader(new File(gcodeFile));
-                gcodeLineList = gcvp.toObjFromReader(gsr, 0.3);
+                gcodeLineList = gcvp.toObjFromReader(gsr, 0.3, arcChordTolerance);
             } catch (GcodeStreamReader.NotGcodeStreamFile e) {
                 List<String> linesInFile;
                 linesInFile = VisualizerUtils.readFiletoArrayList(this.gcodeFile);
-                gcodeLineList = gcvp.toObjRedux(linesInFile, 0.3);
+                gcodeLineList = gcvp.toObjRedux(linesInFile, 0.3, arcChordTolerance);
             }
 
             this.objectMin = gcvp.getMinimumExtremes();
@@ -265,12 +336,10 @@ public class GcodeModel extends Renderable {
             */
 
             // Now that the object is known, fill the buffers.
+            this.disposedLevels.addAll(levels);
+            this.levels = createLevels(gcodeLineList, objectSize);
             this.isDrawable = true;
 
-            this.numberOfVertices = gcodeLineList.size() * 2;
-            this.lineVertexData = new float[numberOfVertices * 3];
-            this.lineColorData = new byte[numberOfVertices * 3];
-            
             this.updateVertexBuffers();
         } catch (GcodeParserException | IOException e) {
             String error = Localization.getString("mainWindow.error.openingFile") + " : " + e.getLocalizedMessage();
@@ -283,114 +352,106 @@ public class GcodeModel extends Renderable {
     }
 
     /**
-     * Convert the gcodeLineList into vertex and color arrays.
+     * Create the levels of detail, each level is simplified from the
+     * previous one with a four times larger tolerance. Levels which don't
+     * remove enough segments are skipped.
+     */
+    private static List<GcodeModelLevel> createLevels(LineSegmentStore segments, Point3d size) {
+        List<GcodeModelLevel> result = new ArrayList<>();
+        result.add(new GcodeModelLevel(segments, 0));
+
+        double diagonal = Math.sqrt(size.x * size.x + size.y * size.y + size.z * size.z);
+        LineSegmentStore previous = segments;
+        for (double tolerance = diagonal * FIRST_LEVEL_TOLERANCE;
+             tolerance > 0 && tolerance <= diagonal * LAST_LEVEL_TOLERANCE;
+             tolerance *= 4) {
+            LineSegmentStore simplified = LineSegmentDecimator.decimate(previous, tolerance);
+            if (simplified.size() < previous.size() * MIN_LEVEL_REDUCTION) {
+                result.add(new GcodeModelLevel(simplified, tolerance));
+                previous = simplified;
+            }
+        }
+
+        logger.log(Level.INFO, "Created {0} levels of detail, the coarsest has {1} segments",
+                new Object[]{result.size(), previous.size()});
+        return result;
+    }
+
+    /**
+     * Update the colors of all levels.
      */
     private void updateVertexBuffers() {
         if (this.isDrawable) {
-            Color color;
-            int vertIndex = 0;
-            int colorIndex = 0;
-            byte[] c = new byte[3];
-            for (LineSegment ls : gcodeLineList) {
-                // Find the lines color.
-                if (ls.isArc()) {
-                    color = arcColor;
-                } else if (ls.isFastTraverse()) {
-                    color = rapidColor;
-                } else if (ls.isZMovement()) {
-                    color = plungeColor;
-                } else {
-                    color = linearColor;
-                }
-
-                // Override color if it is cutoff
-                if (ls.getLineNumber() < this.currentCommandNumber) {
-                    color = completedColor;
-                }
-
-                // Draw it.
-                {
-                    Point3d p1 = ls.getStart();
-                    Point3d p2 = ls.getEnd();
-
-                    c[0] = (byte) color.getRed();
-                    c[1] = (byte) color.getGreen();
-                    c[2] = (byte) color.getBlue();
-
-                    // colors
-                    //p1
-                    lineColorData[colorIndex++] = c[0];
-                    lineColorData[colorIndex++] = c[1];
-                    lineColorData[colorIndex++] = c[2];
-
-                    //p2
-                    lineColorData[colorIndex++] = c[0];
-                    lineColorData[colorIndex++] = c[1];
-                    lineColorData[colorIndex++] = c[2];
-
-                    // p1 location
-                    lineVertexData[vertIndex++] = (float) p1.x;
-                    lineVertexData[vertIndex++] = (float) p1.y;
-                    lineVertexData[vertIndex++] = (float) p1.z;
-                    //p2
-                    lineVertexData[vertIndex++] = (float) p2.x;
-                    lineVertexData[vertIndex++] = (float) p2.y;
-                    lineVertexData[vertIndex++] = (float) p2.z;
-                }
+            int commandNumber = this.currentCommandNumber;
+            for (GcodeModelLevel level : levels) {
+                updateColors(level, 0, level.segments.size(), commandNumber);
+                level.coloredCommandNumber = commandNumber;
+                level.invalidateColors();
             }
-
-            this.colorArrayDirty = true;
-            this.vertexArrayDirty = true;
         }
     }
-    
+
     /**
-     * Initialize or update open gl geometry array in native buffer objects.
+     * Update the colors of the segments which have been completed, or are
+     * no longer completed, since the colors were last updated. The segments
+     * are in the order of the program so they are found with a binary
+     * search.
      */
-    private void updateGLGeometryArray(GLAutoDrawable drawable) {
-        GL2 gl = drawable.getGL().getGL2();
-        
-        // Reset buffer and set to null of new geometry doesn't fit.
-        if (lineVertexBuffer != null) {
-            lineVertexBuffer.clear();
-            if (lineVertexBuffer.remaining() < lineVertexData.length) {
-                lineVertexBuffer = null;
+    private void updateCompletedColors() {
+        int commandNumber = this.currentCommandNumber;
+        for (GcodeModelLevel level : levels) {
+            if (commandNumber == level.coloredCommandNumber) {
+                continue;
             }
+
+            int start = level.segments.indexOfLineNumber(Math.min(commandNumber, level.coloredCommandNumber));
+            int end = level.segments.indexOfLineNumber(Math.max(commandNumber, level.coloredCommandNumber));
+            updateColors(level, start, end, commandNumber);
+            level.coloredCommandNumber = commandNumber;
+
+            // Only this range needs to be uploaded to the color buffer object.
+            level.invalidateColors(start, end);
         }
-        
-        if (lineVertexBuffer == null) {
-            lineVertexBuffer = Buffers.newDirectFloatBuffer(lineVertexData.length);
-        }
-        
-        lineVertexBuffer.put(lineVertexData);
-        lineVertexBuffer.flip();
-        gl.glVertexPointer( 3, GL.GL_FLOAT, 0, lineVertexBuffer );
     }
-    
+
     /**
-     * Initialize or update open gl color array in native buffer objects.
+     * Write the colors of a range of segments into the color array.
      */
-    private void updateGLColorArray(GLAutoDrawable drawable) {
-        GL2 gl = drawable.getGL().getGL2();
-        
-        // Reset buffer and set to null of new colors don't fit.
-        if (lineColorBuffer != null) {
-            lineColorBuffer.clear();
-
-            if (lineColorBuffer.remaining() < lineColorData.length) {
-                lineColorBuffer = null;
+    private void updateColors(GcodeModelLevel level, int startSegment, int endSegment, int commandNumber) {
+        LineSegmentStore segments = level.segments;
+        ByteBuffer colors = level.colors;
+        Color color;
+        int colorIndex = startSegment * 6;
+        for (int i = startSegment; i < endSegment; i++) {
+            // Find the lines color.
+            if (segments.isArc(i)) {
+                color = arcColor;
+            } else if (segments.isFastTraverse(i)) {
+                color = rapidColor;
+            } else if (segments.isZMovement(i)) {
+                color = plungeColor;
+            } else {
+                color = linearColor;
             }
-        }
-        
-        if (lineColorBuffer == null) {
-            if (lineColorData == null) {
-                updateVertexBuffers();
+
+            // Override color if it is cutoff
+            if (segments.getLineNumber(i) < commandNumber) {
+                color = completedColor;
             }
-            lineColorBuffer = Buffers.newDirectByteBuffer(this.lineColorData.length);
+
+            byte red = (byte) color.getRed();
+            byte green = (byte) color.getGreen();
+            byte blue = (byte) color.getBlue();
+
+            //p1
+            colors.put(colorIndex++, red);
+            colors.put(colorIndex++, green);
+            colors.put(colorIndex++, blue);
+
+            //p2
+            colors.put(colorIndex++, red);
+            colors.put(colorIndex++, green);
+            colors.put(colorIndex++, blue);
         }
-        
-        lineColorBuffer.put(lineColorData);
-        lineColorBuffer.flip();
-        gl.glColorPointer( 3, GL.GL_UNSIGNED_BYTE, 0, lineColorBuffer );
     }
 }
@@ -0,0 +1,196 @@
+/*
+    Copyright 2020 Will Winder
+
+    This file is part of Universal Gcode Sender (UGS).
+
+    UGS is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    UGS is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with UGS.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.willwinder.ugs.nbm.visualizer.renderables;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentBounds;
+import com.willwinder.universalgcodesender.visualizer.LineSegmentStore;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static com.jogamp.opengl.GL.GL_LINES;
+import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_COLOR_ARRAY;
+import static com.jogamp.opengl.fixedfunc.GLPointerFunc.GL_VERTEX_ARRAY;
+
+/**
+ * One level of detail of the {@link GcodeModel}, the segments simplified
+ * with a tolerance together with their colors and buffer objects.
+ *
+ * @author wwinder
+ */
+class GcodeModelLevel {
+    final LineSegmentStore segments;
+    final LineSegmentBounds bounds;
+    final double tolerance;
+    final ByteBuffer colors;
+
+    // The command number which the colors were last updated for
+    int coloredCommandNumber = 0;
+
+    // The visible ranges of segments, reused between frames
+    final int[] visibleRanges;
+
+    private final FloatBuffer vertices;
+    private int vertexBufferObject = 0;
+    private int colorBufferObject = 0;
+    private boolean verticesUploaded = false;
+    private boolean colorsUploaded = false;
+    private int dirtyColorStart = Integer.MAX_VALUE;
+    private int dirtyColorEnd = 0;
+
+    GcodeModelLevel(LineSegmentStore segments, double tolerance) {
+        this.segments = segments;
+        this.bounds = new LineSegmentBounds(segments);
+        this.tolerance = tolerance;
+        this.vertices = segments.getVertexBuffer();
+        this.colors = Buffers.newDirectByteBuffer(segments.size() * 6);
+        this.visibleRanges = new int[bounds.getChunkCount() * 2];
+    }
+
+    /**
+     * All colors have changed and need to be uploaded again.
+     */
+    void invalidateColors() {
+        colorsUploaded = false;
+    }
+
+    /**
+     * The colors of a range of segments have changed.
+     */
+    void invalidateColors(int start, int end) {
+        dirtyColorStart = Math.min(dirtyColorStart, start);
+        dirtyColorEnd = Math.max(dirtyColorEnd, end);
+    }
+
+    private void generateBufferObjects(GL2 gl) {
+        if (vertexBufferObject == 0) {
+            int[] buffers = new int[2];
+            gl.glGenBuffers(2, buffers, 0);
+            vertexBufferObject = buffers[0];
+            colorBufferObject = buffers[1];
+        }
+    }
+
+    /**
+     * Upload the vertices to the vertex buffer object, this is only done
+     * once.
+     */
+    void uploadVertices(GL2 gl) {
+        if (verticesUploaded) {
+            return;
+        }
+
+        generateBufferObjects(gl);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBufferObject);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, (long) vertices.remaining() * Buffers.SIZEOF_FLOAT, vertices, GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        verticesUploaded = true;
+    }
+
+    /**
+     * Upload the colors which have changed since the last upload to the
+     * color buffer object.
+     */
+    void uploadColors(GL2 gl) {
+        generateBufferObjects(gl);
+        if (!colorsUploaded) {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorBufferObject);
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, colors.capacity(), colors, GL.GL_DYNAMIC_DRAW);
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+            colorsUploaded = true;
+        } else if (dirtyColorStart < dirtyColorEnd) {
+            ByteBuffer range = colors.duplicate();
+            range.position(dirtyColorStart * 6);
+            range.limit(dirtyColorEnd * 6);
+
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorBufferObject);
+            gl.glBufferSubData(GL.GL_ARRAY_BUFFER, range.position(), range.remaining(), range);
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        }
+        dirtyColorStart = Integer.MAX_VALUE;
+        dirtyColorEnd = 0;
+    }
+
+    /**
+     * Draws ranges of segments from the buffer objects.
+     *
+     * @param ranges     pairs of the first segment and the segment after the last
+     * @param rangeCount the number of pairs in the ranges array
+     * @param withColors false to draw with the current color
+     */
+    void drawBufferObjects(GL2 gl, int[] ranges, int rangeCount, boolean withColors) {
+        uploadVertices(gl);
+        gl.glEnableClientState(GL_VERTEX_ARRAY);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBufferObject);
+        gl.glVertexPointer(3, GL.GL_FLOAT, 0, 0L);
+        if (withColors) {
+            uploadColors(gl);
+            gl.glEnableClientState(GL_COLOR_ARRAY);
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorBufferObject);
+            gl.glColorPointer(3, GL.GL_UNSIGNED_BYTE, 0, 0L);
+        }
+
+        for (int i = 0; i < rangeCount; i++) {
+            int start = ranges[i * 2];
+            int end = ranges[i * 2 + 1];
+            gl.glDrawArrays(GL_LINES, start * 2, (end - start) * 2);
+        }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        if (withColors) {
+            gl.glDisableClientState(GL_COLOR_ARRAY);
+        }
+        gl.glDisableClientState(GL_VERTEX_ARRAY);
+    }
+
+    /**
+     * Draws ranges of segments in immediate mode for when buffer objects
+     * aren't available.
+     */
+    void drawImmediate(GL2 gl, int[] ranges, int rangeCount) {
+        gl.glBegin(GL_LINES);
+        for (int range = 0; range < rangeCount; range++) {
+            for (int i = ranges[range * 2]; i < ranges[range * 2 + 1]; i++) {
+                int colorIndex = i * 6;
+                int vertexIndex = i * 6;
+                gl.glColor3ub(colors.get(colorIndex), colors.get(colorIndex + 1), colors.get(colorIndex + 2));
+                gl.glVertex3d(vertices.get(vertexIndex), vertices.get(vertexIndex + 1), vertices.get(vertexIndex + 2));
+                gl.glColor3ub(colors.get(colorIndex + 3), colors.get(colorIndex + 4), colors.get(colorIndex + 5));
+                gl.glVertex3d(vertices.get(vertexIndex + 3), vertices.get(vertexIndex + 4), vertices.get(vertexIndex + 5));
+            }
+        }
+        gl.glEnd();
+    }
+
+    /**
+     * Releases the buffer objects.
+     */
+    void dispose(GL2 gl) {
+        if (vertexBufferObject != 0) {
+            gl.glDeleteBuffers(2, new int[]{vertexBufferObject, colorBufferObject}, 0);
+            vertexBufferObject = 0;
+            colorBufferObject = 0;
+        }
+        verticesUploaded = false;
+        colorsUploaded = false;
+    }
+}